@@ -1,12 +1,20 @@
 package org.mechaverse.client;
 
 import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.mechaverse.manager.api.MechaverseManagerApi;
+import org.mechaverse.manager.api.model.SimulationConfig;
+import org.mechaverse.manager.api.model.SimulationConfigProperty;
 import org.mechaverse.manager.api.model.SimulationInfo;
 import org.mechaverse.manager.api.model.Task;
+import org.mechaverse.manager.client.MechaverseManagerStateApi;
 import org.mechaverse.simulation.common.Simulation;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
@@ -16,29 +24,48 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
  */
 public class MechaverseClient {
 
+  /**
+   * The name of the simulation config property that selects the {@link CompressionCodec} with which
+   * results are compressed, for example {@code zstd:3}. Results are compressed with gzip if the
+   * property is not set.
+   */
+  public static final String STATE_COMPRESSION_PROPERTY = "stateCompression";
+
+  /**
+   * The name of the simulation config property that selects the {@link SimulationModelFormat} in
+   * which results are serialized, for example {@code columnar}. Results are serialized as smile if
+   * the property is not set.
+   */
+  public static final String STATE_FORMAT_PROPERTY = "stateFormat";
+
+  private static final int POLL_TIMEOUT_SECONDS = 30;
+  private static final long ERROR_SLEEP_MILLIS = 60 * 1000;
+
   private static final String DONE_MSG = "Done.";
   private static final String CONNECT_ERROR_MSG = "Connection failed.";
   private static final String FAILED_ERROR_MSG = "Failed.";
 
   private final String clientId;
   private final MechaverseManagerApi manager;
+  private final MechaverseManagerStateApi stateApi;
   private final int instanceIdx;
   private AtomicBoolean running = new AtomicBoolean(true);
 
-  public MechaverseClient(String clientId, MechaverseManagerApi manager, int instanceIdx) {
+  public MechaverseClient(String clientId, MechaverseManagerApi manager,
+      MechaverseManagerStateApi stateApi, int instanceIdx) {
     this.clientId = clientId;
     this.manager = manager;
+    this.stateApi = stateApi;
     this.instanceIdx = instanceIdx;
   }
 
   public void start() {
     while (running.get()) {
       try {
+        // Waits on the manager until a task is available.
         Task task = getTask();
         if(task != null) {
           executeTask(task);
-        } else {
-          sleep();
         }
       } catch (Exception e) {
         sleep();
@@ -53,7 +80,8 @@ public class MechaverseClient {
   public Task getTask() {
     try {
       logOperationStart("Getting task");
-      Task task = manager.getTask(clientId);
+      List<Task> tasks = manager.pollTasks(clientId, 1, POLL_TIMEOUT_SECONDS);
+      Task task = tasks != null && !tasks.isEmpty() ? tasks.get(0) : null;
       if(task != null) {
         logOperationDone();
       } else {
@@ -77,10 +105,8 @@ public class MechaverseClient {
       if (task.getIteration() >= 0) {
         // Get the state from the storage service.
         logSubOperationStart("Retrieving simulation state");
-        byte[] stateData = manager.getState(
-            task.getSimulationId(), task.getInstanceId(), task.getIteration());
-        simulation.setStateData(stateData);
-
+        stateApi.getState(task.getSimulationId(), task.getInstanceId(), task.getIteration(),
+            simulation::setStateData);
         logOperationDone();
       } else {
         // Generate a new state.
@@ -98,23 +124,46 @@ public class MechaverseClient {
         logOperationDone(runTime);
       }
 
-      synchronized (MechaverseClient.class) {
-        logSubOperationStart("Serializing simulation state");
-        byte[] stateData = simulation.getStateData();
-        logOperationDone();
-
-        // Submit result.
-        logSubOperationStart("Submitting result");
-        manager.submitResult(task.getId(), stateData);
-        logOperationDone();
-      }
-
+      // Submit the result. The state is serialized as it is sent.
+      logSubOperationStart("Submitting result");
+      SimulationModelFormat format = getStateFormat(simulationInfo.getConfig());
+      CompressionCodec codec = getStateCompressionCodec(simulationInfo.getConfig());
+      stateApi.submitResult(task.getId(), out -> simulation.getStateData(out, format, codec));
+      logOperationDone();
     } catch (Throwable ex) {
       printErrorMessage(ex);
       throw ex;
     }
   }
 
+  /**
+   * Returns the format selected by the {@link #STATE_FORMAT_PROPERTY} of the given config.
+   */
+  protected static SimulationModelFormat getStateFormat(SimulationConfig config) {
+    String value = getConfigProperty(config, STATE_FORMAT_PROPERTY);
+    return value != null ? SimulationModelFormat.valueOf(value.trim().toUpperCase(Locale.ROOT))
+        : SimulationModelFormat.SMILE;
+  }
+
+  /**
+   * Returns the codec selected by the {@link #STATE_COMPRESSION_PROPERTY} of the given config.
+   */
+  protected static CompressionCodec getStateCompressionCodec(SimulationConfig config) {
+    String value = getConfigProperty(config, STATE_COMPRESSION_PROPERTY);
+    return value != null ? CompressionCodec.valueOf(value) : CompressionCodec.GZIP;
+  }
+
+  private static String getConfigProperty(SimulationConfig config, String name) {
+    if (config.getConfigProperties() != null) {
+      for (SimulationConfigProperty property : config.getConfigProperties()) {
+        if (name.equals(property.getName()) && property.getValue() != null) {
+          return new String(property.getValue(), StandardCharsets.UTF_8);
+        }
+      }
+    }
+    return null;
+  }
+
   protected AbstractApplicationContext getApplicationContext(String simulationType) {
     return new ClassPathXmlApplicationContext(simulationType + "-simulation-context.xml");
   }
@@ -145,7 +194,7 @@ public class MechaverseClient {
 
   private void sleep() {
     try {
-      Thread.sleep(60 * 1000);
+      Thread.sleep(ERROR_SLEEP_MILLIS);
     } catch (InterruptedException ignored) {}
   }
 
@@ -2,10 +2,8 @@ package org.mechaverse.client;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import org.mechaverse.manager.api.MechaverseManagerApi;
+import org.mechaverse.manager.client.MechaverseManagerStateApi;
 import org.mechaverse.manager.client.spring.MechaverseManagerClientConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +24,9 @@ public class MechaverseClientApp implements CommandLineRunner {
     @Autowired
     private MechaverseManagerApi manager;
 
+    @Autowired
+    private MechaverseManagerStateApi stateApi;
+
     public static void main(String[] args) {
         if(args.length == 0) {
             System.out.println("Missing argument: clientId");
@@ -40,18 +41,11 @@ public class MechaverseClientApp implements CommandLineRunner {
 
         final List<MechaverseClient> clientInstances = new ArrayList<>();
         int instanceCount = Runtime.getRuntime().availableProcessors();
-        ExecutorService executorService = Executors.newFixedThreadPool(instanceCount);
         for (int idx = 0; idx < instanceCount; idx++) {
-            final int instanceIdx = idx;
-            executorService.submit(() -> {
-                MechaverseClient clientInstance = new MechaverseClient(
-                    clientId, manager, instanceIdx);
-                clientInstances.add(clientInstance);
-                clientInstance.start();
-            });
+            clientInstances.add(new MechaverseClient(clientId, manager, stateApi, idx));
         }
 
-        executorService.shutdown();
-        while (!executorService.awaitTermination(10, TimeUnit.SECONDS)) { }
+        // The tasks for all of the idle instances are leased together.
+        new MechaverseClientDispatcher(clientId, manager, clientInstances).start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package org.mechaverse.client;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.mechaverse.manager.api.MechaverseManagerApi;
+import org.mechaverse.manager.api.model.Task;
+
+/**
+ * Leases tasks from the mechaverse manager for a pool of {@link MechaverseClient} workers.
+ *
+ * <p>The tasks for all of the idle workers are leased with a single request, so the number of
+ * requests to the manager does not grow with the number of workers. Each task is executed by a
+ * worker on its own thread, and the worker becomes idle again when the task is done. The request
+ * waits on the manager until tasks are available, so new tasks are picked up as soon as they can be
+ * scheduled.
+ */
+public class MechaverseClientDispatcher {
+
+  private static final int POLL_TIMEOUT_SECONDS = 30;
+  private static final long ERROR_SLEEP_MILLIS = 60 * 1000;
+
+  private final String clientId;
+  private final MechaverseManagerApi manager;
+  private final BlockingQueue<MechaverseClient> idleWorkers;
+  private final ExecutorService executorService;
+  private final AtomicBoolean running = new AtomicBoolean(true);
+
+  public MechaverseClientDispatcher(String clientId, MechaverseManagerApi manager,
+      List<MechaverseClient> workers) {
+    this.clientId = Objects.requireNonNull(clientId);
+    this.manager = Objects.requireNonNull(manager);
+    this.idleWorkers = new LinkedBlockingQueue<>(workers);
+    this.executorService = Executors.newFixedThreadPool(workers.size());
+  }
+
+  /**
+   * Leases and dispatches tasks until {@link #stop()} is called, and then waits for the executing
+   * tasks to complete.
+   */
+  public void start() throws InterruptedException {
+    try {
+      while (running.get()) {
+        MechaverseClient worker = idleWorkers.poll(1, TimeUnit.SECONDS);
+        if (worker == null) {
+          continue;
+        }
+        List<MechaverseClient> workers = new ArrayList<>();
+        workers.add(worker);
+        idleWorkers.drainTo(workers);
+
+        List<Task> tasks;
+        try {
+          tasks = pollTasks(workers.size());
+        } catch (RuntimeException ex) {
+          idleWorkers.addAll(workers);
+          Thread.sleep(ERROR_SLEEP_MILLIS);
+          continue;
+        }
+        for (int idx = 0; idx < workers.size(); idx++) {
+          if (idx < tasks.size()) {
+            dispatch(workers.get(idx), tasks.get(idx));
+          } else {
+            idleWorkers.add(workers.get(idx));
+          }
+        }
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    while (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {}
+  }
+
+  public void stop() {
+    running.set(false);
+  }
+
+  /**
+   * Leases up to the given number of tasks, waiting until tasks are available or the poll times
+   * out.
+   */
+  private List<Task> pollTasks(int maxTaskCount) {
+    System.out.printf("Waiting for up to %d tasks ... ", maxTaskCount);
+    try {
+      List<Task> tasks = manager.pollTasks(clientId, maxTaskCount, POLL_TIMEOUT_SECONDS);
+      if (tasks == null || tasks.isEmpty()) {
+        System.out.println("Nothing to do.");
+        return Collections.emptyList();
+      }
+      System.out.printf("Leased %d.%n", tasks.size());
+      return tasks;
+    } catch (RuntimeException ex) {
+      if (ex.getCause() instanceof ConnectException) {
+        System.out.println("Connection failed.");
+      } else {
+        System.out.println("Failed.");
+        ex.printStackTrace();
+      }
+      throw ex;
+    }
+  }
+
+  private void dispatch(MechaverseClient worker, Task task) {
+    executorService.submit(() -> {
+      try {
+        worker.executeTask(task);
+      } catch (Exception ignored) {
+        // The worker reports its own errors.
+      } finally {
+        idleWorkers.add(worker);
+      }
+    });
+  }
+}
@@ -0,0 +1,92 @@
+package org.mechaverse.client;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mechaverse.manager.api.MechaverseManagerApi;
+import org.mechaverse.manager.api.model.Task;
+
+/**
+ * Unit test for {@link MechaverseClientDispatcher}.
+ */
+public class MechaverseClientDispatcherTest {
+
+  private static final String TEST_CLIENT_ID = "test-client";
+
+  private MechaverseManagerApi mockManager;
+  private MechaverseClient mockWorker1;
+  private MechaverseClient mockWorker2;
+  private MechaverseClientDispatcher dispatcher;
+  private Thread dispatcherThread;
+
+  @Before
+  public void setUp() {
+    mockManager = mock(MechaverseManagerApi.class);
+    mockWorker1 = mock(MechaverseClient.class);
+    mockWorker2 = mock(MechaverseClient.class);
+    dispatcher = new MechaverseClientDispatcher(
+        TEST_CLIENT_ID, mockManager, Arrays.asList(mockWorker1, mockWorker2));
+    dispatcherThread = new Thread(() -> {
+      try {
+        dispatcher.start();
+      } catch (InterruptedException ignored) {}
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    dispatcher.stop();
+    dispatcherThread.interrupt();
+    dispatcherThread.join();
+  }
+
+  @Test
+  public void start() throws Exception {
+    Task task1 = newTask(1);
+    Task task2 = newTask(2);
+    when(mockManager.pollTasks(TEST_CLIENT_ID, 2, 30))
+        .thenReturn(Arrays.asList(task1, task2))
+        .thenReturn(Collections.emptyList());
+    dispatcherThread.start();
+
+    verify(mockWorker1, timeout(5000)).executeTask(task1);
+    verify(mockWorker2, timeout(5000)).executeTask(task2);
+  }
+
+  @Test
+  public void start_partialLease() throws Exception {
+    Task task = newTask(1);
+    when(mockManager.pollTasks(TEST_CLIENT_ID, 2, 30))
+        .thenReturn(Collections.singletonList(task))
+        .thenReturn(Collections.emptyList());
+    when(mockManager.pollTasks(TEST_CLIENT_ID, 1, 30)).thenReturn(Collections.emptyList());
+    dispatcherThread.start();
+
+    verify(mockWorker1, timeout(5000)).executeTask(task);
+    verify(mockWorker2, never()).executeTask(task);
+  }
+
+  @Test
+  public void start_leaseFailure() throws Exception {
+    when(mockManager.pollTasks(TEST_CLIENT_ID, 2, 30)).thenThrow(new RuntimeException());
+    dispatcherThread.start();
+
+    verify(mockManager, timeout(5000)).pollTasks(TEST_CLIENT_ID, 2, 30);
+    verify(mockWorker1, never()).executeTask(null);
+  }
+
+  private static Task newTask(long id) {
+    Task task = new Task();
+    task.setId(id);
+    task.setIteration(-1L);
+    return task;
+  }
+}
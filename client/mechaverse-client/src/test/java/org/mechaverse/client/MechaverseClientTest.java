@@ -1,22 +1,34 @@
 package org.mechaverse.client;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mechaverse.manager.api.MechaverseManagerApi;
 import org.mechaverse.manager.api.model.SimulationConfig;
+import org.mechaverse.manager.api.model.SimulationConfigProperty;
 import org.mechaverse.manager.api.model.SimulationInfo;
 import org.mechaverse.manager.api.model.Task;
+import org.mechaverse.manager.client.MechaverseManagerStateApi;
+import org.mechaverse.manager.client.MechaverseManagerStateApi.StateReader;
+import org.mechaverse.manager.client.MechaverseManagerStateApi.StateWriter;
 import org.mechaverse.simulation.common.Simulation;
 import org.mechaverse.simulation.common.model.SimulationModel;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
 import org.mechaverse.simulation.common.util.SimulationModelUtil;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
@@ -37,6 +49,8 @@ public class MechaverseClientTest {
   @Autowired
   private MechaverseManagerApi mockManager;
   @Autowired
+  private MechaverseManagerStateApi mockStateApi;
+  @Autowired
   private Simulation mockSimulation;
 
   private MechaverseClient client;
@@ -44,9 +58,9 @@ public class MechaverseClientTest {
   @Before
   public void setUp() {
     MockitoAnnotations.initMocks(this);
-    Mockito.reset(mockManager, mockSimulation);
+    Mockito.reset(mockManager, mockStateApi, mockSimulation);
 
-    client = new MechaverseClient("test-client", mockManager, 0) {
+    client = new MechaverseClient("test-client", mockManager, mockStateApi, 0) {
       @Override
       protected AbstractApplicationContext getApplicationContext(String simulationType) {
         return null;
@@ -75,19 +89,18 @@ public class MechaverseClientTest {
     simulationInfo.setConfig(new SimulationConfig());
     simulationInfo.getConfig().setSimulationType("ant");
     when(mockManager.getSimulationInfo(task.getSimulationId())).thenReturn(simulationInfo);
-    when(mockManager.getState(
-        task.getSimulationId(), task.getInstanceId(), task.getIteration()))
-        .thenReturn(SimulationModelUtil.serialize(state));
-
-    when(mockSimulation.getStateData()).thenReturn("state2".getBytes());
+    byte[] stateData = SimulationModelUtil.serialize(state);
+    doAnswer(invocation -> {
+      ((StateReader) invocation.getArguments()[3]).read(new ByteArrayInputStream(stateData));
+      return null;
+    }).when(mockStateApi).getState(eq(task.getSimulationId()), eq(task.getInstanceId()),
+        eq(task.getIteration()), any(StateReader.class));
 
     client.executeTask(task);
 
+    verify(mockSimulation).setStateData(any(InputStream.class));
     verify(mockSimulation).step(20);
-    ArgumentCaptor<byte[]> stateIn = ArgumentCaptor.forClass(byte[].class);
-    verify(mockManager).submitResult(eq(task.getId()), stateIn.capture());
-
-    assertEquals("state2", new String(stateIn.getValue()));
+    assertEquals("state2", submittedState(task, CompressionCodec.GZIP));
   }
 
   @Test
@@ -106,14 +119,80 @@ public class MechaverseClientTest {
     simulationInfo.setConfig(new SimulationConfig());
     simulationInfo.getConfig().setSimulationType("ant");
     when(mockManager.getSimulationInfo(task.getSimulationId())).thenReturn(simulationInfo);
-    when(mockSimulation.getStateData()).thenReturn("state2".getBytes());
 
     client.executeTask(task);
 
+    verify(mockSimulation).setState(state);
     verify(mockSimulation, never()).step(anyInt());
-    ArgumentCaptor<byte[]> stateIn = ArgumentCaptor.forClass(byte[].class);
-    verify(mockManager).submitResult(eq(task.getId()), stateIn.capture());
+    assertEquals("state2", submittedState(task, CompressionCodec.GZIP));
+  }
+
+  @Test
+  public void executeTask_stateCompression() throws Exception {
+    Task task = new Task();
+    task.setId(123L);
+    task.setSimulationId(UUID.randomUUID().toString());
+    task.setInstanceId(UUID.randomUUID().toString());
+    task.setIteration(-1L);
+    task.setIterationCount(0);
+
+    when(mockSimulation.generateRandomState()).thenReturn(new SimulationModel());
+    SimulationInfo simulationInfo = new SimulationInfo();
+    simulationInfo.setConfig(new SimulationConfig());
+    simulationInfo.getConfig().setSimulationType("ant");
+    simulationInfo.getConfig().addConfigPropertiesItem(new SimulationConfigProperty()
+        .name(MechaverseClient.STATE_COMPRESSION_PROPERTY).value("zstd:5".getBytes()));
+    when(mockManager.getSimulationInfo(task.getSimulationId())).thenReturn(simulationInfo);
+
+    client.executeTask(task);
+
+    assertEquals("state2", submittedState(task,
+        new CompressionCodec(CompressionCodec.Type.ZSTD, 5)));
+  }
+
+  @Test
+  public void executeTask_stateFormat() throws Exception {
+    Task task = new Task();
+    task.setId(123L);
+    task.setSimulationId(UUID.randomUUID().toString());
+    task.setInstanceId(UUID.randomUUID().toString());
+    task.setIteration(-1L);
+    task.setIterationCount(0);
+
+    when(mockSimulation.generateRandomState()).thenReturn(new SimulationModel());
+    SimulationInfo simulationInfo = new SimulationInfo();
+    simulationInfo.setConfig(new SimulationConfig());
+    simulationInfo.getConfig().setSimulationType("ant");
+    simulationInfo.getConfig().addConfigPropertiesItem(new SimulationConfigProperty()
+        .name(MechaverseClient.STATE_FORMAT_PROPERTY).value("columnar".getBytes()));
+    when(mockManager.getSimulationInfo(task.getSimulationId())).thenReturn(simulationInfo);
+
+    client.executeTask(task);
+
+    assertEquals("state2",
+        submittedState(task, SimulationModelFormat.COLUMNAR, CompressionCodec.GZIP));
+  }
+
+  private String submittedState(Task task, CompressionCodec codec) throws Exception {
+    return submittedState(task, SimulationModelFormat.SMILE, codec);
+  }
 
-    assertEquals("state2", new String(stateIn.getValue()));
+  /**
+   * Returns the state that is written when the result writer that was submitted for the given task
+   * is invoked. The state is only written if it is serialized in the given format and compressed
+   * with the given codec.
+   */
+  private String submittedState(Task task, SimulationModelFormat format, CompressionCodec codec)
+      throws Exception {
+    doAnswer(invocation -> {
+      ((OutputStream) invocation.getArguments()[0]).write("state2".getBytes());
+      return null;
+    }).when(mockSimulation).getStateData(any(OutputStream.class), eq(format), eq(codec));
+
+    ArgumentCaptor<StateWriter> writer = ArgumentCaptor.forClass(StateWriter.class);
+    verify(mockStateApi).submitResult(eq(task.getId()), writer.capture());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.getValue().write(out);
+    return new String(out.toByteArray());
   }
 }
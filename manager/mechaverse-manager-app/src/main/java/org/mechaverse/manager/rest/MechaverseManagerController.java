@@ -6,33 +6,60 @@ import static org.springframework.web.bind.annotation.RequestMethod.POST;
 import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 
 import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.List;
-import org.apache.commons.io.IOUtils;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
 import org.mechaverse.manager.service.MechaverseManagerService;
+import org.mechaverse.manager.service.TaskWaitQueue;
 import org.mechaverse.manager.service.model.SimulationConfig;
 import org.mechaverse.manager.service.model.SimulationInfo;
 import org.mechaverse.manager.service.model.Task;
+import org.mechaverse.manager.service.storage.StateInputStream;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping("/api/v1/manager")
 @Api(value = "MechaverseManager", tags = "MechaverseManager")
 public class MechaverseManagerController {
 
+  /** The header that holds the number of bytes of an upload that have been received. */
+  public static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+  /** The header that holds the CRC32 checksum of an uploaded chunk as a hexadecimal number. */
+  public static final String UPLOAD_CHECKSUM_HEADER = "Upload-Checksum";
+
+  private static final int MAX_POLL_TIMEOUT_SECONDS = 120;
+  private static final Pattern CONTENT_RANGE_PATTERN =
+      Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
   private final MechaverseManagerService managerService;
+  private final TaskWaitQueue taskWaitQueue;
 
-  public MechaverseManagerController(final MechaverseManagerService managerService) {
+  public MechaverseManagerController(final MechaverseManagerService managerService,
+      final TaskWaitQueue taskWaitQueue) {
     this.managerService = Preconditions.checkNotNull(managerService);
+    this.taskWaitQueue = Preconditions.checkNotNull(taskWaitQueue);
   }
 
   @RequestMapping(value = "/clients/{clientId}/task",
@@ -43,16 +70,92 @@ public class MechaverseManagerController {
     return managerService.getTask(clientId);
   }
 
+  @RequestMapping(value = "/clients/{clientId}/tasks",
+      method = GET,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  @ApiOperation(value = "getTasks", nickname = "getTasks")
+  public List<Task> getTasks(@PathVariable String clientId, @RequestParam int maxTaskCount) {
+    return managerService.getTasks(clientId, maxTaskCount);
+  }
+
+  @RequestMapping(value = "/clients/{clientId}/tasks/poll",
+      method = GET,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  @ApiOperation(value = "pollTasks", nickname = "pollTasks")
+  public DeferredResult<List<Task>> pollTasks(@PathVariable String clientId,
+      @RequestParam int maxTaskCount, @RequestParam(defaultValue = "30") int timeoutSeconds) {
+    // The request is parked without holding a thread until tasks are available or it times out.
+    long timeoutMillis =
+        TimeUnit.SECONDS.toMillis(Math.min(Math.max(timeoutSeconds, 0), MAX_POLL_TIMEOUT_SECONDS));
+    DeferredResult<List<Task>> result =
+        new DeferredResult<>(timeoutMillis, Collections.<Task>emptyList());
+    CompletableFuture<List<Task>> tasks = taskWaitQueue.getTasks(clientId, maxTaskCount);
+    tasks.whenComplete((value, ex) -> {
+      if (ex == null) {
+        result.setResult(value);
+      } else if (!(ex instanceof CancellationException)) {
+        result.setErrorResult(ex);
+      }
+    });
+    result.onTimeout(() -> tasks.cancel(false));
+    return result;
+  }
+
   @RequestMapping(value = "/tasks/{taskId}/result",
       method = PUT,
       consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
   @ApiOperation(value = "submitResult", nickname = "submitResult")
-  public void submitResult(@PathVariable long taskId, @RequestBody byte[] resultData) throws Exception {
-    try(InputStream in = new ByteArrayInputStream(resultData)) {
+  public void submitResult(@PathVariable long taskId, HttpServletRequest request) throws Exception {
+    // The result is staged by the service as it is received rather than buffered in memory, and
+    // the instance of the task is only locked once the whole result has been received.
+    try(InputStream in = request.getInputStream()) {
       managerService.submitResult(taskId, in);
     }
   }
 
+  @RequestMapping(value = "/tasks/{taskId}/result/upload", method = GET)
+  @ApiOperation(value = "getResultUploadOffset", nickname = "getResultUploadOffset")
+  public ResponseEntity<Void> getResultUploadOffset(@PathVariable long taskId)
+      throws IOException {
+    return ResponseEntity.ok()
+        .header(UPLOAD_OFFSET_HEADER, String.valueOf(managerService.getResultUploadLength(taskId)))
+        .build();
+  }
+
+  /**
+   * Uploads the chunk of a result that is specified by the Content-Range header. The response
+   * holds the number of bytes that have been received, from which the upload is resumed. The
+   * status is 409 (Conflict) if the chunk was not accepted.
+   */
+  @RequestMapping(value = "/tasks/{taskId}/result/upload",
+      method = PUT,
+      consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  @ApiOperation(value = "uploadResultChunk", nickname = "uploadResultChunk")
+  public ResponseEntity<Void> uploadResultChunk(@PathVariable long taskId,
+      @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+      @RequestHeader(UPLOAD_CHECKSUM_HEADER) String checksum,
+      HttpServletRequest request) throws Exception {
+    Matcher range = CONTENT_RANGE_PATTERN.matcher(contentRange);
+    if (!range.matches()) {
+      return ResponseEntity.badRequest().build();
+    }
+    long offset = Long.parseLong(range.group(1));
+    long end = Long.parseLong(range.group(2)) + 1;
+    long totalLength = Long.parseLong(range.group(3));
+    if (end <= offset || end > totalLength) {
+      return ResponseEntity.badRequest().build();
+    }
+
+    long length;
+    try(InputStream in = request.getInputStream()) {
+      length = managerService.uploadResultChunk(taskId, offset, totalLength,
+          Long.parseLong(checksum, 16), ByteStreams.limit(in, end - offset));
+    }
+    return ResponseEntity.status(length >= end ? HttpStatus.OK : HttpStatus.CONFLICT)
+        .header(UPLOAD_OFFSET_HEADER, String.valueOf(length))
+        .build();
+  }
+
   @RequestMapping(value = "/simulations", method = GET, produces = MediaType.APPLICATION_JSON_VALUE)
   @ApiOperation(value = "getAllSimulationInfo", nickname = "getAllSimulationInfo")
   public List<SimulationInfo> getAllSimulationInfo() {
@@ -80,9 +183,21 @@ public class MechaverseManagerController {
   @RequestMapping(value = "/simulations/{simulationId}/instances/{instanceId}/iterations/{iteration}/state",
       method = GET, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
   @ApiOperation(value = "getState", nickname = "getState")
-  public byte[] getState(@PathVariable String simulationId,
-      @PathVariable String instanceId, @PathVariable long iteration) throws IOException {
-    return IOUtils.toByteArray(managerService.getState(simulationId, instanceId, iteration));
+  public ResponseEntity<Resource> getState(@PathVariable String simulationId,
+      @PathVariable String instanceId, @PathVariable long iteration,
+      @RequestParam(defaultValue = "0") long offset) throws IOException {
+    // The offset allows an interrupted download to be resumed. The ETag allows the client to verify
+    // that the resumed download continues the same data.
+    StateInputStream in = managerService.getState(simulationId, instanceId, iteration);
+    try {
+      ByteStreams.skipFully(in, offset);
+    } catch (IOException ex) {
+      in.close();
+      throw ex;
+    }
+    return ResponseEntity.ok()
+        .eTag(in.getVersion())
+        .body(new InputStreamResource(in));
   }
 
   @RequestMapping(value = "/simulations/config", method = POST,
@@ -2,12 +2,15 @@ package org.mechaverse.manager.spring;
 
 import org.mechaverse.manager.service.HibernateMechaverseManagerService;
 import org.mechaverse.manager.service.MechaverseManagerService;
+import org.mechaverse.manager.service.TaskWaitQueue;
 import org.mechaverse.manager.service.storage.LocalFileMechaverseStorageService;
 import org.mechaverse.manager.service.storage.MechaverseStorageService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
+@EnableScheduling
 public class MechaverseManagerServiceConfig {
 
   @Bean
@@ -15,6 +18,11 @@ public class MechaverseManagerServiceConfig {
     return new HibernateMechaverseManagerService();
   }
 
+  @Bean
+  public TaskWaitQueue taskWaitQueue(MechaverseManagerService managerService) {
+    return new TaskWaitQueue(managerService);
+  }
+
   @Bean
   public MechaverseStorageService storageService() {
     return new LocalFileMechaverseStorageService();
@@ -0,0 +1,288 @@
+package org.mechaverse.manager.client;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Transfers simulation state data to and from the mechaverse manager as streams.
+ *
+ * <p>The generated {@link org.mechaverse.manager.api.MechaverseManagerApi} reads and writes state
+ * data as byte arrays, which requires the entire state to be held in memory. This client passes the
+ * HTTP request and response bodies directly to the caller, so the state can be serialized and
+ * deserialized while it is transferred.
+ *
+ * <p>Transfers are resumed when the connection fails. A download is reopened at the offset that
+ * has been read, and fails if the ETag of the reopened state differs from the ETag of the state
+ * that was read before. A result is written to a temporary file and uploaded in chunks, each with a
+ * Content-Range header and a CRC32 checksum, and the upload continues from the offset that the
+ * manager reports it has received.
+ */
+public class MechaverseManagerStateApi {
+
+  public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  private static final String STATE_PATH =
+      "/api/v1/manager/simulations/{simulationId}/instances/{instanceId}/iterations/{iteration}/state";
+  private static final String RESULT_PATH = "/api/v1/manager/tasks/{taskId}/result";
+  private static final String RESULT_UPLOAD_PATH = "/api/v1/manager/tasks/{taskId}/result/upload";
+  private static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+  private static final String UPLOAD_CHECKSUM_HEADER = "Upload-Checksum";
+
+  private static final int MAX_RETRY_COUNT = 5;
+  private static final long RETRY_SLEEP_MILLIS = 1000;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Reads state data from a stream.
+   */
+  @FunctionalInterface
+  public interface StateReader {
+
+    void read(InputStream in) throws Exception;
+  }
+
+  /**
+   * Writes state data to a stream.
+   */
+  @FunctionalInterface
+  public interface StateWriter {
+
+    void write(OutputStream out) throws Exception;
+  }
+
+  private final String basePath;
+  private final RestTemplate restTemplate;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  public MechaverseManagerStateApi(String basePath) {
+    this(basePath, new RestTemplate(newStreamingRequestFactory()));
+  }
+
+  public MechaverseManagerStateApi(String basePath, RestTemplate restTemplate) {
+    this.basePath = Objects.requireNonNull(basePath);
+    this.restTemplate = Objects.requireNonNull(restTemplate);
+  }
+
+  /**
+   * Sets the maximum number of bytes of a result that are uploaded with a single request.
+   */
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Passes the state data for the given iteration of a simulation instance to the given reader.
+   */
+  public void getState(String simulationId, String instanceId, long iteration, StateReader reader)
+      throws RestClientException {
+    try (InputStream in = new ResumableInputStream(
+        offset -> openState(simulationId, instanceId, iteration, offset),
+        MAX_RETRY_COUNT, RETRY_SLEEP_MILLIS)) {
+      reader.read(in);
+    } catch (IOException ex) {
+      throw new ResourceAccessException("Unable to read the state of " + instanceId, ex);
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ResourceAccessException("Unable to read the state of " + instanceId,
+          new IOException(ex));
+    }
+  }
+
+  /**
+   * Submits the result of a task. The result data is written to the request by the given writer.
+   */
+  public void submitResult(long taskId, StateWriter writer) throws RestClientException {
+    File resultFile = null;
+    try {
+      // The result is kept until it has been uploaded so that the upload can be resumed.
+      resultFile = File.createTempFile("mechaverse-result-" + taskId + "-", null);
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(resultFile))) {
+        writer.write(out);
+      }
+      uploadResult(taskId, resultFile);
+    } catch (IOException ex) {
+      throw new ResourceAccessException("Unable to submit the result of task " + taskId, ex);
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ResourceAccessException("Unable to submit the result of task " + taskId,
+          new IOException(ex));
+    } finally {
+      if (resultFile != null) {
+        resultFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns a request factory that streams request bodies instead of buffering them.
+   */
+  public static SimpleClientHttpRequestFactory newStreamingRequestFactory() {
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setBufferRequestBody(false);
+    return requestFactory;
+  }
+
+  private ResumableInputStream.SourceStream openState(String simulationId, String instanceId,
+      long iteration, long offset) throws IOException {
+    URI uri = restTemplate.getUriTemplateHandler().expand(
+        basePath + STATE_PATH + "?offset={offset}", simulationId, instanceId, iteration, offset);
+    ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(uri, HttpMethod.GET);
+    request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_OCTET_STREAM));
+    ClientHttpResponse response = request.execute();
+    try {
+      if (restTemplate.getErrorHandler().hasError(response)) {
+        restTemplate.getErrorHandler().handleError(response);
+      }
+      return new ResumableInputStream.SourceStream(new FilterInputStream(response.getBody()) {
+        @Override
+        public void close() {
+          response.close();
+        }
+      }, response.getHeaders().getETag());
+    } catch (IOException | RuntimeException ex) {
+      response.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Uploads the given result file in chunks, resuming from the offset that has been received by
+   * the manager when a chunk fails.
+   */
+  private void uploadResult(long taskId, File resultFile) throws IOException {
+    long length = resultFile.length();
+    if (length == 0) {
+      // An empty result cannot be described by a content range.
+      restTemplate.execute(basePath + RESULT_PATH, HttpMethod.PUT,
+          request -> request.getHeaders().setContentType(MediaType.APPLICATION_OCTET_STREAM),
+          null, taskId);
+      return;
+    }
+
+    long offset = 0;
+    int failureCount = 0;
+    while (offset < length) {
+      try {
+        if (offset < 0) {
+          // Resume from the data that has been received by the manager.
+          offset = getUploadOffset(taskId);
+          continue;
+        }
+        long chunkLength = Math.min(chunkSize, length - offset);
+        long uploadedLength = uploadChunk(taskId, resultFile, offset, chunkLength, length);
+        if (uploadedLength > offset) {
+          failureCount = 0;
+        } else if (++failureCount > MAX_RETRY_COUNT) {
+          throw new IOException("The manager did not accept the result of task " + taskId);
+        }
+        offset = uploadedLength;
+      } catch (ResourceAccessException ex) {
+        if (++failureCount > MAX_RETRY_COUNT) {
+          throw ex;
+        }
+        sleep((failureCount - 1) * RETRY_SLEEP_MILLIS);
+        offset = -1;
+      }
+    }
+  }
+
+  /**
+   * Uploads a chunk of a result and returns the number of bytes that have been received by the
+   * manager.
+   */
+  private long uploadChunk(long taskId, File resultFile, long offset, long chunkLength,
+      long totalLength) throws IOException {
+    CheckedOutputStream checksumOut = new CheckedOutputStream(new OutputStream() {
+      @Override
+      public void write(int b) {}
+
+      @Override
+      public void write(byte[] buffer, int off, int len) {}
+    }, new CRC32());
+    copyRange(resultFile, offset, chunkLength, checksumOut);
+
+    try {
+      return restTemplate.execute(basePath + RESULT_UPLOAD_PATH, HttpMethod.PUT, request -> {
+        HttpHeaders headers = request.getHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentLength(chunkLength);
+        headers.set(HttpHeaders.CONTENT_RANGE,
+            String.format("bytes %d-%d/%d", offset, offset + chunkLength - 1, totalLength));
+        headers.set(UPLOAD_CHECKSUM_HEADER,
+            Long.toHexString(checksumOut.getChecksum().getValue()));
+        copyRange(resultFile, offset, chunkLength, request.getBody());
+      }, response -> getUploadOffset(response.getHeaders()), taskId);
+    } catch (HttpClientErrorException ex) {
+      if (ex.getStatusCode() == HttpStatus.CONFLICT) {
+        // The chunk was not accepted.
+        return getUploadOffset(ex.getResponseHeaders());
+      }
+      throw ex;
+    }
+  }
+
+  private long getUploadOffset(long taskId) {
+    return restTemplate.execute(basePath + RESULT_UPLOAD_PATH, HttpMethod.GET, null,
+        response -> getUploadOffset(response.getHeaders()), taskId);
+  }
+
+  private static long getUploadOffset(HttpHeaders headers) throws IOException {
+    String offset = headers != null ? headers.getFirst(UPLOAD_OFFSET_HEADER) : null;
+    if (offset == null) {
+      throw new IOException("The response does not have an " + UPLOAD_OFFSET_HEADER + " header");
+    }
+    return Long.parseLong(offset);
+  }
+
+  private static void copyRange(File file, long offset, long length, OutputStream out)
+      throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      in.seek(offset);
+      byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, length)];
+      long remaining = length;
+      while (remaining > 0) {
+        int bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (bytesRead == -1) {
+          throw new EOFException();
+        }
+        out.write(buffer, 0, bytesRead);
+        remaining -= bytesRead;
+      }
+    }
+  }
+
+  private static void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
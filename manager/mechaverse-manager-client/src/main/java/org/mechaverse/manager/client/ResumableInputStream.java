@@ -0,0 +1,150 @@
+package org.mechaverse.manager.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+
+/**
+ * An input stream that reopens its source at the current position when a read fails, so that an
+ * interrupted transfer is resumed instead of restarted.
+ *
+ * <p>The data of the source is identified by a validator, such as an HTTP ETag. A source that is
+ * reopened must return the validator that it returned when it was first opened, otherwise the data
+ * may have changed and the read fails with an {@link IOException} instead of being resumed.
+ */
+class ResumableInputStream extends InputStream {
+
+  /**
+   * Opens the source of the stream at an offset.
+   */
+  @FunctionalInterface
+  interface Source {
+
+    SourceStream open(long offset) throws IOException;
+  }
+
+  /**
+   * The data of a source from an offset and the validator of the data.
+   */
+  static final class SourceStream {
+
+    private final InputStream in;
+    private final String validator;
+
+    /**
+     * @param validator the validator of the data, or null if the source does not have one
+     */
+    SourceStream(InputStream in, String validator) {
+      this.in = Objects.requireNonNull(in);
+      this.validator = validator;
+    }
+  }
+
+  /**
+   * Thrown when a source that is reopened does not return the same data.
+   */
+  static final class SourceChangedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    SourceChangedException(String message) {
+      super(message);
+    }
+  }
+
+  private final Source source;
+  private final int maxRetryCount;
+  private final long retrySleepMillis;
+  private final byte[] singleByte = new byte[1];
+  private InputStream in;
+  private boolean opened;
+  private String validator;
+  private long position;
+
+  /**
+   * @param maxRetryCount the number of times that the source is reopened after consecutive failures
+   * @param retrySleepMillis the time to wait before the second and each following retry
+   */
+  ResumableInputStream(Source source, int maxRetryCount, long retrySleepMillis) {
+    this.source = Objects.requireNonNull(source);
+    this.maxRetryCount = maxRetryCount;
+    this.retrySleepMillis = retrySleepMillis;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int failureCount = 0;
+    while (true) {
+      try {
+        if (in == null) {
+          open();
+        }
+        int bytesRead = in.read(buffer, offset, length);
+        if (bytesRead > 0) {
+          position += bytesRead;
+        }
+        return bytesRead;
+      } catch (SourceChangedException ex) {
+        throw ex;
+      } catch (IOException ex) {
+        closeSource();
+        if (++failureCount > maxRetryCount) {
+          throw ex;
+        }
+        sleep((failureCount - 1) * retrySleepMillis);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes that have been read.
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (in != null) {
+      in.close();
+      in = null;
+    }
+  }
+
+  private void open() throws IOException {
+    SourceStream sourceStream = source.open(position);
+    in = sourceStream.in;
+    if (!opened) {
+      opened = true;
+      validator = sourceStream.validator;
+    } else if (validator == null || !validator.equals(sourceStream.validator)) {
+      closeSource();
+      throw new SourceChangedException(String.format(
+          "The data changed from %s to %s, unable to resume at offset %d", validator,
+          sourceStream.validator, position));
+    }
+  }
+
+  private void closeSource() {
+    try {
+      close();
+    } catch (IOException ignored) {
+      in = null;
+    }
+  }
+
+  private static void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
@@ -2,6 +2,7 @@ package org.mechaverse.manager.client.spring;
 
 import org.mechaverse.manager.ApiClient;
 import org.mechaverse.manager.api.MechaverseManagerApi;
+import org.mechaverse.manager.client.MechaverseManagerStateApi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,4 +20,9 @@ public class MechaverseManagerClientConfig {
     apiClient.setBasePath(managerBaseUrl);
     return new MechaverseManagerApi(apiClient);
   }
+
+  @Bean
+  public MechaverseManagerStateApi mechaverseManagerStateApi() {
+    return new MechaverseManagerStateApi(managerBaseUrl);
+  }
 }
@@ -39,7 +39,7 @@ public class MechaverseManagerClientManualTest {
       Task task = managerApi.getTask("itest-client");
       managerApi.submitResult(task.getId(), TEST_DATA);
 
-      byte[] state = managerApi.getState(task.getInstanceId(), task.getSimulationId(), 0L);
+      byte[] state = managerApi.getState(task.getInstanceId(), task.getSimulationId(), 0L, 0L);
       assertArrayEquals(TEST_DATA, state);
     } finally {
       managerApi.deleteSimulation(simulationInfo.getSimulationId());
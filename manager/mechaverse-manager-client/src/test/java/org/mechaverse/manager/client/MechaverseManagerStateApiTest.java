@@ -0,0 +1,160 @@
+package org.mechaverse.manager.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseActions;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Unit test for {@link MechaverseManagerStateApi}.
+ */
+public class MechaverseManagerStateApiTest {
+
+  private static final String BASE_PATH = "http://localhost:8080";
+  private static final String STATE_URL =
+      BASE_PATH + "/api/v1/manager/simulations/sim/instances/instance/iterations/10/state";
+  private static final String UPLOAD_URL = BASE_PATH + "/api/v1/manager/tasks/1/result/upload";
+  private static final byte[] TEST_DATA = "test state data".getBytes(StandardCharsets.UTF_8);
+
+  private MockRestServiceServer server;
+  private MechaverseManagerStateApi stateApi;
+
+  @Before
+  public void setUp() {
+    RestTemplate restTemplate = new RestTemplate();
+    server = MockRestServiceServer.bindTo(restTemplate).build();
+    stateApi = new MechaverseManagerStateApi(BASE_PATH, restTemplate);
+    stateApi.setChunkSize(10);
+  }
+
+  @Test
+  public void getState() throws Exception {
+    server.expect(requestTo(STATE_URL + "?offset=0"))
+        .andExpect(method(HttpMethod.GET))
+        .andRespond(request -> new MockClientHttpResponse(TEST_DATA, HttpStatus.OK));
+
+    byte[][] state = new byte[1][];
+    stateApi.getState("sim", "instance", 10, in -> state[0] = StreamUtils.copyToByteArray(in));
+    assertArrayEquals(TEST_DATA, state[0]);
+    server.verify();
+  }
+
+  @Test
+  public void getState_resume() throws Exception {
+    server.expect(requestTo(STATE_URL + "?offset=0"))
+        .andRespond(request -> newStateResponse(newFailingBody(4), "\"v1\""));
+    server.expect(requestTo(STATE_URL + "?offset=4"))
+        .andRespond(request -> newStateResponse(new ByteArrayInputStream(
+            Arrays.copyOfRange(TEST_DATA, 4, TEST_DATA.length)), "\"v1\""));
+
+    byte[][] state = new byte[1][];
+    stateApi.getState("sim", "instance", 10, in -> state[0] = StreamUtils.copyToByteArray(in));
+    assertArrayEquals(TEST_DATA, state[0]);
+    server.verify();
+  }
+
+  @Test
+  public void getState_resumeChangedState() throws Exception {
+    server.expect(requestTo(STATE_URL + "?offset=0"))
+        .andRespond(request -> newStateResponse(newFailingBody(4), "\"v1\""));
+    server.expect(requestTo(STATE_URL + "?offset=4"))
+        .andRespond(request -> newStateResponse(new ByteArrayInputStream(
+            Arrays.copyOfRange(TEST_DATA, 4, TEST_DATA.length)), "\"v2\""));
+
+    try {
+      stateApi.getState("sim", "instance", 10, StreamUtils::copyToByteArray);
+      fail("Expected exception was not thrown.");
+    } catch (ResourceAccessException ex) {
+      // Expected.
+    }
+    server.verify();
+  }
+
+  @Test
+  public void submitResult() throws Exception {
+    expectChunk(0, 10).andRespond(withSuccess().headers(newUploadOffsetHeaders(10)));
+    expectChunk(10, TEST_DATA.length)
+        .andRespond(withSuccess().headers(newUploadOffsetHeaders(TEST_DATA.length)));
+
+    stateApi.submitResult(1, out -> out.write(TEST_DATA));
+    server.verify();
+  }
+
+  @Test
+  public void submitResult_resume() throws Exception {
+    expectChunk(0, 10).andRespond(request -> {
+      throw new IOException("Connection reset");
+    });
+    server.expect(requestTo(UPLOAD_URL))
+        .andExpect(method(HttpMethod.GET))
+        .andRespond(withSuccess().headers(newUploadOffsetHeaders(4)));
+    expectChunk(4, 14).andRespond(
+        withStatus(HttpStatus.CONFLICT).headers(newUploadOffsetHeaders(0)));
+    expectChunk(0, 10).andRespond(withSuccess().headers(newUploadOffsetHeaders(10)));
+    expectChunk(10, TEST_DATA.length)
+        .andRespond(withSuccess().headers(newUploadOffsetHeaders(TEST_DATA.length)));
+
+    stateApi.submitResult(1, out -> out.write(TEST_DATA));
+    server.verify();
+  }
+
+  /**
+   * Returns a response body that fails after the given number of bytes of the test data.
+   */
+  private static InputStream newFailingBody(int length) {
+    return new SequenceInputStream(
+        new ByteArrayInputStream(TEST_DATA, 0, length), new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new IOException("Connection reset");
+          }
+        });
+  }
+
+  private static MockClientHttpResponse newStateResponse(InputStream body, String eTag) {
+    MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+    response.getHeaders().setETag(eTag);
+    return response;
+  }
+
+  private ResponseActions expectChunk(int start, int end) {
+    byte[] chunk = Arrays.copyOfRange(TEST_DATA, start, end);
+    CRC32 crc = new CRC32();
+    crc.update(chunk);
+    return server.expect(requestTo(UPLOAD_URL))
+        .andExpect(method(HttpMethod.PUT))
+        .andExpect(header(HttpHeaders.CONTENT_RANGE,
+            String.format("bytes %d-%d/%d", start, end - 1, TEST_DATA.length)))
+        .andExpect(header("Upload-Checksum", Long.toHexString(crc.getValue())))
+        .andExpect(content().bytes(chunk));
+  }
+
+  private static HttpHeaders newUploadOffsetHeaders(long offset) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("Upload-Offset", String.valueOf(offset));
+    return headers;
+  }
+}
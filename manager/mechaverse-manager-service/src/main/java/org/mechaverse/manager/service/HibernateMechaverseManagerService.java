@@ -7,12 +7,18 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import javax.annotation.Resource;
 import org.mechaverse.manager.service.model.InstanceInfo;
 import org.mechaverse.manager.service.model.SimulationConfig;
@@ -25,18 +31,30 @@ import org.mechaverse.manager.service.repository.SimulationConfigRepository;
 import org.mechaverse.manager.service.repository.SimulationInfoRepository;
 import org.mechaverse.manager.service.repository.TaskRepository;
 import org.mechaverse.manager.service.storage.MechaverseStorageService;
+import org.mechaverse.manager.service.storage.StateInputStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Implementation of {@link MechaverseManagerService}.
+ *
+ * <p>Tasks are scheduled using a {@link TaskSchedulingIndex} of the idle instances, so a task is
+ * created without reading all of the simulations or holding a global lock. An instance that is
+ * selected by the index is locked and verified against the database before a task is created.
+ *
+ * <p>Each task has a deadline. Expired tasks are removed periodically by
+ * {@link #removeExpiredTasks()}, which deletes them in bulk using the deadline index of the task
+ * table and also prunes the queues of the scheduling index.
  */
 public class HibernateMechaverseManagerService implements MechaverseManagerService {
 
-  // TODO(thorntonv): Periodically remove inactive tasks.
-
-  private static final Predicate<SimulationInfo> ACTIVE_SIMULATION_PREDICATE =
-      SimulationInfo::isActive;
+  private static final int MAX_TASK_COUNT = 64;
+  private static final String RESULT_UPLOAD_ID_PREFIX = "result-";
 
   @Autowired
   private SimulationInfoRepository simulationInfoRepository;
@@ -52,48 +70,196 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
   @Resource
   private MechaverseStorageService storageService;
 
+  // The index is built from the database when it is first used and after a transaction that
+  // modified it is rolled back.
+  private final AtomicReference<TaskSchedulingIndex> schedulingIndex = new AtomicReference<>();
+
+  private final List<Runnable> taskAvailabilityListeners = new CopyOnWriteArrayList<>();
+
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
   @Override
   @Transactional
-  public synchronized Task getTask(String clientId) {
-    Iterable<SimulationInfo> activeSimulationInfoList = getSimulationInfo().stream()
-        .filter(ACTIVE_SIMULATION_PREDICATE).collect(Collectors.toList());
-
-    // Search for an instance that has no active tasks and prefers the client.
-    for (SimulationInfo simulationInfo : activeSimulationInfoList) {
-      long taskMaxDurationSeconds = simulationInfo.getConfig().getTaskMaxDurationInSeconds();
-      for (InstanceInfo instanceInfo : simulationInfo.getInstances()) {
-        if (!hasActiveTask(instanceInfo.getExecutingTasks(), taskMaxDurationSeconds)
-            && clientId.equalsIgnoreCase(instanceInfo.getPreferredClientId())) {
-          return createTask(simulationInfo, instanceInfo, clientId);
-        }
-      }
+  public Task getTask(String clientId) {
+    TaskSchedulingIndex index = getSchedulingIndex();
+    invalidateSchedulingIndexOnRollback();
+    return leaseTask(index, clientId, System.currentTimeMillis());
+  }
+
+  @Override
+  @Transactional
+  public List<Task> getTasks(String clientId, int maxTaskCount) {
+    TaskSchedulingIndex index = getSchedulingIndex();
+    invalidateSchedulingIndexOnRollback();
+    long now = System.currentTimeMillis();
+
+    List<Task> tasks = new ArrayList<>();
+    Task task;
+    while (tasks.size() < Math.min(maxTaskCount, MAX_TASK_COUNT)
+        && (task = leaseTask(index, clientId, now)) != null) {
+      tasks.add(task);
     }
+    return tasks;
+  }
 
-    // Search for an instance that has no active tasks.
-    for (SimulationInfo simulationInfo : activeSimulationInfoList) {
-      long taskMaxDurationSeconds = simulationInfo.getConfig().getTaskMaxDurationInSeconds();
-      for (InstanceInfo instanceInfo : simulationInfo.getInstances()) {
-        if (!hasActiveTask(instanceInfo.getExecutingTasks(), taskMaxDurationSeconds)) {
-          return createTask(simulationInfo, instanceInfo, clientId);
-        }
+  /**
+   * Creates a task for an instance that has no active tasks or for a new instance.
+   *
+   * @return the task, or null if there is nothing to do
+   */
+  private Task leaseTask(TaskSchedulingIndex index, String clientId, long now) {
+    // Lease an instance that has no active tasks, preferably one that prefers the client. The
+    // instance is locked so that a result that is being submitted for it is committed first.
+    TaskSchedulingIndex.Lease lease;
+    while ((lease = index.lease(clientId, now)) != null) {
+      InstanceInfo instanceInfo = instanceInfoRepository.findOneForUpdate(lease.getInstanceId());
+      if (instanceInfo == null) {
+        index.removeInstance(lease.getInstanceId());
+        continue;
+      }
+      if (hasActiveTask(instanceInfo.getExecutingTasks(), now)) {
+        // Retry the instance when its tasks expire.
+        index.extend(lease, getLeaseDeadline(instanceInfo));
+        continue;
       }
+      return createTask(lease.getSimulation(), instanceInfo, clientId, now);
     }
 
     // Attempt to create a new instance.
-    for (SimulationInfo simulationInfo : activeSimulationInfoList) {
-      int maxInstanceCount = simulationInfo.getConfig().getMaxInstanceCount();
-      if (simulationInfo.getInstances().size() < maxInstanceCount) {
-        InstanceInfo instanceInfo = createInstance(simulationInfo);
-        return createTask(simulationInfo, instanceInfo, clientId);
+    TaskSchedulingIndex.SimulationEntry simulation = index.reserveInstance();
+    if (simulation != null) {
+      SimulationInfo simulationInfo =
+          simulationInfoRepository.findOne(simulation.getSimulationId());
+      if (simulationInfo == null || !simulationInfo.isActive()
+          || simulationInfo.getInstances().size()
+              >= simulationInfo.getConfig().getMaxInstanceCount()) {
+        // The index does not match the database.
+        index.cancelReservation(simulation);
+        schedulingIndex.compareAndSet(index, null);
+        return null;
       }
+      InstanceInfo instanceInfo = createInstance(simulationInfo);
+      index.addReservedInstance(simulation, instanceInfo.getInstanceId(), clientId,
+          now + simulation.getTaskMaxDurationMillis());
+      return createTask(simulation, instanceInfo, clientId, now);
     }
 
     return null;
   }
 
+  @Override
+  public void addTaskAvailabilityListener(Runnable listener) {
+    taskAvailabilityListeners.add(listener);
+  }
+
+  @Override
+  @Transactional
+  @Scheduled(fixedDelayString = "${taskReaperIntervalMillis:60000}")
+  public int removeExpiredTasks() {
+    TaskSchedulingIndex index = schedulingIndex.get();
+    if (index != null) {
+      index.prune();
+    }
+
+    long now = System.currentTimeMillis();
+    List<Task> expiredTasks = taskRepository.findExpired(now);
+    if (expiredTasks.isEmpty()) {
+      return 0;
+    }
+
+    Set<String> instanceIds = new HashSet<>();
+    for (Task task : expiredTasks) {
+      instanceIds.add(task.getInstanceId());
+    }
+    // The instances are locked so that a result that is being submitted for an expired task is
+    // committed first. The expired tasks are then deleted in bulk, which also deletes the tasks of
+    // instances that no longer exist.
+    instanceInfoRepository.findAllForUpdate(instanceIds);
+    taskRepository.deleteExpiredExecutingTasks(now);
+    int removedTaskCount = taskRepository.deleteExpired(now);
+    for (InstanceInfo instanceInfo : instanceInfoRepository.findAll(instanceIds)) {
+      releaseLease(instanceInfo, now);
+    }
+    for (Task task : expiredTasks) {
+      try {
+        storageService.deleteUpload(getResultUploadId(task.getId()));
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    notifyTaskAvailabilityListeners();
+    return removedTaskCount;
+  }
+
   @Override
   @Transactional
+  public void releaseTasks(List<Task> tasks) {
+    Set<Long> taskIds = new HashSet<>();
+    Set<String> instanceIds = new HashSet<>();
+    for (Task task : tasks) {
+      taskIds.add(task.getId());
+      instanceIds.add(task.getInstanceId());
+    }
+    long now = System.currentTimeMillis();
+    for (InstanceInfo instanceInfo : instanceInfoRepository.findAllForUpdate(instanceIds)) {
+      Iterator<Task> it = instanceInfo.getExecutingTasks().iterator();
+      while (it.hasNext()) {
+        Task task = it.next();
+        if (taskIds.remove(task.getId())) {
+          it.remove();
+          taskRepository.delete(task);
+        }
+      }
+      releaseLease(instanceInfo, now);
+    }
+    // Delete the tasks of instances that no longer exist.
+    for (Long taskId : taskIds) {
+      if (taskRepository.exists(taskId)) {
+        taskRepository.delete(taskId);
+      }
+    }
+    notifyTaskAvailabilityListeners();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The result is staged in the storage service before a transaction is started, so the instance
+   * is only locked while the staged result is committed and not while it is received.
+   */
+  @Override
   public void submitResult(long taskId, InputStream resultDataInput) throws Exception {
+    if (taskRepository.findOne(taskId) == null) {
+      return;
+    }
+
+    String stagedStateId = storageService.stageState(resultDataInput);
+    try {
+      transactionTemplate.execute(status -> {
+        try {
+          commitResult(taskId, stagedStateId);
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+        return null;
+      });
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    } finally {
+      storageService.deleteStagedState(stagedStateId);
+    }
+  }
+
+  /**
+   * Locks the instance of a task, sets its state to the given staged result, and advances its
+   * iteration.
+   */
+  private void commitResult(long taskId, String stagedStateId) throws IOException {
     final Task task = taskRepository.findOne(taskId);
 
     if (task == null) {
@@ -102,27 +268,54 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
 
     // TODO(thorntonv): Verify that the task belongs to the authenticated user.
 
-    InstanceInfo instanceInfo = instanceInfoRepository.findOne(task.getInstanceId());
+    InstanceInfo instanceInfo = instanceInfoRepository.findOneForUpdate(task.getInstanceId());
 
     if (instanceInfo == null) {
       return;
     }
+
+    // Commit the result data to the storage service before the iteration is advanced, so that the
+    // iteration is not committed if the result cannot be stored.
+    long iteration = instanceInfo.getIteration() >= 0
+        ? instanceInfo.getIteration() + task.getIterationCount() : 0;
+    storageService.setStagedState(task.getSimulationId(), task.getInstanceId(), iteration,
+        stagedStateId);
+
     task.setCompletionTimeMillis(new Date().getTime());
 
     Iterables.removeIf(instanceInfo.getExecutingTasks(),
         otherTask -> task.getId().equals(otherTask.getId()));
 
-    if (instanceInfo.getIteration() >= 0) {
-      instanceInfo.setIteration(instanceInfo.getIteration() + task.getIterationCount());
-    } else {
-      instanceInfo.setIteration(0);
-    }
+    instanceInfo.setIteration(iteration);
     instanceInfoRepository.save(instanceInfo);
     taskRepository.delete(task);
+    releaseLease(instanceInfo, System.currentTimeMillis());
+    notifyTaskAvailabilityListeners();
+  }
+
+  @Override
+  public long getResultUploadLength(long taskId) throws IOException {
+    return storageService.getUploadLength(getResultUploadId(taskId));
+  }
+
+  @Override
+  public long uploadResultChunk(long taskId, long offset, long totalLength, long checksum,
+      InputStream chunkInput) throws Exception {
+    String uploadId = getResultUploadId(taskId);
+    if (taskRepository.findOne(taskId) == null) {
+      // The result was already submitted or the task expired, so the rest is not needed.
+      storageService.deleteUpload(uploadId);
+      return totalLength;
+    }
 
-    // Commit the result data to the storage service.
-    storageService.setState(task.getSimulationId(), task.getInstanceId(),
-        instanceInfo.getIteration(), resultDataInput);
+    long length = storageService.writeUploadChunk(uploadId, offset, chunkInput, checksum);
+    if (length == totalLength) {
+      try (InputStream resultDataInput = storageService.getUpload(uploadId)) {
+        submitResult(taskId, resultDataInput);
+      }
+      storageService.deleteUpload(uploadId);
+    }
+    return length;
   }
 
   @Override
@@ -138,7 +331,7 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
   }
 
   @Override
-  public InputStream getState(String simulationId, String instanceId, long iteration)
+  public StateInputStream getState(String simulationId, String instanceId, long iteration)
       throws IOException {
     return storageService.getState(simulationId, instanceId, iteration);
   }
@@ -152,6 +345,9 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
     simulationInfo.setActive(true);
     simulationInfo.setConfig(simulationConfigRepository.save(new SimulationConfig()));
     simulationInfoRepository.save(simulationInfo);
+    updateSchedulingIndex(index -> index.putSimulation(
+        simulationInfo.getSimulationId(), true, simulationInfo.getConfig()));
+    notifyTaskAvailabilityListeners();
 
     return simulationInfo;
   }
@@ -162,6 +358,10 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
     SimulationInfo simulationInfo = getSimulationInfo(simulationId);
     simulationInfo.setActive(active);
     simulationInfoRepository.save(simulationInfo);
+    updateSchedulingIndex(index -> index.setActive(simulationId, active));
+    if (active) {
+      notifyTaskAvailabilityListeners();
+    }
   }
 
   @Override
@@ -172,12 +372,15 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
       simulationConfigPropertyRepository.delete(property);
     }
     simulationConfigRepository.save(updatedConfig);
+    updateSchedulingIndex(index -> index.updateConfig(updatedConfig));
+    notifyTaskAvailabilityListeners();
   }
 
   @Override
   @Transactional
   public void deleteSimulation(String simulationId) throws Exception {
     simulationInfoRepository.delete(simulationId);
+    updateSchedulingIndex(index -> index.removeSimulation(simulationId));
     storageService.deleteSimulation(simulationId);
   }
 
@@ -192,27 +395,27 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
     return instanceInfo;
   }
 
-  private Task createTask(
-      SimulationInfo simulationInfo, InstanceInfo instanceInfo, String clientId) {
-    // Remove inactive tasks.
-    for (Task task : getInactiveTasks(instanceInfo.getExecutingTasks(),
-        simulationInfo.getConfig().getTaskMaxDurationInSeconds())) {
+  private Task createTask(TaskSchedulingIndex.SimulationEntry simulation,
+      InstanceInfo instanceInfo, String clientId, long now) {
+    // Remove inactive tasks that have not been removed by the reaper yet.
+    for (Task task : getInactiveTasks(instanceInfo.getExecutingTasks(), now)) {
       taskRepository.delete(task);
       instanceInfo.getExecutingTasks().remove(task);
     }
 
     Task task = new Task();
-    task.setSimulationId(simulationInfo.getSimulationId());
+    task.setSimulationId(simulation.getSimulationId());
     task.setInstanceId(instanceInfo.getInstanceId());
     task.setIteration(instanceInfo.getIteration());
     task.setClientId(clientId);
     if (instanceInfo.getIteration() >= 0) {
-      task.setIterationCount(simulationInfo.getConfig().getTaskIterationCount());
+      task.setIterationCount(simulation.getTaskIterationCount());
     } else {
       // No iterations have been performed, task is to create initial state.
       task.setIterationCount(0);
     }
-    task.setStartTimeMillis(new Date().getTime());
+    task.setStartTimeMillis(now);
+    task.setDeadlineMillis(now + simulation.getTaskMaxDurationMillis());
 
     instanceInfo.getExecutingTasks().add(task);
     instanceInfo.setPreferredClientId(clientId);
@@ -222,4 +425,112 @@ public class HibernateMechaverseManagerService implements MechaverseManagerServi
 
     return task;
   }
+
+  /**
+   * Returns an instance to the scheduling index if it has no active tasks.
+   */
+  private void releaseLease(InstanceInfo instanceInfo, long now) {
+    updateSchedulingIndex(index -> {
+      TaskSchedulingIndex.Lease lease = index.getLease(instanceInfo.getInstanceId());
+      if (lease != null && !hasActiveTask(instanceInfo.getExecutingTasks(), now)) {
+        index.release(lease);
+      }
+    });
+  }
+
+  private TaskSchedulingIndex getSchedulingIndex() {
+    TaskSchedulingIndex index = schedulingIndex.get();
+    if (index == null) {
+      index = new TaskSchedulingIndex();
+      long now = System.currentTimeMillis();
+      for (SimulationInfo simulationInfo : simulationInfoRepository.findAll()) {
+        String simulationId = simulationInfo.getSimulationId();
+        index.putSimulation(simulationId, simulationInfo.isActive(), simulationInfo.getConfig());
+        long taskMaxDurationMillis =
+            simulationInfo.getConfig().getTaskMaxDurationInSeconds() * 1000;
+        for (InstanceInfo instanceInfo : simulationInfo.getInstances()) {
+          for (Task task : instanceInfo.getExecutingTasks()) {
+            if (task.getDeadlineMillis() == null) {
+              // The task was created before deadlines were recorded.
+              task.setDeadlineMillis(task.getStartTimeMillis() + taskMaxDurationMillis);
+            }
+          }
+          if (hasActiveTask(instanceInfo.getExecutingTasks(), now)) {
+            index.addLeasedInstance(simulationId, instanceInfo.getInstanceId(),
+                instanceInfo.getPreferredClientId(), getLeaseDeadline(instanceInfo));
+          } else {
+            index.addInstance(simulationId, instanceInfo.getInstanceId(),
+                instanceInfo.getPreferredClientId());
+          }
+        }
+      }
+      if (!schedulingIndex.compareAndSet(null, index)) {
+        TaskSchedulingIndex currentIndex = schedulingIndex.get();
+        index = currentIndex != null ? currentIndex : index;
+      }
+    }
+    return index;
+  }
+
+  private void updateSchedulingIndex(Consumer<TaskSchedulingIndex> update) {
+    TaskSchedulingIndex index = schedulingIndex.get();
+    if (index != null) {
+      update.accept(index);
+      invalidateSchedulingIndexOnRollback();
+    }
+  }
+
+  /**
+   * Notifies the task availability listeners when the current transaction is committed, or
+   * immediately if there is no transaction.
+   */
+  private void notifyTaskAvailabilityListeners() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              taskAvailabilityListeners.forEach(Runnable::run);
+            }
+          });
+    } else {
+      taskAvailabilityListeners.forEach(Runnable::run);
+    }
+  }
+
+  /**
+   * Discards the scheduling index if the current transaction is rolled back, because the index
+   * may contain changes that were not committed.
+   */
+  private void invalidateSchedulingIndexOnRollback() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TaskSchedulingIndex index = schedulingIndex.get();
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+              if (status != STATUS_COMMITTED && index != null) {
+                schedulingIndex.compareAndSet(index, null);
+              }
+            }
+          });
+    }
+  }
+
+  private static String getResultUploadId(long taskId) {
+    return RESULT_UPLOAD_ID_PREFIX + taskId;
+  }
+
+  /**
+   * Returns the time at which the last task of the given instance expires.
+   */
+  private static long getLeaseDeadline(InstanceInfo instanceInfo) {
+    long deadlineMillis = 0;
+    for (Task task : instanceInfo.getExecutingTasks()) {
+      if (task.getDeadlineMillis() != null) {
+        deadlineMillis = Math.max(deadlineMillis, task.getDeadlineMillis());
+      }
+    }
+    return deadlineMillis;
+  }
 }
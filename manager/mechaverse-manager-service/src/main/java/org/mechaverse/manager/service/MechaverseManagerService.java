@@ -6,6 +6,7 @@ import java.util.List;
 import org.mechaverse.manager.service.model.SimulationConfig;
 import org.mechaverse.manager.service.model.SimulationInfo;
 import org.mechaverse.manager.service.model.Task;
+import org.mechaverse.manager.service.storage.StateInputStream;
 
 /**
  * Interface for a mechaverse manager service.
@@ -17,11 +18,52 @@ public interface MechaverseManagerService {
    */
   Task getTask(String clientId);
 
+  /**
+   * Returns up to the given number of tasks to perform. The tasks are created in a single
+   * transaction. The number of tasks may be limited by the implementation.
+   */
+  List<Task> getTasks(String clientId, int maxTaskCount);
+
+  /**
+   * Registers a listener that is called after a change that may have made tasks available, such as
+   * a submitted result, an activated simulation, or removed expired tasks, has been committed.
+   */
+  void addTaskAvailabilityListener(Runnable listener);
+
+  /**
+   * Removes the tasks whose deadline has passed, so that their instances can be scheduled again.
+   *
+   * @return the number of tasks that were removed
+   */
+  int removeExpiredTasks();
+
+  /**
+   * Removes tasks that were created but could not be delivered to their client, so that their
+   * instances can be scheduled again. The iterations of the instances are not advanced.
+   */
+  void releaseTasks(List<Task> tasks);
+
   /**
    * Used to submit the result of a task.
    */
   void submitResult(long taskId, InputStream resultDataInput) throws Exception;
 
+  /**
+   * Returns the number of bytes of the result of a task that have been uploaded.
+   */
+  long getResultUploadLength(long taskId) throws IOException;
+
+  /**
+   * Uploads a chunk of the result of a task. The chunk is written at the given offset and is
+   * discarded if its CRC32 checksum does not match. The result is submitted when all of it has been
+   * uploaded.
+   *
+   * @return the number of bytes of the result that have been uploaded, which is the total length if
+   *     the result was submitted or the task no longer exists
+   */
+  long uploadResultChunk(long taskId, long offset, long totalLength, long checksum,
+      InputStream chunkInput) throws Exception;
+
   /**
    * Returns information about all simulations.
    */
@@ -43,9 +85,11 @@ public interface MechaverseManagerService {
   SimulationInfo getSimulationInfo(String simulationId);
 
   /**
-   * Get the state data for the given iteration of the simulation instance.
+   * Get the state data for the given iteration of the simulation instance and the version of the
+   * data.
    */
-  InputStream getState(String simulationId, String instanceId, long iteration) throws IOException;
+  StateInputStream getState(String simulationId, String instanceId, long iteration)
+      throws IOException;
 
   /**
    * Updates the configuration for a simulation.
@@ -1,7 +1,6 @@
 package org.mechaverse.manager.service;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import org.mechaverse.manager.service.model.Task;
 
@@ -13,12 +12,12 @@ public final class MechaverseManagerUtil {
   private MechaverseManagerUtil() {}
 
   /**
-   * Returns a list of tasks whose age is greater than the given maximum.
+   * Returns a list of tasks whose deadline is not after the given time.
    */
-  public static List<Task> getInactiveTasks(Iterable<Task> tasks, long taskMaxDurationSeconds) {
+  public static List<Task> getInactiveTasks(Iterable<Task> tasks, long nowMillis) {
     List<Task> inactiveTasks = new ArrayList<>();
     for (Task task : tasks) {
-      if (!isActive(task, taskMaxDurationSeconds)) {
+      if (!isActive(task, nowMillis)) {
         inactiveTasks.add(task);
       }
     }
@@ -26,20 +25,18 @@ public final class MechaverseManagerUtil {
   }
 
   /**
-   * Returns true if the age of the given task is less than the given maximum, false otherwise.
+   * Returns true if the deadline of the given task is after the given time, false otherwise.
    */
-  public static boolean isActive(Task task, long taskMaxDurationSeconds) {
-    long taskMaxDurationMS = taskMaxDurationSeconds * 1000;
-    long now = new Date().getTime();
-    return (now - task.getStartTimeMillis() < taskMaxDurationMS);
+  public static boolean isActive(Task task, long nowMillis) {
+    return task.getDeadlineMillis() != null && task.getDeadlineMillis() > nowMillis;
   }
 
   /**
    * Returns true if at least one task is active.
    */
-  public static boolean hasActiveTask(Iterable<Task> tasks, long taskMaxDurationSeconds) {
+  public static boolean hasActiveTask(Iterable<Task> tasks, long nowMillis) {
     for (Task task : tasks) {
-      if (isActive(task, taskMaxDurationSeconds)) {
+      if (isActive(task, nowMillis)) {
         return true;
       }
     }
@@ -0,0 +1,506 @@
+package org.mechaverse.manager.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.mechaverse.manager.service.model.SimulationConfig;
+
+/**
+ * An in-memory index that is used to select the instance for which a task is created.
+ *
+ * <p>Each simulation has a queue of its idle instances, and each client has a queue of the idle
+ * instances that prefer the client. The active simulations that have idle instances are kept in a
+ * queue of ready simulations, which is visited in round robin order, so a lease does not examine
+ * simulations without idle instances. An instance is leased by atomically claiming it, so an
+ * instance that is present in several queues is only leased once and the queues are accessed
+ * without a global lock.
+ *
+ * <p>Queue entries are invalidated lazily. An instance is present at most once in the queue of its
+ * simulation and in the queue of its preferred client. An entry of an instance that was leased from
+ * the other queue remains in place and is skipped when it is polled, or becomes valid again when
+ * the instance is released. Entries of removed instances, and client queues that are empty, are
+ * removed by {@link #prune}. Leases are ordered by their deadline so that the instances of expired
+ * leases are returned to the queues in O(log n) time.
+ *
+ * <p>The index does not access the database. Callers must verify the leased instances against the
+ * database.
+ */
+final class TaskSchedulingIndex {
+
+  /**
+   * The scheduling information of a simulation.
+   */
+  static final class SimulationEntry {
+
+    private final String simulationId;
+    private final Queue<InstanceEntry> idleInstances = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger instanceCount = new AtomicInteger();
+    private final AtomicBoolean ready = new AtomicBoolean();
+    private volatile Long configId;
+    private volatile boolean active;
+    private volatile boolean removed;
+    private volatile int maxInstanceCount;
+    private volatile int taskIterationCount;
+    private volatile long taskMaxDurationMillis;
+
+    private SimulationEntry(String simulationId) {
+      this.simulationId = simulationId;
+    }
+
+    public String getSimulationId() {
+      return simulationId;
+    }
+
+    public Long getConfigId() {
+      return configId;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public int getTaskIterationCount() {
+      return taskIterationCount;
+    }
+
+    public long getTaskMaxDurationMillis() {
+      return taskMaxDurationMillis;
+    }
+
+    private void setConfig(SimulationConfig config) {
+      configId = config.getId();
+      maxInstanceCount = config.getMaxInstanceCount();
+      taskIterationCount = config.getTaskIterationCount();
+      taskMaxDurationMillis = config.getTaskMaxDurationInSeconds() * 1000;
+    }
+  }
+
+  /**
+   * The scheduling information of an instance.
+   */
+  private static final class InstanceEntry {
+
+    private final SimulationEntry simulation;
+    private final String instanceId;
+    private final AtomicReference<Lease> lease = new AtomicReference<>();
+    // Whether the instance is present in the queue of its simulation.
+    private final AtomicBoolean simulationQueued = new AtomicBoolean();
+    // The client in whose queue the instance is present, or null.
+    private final AtomicReference<String> queuedClientId = new AtomicReference<>();
+    private volatile String preferredClientId;
+    private volatile boolean removed;
+
+    private InstanceEntry(SimulationEntry simulation, String instanceId) {
+      this.simulation = simulation;
+      this.instanceId = instanceId;
+    }
+  }
+
+  /**
+   * A lease of an instance that expires at a deadline.
+   */
+  static final class Lease {
+
+    private final InstanceEntry instance;
+    private final long deadlineMillis;
+    private final long sequence;
+
+    private Lease(InstanceEntry instance, long deadlineMillis, long sequence) {
+      this.instance = instance;
+      this.deadlineMillis = deadlineMillis;
+      this.sequence = sequence;
+    }
+
+    public SimulationEntry getSimulation() {
+      return instance.simulation;
+    }
+
+    public String getSimulationId() {
+      return instance.simulation.simulationId;
+    }
+
+    public String getInstanceId() {
+      return instance.instanceId;
+    }
+
+    public long getDeadlineMillis() {
+      return deadlineMillis;
+    }
+  }
+
+  private static final Comparator<Lease> DEADLINE_ORDER =
+      Comparator.<Lease>comparingLong(lease -> lease.deadlineMillis)
+          .thenComparingLong(lease -> lease.sequence);
+
+  private final Map<String, SimulationEntry> simulations = new ConcurrentHashMap<>();
+  private final Map<String, InstanceEntry> instances = new ConcurrentHashMap<>();
+  private final Map<String, Queue<InstanceEntry>> preferredInstances = new ConcurrentHashMap<>();
+  private final Queue<SimulationEntry> readySimulations = new ConcurrentLinkedQueue<>();
+  private final ConcurrentSkipListSet<Lease> leases = new ConcurrentSkipListSet<>(DEADLINE_ORDER);
+  private final AtomicLong leaseSequence = new AtomicLong();
+
+  /**
+   * Adds a simulation or updates the configuration of a simulation.
+   */
+  public void putSimulation(String simulationId, boolean active, SimulationConfig config) {
+    SimulationEntry simulation = simulations.computeIfAbsent(simulationId, SimulationEntry::new);
+    simulation.setConfig(config);
+    simulation.active = active;
+    if (active && !simulation.idleInstances.isEmpty()) {
+      markReady(simulation);
+    }
+  }
+
+  /**
+   * Updates the configuration of the simulation that has the given configuration.
+   */
+  public void updateConfig(SimulationConfig config) {
+    for (SimulationEntry simulation : simulations.values()) {
+      if (config.getId() != null && config.getId().equals(simulation.configId)) {
+        simulation.setConfig(config);
+      }
+    }
+  }
+
+  public void setActive(String simulationId, boolean active) {
+    SimulationEntry simulation = simulations.get(simulationId);
+    if (simulation != null) {
+      simulation.active = active;
+      if (active && !simulation.idleInstances.isEmpty()) {
+        markReady(simulation);
+      }
+    }
+  }
+
+  public void removeSimulation(String simulationId) {
+    SimulationEntry simulation = simulations.remove(simulationId);
+    if (simulation != null) {
+      simulation.removed = true;
+      simulation.idleInstances.clear();
+      instances.values().removeIf(instance -> {
+        if (instance.simulation == simulation) {
+          instance.removed = true;
+          return true;
+        }
+        return false;
+      });
+    }
+  }
+
+  /**
+   * Adds an idle instance of a simulation.
+   */
+  public void addInstance(String simulationId, String instanceId, String preferredClientId) {
+    SimulationEntry simulation = simulations.get(simulationId);
+    if (simulation != null) {
+      InstanceEntry instance = newInstance(simulation, instanceId);
+      instance.preferredClientId = preferredClientId;
+      enqueue(instance);
+    }
+  }
+
+  /**
+   * Adds an instance of a simulation that is leased until the given deadline.
+   *
+   * @return the lease of the instance, or null if the simulation is not indexed
+   */
+  public Lease addLeasedInstance(String simulationId, String instanceId, String clientId,
+      long deadlineMillis) {
+    SimulationEntry simulation = simulations.get(simulationId);
+    if (simulation == null) {
+      return null;
+    }
+    return addLeasedInstance(newInstance(simulation, instanceId), clientId, deadlineMillis);
+  }
+
+  /**
+   * Adds an instance that was reserved with {@link #reserveInstance} and is leased until the given
+   * deadline.
+   */
+  public Lease addReservedInstance(SimulationEntry simulation, String instanceId, String clientId,
+      long deadlineMillis) {
+    InstanceEntry instance = new InstanceEntry(simulation, instanceId);
+    instances.put(instanceId, instance);
+    return addLeasedInstance(instance, clientId, deadlineMillis);
+  }
+
+  public void removeInstance(String instanceId) {
+    InstanceEntry instance = instances.remove(instanceId);
+    if (instance != null) {
+      instance.removed = true;
+      instance.simulation.instanceCount.decrementAndGet();
+      Lease lease = instance.lease.getAndSet(null);
+      if (lease != null) {
+        leases.remove(lease);
+      }
+    }
+  }
+
+  /**
+   * Leases an idle instance of an active simulation. Instances that prefer the given client are
+   * leased first, and the other instances are leased from the ready simulations in round robin
+   * order. The lease of an instance expires after the maximum task duration of its
+   * simulation.
+   *
+   * @return the lease, or null if there are no idle instances
+   */
+  public Lease lease(String clientId, long nowMillis) {
+    expireLeases(nowMillis);
+
+    Queue<InstanceEntry> clientInstances =
+        clientId != null ? preferredInstances.get(normalizeClientId(clientId)) : null;
+    Lease lease = clientInstances != null
+        ? lease(clientInstances, normalizeClientId(clientId), clientId, nowMillis) : null;
+    if (lease != null) {
+      return lease;
+    }
+    SimulationEntry simulation;
+    while ((simulation = readySimulations.poll()) != null) {
+      // The flag is cleared before the queue is read so that a concurrent enqueue marks the
+      // simulation as ready again.
+      simulation.ready.set(false);
+      if (simulation.removed || !simulation.active) {
+        // The simulation is marked as ready again when it is activated.
+        continue;
+      }
+      lease = lease(simulation.idleInstances, null, clientId, nowMillis);
+      if (!simulation.idleInstances.isEmpty()) {
+        markReady(simulation);
+      }
+      if (lease != null) {
+        return lease;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reserves a new instance of an active simulation that has fewer than the maximum number of
+   * instances. The instance must then be added with {@link #addReservedInstance} or the reservation
+   * must be cancelled with {@link #cancelReservation}.
+   *
+   * @return the simulation, or null if no instance can be created
+   */
+  public SimulationEntry reserveInstance() {
+    for (SimulationEntry simulation : simulations.values()) {
+      if (simulation.active) {
+        int instanceCount;
+        while ((instanceCount = simulation.instanceCount.get()) < simulation.maxInstanceCount) {
+          if (simulation.instanceCount.compareAndSet(instanceCount, instanceCount + 1)) {
+            return simulation;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  public void cancelReservation(SimulationEntry simulation) {
+    simulation.instanceCount.decrementAndGet();
+  }
+
+  /**
+   * Ends a lease and returns its instance to the idle queues.
+   *
+   * @return true if the lease was current, false otherwise
+   */
+  public boolean release(Lease lease) {
+    InstanceEntry instance = lease.instance;
+    if (!instance.lease.compareAndSet(lease, null)) {
+      return false;
+    }
+    leases.remove(lease);
+    enqueue(instance);
+    return true;
+  }
+
+  /**
+   * Replaces a lease with a lease of the same instance that expires at the given deadline.
+   *
+   * @return the new lease, or null if the given lease is not current
+   */
+  public Lease extend(Lease lease, long deadlineMillis) {
+    InstanceEntry instance = lease.instance;
+    Lease extendedLease = newLease(instance, deadlineMillis);
+    if (!instance.lease.compareAndSet(lease, extendedLease)) {
+      return null;
+    }
+    leases.remove(lease);
+    leases.add(extendedLease);
+    return extendedLease;
+  }
+
+  /**
+   * Returns the current lease of an instance, or null if the instance is idle or not indexed.
+   */
+  public Lease getLease(String instanceId) {
+    InstanceEntry instance = instances.get(instanceId);
+    return instance != null ? instance.lease.get() : null;
+  }
+
+  /**
+   * Removes the entries of removed instances from the idle queues, and the entries of instances
+   * that have since been queued for another client from the client queues. Client queues that are
+   * empty are removed. The entries of leased instances are kept since they become valid again when
+   * the instances are released.
+   */
+  public void prune() {
+    for (SimulationEntry simulation : simulations.values()) {
+      simulation.idleInstances.removeIf(instance -> instance.removed);
+    }
+    for (String clientId : preferredInstances.keySet()) {
+      // The queue is replaced atomically with respect to enqueue.
+      preferredInstances.computeIfPresent(clientId, (id, queue) -> {
+        queue.removeIf(instance -> instance.removed || !id.equals(instance.queuedClientId.get()));
+        return queue.isEmpty() ? null : queue;
+      });
+    }
+  }
+
+  /**
+   * Returns the number of entries in the idle queues of the simulations and the clients.
+   */
+  @VisibleForTesting
+  int getQueuedEntryCount() {
+    int count = 0;
+    for (SimulationEntry simulation : simulations.values()) {
+      count += simulation.idleInstances.size();
+    }
+    for (Queue<InstanceEntry> queue : preferredInstances.values()) {
+      count += queue.size();
+    }
+    return count;
+  }
+
+  @VisibleForTesting
+  int getClientQueueCount() {
+    return preferredInstances.size();
+  }
+
+  private InstanceEntry newInstance(SimulationEntry simulation, String instanceId) {
+    InstanceEntry instance = new InstanceEntry(simulation, instanceId);
+    InstanceEntry previousInstance = instances.put(instanceId, instance);
+    if (previousInstance != null) {
+      previousInstance.removed = true;
+    } else {
+      simulation.instanceCount.incrementAndGet();
+    }
+    return instance;
+  }
+
+  private Lease addLeasedInstance(InstanceEntry instance, String clientId, long deadlineMillis) {
+    instance.preferredClientId = clientId;
+    Lease lease = newLease(instance, deadlineMillis);
+    instance.lease.set(lease);
+    leases.add(lease);
+    return lease;
+  }
+
+  private Lease newLease(InstanceEntry instance, long deadlineMillis) {
+    return new Lease(instance, deadlineMillis, leaseSequence.incrementAndGet());
+  }
+
+  /**
+   * Leases an instance from a queue. The queue is the queue of the given client, or the queue of a
+   * simulation if the client is null.
+   */
+  private Lease lease(Queue<InstanceEntry> queue, String queueClientId, String clientId,
+      long nowMillis) {
+    InstanceEntry instance;
+    while ((instance = queue.poll()) != null) {
+      if (queueClientId != null) {
+        String queuedClientId = instance.queuedClientId.get();
+        if (!queueClientId.equals(queuedClientId)
+            || !instance.queuedClientId.compareAndSet(queuedClientId, null)) {
+          // The instance has since been queued for another client.
+          continue;
+        }
+      } else {
+        instance.simulationQueued.set(false);
+      }
+      if (instance.removed) {
+        continue;
+      } else if (!instance.simulation.active) {
+        if (queueClientId == null) {
+          // The simulation was deactivated while its queue was being read.
+          enqueueInSimulation(instance);
+          return null;
+        }
+        // The instance remains in the queue of its simulation.
+        continue;
+      }
+      Lease lease = newLease(instance, nowMillis + instance.simulation.taskMaxDurationMillis);
+      // The instance may be present in another queue, in which case it may already be leased. The
+      // entry in the other queue is skipped when it is polled while the instance is leased.
+      if (instance.lease.compareAndSet(null, lease)) {
+        instance.preferredClientId = clientId;
+        leases.add(lease);
+        return lease;
+      }
+    }
+    return null;
+  }
+
+  private void expireLeases(long nowMillis) {
+    for (Lease lease : leases) {
+      if (lease.deadlineMillis > nowMillis) {
+        return;
+      }
+      // Only the thread that removes the lease returns the instance to the queues.
+      if (leases.remove(lease) && lease.instance.lease.compareAndSet(lease, null)) {
+        enqueue(lease.instance);
+      }
+    }
+  }
+
+  private void enqueue(InstanceEntry instance) {
+    if (instance.removed) {
+      return;
+    }
+    String preferredClientId = normalizeClientId(instance.preferredClientId);
+    String queuedClientId;
+    while (preferredClientId != null
+        && !preferredClientId.equals(queuedClientId = instance.queuedClientId.get())) {
+      if (instance.queuedClientId.compareAndSet(queuedClientId, preferredClientId)) {
+        // An entry in the queue of the previous client is skipped when it is polled.
+        preferredInstances.compute(preferredClientId, (id, queue) -> {
+          Queue<InstanceEntry> clientInstances =
+              queue != null ? queue : new ConcurrentLinkedQueue<>();
+          clientInstances.add(instance);
+          return clientInstances;
+        });
+        break;
+      }
+    }
+    enqueueInSimulation(instance);
+  }
+
+  /**
+   * Adds an instance to the queue of its simulation unless it is already present.
+   */
+  private void enqueueInSimulation(InstanceEntry instance) {
+    if (instance.simulationQueued.compareAndSet(false, true)) {
+      instance.simulation.idleInstances.add(instance);
+      markReady(instance.simulation);
+    }
+  }
+
+  private void markReady(SimulationEntry simulation) {
+    if (simulation.active && !simulation.removed && simulation.ready.compareAndSet(false, true)) {
+      readySimulations.add(simulation);
+    }
+  }
+
+  private static String normalizeClientId(String clientId) {
+    return clientId != null ? clientId.toLowerCase(Locale.ROOT) : null;
+  }
+}
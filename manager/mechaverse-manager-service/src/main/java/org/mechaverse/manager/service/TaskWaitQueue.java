@@ -0,0 +1,130 @@
+package org.mechaverse.manager.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.mechaverse.manager.service.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parks clients that are waiting for tasks until tasks become available.
+ *
+ * <p>A client that requests tasks when none are available is added to the queue. When the
+ * {@link MechaverseManagerService} reports that tasks may have become available, tasks are leased
+ * for the waiting clients in the order in which they arrived until no more tasks are available.
+ * A client that is waiting does not use a thread or poll the database.
+ *
+ * <p>Tasks that become available because the tasks of other clients expire are reported when the
+ * expired tasks are removed.
+ */
+public class TaskWaitQueue implements AutoCloseable {
+
+  private static final class Waiter {
+
+    private final String clientId;
+    private final int maxTaskCount;
+    private final CompletableFuture<List<Task>> tasks = new CompletableFuture<>();
+
+    private Waiter(String clientId, int maxTaskCount) {
+      this.clientId = clientId;
+      this.maxTaskCount = maxTaskCount;
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskWaitQueue.class);
+
+  private final MechaverseManagerService managerService;
+  private final Deque<Waiter> waiters = new ConcurrentLinkedDeque<>();
+  private final AtomicLong availabilityVersion = new AtomicLong();
+  private final ExecutorService dispatchExecutor = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("task-wait-queue").setDaemon(true).build());
+
+  public TaskWaitQueue(MechaverseManagerService managerService) {
+    this.managerService = managerService;
+    managerService.addTaskAvailabilityListener(this::onTasksAvailable);
+  }
+
+  /**
+   * Returns a future that is completed with up to the given number of tasks for the given client.
+   * The future is completed immediately if tasks are available. Otherwise it is completed when
+   * tasks become available. A caller that stops waiting must cancel the future.
+   */
+  public CompletableFuture<List<Task>> getTasks(String clientId, int maxTaskCount) {
+    long version = availabilityVersion.get();
+    List<Task> tasks = managerService.getTasks(clientId, maxTaskCount);
+    if (!tasks.isEmpty()) {
+      return CompletableFuture.completedFuture(tasks);
+    }
+
+    Waiter waiter = new Waiter(clientId, maxTaskCount);
+    waiter.tasks.whenComplete((result, ex) -> {
+      if (waiter.tasks.isCancelled()) {
+        waiters.remove(waiter);
+      }
+    });
+    waiters.addLast(waiter);
+    if (availabilityVersion.get() != version) {
+      // Tasks became available after they were requested and before the client was added.
+      dispatchExecutor.execute(this::dispatch);
+    }
+    return waiter.tasks;
+  }
+
+  /**
+   * Returns the number of clients that are waiting for tasks.
+   */
+  public int getWaitingClientCount() {
+    return waiters.size();
+  }
+
+  @Override
+  public void close() {
+    dispatchExecutor.shutdownNow();
+  }
+
+  private void onTasksAvailable() {
+    availabilityVersion.incrementAndGet();
+    if (!waiters.isEmpty()) {
+      dispatchExecutor.execute(this::dispatch);
+    }
+  }
+
+  /**
+   * Leases tasks for the waiting clients in order until no tasks are available.
+   */
+  private void dispatch() {
+    Waiter waiter;
+    while ((waiter = waiters.pollFirst()) != null) {
+      if (waiter.tasks.isDone()) {
+        // The client stopped waiting.
+        continue;
+      }
+      List<Task> tasks;
+      try {
+        tasks = managerService.getTasks(waiter.clientId, waiter.maxTaskCount);
+      } catch (RuntimeException ex) {
+        waiter.tasks.completeExceptionally(ex);
+        continue;
+      }
+      if (tasks.isEmpty()) {
+        waiters.addFirst(waiter);
+        return;
+      }
+      if (!waiter.tasks.complete(tasks)) {
+        // The client stopped waiting in the meantime. The tasks are released, which dispatches
+        // them to the next waiting client.
+        try {
+          managerService.releaseTasks(tasks);
+        } catch (RuntimeException ex) {
+          logger.warn("Unable to release the tasks of client {}", waiter.clientId, ex);
+        }
+      }
+    }
+  }
+}
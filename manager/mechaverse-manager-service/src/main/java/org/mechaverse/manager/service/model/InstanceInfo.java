@@ -7,6 +7,8 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
@@ -17,6 +19,8 @@ import javax.persistence.Table;
 @Table(name = "instance")
 public class InstanceInfo implements Serializable {
 
+  public static final String EXECUTING_TASKS_TABLE = "instance_executingTasks";
+
   private static final long serialVersionUID = -6809364169796167082L;
 
   @Id
@@ -26,7 +30,12 @@ public class InstanceInfo implements Serializable {
 
   private String preferredClientId;
 
+  // The join table is named explicitly because expired tasks are removed from it with a native
+  // query. The names are those that were generated for it by the manager app.
   @OneToMany(fetch=FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
+  @JoinTable(name = EXECUTING_TASKS_TABLE,
+      joinColumns = @JoinColumn(name = "InstanceInfo_instanceId"),
+      inverseJoinColumns = @JoinColumn(name = "executingTasks_id"))
   private Set<Task> executingTasks = new HashSet<>();
 
   public String getInstanceId() {
@@ -5,13 +5,15 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 /**
- * Information about a task.
+ * Information about a task. The deadline is indexed so that expired tasks can be found without
+ * reading all of the tasks.
  */
 @Entity
-@Table(name = "task")
+@Table(name = "task", indexes = @Index(name = "task_deadline", columnList = "deadlineMillis"))
 public class Task implements Serializable {
 
   private static final long serialVersionUID = 5958546141000173564L;
@@ -27,6 +29,7 @@ public class Task implements Serializable {
   private String clientId;
   private Long startTimeMillis;
   private Long completionTimeMillis;
+  private Long deadlineMillis;
 
   public Long getStartTimeMillis() {
     return startTimeMillis;
@@ -44,6 +47,14 @@ public class Task implements Serializable {
     this.completionTimeMillis = completionTimeMillis;
   }
 
+  public Long getDeadlineMillis() {
+    return deadlineMillis;
+  }
+
+  public void setDeadlineMillis(Long deadlineMillis) {
+    this.deadlineMillis = deadlineMillis;
+  }
+
   public Long getId() {
     return id;
   }
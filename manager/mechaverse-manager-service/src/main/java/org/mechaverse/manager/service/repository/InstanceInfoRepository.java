@@ -1,6 +1,26 @@
 package org.mechaverse.manager.service.repository;
 
+import java.util.Collection;
+import java.util.List;
+import javax.persistence.LockModeType;
 import org.mechaverse.manager.service.model.InstanceInfo;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
-public interface InstanceInfoRepository extends CrudRepository<InstanceInfo, String> {}
+public interface InstanceInfoRepository extends CrudRepository<InstanceInfo, String> {
+
+  /**
+   * Returns the instance with the given id and locks it until the end of the transaction.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select i from InstanceInfo i where i.instanceId = ?1")
+  InstanceInfo findOneForUpdate(String instanceId);
+
+  /**
+   * Returns the instances with the given ids and locks them until the end of the transaction.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select i from InstanceInfo i where i.instanceId in ?1")
+  List<InstanceInfo> findAllForUpdate(Collection<String> instanceIds);
+}
@@ -1,6 +1,39 @@
 package org.mechaverse.manager.service.repository;
 
+import java.util.List;
+import org.mechaverse.manager.service.model.InstanceInfo;
 import org.mechaverse.manager.service.model.Task;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
-public interface TaskRepository extends CrudRepository<Task, Long> {}
+/**
+ * Repository of tasks. A task is expired if its deadline is not after the current time. Tasks
+ * without a deadline were created before deadlines were recorded and are also expired.
+ */
+public interface TaskRepository extends CrudRepository<Task, Long> {
+
+  /**
+   * Returns the tasks that are expired at the given time.
+   */
+  @Query("select t from Task t where t.deadlineMillis <= ?1 or t.deadlineMillis is null")
+  List<Task> findExpired(long nowMillis);
+
+  /**
+   * Removes the tasks that are expired at the given time from the executing tasks of their
+   * instances. This must be done before the tasks are deleted by {@link #deleteExpired}.
+   */
+  @Modifying
+  @Query(value = "delete from " + InstanceInfo.EXECUTING_TASKS_TABLE + " where executingTasks_id"
+      + " in (select id from task where deadlineMillis <= ?1 or deadlineMillis is null)",
+      nativeQuery = true)
+  int deleteExpiredExecutingTasks(long nowMillis);
+
+  /**
+   * Deletes the tasks that are expired at the given time and returns the number of deleted tasks.
+   * The persistence context is cleared, so entities that were loaded before are detached.
+   */
+  @Modifying(clearAutomatically = true)
+  @Query("delete from Task t where t.deadlineMillis <= ?1 or t.deadlineMillis is null")
+  int deleteExpired(long nowMillis);
+}
@@ -1,65 +1,465 @@
 package org.mechaverse.manager.service.storage;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
 /**
  * Implementation of {@link MechaverseStorageService}.
+ *
+ * <p>If {@code stateDeltasEnabled} is set, the state of an instance is stored as a delta against the
+ * previous stored iteration of the instance when possible (see {@link StateDeltaCodec}). This
+ * reduces storage, but each write decodes the new state and reconstructs the previous one, so it is
+ * disabled by default. Only gzip compressed smile states are stored as deltas. A full state is
+ * stored every {@code keyframeInterval} iterations so that the number of deltas that must be
+ * applied to reconstruct a state is bounded. Deltas are applied transparently by {@link #getState},
+ * and states that were stored as deltas remain readable when deltas are disabled.
+ *
+ * <p>The states of an instance are stored in the directory
+ * {@code <simulationId>/instances/<shard>/<instanceId>/<iteration / 100000>/<iteration>}, where
+ * the shard is derived from a hash of the instance id. This bounds the number of entries in each
+ * directory. Instances that are stored in the previous layout, {@code <simulationId>/<instanceId>/
+ * <iteration>}, are moved to the sharded layout on startup or when they are first accessed.
+ *
+ * <p>A submitted state is copied to a temporary file, so states are not buffered in memory. A
+ * state can also be staged in a temporary file with {@link #stageState} before its iteration is
+ * known, and then set with {@link #setStagedState}. The
+ * file is synced to disk and atomically moved to {@code pending/<simulationId>/<instanceId>/
+ * <iteration>} before {@link #setState} returns, so a submitted state is durable. The pending state
+ * is then written to its final location asynchronously by one of a fixed number of writers, each
+ * with a bounded queue that blocks {@link #setState} when it is full. The states of an instance are
+ * always written by the same writer, so they are written in the order in which they were submitted.
+ * States that have not been written yet are returned by {@link #getState}, and states that were
+ * still pending when the service stopped are written on startup. A stored state is never partially
+ * written.
+ *
+ * <p>A write that fails is retried. If it still fails, the state remains pending and available from
+ * {@link #getState}, and {@link #setState} throws an {@link IOException} for the instance of the
+ * state until the write has been retried successfully. {@link #flush} throws while any write has
+ * failed.
+ *
+ * <p>Uploads are stored in the {@code uploads} directory. A chunk of an upload is written directly
+ * to the upload file and is truncated again if its checksum does not match.
  */
 public class LocalFileMechaverseStorageService implements MechaverseStorageService {
 
+  public static final int DEFAULT_KEYFRAME_INTERVAL = 10;
+  public static final int DEFAULT_WRITER_COUNT = 2;
+  public static final int DEFAULT_WRITE_QUEUE_CAPACITY = 16;
+  public static final long DEFAULT_WRITE_RETRY_SLEEP_MILLIS = 1000;
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(LocalFileMechaverseStorageService.class);
+
+  private static final long ITERATIONS_PER_DIRECTORY = 100000;
+  private static final String INSTANCES_DIRECTORY = "instances";
+  private static final String TEMP_DIRECTORY = "temp";
+  private static final String PENDING_DIRECTORY = "pending";
+  private static final String UPLOADS_DIRECTORY = "uploads";
+  private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+  private static final String DELTA_SUFFIX = ".delta";
+  private static final String STAGED_STATE_PREFIX = "staged-";
+  private static final int MAX_WRITE_ATTEMPTS = 3;
+
   @Value("${simulationBasePath}")
   private String basePath;
 
+  @Value("${stateDeltasEnabled:false}")
+  private boolean deltasEnabled;
+
+  @Value("${stateKeyframeInterval:" + DEFAULT_KEYFRAME_INTERVAL + "}")
+  private int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+
+  @Value("${stateWriterCount:" + DEFAULT_WRITER_COUNT + "}")
+  private int writerCount = DEFAULT_WRITER_COUNT;
+
+  @Value("${stateWriteQueueCapacity:" + DEFAULT_WRITE_QUEUE_CAPACITY + "}")
+  private int writeQueueCapacity = DEFAULT_WRITE_QUEUE_CAPACITY;
+
+  private long writeRetrySleepMillis = DEFAULT_WRITE_RETRY_SLEEP_MILLIS;
+
+  /**
+   * A pending state that is written to its final location.
+   */
+  private final class StateWrite implements Runnable {
+
+    private final String key;
+    private final String instanceId;
+    private final File instanceDirectory;
+    private final long iteration;
+    private final File dataFile;
+    private final String tempPrefix;
+
+    StateWrite(String instanceId, File instanceDirectory, long iteration, File dataFile,
+        String tempPrefix) {
+      this.key = getStateFile(instanceDirectory, iteration).getPath();
+      this.instanceId = instanceId;
+      this.instanceDirectory = instanceDirectory;
+      this.iteration = iteration;
+      this.dataFile = dataFile;
+      this.tempPrefix = tempPrefix;
+    }
+
+    @Override
+    public void run() {
+      for (int attempt = 1; ; attempt++) {
+        try {
+          writeState(instanceDirectory, iteration, dataFile, tempPrefix);
+          pendingStates.remove(key, dataFile);
+          return;
+        } catch (IOException | RuntimeException ex) {
+          if (attempt >= MAX_WRITE_ATTEMPTS || !sleepBeforeRetry(attempt)) {
+            // The state remains pending until the write is retried by setState or flush, or until
+            // the service is restarted.
+            logger.error("Unable to write state {}", key, ex);
+            failedWrites.put(key, this);
+            return;
+          }
+          logger.warn("Unable to write state {}, retrying", key, ex);
+        }
+      }
+    }
+  }
+
+  private final Map<String, File> pendingStates = new ConcurrentHashMap<>();
+  private final Map<String, StateWrite> failedWrites = new ConcurrentHashMap<>();
+  private ThreadPoolExecutor[] writers;
+  private final Striped<Lock> uploadLocks = Striped.lock(64);
+
+  /**
+   * Moves the instances that are stored in the previous directory layout and writes the states that
+   * were pending when the service stopped.
+   */
+  @PostConstruct
+  public void initialize() throws IOException {
+    migrateLegacyLayout();
+    recoverPendingStates();
+  }
+
+  /**
+   * Moves the instances that are stored in the previous directory layout to the sharded layout.
+   */
+  public void migrateLegacyLayout() throws IOException {
+    File[] simulationDirectories = new File(basePath).listFiles(File::isDirectory);
+    if (simulationDirectories == null) {
+      return;
+    }
+    for (File simulationDirectory : simulationDirectories) {
+      if (!simulationDirectory.getName().equals(TEMP_DIRECTORY)
+          && !simulationDirectory.getName().equals(PENDING_DIRECTORY)
+          && !simulationDirectory.getName().equals(UPLOADS_DIRECTORY)) {
+        File[] instanceDirectories = simulationDirectory.listFiles(
+            file -> file.isDirectory() && !file.getName().equals(INSTANCES_DIRECTORY));
+        for (File instanceDirectory : instanceDirectories != null
+            ? instanceDirectories : new File[0]) {
+          migrateLegacyInstance(simulationDirectory.getName(), instanceDirectory.getName());
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the states that were pending when the service stopped, in the order of their iterations,
+   * and deletes the temporary files of the writes that were not completed.
+   */
+  public void recoverPendingStates() throws IOException {
+    FileUtils.deleteDirectory(new File(getTempPath()));
+    File[] simulationDirectories = new File(getPendingPath()).listFiles(File::isDirectory);
+    if (simulationDirectories == null) {
+      return;
+    }
+    for (File simulationDirectory : simulationDirectories) {
+      File[] pendingDirectories = simulationDirectory.listFiles(File::isDirectory);
+      for (File pendingDirectory : pendingDirectories != null
+          ? pendingDirectories : new File[0]) {
+        String simulationId = simulationDirectory.getName();
+        String instanceId = pendingDirectory.getName();
+        File instanceDirectory = getInstanceDirectory(simulationId, instanceId);
+        long[] iterations = listIterations(pendingDirectory);
+        Arrays.sort(iterations);
+        for (long iteration : iterations) {
+          writeState(instanceDirectory, iteration, new File(pendingDirectory,
+              String.valueOf(iteration)), getTempPrefix(simulationId, instanceId, iteration));
+          logger.info("Wrote pending state {} of instance {} of simulation {}", iteration,
+              instanceId, simulationId);
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until all of the states that have been submitted have been written. Writes that failed
+   * previously are retried.
+   *
+   * @throws IOException if a state could not be written
+   */
+  public void flush() throws IOException {
+    retryFailedWrites(failedWrites.values());
+    waitForWriters();
+    if (!failedWrites.isEmpty()) {
+      throw newWriteFailure(failedWrites.values());
+    }
+  }
+
+  /**
+   * Waits until the writes that have been queued have been completed.
+   */
+  private void waitForWriters() throws IOException {
+    List<Future<?>> futures = new ArrayList<>();
+    synchronized (this) {
+      if (writers == null) {
+        return;
+      }
+      for (ThreadPoolExecutor writer : writers) {
+        futures.add(writer.submit(() -> {}));
+      }
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException ex) {
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  /**
+   * Writes the states that have been submitted and stops the writers.
+   */
+  @PreDestroy
+  public synchronized void close() throws InterruptedException {
+    if (writers != null) {
+      for (ThreadPoolExecutor writer : writers) {
+        writer.shutdown();
+      }
+      for (ThreadPoolExecutor writer : writers) {
+        writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+      writers = null;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The version of a state is derived from the path, length, and modification time of the files
+   * from which it is read. A state that is reconstructed from deltas is encoded as it is read.
+   */
   @Override
-  public InputStream getState(String simulationId, String instanceId, long iteration)
+  public StateInputStream getState(String simulationId, String instanceId, long iteration)
       throws IOException {
-    return new FileInputStream(getFilename(simulationId, instanceId, iteration));
+    File instanceDirectory = getInstanceDirectory(simulationId, instanceId);
+    File stateFile = getStateFile(instanceDirectory, iteration);
+    File pendingState = pendingStates.get(stateFile.getPath());
+    if (pendingState != null) {
+      try {
+        return openState(pendingState);
+      } catch (FileNotFoundException ex) {
+        // The state has been written since it was looked up.
+      }
+    }
+    if (!stateFile.exists() && getDeltaFile(stateFile).exists()) {
+      // Reconstruct the state from the nearest full state and the deltas that follow it.
+      List<File> sourceFiles = new ArrayList<>();
+      ObjectNode state = readState(instanceDirectory, iteration, sourceFiles);
+      return new StateInputStream(
+          StateDeltaCodec.newStateInputStream(state), getVersion(sourceFiles));
+    }
+    return openState(stateFile);
   }
 
   @Override
   public void setState(String simulationId, String instanceId, long iteration,
       InputStream stateInput) throws IOException {
-    // Write the state to a temporary file.
-    File tempDirectory = new File(getTempPath());
-    tempDirectory.mkdirs();
-    if (!tempDirectory.exists()) {
-      throw new IOException("Unable to create temp directory " + tempDirectory.getAbsolutePath());
+    File instanceDirectory = getInstanceDirectory(simulationId, instanceId);
+    checkFailedWrites(instanceDirectory);
+    File tempFile = copyToTempFile(stateInput, getTempPrefix(simulationId, instanceId, iteration));
+    setState(simulationId, instanceId, iteration, instanceDirectory, tempFile);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The state is copied to a file in the temporary directory, which is cleared on startup.
+   */
+  @Override
+  public String stageState(InputStream stateInput) throws IOException {
+    return copyToTempFile(stateInput, STAGED_STATE_PREFIX).getName();
+  }
+
+  @Override
+  public void setStagedState(String simulationId, String instanceId, long iteration,
+      String stagedStateId) throws IOException {
+    File instanceDirectory = getInstanceDirectory(simulationId, instanceId);
+    checkFailedWrites(instanceDirectory);
+    File stagedFile = getStagedFile(stagedStateId);
+    if (!stagedFile.isFile()) {
+      throw new FileNotFoundException("Staged state " + stagedStateId + " does not exist");
+    }
+    setState(simulationId, instanceId, iteration, instanceDirectory, stagedFile);
+  }
+
+  @Override
+  public void deleteStagedState(String stagedStateId) throws IOException {
+    Files.deleteIfExists(getStagedFile(stagedStateId).toPath());
+  }
+
+  /**
+   * Throws an exception and retries the failed writes of the given instance if it has any.
+   */
+  private void checkFailedWrites(File instanceDirectory) throws IOException {
+    List<StateWrite> instanceFailedWrites = new ArrayList<>();
+    for (StateWrite write : failedWrites.values()) {
+      if (write.instanceDirectory.equals(instanceDirectory)) {
+        instanceFailedWrites.add(write);
+      }
+    }
+    if (!instanceFailedWrites.isEmpty()) {
+      // New states of the instance are rejected until its earlier states have been written.
+      IOException failure = newWriteFailure(instanceFailedWrites);
+      retryFailedWrites(instanceFailedWrites);
+      throw failure;
     }
-    String tempPrefix = String.format("%s-%s-%s", simulationId, instanceId, iteration);
-    File tempFile = File.createTempFile(tempPrefix, null, tempDirectory);
+  }
 
-    File stateFile = new File(getFilename(simulationId, instanceId, iteration));
-    stateFile.getParentFile().mkdirs();
-    if (!stateFile.getParentFile().exists()) {
-      throw new IOException(
-          "Unable to create parent directory " + stateFile.getParentFile().getAbsolutePath());
+  /**
+   * Moves the given temporary file that contains a state to the pending directory and queues the
+   * state to be written. The temporary file is deleted if it cannot be moved.
+   */
+  private void setState(String simulationId, String instanceId, long iteration,
+      File instanceDirectory, File tempFile) throws IOException {
+    // The state is durable once it has been moved to the pending directory.
+    String tempPrefix = getTempPrefix(simulationId, instanceId, iteration);
+    File dataFile = getPendingFile(simulationId, instanceId, iteration);
+    try {
+      moveAtomically(tempFile, dataFile);
+    } catch (IOException ex) {
+      tempFile.delete();
+      throw ex;
+    }
+    ThreadPoolExecutor writer = getWriter(instanceId);
+    if (writer == null) {
+      writeState(instanceDirectory, iteration, dataFile, tempPrefix);
+      return;
     }
 
+    StateWrite write =
+        new StateWrite(instanceId, instanceDirectory, iteration, dataFile, tempPrefix);
+    pendingStates.put(write.key, dataFile);
     try {
-      try (OutputStream out = new FileOutputStream(tempFile)) {
-        IOUtils.copy(stateInput, out);
+      writer.execute(write);
+    } catch (RejectedExecutionException ex) {
+      pendingStates.remove(write.key, dataFile);
+      Files.deleteIfExists(dataFile.toPath());
+      throw new IOException("Unable to queue state " + write.key, ex);
+    }
+  }
+
+  @Override
+  public long getUploadLength(String uploadId) throws IOException {
+    return getUploadFile(uploadId).length();
+  }
+
+  @Override
+  public long writeUploadChunk(String uploadId, long offset, InputStream chunkInput,
+      long checksum) throws IOException {
+    File uploadFile = getUploadFile(uploadId);
+    uploadFile.getParentFile().mkdirs();
+    Lock lock = uploadLocks.get(uploadId);
+    lock.lock();
+    try (FileChannel channel = FileChannel.open(uploadFile.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      if (offset < 0 || offset > channel.size()) {
+        return channel.size();
       }
 
-      // Move the temporary file to the proper location.
-      if (!tempFile.renameTo(stateFile)) {
-        throw new IOException("Unable to rename temp file " + tempFile.getAbsolutePath());
+      long position = offset;
+      boolean verified = false;
+      try {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+        int bytesRead;
+        while ((bytesRead = chunkInput.read(buffer)) != -1) {
+          crc.update(buffer, 0, bytesRead);
+          ByteBuffer data = ByteBuffer.wrap(buffer, 0, bytesRead);
+          while (data.hasRemaining()) {
+            position += channel.write(data, position);
+          }
+        }
+        verified = crc.getValue() == checksum;
+      } finally {
+        // Data that was not verified is discarded, as is data that followed a replaced chunk.
+        channel.truncate(verified ? position : offset);
+        channel.force(true);
       }
-    } catch (Exception ex) {
-      tempFile.delete();
+      return channel.size();
+    } finally {
+      lock.unlock();
     }
   }
 
+  @Override
+  public InputStream getUpload(String uploadId) throws IOException {
+    return new FileInputStream(getUploadFile(uploadId));
+  }
+
+  @Override
+  public void deleteUpload(String uploadId) throws IOException {
+    Files.deleteIfExists(getUploadFile(uploadId).toPath());
+  }
+
   @Override
   public void deleteSimulation(String simulationId) throws IOException {
+    File pendingDirectory = new File(getPendingPath(), simulationId);
+    discardFailedWrites(pendingDirectory);
+    waitForWriters();
+    FileUtils.deleteDirectory(pendingDirectory);
     File simulationDirectory = new File(getSimulationPath(simulationId));
     File tempDirectory = new File(getTempPath() + File.separator + simulationId);
     simulationDirectory.renameTo(tempDirectory);
@@ -68,7 +468,11 @@ public class LocalFileMechaverseStorageService implements MechaverseStorageServi
 
   @Override
   public void deleteInstance(String simulationId, String instanceId) throws IOException {
-    File instanceDirectory = new File(getInstancePath(simulationId, instanceId));
+    File pendingDirectory = getPendingFile(simulationId, instanceId, 0).getParentFile();
+    discardFailedWrites(pendingDirectory);
+    waitForWriters();
+    FileUtils.deleteDirectory(pendingDirectory);
+    File instanceDirectory = getInstanceDirectory(simulationId, instanceId);
     File tempDirectory = new File(getTempPath() + File.separator + instanceId);
     instanceDirectory.renameTo(tempDirectory);
     FileUtils.deleteDirectory(tempDirectory);
@@ -79,21 +483,483 @@ public class LocalFileMechaverseStorageService implements MechaverseStorageServi
     this.basePath = basePath;
   }
 
+  @VisibleForTesting
+  void setDeltasEnabled(boolean deltasEnabled) {
+    this.deltasEnabled = deltasEnabled;
+  }
+
+  @VisibleForTesting
+  void setKeyframeInterval(int keyframeInterval) {
+    this.keyframeInterval = keyframeInterval;
+  }
+
+  /**
+   * Sets the capacity of the queue of each writer. States are written synchronously if the
+   * capacity is zero.
+   */
+  @VisibleForTesting
+  void setWriteQueueCapacity(int writeQueueCapacity) {
+    this.writeQueueCapacity = writeQueueCapacity;
+  }
+
+  /**
+   * Sets the time to wait before the first retry of a failed write. The time is increased for each
+   * following retry.
+   */
+  @VisibleForTesting
+  void setWriteRetrySleepMillis(long writeRetrySleepMillis) {
+    this.writeRetrySleepMillis = writeRetrySleepMillis;
+  }
+
+  /**
+   * Queues the given writes that have failed again.
+   */
+  private void retryFailedWrites(Collection<StateWrite> writes) throws IOException {
+    for (StateWrite write : writes) {
+      ThreadPoolExecutor writer = getWriter(write.instanceId);
+      if (writer != null && failedWrites.remove(write.key, write)) {
+        try {
+          writer.execute(write);
+        } catch (RejectedExecutionException ex) {
+          failedWrites.put(write.key, write);
+          throw new IOException("Unable to queue state " + write.key, ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Discards the failed writes of the pending states in the given directory, which are deleted.
+   */
+  private void discardFailedWrites(File pendingDirectory) {
+    String pendingPath = pendingDirectory.getPath() + File.separator;
+    for (StateWrite write : failedWrites.values()) {
+      if (write.dataFile.getPath().startsWith(pendingPath)
+          && failedWrites.remove(write.key, write)) {
+        pendingStates.remove(write.key, write.dataFile);
+      }
+    }
+  }
+
+  private static IOException newWriteFailure(Collection<StateWrite> writes) {
+    List<String> keys = new ArrayList<>();
+    for (StateWrite write : writes) {
+      keys.add(write.key);
+    }
+    return new IOException("Unable to write states " + keys);
+  }
+
+  /**
+   * Waits before the given write attempt is retried. Returns false if the writer was interrupted.
+   */
+  private boolean sleepBeforeRetry(int attempt) {
+    try {
+      Thread.sleep(attempt * writeRetrySleepMillis);
+      return true;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Returns the writer for the states of the given instance, or null if states are written
+   * synchronously.
+   */
+  private synchronized ThreadPoolExecutor getWriter(String instanceId) {
+    if (writerCount <= 0 || writeQueueCapacity <= 0) {
+      return null;
+    }
+    if (writers == null) {
+      writers = new ThreadPoolExecutor[writerCount];
+      for (int idx = 0; idx < writers.length; idx++) {
+        writers[idx] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(writeQueueCapacity),
+            new ThreadFactoryBuilder().setNameFormat("state-writer-" + idx).setDaemon(true)
+                .build(),
+            LocalFileMechaverseStorageService::waitForCapacity);
+      }
+    }
+    return writers[Math.floorMod(instanceId.hashCode(), writers.length)];
+  }
+
+  /**
+   * Blocks the submitting thread until the queue of the writer has capacity for the given write.
+   */
+  private static void waitForCapacity(Runnable write, ThreadPoolExecutor writer) {
+    if (writer.isShutdown()) {
+      throw new RejectedExecutionException("The writer has been shut down");
+    }
+    try {
+      writer.getQueue().put(write);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException(ex);
+    }
+  }
+
+  /**
+   * Writes the state in the given data file, or a delta of the state against the previous stored
+   * iteration if deltas are enabled. The data file is moved or deleted when the state has been written.
+   */
+  private void writeState(File instanceDirectory, long iteration, File dataFile,
+      String tempPrefix) throws IOException {
+    File stateFile = getStateFile(instanceDirectory, iteration);
+    File deltaFile = getDeltaFile(stateFile);
+    if (!dataFile.exists() && stateFile.exists()) {
+      // A previous attempt moved the state to its final location.
+      Files.deleteIfExists(deltaFile.toPath());
+      return;
+    }
+
+    // Store a delta against the previous iteration instead of the full state if possible.
+    byte[] delta = null;
+    try {
+      delta = createDelta(instanceDirectory, iteration, dataFile);
+    } catch (IOException | RuntimeException ex) {
+      // The full state is stored.
+    }
+    if (delta != null) {
+      writeAtomically(delta, deltaFile, tempPrefix);
+      Files.deleteIfExists(stateFile.toPath());
+      if (!dataFile.delete()) {
+        logger.warn("Unable to delete {}", dataFile.getAbsolutePath());
+      }
+    } else {
+      moveAtomically(dataFile, stateFile);
+      Files.deleteIfExists(deltaFile.toPath());
+    }
+  }
+
+  /**
+   * Copies the given state to a temporary file.
+   */
+  private File copyToTempFile(InputStream stateInput, String tempPrefix) throws IOException {
+    File tempFile = File.createTempFile(tempPrefix, null, createDirectory(new File(getTempPath())));
+    try (OutputStream out = new FileOutputStream(tempFile)) {
+      IOUtils.copy(stateInput, out);
+    } catch (IOException | RuntimeException ex) {
+      tempFile.delete();
+      throw ex;
+    }
+    return tempFile;
+  }
+
+  /**
+   * Writes the given data to a temporary file and then atomically moves it to the given file.
+   */
+  private void writeAtomically(byte[] data, File file, String tempPrefix) throws IOException {
+    File tempFile = File.createTempFile(tempPrefix, null, createDirectory(new File(getTempPath())));
+    try {
+      try (FileOutputStream out = new FileOutputStream(tempFile)) {
+        out.write(data);
+      }
+      moveAtomically(tempFile, file);
+    } catch (IOException ex) {
+      tempFile.delete();
+      throw ex;
+    }
+  }
+
+  /**
+   * Syncs the given temporary file to disk and then atomically moves it to the given file.
+   */
+  private static void moveAtomically(File tempFile, File file) throws IOException {
+    File parentDirectory = createDirectory(file.getParentFile());
+    try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    syncDirectory(parentDirectory);
+  }
+
+  private static File createDirectory(File directory) throws IOException {
+    directory.mkdirs();
+    if (!directory.isDirectory()) {
+      throw new IOException("Unable to create directory " + directory.getAbsolutePath());
+    }
+    return directory;
+  }
+
+  /**
+   * Syncs a directory so that the entries that were moved into it are durable.
+   */
+  private static void syncDirectory(File directory) {
+    try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException ignored) {
+      // Directories cannot be synced on some platforms.
+    }
+  }
+
+  /**
+   * Returns a delta of the given state against the previous stored iteration, or null if the state
+   * should be stored in full.
+   */
+  private byte[] createDelta(File instanceDirectory, long iteration, File dataFile)
+      throws IOException {
+    if (!deltasEnabled || keyframeInterval <= 1) {
+      return null;
+    }
+    long baseIteration = getPreviousIteration(instanceDirectory, iteration);
+    if (baseIteration < 0) {
+      return null;
+    }
+    File baseFile = getStateFile(instanceDirectory, baseIteration);
+    int chainLength = baseFile.exists() ? 1 : readDeltaHeader(baseFile).getChainLength() + 1;
+    if (chainLength >= keyframeInterval) {
+      return null;
+    }
+
+    ObjectNode state;
+    try (InputStream in = new BufferedInputStream(new FileInputStream(dataFile))) {
+      if (!StateDeltaCodec.isCompressedState(in)) {
+        return null;
+      }
+      state = StateDeltaCodec.readState(in);
+    }
+    ObjectNode base;
+    try {
+      base = readState(instanceDirectory, baseIteration);
+    } catch (IOException ex) {
+      // The base state is not a smile state.
+      return null;
+    }
+    ObjectNode delta = StateDeltaCodec.createDelta(base, state);
+    if (delta == null) {
+      return null;
+    }
+
+    ByteArrayOutputStream deltaOut = new ByteArrayOutputStream();
+    StateDeltaCodec.writeDelta(
+        new StateDeltaCodec.Header(baseIteration, chainLength), delta, deltaOut);
+    return deltaOut.size() < dataFile.length() ? deltaOut.toByteArray() : null;
+  }
+
+  /**
+   * Reads the state of the given iteration or reconstructs it from deltas.
+   */
+  private ObjectNode readState(File instanceDirectory, long iteration) throws IOException {
+    return readState(instanceDirectory, iteration, new ArrayList<>());
+  }
+
+  /**
+   * Reads the state of the given iteration or reconstructs it from deltas, and adds the files that
+   * were read to the given list.
+   */
+  private ObjectNode readState(File instanceDirectory, long iteration, List<File> sourceFiles)
+      throws IOException {
+    // Collect the deltas back to the nearest full state.
+    Deque<File> deltaFiles = new ArrayDeque<>();
+    File stateFile = getStateFile(instanceDirectory, iteration);
+    while (!stateFile.exists()) {
+      File deltaFile = getDeltaFile(stateFile);
+      if (!deltaFile.exists()) {
+        throw new FileNotFoundException(stateFile.getAbsolutePath());
+      }
+      deltaFiles.push(deltaFile);
+      stateFile = getStateFile(
+          instanceDirectory, readDeltaHeader(stateFile).getBaseIteration());
+    }
+    sourceFiles.add(stateFile);
+    sourceFiles.addAll(deltaFiles);
+
+    ObjectNode state;
+    try (InputStream in = new BufferedInputStream(new FileInputStream(stateFile))) {
+      state = StateDeltaCodec.readState(in);
+    }
+    for (File deltaFile : deltaFiles) {
+      try (InputStream in = new BufferedInputStream(new FileInputStream(deltaFile))) {
+        StateDeltaCodec.readHeader(in);
+        state = StateDeltaCodec.applyDelta(state, StateDeltaCodec.readDelta(in));
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Opens a state that is read from a single file.
+   */
+  private static StateInputStream openState(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    return new StateInputStream(in, getVersion(Collections.singletonList(file)));
+  }
+
+  /**
+   * Returns a version that identifies the contents of the given files.
+   */
+  private static String getVersion(List<File> files) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (File file : files) {
+      hasher.putString(file.getPath(), StandardCharsets.UTF_8)
+          .putLong(file.length())
+          .putLong(file.lastModified());
+    }
+    return hasher.hash().toString();
+  }
+
+  private StateDeltaCodec.Header readDeltaHeader(File stateFile) throws IOException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(getDeltaFile(stateFile)))) {
+      return StateDeltaCodec.readHeader(in);
+    }
+  }
+
+  /**
+   * Returns the greatest stored iteration of an instance that is less than the given iteration, or
+   * -1 if there is no such iteration. Only the directories of the iteration ranges up to the range
+   * of the given iteration are listed.
+   */
+  private static long getPreviousIteration(File instanceDirectory, long iteration) {
+    long directoryIndex = iteration / ITERATIONS_PER_DIRECTORY;
+    long previousIteration = getPreviousNumber(
+        new File(instanceDirectory, String.valueOf(directoryIndex)), iteration);
+    if (previousIteration >= 0) {
+      return previousIteration;
+    }
+
+    // Find the closest earlier iteration range directory.
+    long previousDirectoryIndex = getPreviousNumber(instanceDirectory, directoryIndex);
+    return previousDirectoryIndex >= 0 ? getPreviousNumber(
+        new File(instanceDirectory, String.valueOf(previousDirectoryIndex)), iteration) : -1;
+  }
+
+  /**
+   * Returns the greatest number less than the given value that names a file in the given
+   * directory, or -1 if there is no such file.
+   */
+  private static long getPreviousNumber(File directory, long value) {
+    long previousValue = -1;
+    String[] filenames = directory.list();
+    if (filenames == null) {
+      return previousValue;
+    }
+    for (String filename : filenames) {
+      String name = filename.endsWith(DELTA_SUFFIX)
+          ? filename.substring(0, filename.length() - DELTA_SUFFIX.length()) : filename;
+      try {
+        long fileValue = Long.parseLong(name);
+        if (fileValue < value && fileValue > previousValue) {
+          previousValue = fileValue;
+        }
+      } catch (NumberFormatException ignored) {}
+    }
+    return previousValue;
+  }
+
+  /**
+   * Moves the states of an instance that is stored in the previous directory layout to the sharded
+   * layout. A state is either in its previous or in its new location at any time, so the migration
+   * can be resumed if it is interrupted.
+   */
+  private synchronized void migrateLegacyInstance(String simulationId, String instanceId)
+      throws IOException {
+    File legacyDirectory = getLegacyInstanceDirectory(simulationId, instanceId);
+    File[] files = legacyDirectory.listFiles(File::isFile);
+    if (files == null) {
+      return;
+    }
+    File instanceDirectory = getShardedInstanceDirectory(simulationId, instanceId);
+    for (File file : files) {
+      String name = file.getName();
+      String iterationName = name.endsWith(DELTA_SUFFIX)
+          ? name.substring(0, name.length() - DELTA_SUFFIX.length()) : name;
+      long iteration;
+      try {
+        iteration = Long.parseLong(iterationName);
+      } catch (NumberFormatException ex) {
+        continue;
+      }
+      File targetFile = new File(getStateFile(instanceDirectory, iteration).getParentFile(), name);
+      targetFile.getParentFile().mkdirs();
+      Files.move(file.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      syncDirectory(targetFile.getParentFile());
+    }
+    FileUtils.deleteDirectory(legacyDirectory);
+    logger.info("Moved instance {} of simulation {} to the sharded layout", instanceId,
+        simulationId);
+  }
+
+  private static File getStateFile(File instanceDirectory, long iteration) {
+    File directory =
+        new File(instanceDirectory, String.valueOf(iteration / ITERATIONS_PER_DIRECTORY));
+    return new File(directory, String.valueOf(iteration));
+  }
+
+  /**
+   * Returns the iterations of the states in the given directory.
+   */
+  private static long[] listIterations(File directory) {
+    String[] filenames = directory.list();
+    if (filenames == null) {
+      return new long[0];
+    }
+    long[] iterations = new long[filenames.length];
+    int count = 0;
+    for (String filename : filenames) {
+      try {
+        iterations[count] = Long.parseLong(filename);
+        count++;
+      } catch (NumberFormatException ignored) {}
+    }
+    return Arrays.copyOf(iterations, count);
+  }
+
+  private static File getDeltaFile(File stateFile) {
+    return new File(stateFile.getParentFile(), stateFile.getName() + DELTA_SUFFIX);
+  }
+
   private String getSimulationPath(String simulationId) {
     return basePath + File.separator + simulationId;
   }
 
-  private String getInstancePath(String simulationId, String instanceId) {
-    // TODO(thorntonv): Balance directory structure for better scalability.
-    return getSimulationPath(simulationId) + File.separator + instanceId;
+  /**
+   * Returns the directory of an instance, moving the instance from the previous directory layout if
+   * necessary.
+   */
+  private File getInstanceDirectory(String simulationId, String instanceId) throws IOException {
+    if (getLegacyInstanceDirectory(simulationId, instanceId).exists()) {
+      migrateLegacyInstance(simulationId, instanceId);
+    }
+    return getShardedInstanceDirectory(simulationId, instanceId);
+  }
+
+  private File getShardedInstanceDirectory(String simulationId, String instanceId) {
+    String shard = String.format("%02x", Hashing.murmur3_32()
+        .hashString(instanceId, StandardCharsets.UTF_8).asInt() & 0xff);
+    return new File(getSimulationPath(simulationId) + File.separator + INSTANCES_DIRECTORY
+        + File.separator + shard + File.separator + instanceId);
+  }
+
+  private File getLegacyInstanceDirectory(String simulationId, String instanceId) {
+    return new File(getSimulationPath(simulationId) + File.separator + instanceId);
   }
 
-  private String getFilename(String simulationId, String instanceId, long iteration) {
-    // TODO(thorntonv): Balance directory structure for better scalability.
-    return getInstancePath(simulationId, instanceId) + File.separator + iteration;
+  private File getUploadFile(String uploadId) {
+    return new File(basePath + File.separator + UPLOADS_DIRECTORY, uploadId);
+  }
+
+  private File getStagedFile(String stagedStateId) {
+    if (!stagedStateId.startsWith(STAGED_STATE_PREFIX)
+        || !stagedStateId.equals(new File(stagedStateId).getName())) {
+      throw new IllegalArgumentException("Invalid staged state id " + stagedStateId);
+    }
+    return new File(getTempPath(), stagedStateId);
   }
 
   private String getTempPath() {
-    return basePath + File.separator + "temp";
+    return basePath + File.separator + TEMP_DIRECTORY;
+  }
+
+  private String getPendingPath() {
+    return basePath + File.separator + PENDING_DIRECTORY;
+  }
+
+  private File getPendingFile(String simulationId, String instanceId, long iteration) {
+    return new File(getPendingPath() + File.separator + simulationId + File.separator + instanceId,
+        String.valueOf(iteration));
+  }
+
+  private static String getTempPrefix(String simulationId, String instanceId, long iteration) {
+    return String.format("%s-%s-%s", simulationId, instanceId, iteration);
   }
 }
@@ -9,11 +9,12 @@ import java.io.InputStream;
 public interface MechaverseStorageService {
 
   /**
-   * Returns the state of the specified instance.
+   * Returns the state of the specified instance and the version of its data.
    *
    * @throws IOException if an error occurs while processing the request
    */
-  InputStream getState(String simulationId, String instanceId, long iteration) throws IOException;
+  StateInputStream getState(String simulationId, String instanceId, long iteration)
+      throws IOException;
 
   /**
    * Sets the state of the specified instance.
@@ -23,6 +24,60 @@ public interface MechaverseStorageService {
   void setState(String simulationId, String instanceId, long iteration, InputStream stateInput)
       throws IOException;
 
+  /**
+   * Stages a state that is not yet associated with an instance and iteration. The staged state is
+   * set with {@link #setStagedState} and must then be deleted with {@link #deleteStagedState}.
+   * Staged states are not durable until they are set.
+   *
+   * @return the id of the staged state
+   * @throws IOException if an error occurs while processing the request
+   */
+  String stageState(InputStream stateInput) throws IOException;
+
+  /**
+   * Sets the state of the specified instance to a state that was staged with {@link #stageState}.
+   * The staged state is moved rather than copied when possible.
+   *
+   * @throws IOException if an error occurs while processing the request
+   */
+  void setStagedState(String simulationId, String instanceId, long iteration,
+      String stagedStateId) throws IOException;
+
+  /**
+   * Deletes a staged state if it has not been set.
+   */
+  void deleteStagedState(String stagedStateId) throws IOException;
+
+  /**
+   * Returns the number of bytes of the specified upload that have been received.
+   *
+   * @throws IOException if an error occurs while processing the request
+   */
+  long getUploadLength(String uploadId) throws IOException;
+
+  /**
+   * Writes a chunk of the specified upload at the given offset. The chunk is discarded if its CRC32
+   * checksum does not match the given checksum or if the offset is beyond the received data. Data
+   * that was received after the offset is replaced.
+   *
+   * @return the number of bytes of the upload that have been received
+   * @throws IOException if an error occurs while processing the request
+   */
+  long writeUploadChunk(String uploadId, long offset, InputStream chunkInput, long checksum)
+      throws IOException;
+
+  /**
+   * Returns the data of the specified upload.
+   *
+   * @throws IOException if an error occurs while processing the request
+   */
+  InputStream getUpload(String uploadId) throws IOException;
+
+  /**
+   * Deletes an upload.
+   */
+  void deleteUpload(String uploadId) throws IOException;
+
   /**
    * Deletes a simulation.
    */
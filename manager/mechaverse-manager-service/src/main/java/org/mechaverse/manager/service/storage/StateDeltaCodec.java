@@ -0,0 +1,578 @@
+package org.mechaverse.manager.service.storage;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Creates and applies deltas between consecutive states of a simulation instance.
+ *
+ * <p>States are compressed smile serialized simulation models. They are read as generic trees, so
+ * the deltas do not depend on the model classes of a particular simulation. The entities of each
+ * environment are matched by id, or by type and location if they do not have an id. A delta
+ * contains the entities that were added, the changed properties and data entries of the entities
+ * that were modified, the keys of the entities that were removed, and the changed properties and
+ * data entries of the model. Since most entities and their genetic data do not change between
+ * consecutive iterations, a delta is typically much smaller than the state.
+ *
+ * <p>A delta file consists of a four byte magic number, a version byte, the base iteration, and the
+ * number of deltas between the base and the nearest full state, followed by the gzip compressed
+ * smile delta.
+ */
+public final class StateDeltaCodec {
+
+  /**
+   * The header of a delta file.
+   */
+  public static final class Header {
+
+    private final long baseIteration;
+    private final int chainLength;
+
+    public Header(long baseIteration, int chainLength) {
+      this.baseIteration = baseIteration;
+      this.chainLength = chainLength;
+    }
+
+    /**
+     * Returns the iteration of the state to which the delta is applied.
+     */
+    public long getBaseIteration() {
+      return baseIteration;
+    }
+
+    /**
+     * Returns the number of deltas that must be applied to the nearest full state to reconstruct
+     * the state, including this delta.
+     */
+    public int getChainLength() {
+      return chainLength;
+    }
+  }
+
+  public static final int VERSION = 1;
+
+  private static final byte[] MAGIC = {'M', 'V', 'S', 'D'};
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int BUFFER_SIZE = 128 * 1024;
+
+  private static final String ENVIRONMENT = "environment";
+  private static final String SUB_ENVIRONMENTS = "subEnvironments";
+  private static final String ENTITIES = "entities";
+  private static final String ID = "id";
+  private static final String TYPE = "@type";
+  private static final String X = "x";
+  private static final String Y = "y";
+  private static final String DATA = "data";
+
+  private static final String MODEL = "model";
+  private static final String ENVIRONMENTS = "environments";
+  private static final String ADDED = "added";
+  private static final String CHANGED = "changed";
+  private static final String REMOVED = "removed";
+  private static final String ORDER = "order";
+  private static final String KEY = "key";
+  private static final String ENTITY = "entity";
+  private static final String SET = "set";
+  private static final String UNSET = "unset";
+  private static final String SET_DATA = "setData";
+  private static final String XOR_DATA = "xorData";
+  private static final String UNSET_DATA = "unsetData";
+
+  private static final ObjectMapper objectMapper = newObjectMapper();
+
+  private StateDeltaCodec() {}
+
+  /**
+   * Returns true if the given stream begins with a gzip header and so may contain a state from which
+   * deltas can be created. The stream must support {@link InputStream#mark}.
+   */
+  public static boolean isCompressedState(InputStream in) throws IOException {
+    in.mark(2);
+    int b1 = in.read();
+    int b2 = in.read();
+    in.reset();
+    return b1 >= 0 && b2 >= 0 && (b1 | (b2 << 8)) == GZIP_MAGIC;
+  }
+
+  /**
+   * Reads a compressed smile state as a tree.
+   */
+  public static ObjectNode readState(InputStream in) throws IOException {
+    JsonNode state = objectMapper.readTree(new GZIPInputStream(in, BUFFER_SIZE));
+    if (!(state instanceof ObjectNode)) {
+      throw new IOException("Invalid state");
+    }
+    return (ObjectNode) state;
+  }
+
+  /**
+   * Writes a state tree as compressed smile. The stream is not closed.
+   */
+  public static void writeState(ObjectNode state, OutputStream out) throws IOException {
+    GZIPOutputStream gzipOut = new GZIPOutputStream(out, BUFFER_SIZE);
+    objectMapper.writeValue(gzipOut, state);
+    gzipOut.finish();
+  }
+
+  /**
+   * Returns a stream of the given state in the format written by {@link #writeState}. The state is
+   * encoded as the stream is read, so at most a few buffers of the encoded state are held in memory
+   * and no thread is needed to produce it.
+   */
+  public static InputStream newStateInputStream(ObjectNode state) throws IOException {
+    return new EncodingInputStream(state);
+  }
+
+  /**
+   * Returns true if the given stream begins with the header of a delta file. The stream must support
+   * {@link InputStream#mark}.
+   */
+  public static boolean isDelta(InputStream in) throws IOException {
+    byte[] header = new byte[MAGIC.length];
+    in.mark(header.length);
+    int length = 0;
+    int count;
+    while (length < header.length
+        && (count = in.read(header, length, header.length - length)) > 0) {
+      length += count;
+    }
+    in.reset();
+    if (length < header.length) {
+      return false;
+    }
+    for (int idx = 0; idx < MAGIC.length; idx++) {
+      if (header[idx] != MAGIC[idx]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the header of a delta file.
+   */
+  public static Header readHeader(InputStream in) throws IOException {
+    DataInputStream dataIn = new DataInputStream(in);
+    byte[] magic = new byte[MAGIC.length];
+    dataIn.readFully(magic);
+    for (int idx = 0; idx < MAGIC.length; idx++) {
+      if (magic[idx] != MAGIC[idx]) {
+        throw new IOException("Invalid delta header");
+      }
+    }
+    int version = dataIn.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported delta version " + version);
+    }
+    return new Header(dataIn.readLong(), dataIn.readInt());
+  }
+
+  /**
+   * Reads the delta that follows the header of a delta file.
+   */
+  public static ObjectNode readDelta(InputStream in) throws IOException {
+    return (ObjectNode) objectMapper.readTree(
+        new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE));
+  }
+
+  /**
+   * Writes a delta file. The stream is not closed.
+   */
+  public static void writeDelta(Header header, ObjectNode delta, OutputStream out)
+      throws IOException {
+    DataOutputStream dataOut = new DataOutputStream(out);
+    dataOut.write(MAGIC);
+    dataOut.writeByte(VERSION);
+    dataOut.writeLong(header.getBaseIteration());
+    dataOut.writeInt(header.getChainLength());
+    dataOut.flush();
+    GZIPOutputStream gzipOut = new GZIPOutputStream(out, BUFFER_SIZE);
+    objectMapper.writeValue(gzipOut, delta);
+    gzipOut.finish();
+  }
+
+  /**
+   * Creates a delta that transforms the base state into the given state. Returns null if a delta
+   * cannot be created because the states do not have the same number of environments. Neither state
+   * is modified.
+   */
+  public static ObjectNode createDelta(ObjectNode base, ObjectNode state) {
+    // The entities are removed while the models are compared and then restored.
+    List<ArrayNode> baseEntities = removeEntities(base);
+    List<ArrayNode> stateEntities = removeEntities(state);
+    try {
+      if (baseEntities.size() != stateEntities.size()) {
+        return null;
+      }
+
+      ObjectNode delta = objectMapper.createObjectNode();
+      delta.set(MODEL, diff(base, state));
+      ArrayNode environmentDeltas = delta.putArray(ENVIRONMENTS);
+      for (int idx = 0; idx < baseEntities.size(); idx++) {
+        environmentDeltas.add(
+            createEnvironmentDelta(baseEntities.get(idx), stateEntities.get(idx)));
+      }
+      return delta;
+    } finally {
+      restoreEntities(base, baseEntities);
+      restoreEntities(state, stateEntities);
+    }
+  }
+
+  /**
+   * Applies a delta to the given base state. The base state is modified and returned.
+   */
+  public static ObjectNode applyDelta(ObjectNode base, ObjectNode delta) throws IOException {
+    List<ArrayNode> baseEntities = removeEntities(base);
+    JsonNode environmentDeltas = delta.path(ENVIRONMENTS);
+    if (environmentDeltas.size() != baseEntities.size()) {
+      throw new IOException("Expected " + baseEntities.size() + " environment deltas but found "
+          + environmentDeltas.size());
+    }
+    applyDiff(base, (ObjectNode) delta.get(MODEL));
+
+    List<ObjectNode> environments = getEnvironmentNodes(base);
+    if (environments.size() != baseEntities.size()) {
+      throw new IOException("The environments of the base state do not match the delta");
+    }
+    for (int idx = 0; idx < environments.size(); idx++) {
+      environments.get(idx).set(ENTITIES,
+          applyEnvironmentDelta(baseEntities.get(idx), environmentDeltas.get(idx)));
+    }
+    return base;
+  }
+
+  private static ObjectNode createEnvironmentDelta(ArrayNode baseEntities, ArrayNode entities) {
+    Map<String, ObjectNode> baseEntitiesByKey = indexByKey(baseEntities);
+    Map<String, ObjectNode> entitiesByKey = indexByKey(entities);
+
+    ObjectNode delta = objectMapper.createObjectNode();
+    ArrayNode removed = delta.putArray(REMOVED);
+    ArrayNode changed = delta.putArray(CHANGED);
+    ArrayNode added = delta.putArray(ADDED);
+    // The order in which the entities will be reconstructed.
+    List<String> order = new ArrayList<>();
+    for (Map.Entry<String, ObjectNode> entry : baseEntitiesByKey.entrySet()) {
+      ObjectNode entity = entitiesByKey.get(entry.getKey());
+      if (entity == null) {
+        removed.add(entry.getKey());
+        continue;
+      }
+      order.add(entry.getKey());
+      if (!entity.equals(entry.getValue())) {
+        ObjectNode entityDiff = diff(entry.getValue(), entity);
+        entityDiff.put(KEY, entry.getKey());
+        changed.add(entityDiff);
+      }
+    }
+    for (Map.Entry<String, ObjectNode> entry : entitiesByKey.entrySet()) {
+      if (!baseEntitiesByKey.containsKey(entry.getKey())) {
+        ObjectNode addedEntity = added.addObject();
+        addedEntity.put(KEY, entry.getKey());
+        addedEntity.set(ENTITY, entry.getValue());
+        order.add(entry.getKey());
+      }
+    }
+    if (!order.equals(new ArrayList<>(entitiesByKey.keySet()))) {
+      ArrayNode orderNode = delta.putArray(ORDER);
+      entitiesByKey.keySet().forEach(orderNode::add);
+    }
+    return delta;
+  }
+
+  private static ArrayNode applyEnvironmentDelta(ArrayNode baseEntities, JsonNode delta)
+      throws IOException {
+    Map<String, ObjectNode> entitiesByKey = indexByKey(baseEntities);
+    for (JsonNode key : delta.path(REMOVED)) {
+      entitiesByKey.remove(key.asText());
+    }
+    for (JsonNode entityDiff : delta.path(CHANGED)) {
+      ObjectNode entity = entitiesByKey.get(entityDiff.path(KEY).asText());
+      if (entity == null) {
+        throw new IOException("Changed entity " + entityDiff.path(KEY).asText() + " not found");
+      }
+      applyDiff(entity, (ObjectNode) entityDiff);
+    }
+    for (JsonNode addedEntity : delta.path(ADDED)) {
+      entitiesByKey.put(addedEntity.path(KEY).asText(), (ObjectNode) addedEntity.get(ENTITY));
+    }
+
+    ArrayNode entities = objectMapper.createArrayNode();
+    if (delta.has(ORDER)) {
+      for (JsonNode key : delta.get(ORDER)) {
+        entities.add(entitiesByKey.get(key.asText()));
+      }
+    } else {
+      entities.addAll(entitiesByKey.values());
+    }
+    return entities;
+  }
+
+  /**
+   * Returns the changes that transform the given base object into the given object. Data entries
+   * are compared individually, and binary values that have the same length as their base value are
+   * stored as the exclusive or of the values. The id of the object is not included.
+   */
+  private static ObjectNode diff(ObjectNode base, ObjectNode object) {
+    ObjectNode diff = objectMapper.createObjectNode();
+    ObjectNode set = diff.putObject(SET);
+    ArrayNode unset = diff.putArray(UNSET);
+    Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      if (!field.getKey().equals(DATA) && !field.getValue().equals(base.get(field.getKey()))) {
+        set.set(field.getKey(), field.getValue());
+      }
+    }
+    base.fieldNames().forEachRemaining(name -> {
+      if (!name.equals(DATA) && !object.has(name)) {
+        unset.add(name);
+      }
+    });
+
+    JsonNode baseData = base.path(DATA);
+    JsonNode data = object.path(DATA);
+    ObjectNode setData = diff.putObject(SET_DATA);
+    ObjectNode xorData = diff.putObject(XOR_DATA);
+    ArrayNode unsetData = diff.putArray(UNSET_DATA);
+    data.fields().forEachRemaining(entry -> {
+      JsonNode value = entry.getValue();
+      JsonNode baseValue = baseData.get(entry.getKey());
+      if (value.equals(baseValue)) {
+        return;
+      }
+      // Most of the bytes of an updated automaton state are unchanged, so the exclusive or of the
+      // values is mostly zeros and compresses well.
+      byte[] xor = value.isBinary() && baseValue != null && baseValue.isBinary()
+          ? xor(binaryValue(baseValue), binaryValue(value)) : null;
+      if (xor != null) {
+        xorData.put(entry.getKey(), xor);
+      } else {
+        setData.set(entry.getKey(), value);
+      }
+    });
+    baseData.fieldNames().forEachRemaining(key -> {
+      if (!data.has(key)) {
+        unsetData.add(key);
+      }
+    });
+    if (base.has(DATA) && !object.has(DATA)) {
+      unset.add(DATA);
+    }
+
+    // Omit empty changes.
+    for (String name : new String[] {SET, UNSET, SET_DATA, XOR_DATA, UNSET_DATA}) {
+      if (diff.get(name).size() == 0) {
+        diff.remove(name);
+      }
+    }
+    return diff;
+  }
+
+  private static void applyDiff(ObjectNode object, ObjectNode diff) throws IOException {
+    diff.path(SET).fields().forEachRemaining(field -> object.set(field.getKey(), field.getValue()));
+    diff.path(UNSET).forEach(name -> object.remove(name.asText()));
+    if (diff.path(SET_DATA).size() == 0 && diff.path(XOR_DATA).size() == 0
+        && diff.path(UNSET_DATA).size() == 0) {
+      return;
+    }
+
+    JsonNode data = object.get(DATA);
+    ObjectNode dataObject = data instanceof ObjectNode ? (ObjectNode) data : object.putObject(DATA);
+    diff.path(SET_DATA).fields().forEachRemaining(
+        entry -> dataObject.set(entry.getKey(), entry.getValue()));
+    Iterator<Map.Entry<String, JsonNode>> xorEntries = diff.path(XOR_DATA).fields();
+    while (xorEntries.hasNext()) {
+      Map.Entry<String, JsonNode> entry = xorEntries.next();
+      JsonNode baseValue = dataObject.get(entry.getKey());
+      byte[] value = baseValue != null && baseValue.isBinary()
+          ? xor(binaryValue(baseValue), binaryValue(entry.getValue())) : null;
+      if (value == null) {
+        throw new IOException("Unable to apply the delta of data entry " + entry.getKey());
+      }
+      dataObject.put(entry.getKey(), value);
+    }
+    diff.path(UNSET_DATA).forEach(key -> dataObject.remove(key.asText()));
+  }
+
+  /**
+   * Returns the exclusive or of the given arrays, or null if they do not have the same length.
+   */
+  private static byte[] xor(byte[] value1, byte[] value2) {
+    if (value1.length != value2.length) {
+      return null;
+    }
+    byte[] result = new byte[value1.length];
+    for (int idx = 0; idx < result.length; idx++) {
+      result[idx] = (byte) (value1[idx] ^ value2[idx]);
+    }
+    return result;
+  }
+
+  private static byte[] binaryValue(JsonNode value) {
+    return ((BinaryNode) value).binaryValue();
+  }
+
+  /**
+   * Returns the entities of the given array in order indexed by a unique key. Entities are
+   * identified by id. Entities that do not have an id, such as food and obstacles, are identified by
+   * their type and location and then by their order.
+   */
+  private static Map<String, ObjectNode> indexByKey(ArrayNode entities) {
+    Map<String, ObjectNode> entitiesByKey = new LinkedHashMap<>();
+    for (JsonNode entity : entities) {
+      JsonNode id = entity.get(ID);
+      String key = id != null && id.isTextual() ? id.asText()
+          : entity.path(TYPE).asText() + "@" + entity.path(X).asText() + ","
+              + entity.path(Y).asText();
+      String uniqueKey = key;
+      for (int count = 1; entitiesByKey.containsKey(uniqueKey); count++) {
+        uniqueKey = key + "#" + count;
+      }
+      entitiesByKey.put(uniqueKey, (ObjectNode) entity);
+    }
+    return entitiesByKey;
+  }
+
+  /**
+   * Removes and returns the entities of each environment of the given state.
+   */
+  private static List<ArrayNode> removeEntities(ObjectNode state) {
+    List<ArrayNode> environmentEntities = new ArrayList<>();
+    for (ObjectNode environment : getEnvironmentNodes(state)) {
+      JsonNode entities = environment.remove(ENTITIES);
+      environmentEntities.add(entities instanceof ArrayNode
+          ? (ArrayNode) entities : objectMapper.createArrayNode());
+    }
+    return environmentEntities;
+  }
+
+  private static void restoreEntities(ObjectNode state, List<ArrayNode> environmentEntities) {
+    List<ObjectNode> environments = getEnvironmentNodes(state);
+    for (int idx = 0; idx < environments.size(); idx++) {
+      environments.get(idx).set(ENTITIES, environmentEntities.get(idx));
+    }
+  }
+
+  private static List<ObjectNode> getEnvironmentNodes(ObjectNode state) {
+    List<ObjectNode> environments = new ArrayList<>();
+    if (state.get(ENVIRONMENT) instanceof ObjectNode) {
+      environments.add((ObjectNode) state.get(ENVIRONMENT));
+    }
+    for (JsonNode environment : state.path(SUB_ENVIRONMENTS)) {
+      if (environment instanceof ObjectNode) {
+        environments.add((ObjectNode) environment);
+      }
+    }
+    return environments;
+  }
+
+  /**
+   * An {@link InputStream} that encodes a state on demand. Each read copies tokens from a traversal
+   * of the state tree to a compressing generator until encoded bytes are available.
+   */
+  private static final class EncodingInputStream extends InputStream {
+
+    private final JsonParser parser;
+    private final EncodedBuffer encoded = new EncodedBuffer();
+    private final GZIPOutputStream gzipOut;
+    private final JsonGenerator generator;
+    private int position;
+    private boolean finished;
+
+    EncodingInputStream(ObjectNode state) throws IOException {
+      this.parser = state.traverse(objectMapper);
+      this.gzipOut = new GZIPOutputStream(encoded, BUFFER_SIZE);
+      this.generator = objectMapper.getFactory().createGenerator(gzipOut);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] buffer = new byte[1];
+      return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (position == encoded.size()) {
+        if (finished) {
+          return -1;
+        }
+        encoded.reset();
+        position = 0;
+        encodeNext();
+      }
+      int count = Math.min(length, encoded.size() - position);
+      System.arraycopy(encoded.getBuffer(), position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return encoded.size() - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+      finished = true;
+      parser.close();
+    }
+
+    /**
+     * Encodes tokens until the compressed output is non-empty or the state has been encoded.
+     */
+    private void encodeNext() throws IOException {
+      while (encoded.size() == 0) {
+        if (parser.nextToken() == null) {
+          generator.close();
+          gzipOut.finish();
+          finished = true;
+          return;
+        }
+        generator.copyCurrentEvent(parser);
+      }
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its buffer so that it can be read without
+   * a copy.
+   */
+  private static final class EncodedBuffer extends ByteArrayOutputStream {
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
+  private static ObjectMapper newObjectMapper() {
+    ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+    objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    objectMapper.getFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    return objectMapper;
+  }
+}
@@ -0,0 +1,24 @@
+package org.mechaverse.manager.service.storage;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * The data of a stored state and a version that identifies the data. Two streams of a state that
+ * have the same version return the same bytes, so the version can be used to verify that a
+ * download that is resumed at an offset continues the same data.
+ */
+public class StateInputStream extends FilterInputStream {
+
+  private final String version;
+
+  public StateInputStream(InputStream in, String version) {
+    super(Objects.requireNonNull(in));
+    this.version = Objects.requireNonNull(version);
+  }
+
+  public String getVersion() {
+    return version;
+  }
+}
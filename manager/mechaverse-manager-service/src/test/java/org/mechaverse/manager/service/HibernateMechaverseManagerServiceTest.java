@@ -7,14 +7,22 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteStreams;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -38,6 +46,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 
 
@@ -51,6 +60,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 @EntityScan(basePackageClasses = {SimulationInfo.class})
 @EnableJpaRepositories(basePackageClasses = {SimulationInfoRepository.class})
 @AutoConfigureTestDatabase(replace = Replace.NONE)
+// The native queries of the repositories depend on the naming strategy of the manager app.
+@TestPropertySource(properties = "spring.jpa.hibernate.naming.physical-strategy="
+    + "org.hibernate.boot.model.naming.PhysicalNamingStrategyStandardImpl")
 public class HibernateMechaverseManagerServiceTest {
 
   private static final String TEST_CLIENT_ID = "test-client";
@@ -190,15 +202,92 @@ public class HibernateMechaverseManagerServiceTest {
 
     verifyNoObjects(taskRepository);
 
-    // Verify that the state was sent to the storage service.
-
+    // Verify that the state was staged and then set in the storage service. The storage service
+    // is shared by the tests, so it may have staged other states.
     ArgumentCaptor<InputStream> stateInputCaptor = ArgumentCaptor.forClass(InputStream.class);
-    verify(mockStorageService).setState(
-        eq(task.getSimulationId()), eq(task.getInstanceId()), eq(instanceInfo.getIteration()),
-        stateInputCaptor.capture());
+    verify(mockStorageService, atLeastOnce()).stageState(stateInputCaptor.capture());
+    assertTrue(stateInputCaptor.getAllValues().contains(resultDataInput));
+    verify(mockStorageService).setStagedState(eq(task.getSimulationId()),
+        eq(task.getInstanceId()), eq(instanceInfo.getIteration()), any(String.class));
+    assertArrayEquals(resultData, ByteStreams.toByteArray(resultDataInput));
+  }
+
+  @Test
+  public void releaseTasks() {
+    SimulationInfo simulationInfo = service.createSimulation("test");
+    simulationInfo.getConfig().setMaxInstanceCount(1);
+    simulationInfo.getConfig().setTaskIterationCount(60 * 300);
+    simulationInfo.getConfig().setTaskMaxDurationInSeconds(300);
+    service.updateSimulationConfig(simulationInfo.getConfig());
+
+    Task task = service.getTask(TEST_CLIENT_ID);
+    assertNull(service.getTask(TEST_CLIENT_ID));
+    service.releaseTasks(Collections.singletonList(task));
+
+    // The task is removed and its instance is scheduled again without advancing its iteration.
+    assertNull(taskRepository.findOne(task.getId()));
+    InstanceInfo instanceInfo = instanceInfoRepository.findOne(task.getInstanceId());
+    assertEquals(-1, instanceInfo.getIteration());
+    assertEquals(0, instanceInfo.getExecutingTasks().size());
+    Task nextTask = service.getTask(TEST_CLIENT_ID);
+    assertNotNull(nextTask);
+    assertEquals(task.getInstanceId(), nextTask.getInstanceId());
+  }
+
+  @Test
+  public void submitResult_storageFailure() throws Exception {
+    SimulationInfo simulationInfo = service.createSimulation("test");
+    simulationInfo.getConfig().setMaxInstanceCount(1);
+    service.updateSimulationConfig(simulationInfo.getConfig());
+
+    Task task = service.getTask(TEST_CLIENT_ID);
+    doThrow(new IOException("Disk full")).when(mockStorageService).setStagedState(
+        eq(task.getSimulationId()), eq(task.getInstanceId()), anyLong(), any(String.class));
+    try {
+      service.submitResult(task.getId(), new ByteArrayInputStream("state".getBytes()));
+      fail("Expected exception was not thrown.");
+    } catch (IOException ex) {
+      // Expected.
+    }
+
+    // The iteration is not advanced and the task is still executing.
+    InstanceInfo instanceInfo = instanceInfoRepository.findOne(task.getInstanceId());
+    assertEquals(-1, instanceInfo.getIteration());
+    assertEquals(1, instanceInfo.getExecutingTasks().size());
+    assertNotNull(taskRepository.findOne(task.getId()));
+  }
 
-    InputStream stateInput = stateInputCaptor.getValue();
-    assertArrayEquals(resultData, ByteStreams.toByteArray(stateInput));
+  @Test
+  public void uploadResultChunk() throws Exception {
+    SimulationInfo simulationInfo = service.createSimulation("test");
+    simulationInfo.getConfig().setMaxInstanceCount(1);
+    service.updateSimulationConfig(simulationInfo.getConfig());
+
+    byte[] resultData = "simulation state".getBytes();
+    Task task = service.getTask(TEST_CLIENT_ID);
+    String uploadId = "result-" + task.getId();
+    when(mockStorageService.writeUploadChunk(eq(uploadId), eq(0L), any(InputStream.class),
+        anyLong())).thenReturn(10L);
+    when(mockStorageService.writeUploadChunk(eq(uploadId), eq(10L), any(InputStream.class),
+        anyLong())).thenReturn((long) resultData.length);
+    when(mockStorageService.getUpload(uploadId))
+        .thenReturn(new ByteArrayInputStream(resultData));
+
+    assertEquals(10, service.uploadResultChunk(
+        task.getId(), 0, resultData.length, 0, new ByteArrayInputStream(resultData, 0, 10)));
+    assertNotNull(taskRepository.findOne(task.getId()));
+
+    // The result is submitted when the last chunk is received.
+    assertEquals(resultData.length, service.uploadResultChunk(
+        task.getId(), 10, resultData.length, 0, new ByteArrayInputStream(resultData, 10, 6)));
+    assertNull(taskRepository.findOne(task.getId()));
+    verify(mockStorageService).setStagedState(eq(task.getSimulationId()),
+        eq(task.getInstanceId()), eq(0L), any(String.class));
+    verify(mockStorageService).deleteUpload(uploadId);
+
+    // Chunks for a task that no longer exists are not needed.
+    assertEquals(resultData.length, service.uploadResultChunk(
+        task.getId(), 0, resultData.length, 0, new ByteArrayInputStream(resultData)));
   }
 
   @Test
@@ -243,17 +332,41 @@ public class HibernateMechaverseManagerServiceTest {
     assertEquals(60 * 300, task.getIteration());
   }
 
+  @Test
+  public void getTasks() throws Exception {
+    SimulationInfo simulationInfo = service.createSimulation("test");
+    simulationInfo.getConfig().setMaxInstanceCount(3);
+    simulationInfo.getConfig().setTaskIterationCount(60 * 300);
+    simulationInfo.getConfig().setTaskMaxDurationInSeconds(300);
+    service.updateSimulationConfig(simulationInfo.getConfig());
+
+    List<Task> tasks = service.getTasks(TEST_CLIENT_ID, 2);
+    assertEquals(2, tasks.size());
+    assertNotEquals(tasks.get(0).getInstanceId(), tasks.get(1).getInstanceId());
+
+    tasks = service.getTasks(TEST_CLIENT_ID, 2);
+    assertEquals(1, tasks.size());
+    assertEquals(0, service.getTasks(TEST_CLIENT_ID, 2).size());
+
+    service.submitResult(tasks.get(0).getId(), new ByteArrayInputStream("state".getBytes()));
+    tasks = service.getTasks(TEST_CLIENT_ID, 2);
+    assertEquals(1, tasks.size());
+    assertEquals(0, tasks.get(0).getIteration());
+    assertEquals(3, service.getSimulationInfo(simulationInfo.getSimulationId())
+        .getInstances().size());
+  }
+
   @Test
   public void getTask_inactiveTask() {
     SimulationInfo simulationInfo = service.createSimulation("test");
     simulationInfo.getConfig().setMaxInstanceCount(1);
     simulationInfo.getConfig().setTaskIterationCount(60 * 300);
-    simulationInfo.getConfig().setTaskMaxDurationInSeconds(300);
+    simulationInfo.getConfig().setTaskMaxDurationInSeconds(0);
     service.updateSimulationConfig(simulationInfo.getConfig());
 
+    // The task expires immediately.
     Task task = service.getTask(TEST_CLIENT_ID);
-    task.setStartTimeMillis(task.getStartTimeMillis() - 600 * 1000);
-    taskRepository.save(task);
+    assertNotNull(task);
 
     simulationInfo = service.getSimulationInfo(simulationInfo.getSimulationId());
     InstanceInfo instanceInfo = Iterables.getOnlyElement(simulationInfo.getInstances());
@@ -264,6 +377,50 @@ public class HibernateMechaverseManagerServiceTest {
     assertEquals(-1, task.getIteration());
   }
 
+  @Test
+  public void removeExpiredTasks() {
+    SimulationInfo simulationInfo = service.createSimulation("test");
+    simulationInfo.getConfig().setMaxInstanceCount(2);
+    simulationInfo.getConfig().setTaskIterationCount(60 * 300);
+    simulationInfo.getConfig().setTaskMaxDurationInSeconds(300);
+    service.updateSimulationConfig(simulationInfo.getConfig());
+
+    List<Task> tasks = service.getTasks(TEST_CLIENT_ID, 2);
+    assertEquals(2, tasks.size());
+    Task expiredTask = tasks.get(0);
+    assertEquals(expiredTask.getStartTimeMillis() + 300 * 1000,
+        (long) expiredTask.getDeadlineMillis());
+    assertEquals(0, service.removeExpiredTasks());
+
+    expiredTask.setDeadlineMillis(System.currentTimeMillis() - 1);
+    taskRepository.save(expiredTask);
+    assertEquals(1, service.removeExpiredTasks());
+    assertNull(taskRepository.findOne(expiredTask.getId()));
+    assertNotNull(taskRepository.findOne(tasks.get(1).getId()));
+    assertTrue(instanceInfoRepository.findOne(expiredTask.getInstanceId())
+        .getExecutingTasks().isEmpty());
+  }
+
+  @Test
+  public void removeExpiredTasks_noDeadline() {
+    SimulationInfo simulationInfo = service.createSimulation("test");
+    simulationInfo.getConfig().setMaxInstanceCount(1);
+    simulationInfo.getConfig().setTaskIterationCount(60 * 300);
+    simulationInfo.getConfig().setTaskMaxDurationInSeconds(300);
+    service.updateSimulationConfig(simulationInfo.getConfig());
+
+    // A task that was created before deadlines were recorded.
+    Task task = service.getTask(TEST_CLIENT_ID);
+    task.setDeadlineMillis(null);
+    taskRepository.save(task);
+
+    assertEquals(1, service.removeExpiredTasks());
+    assertNull(taskRepository.findOne(task.getId()));
+    assertTrue(instanceInfoRepository.findOne(task.getInstanceId())
+        .getExecutingTasks().isEmpty());
+    assertNotNull(service.getTask(TEST_CLIENT_ID));
+  }
+
   @Test
   public void getTask_simulationMaxTasks() {
     SimulationInfo simulationInfo = service.createSimulation("test");
@@ -0,0 +1,233 @@
+package org.mechaverse.manager.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.mechaverse.manager.service.model.SimulationConfig;
+
+/**
+ * Unit test for {@link TaskSchedulingIndex}.
+ */
+public class TaskSchedulingIndexTest {
+
+  private static final long NOW = 1000000;
+
+  private TaskSchedulingIndex index;
+
+  @Before
+  public void setUp() {
+    index = new TaskSchedulingIndex();
+    index.putSimulation("sim1", true, newConfig(1L, 2, 60));
+  }
+
+  @Test
+  public void lease() {
+    index.addInstance("sim1", "instance1", null);
+
+    TaskSchedulingIndex.Lease lease = index.lease("client1", NOW);
+    assertNotNull(lease);
+    assertEquals("sim1", lease.getSimulationId());
+    assertEquals("instance1", lease.getInstanceId());
+    assertEquals(NOW + 60 * 1000, lease.getDeadlineMillis());
+    assertSame(lease, index.getLease("instance1"));
+    assertNull(index.lease("client2", NOW));
+  }
+
+  @Test
+  public void lease_preferredClient() {
+    index.putSimulation("sim2", true, newConfig(2L, 2, 60));
+    index.addInstance("sim1", "instance1", "client1");
+    index.addInstance("sim2", "instance2", "client2");
+
+    assertEquals("instance2", index.lease("CLIENT2", NOW).getInstanceId());
+    assertEquals("instance1", index.lease("client2", NOW).getInstanceId());
+    assertNull(index.lease("client1", NOW));
+  }
+
+  @Test
+  public void lease_roundRobin() {
+    index.putSimulation("sim2", true, newConfig(2L, 2, 60));
+    index.addInstance("sim1", "instance1", null);
+    index.addInstance("sim1", "instance2", null);
+    index.addInstance("sim2", "instance3", null);
+    index.addInstance("sim2", "instance4", null);
+
+    Set<String> simulationIds = new HashSet<>();
+    simulationIds.add(index.lease("client1", NOW).getSimulationId());
+    simulationIds.add(index.lease("client1", NOW).getSimulationId());
+    assertEquals(2, simulationIds.size());
+    assertNotNull(index.lease("client1", NOW));
+    assertNotNull(index.lease("client1", NOW));
+    assertNull(index.lease("client1", NOW));
+  }
+
+  @Test
+  public void lease_queuesDoNotGrow() {
+    index.addInstance("sim1", "instance1", "client1");
+    assertEquals(2, index.getQueuedEntryCount());
+
+    // The entry in the queue of the simulation is kept while the instance is leased by its
+    // preferred client, and is not added again when the instance is released.
+    for (int cnt = 0; cnt < 100; cnt++) {
+      TaskSchedulingIndex.Lease lease = index.lease("client1", NOW);
+      assertEquals(1, index.getQueuedEntryCount());
+      assertTrue(index.release(lease));
+    }
+    assertEquals(2, index.getQueuedEntryCount());
+
+    // An entry of an instance that is leased from the other queue is skipped.
+    TaskSchedulingIndex.Lease lease = index.lease("client2", NOW);
+    assertEquals(1, index.getQueuedEntryCount());
+    assertNull(index.lease("client1", NOW));
+    assertEquals(0, index.getQueuedEntryCount());
+    assertTrue(index.release(lease));
+    assertEquals(2, index.getQueuedEntryCount());
+  }
+
+  @Test
+  public void prune() {
+    index.putSimulation("sim2", true, newConfig(2L, 2, 60));
+    index.addInstance("sim1", "instance1", "client1");
+    index.addInstance("sim2", "instance2", "client2");
+    index.removeSimulation("sim2");
+
+    index.prune();
+    assertEquals(1, index.getClientQueueCount());
+    assertEquals(2, index.getQueuedEntryCount());
+
+    // The entry of the leased instance in the queue of its simulation is kept.
+    index.lease("client1", NOW);
+    index.prune();
+    assertEquals(0, index.getClientQueueCount());
+    assertEquals(1, index.getQueuedEntryCount());
+  }
+
+  @Test
+  public void lease_inactiveSimulation() {
+    index.addInstance("sim1", "instance1", "client1");
+    index.setActive("sim1", false);
+    assertNull(index.lease("client1", NOW));
+
+    index.setActive("sim1", true);
+    assertEquals("instance1", index.lease("client1", NOW).getInstanceId());
+  }
+
+  @Test
+  public void lease_expired() {
+    index.addInstance("sim1", "instance1", null);
+    TaskSchedulingIndex.Lease lease = index.lease("client1", NOW);
+
+    assertNull(index.lease("client2", lease.getDeadlineMillis() - 1));
+    TaskSchedulingIndex.Lease expiredLease = index.lease("client2", lease.getDeadlineMillis());
+    assertEquals("instance1", expiredLease.getInstanceId());
+    assertFalse(index.release(lease));
+  }
+
+  @Test
+  public void release() {
+    index.addInstance("sim1", "instance1", null);
+    TaskSchedulingIndex.Lease lease = index.lease("client1", NOW);
+
+    assertTrue(index.release(lease));
+    assertNull(index.getLease("instance1"));
+    assertFalse(index.release(lease));
+    assertEquals("instance1", index.lease("client1", NOW).getInstanceId());
+    assertNull(index.lease("client1", NOW));
+  }
+
+  @Test
+  public void extend() {
+    index.addInstance("sim1", "instance1", null);
+    TaskSchedulingIndex.Lease lease = index.lease("client1", NOW);
+
+    TaskSchedulingIndex.Lease extendedLease = index.extend(lease, NOW + 120 * 1000);
+    assertNotNull(extendedLease);
+    assertNull(index.lease("client1", lease.getDeadlineMillis()));
+    assertNotNull(index.lease("client1", extendedLease.getDeadlineMillis()));
+    assertNull(index.extend(lease, NOW));
+  }
+
+  @Test
+  public void reserveInstance() {
+    index.addInstance("sim1", "instance1", null);
+
+    TaskSchedulingIndex.SimulationEntry simulation = index.reserveInstance();
+    assertNotNull(simulation);
+    assertEquals("sim1", simulation.getSimulationId());
+    assertNull(index.reserveInstance());
+
+    index.cancelReservation(simulation);
+    simulation = index.reserveInstance();
+    TaskSchedulingIndex.Lease lease =
+        index.addReservedInstance(simulation, "instance2", "client1", NOW + 1000);
+    assertSame(lease, index.getLease("instance2"));
+    assertNull(index.reserveInstance());
+
+    index.removeInstance("instance2");
+    assertNull(index.getLease("instance2"));
+    assertNotNull(index.reserveInstance());
+  }
+
+  @Test
+  public void updateConfig() {
+    index.addInstance("sim1", "instance1", null);
+    index.updateConfig(newConfig(1L, 2, 120));
+
+    assertEquals(NOW + 120 * 1000, index.lease("client1", NOW).getDeadlineMillis());
+  }
+
+  @Test
+  public void removeSimulation() {
+    index.addInstance("sim1", "instance1", null);
+    index.removeSimulation("sim1");
+
+    assertNull(index.lease("client1", NOW));
+    assertNull(index.reserveInstance());
+  }
+
+  @Test
+  public void lease_concurrent() throws Exception {
+    int instanceCount = 1000;
+    index.putSimulation("sim2", true, newConfig(2L, instanceCount, 60));
+    for (int cnt = 0; cnt < instanceCount; cnt++) {
+      index.addInstance("sim2", "instance" + cnt, "client" + (cnt % 4));
+    }
+
+    Set<String> leasedInstances = new HashSet<>();
+    Thread[] threads = new Thread[4];
+    for (int idx = 0; idx < threads.length; idx++) {
+      String clientId = "client" + idx;
+      threads[idx] = new Thread(() -> {
+        TaskSchedulingIndex.Lease lease;
+        while ((lease = index.lease(clientId, NOW)) != null) {
+          synchronized (leasedInstances) {
+            assertTrue(leasedInstances.add(lease.getInstanceId()));
+          }
+        }
+      });
+      threads[idx].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(instanceCount, leasedInstances.size());
+  }
+
+  private static SimulationConfig newConfig(long id, int maxInstanceCount,
+      long taskMaxDurationSeconds) {
+    SimulationConfig config = new SimulationConfig();
+    config.setId(id);
+    config.setMaxInstanceCount(maxInstanceCount);
+    config.setTaskIterationCount(100);
+    config.setTaskMaxDurationInSeconds(taskMaxDurationSeconds);
+    return config;
+  }
+}
@@ -0,0 +1,122 @@
+package org.mechaverse.manager.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mechaverse.manager.service.model.Task;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit test for {@link TaskWaitQueue}.
+ */
+public class TaskWaitQueueTest {
+
+  private MechaverseManagerService mockManagerService;
+  private Runnable taskAvailabilityListener;
+  private TaskWaitQueue queue;
+
+  @Before
+  public void setUp() {
+    mockManagerService = mock(MechaverseManagerService.class);
+    when(mockManagerService.getTasks("client1", 2)).thenReturn(Collections.emptyList());
+    when(mockManagerService.getTasks("client2", 2)).thenReturn(Collections.emptyList());
+    queue = new TaskWaitQueue(mockManagerService);
+
+    ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+    verify(mockManagerService).addTaskAvailabilityListener(listener.capture());
+    taskAvailabilityListener = listener.getValue();
+  }
+
+  @After
+  public void tearDown() {
+    queue.close();
+  }
+
+  @Test
+  public void getTasks_available() throws Exception {
+    List<Task> tasks = Collections.singletonList(newTask(1));
+    when(mockManagerService.getTasks("client1", 2)).thenReturn(tasks);
+
+    CompletableFuture<List<Task>> future = queue.getTasks("client1", 2);
+    assertTrue(future.isDone());
+    assertEquals(tasks, future.get());
+    assertEquals(0, queue.getWaitingClientCount());
+  }
+
+  @Test
+  public void getTasks_wait() throws Exception {
+    CompletableFuture<List<Task>> future1 = queue.getTasks("client1", 2);
+    CompletableFuture<List<Task>> future2 = queue.getTasks("client2", 2);
+    assertFalse(future1.isDone());
+    assertEquals(2, queue.getWaitingClientCount());
+
+    // Only one task becomes available, so only the first client is woken.
+    List<Task> tasks = Collections.singletonList(newTask(1));
+    when(mockManagerService.getTasks("client1", 2)).thenReturn(tasks);
+    taskAvailabilityListener.run();
+
+    assertEquals(tasks, future1.get(5, TimeUnit.SECONDS));
+    verify(mockManagerService, timeout(5000).times(2)).getTasks("client2", 2);
+    assertFalse(future2.isDone());
+  }
+
+  @Test
+  public void getTasks_cancelled() throws Exception {
+    CompletableFuture<List<Task>> future1 = queue.getTasks("client1", 2);
+    CompletableFuture<List<Task>> future2 = queue.getTasks("client2", 2);
+    future1.cancel(false);
+    assertEquals(1, queue.getWaitingClientCount());
+
+    List<Task> tasks = Collections.singletonList(newTask(1));
+    when(mockManagerService.getTasks("client2", 2)).thenReturn(tasks);
+    taskAvailabilityListener.run();
+
+    assertEquals(tasks, future2.get(5, TimeUnit.SECONDS));
+    verify(mockManagerService).getTasks("client1", 2);
+  }
+
+  @Test
+  public void getTasks_cancelledWhileLeasing() throws Exception {
+    CompletableFuture<List<Task>> future = queue.getTasks("client1", 2);
+
+    // The client stops waiting while tasks are being leased for it.
+    List<Task> tasks = Collections.singletonList(newTask(1));
+    when(mockManagerService.getTasks("client1", 2)).thenAnswer(invocation -> {
+      future.cancel(false);
+      return tasks;
+    });
+    taskAvailabilityListener.run();
+
+    verify(mockManagerService, timeout(5000)).releaseTasks(tasks);
+    assertEquals(0, queue.getWaitingClientCount());
+  }
+
+  @Test
+  public void getTasks_notAvailable() throws Exception {
+    CompletableFuture<List<Task>> future = queue.getTasks("client1", 2);
+    taskAvailabilityListener.run();
+
+    verify(mockManagerService, timeout(5000).times(2)).getTasks("client1", 2);
+    assertFalse(future.isDone());
+    verify(mockManagerService, never()).getTasks("client2", 2);
+  }
+
+  private static Task newTask(long id) {
+    Task task = new Task();
+    task.setId(id);
+    return task;
+  }
+}
@@ -1,16 +1,29 @@
 package org.mechaverse.manager.service.storage;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.common.base.Charsets;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -26,6 +39,8 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 @ContextConfiguration("/storage-test-context.xml")
 public class LocalFileMechaverseStorageServiceTest {
 
+  private static final ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+
   @Rule
   public TemporaryFolder folder = new TemporaryFolder();
 
@@ -36,17 +51,325 @@ public class LocalFileMechaverseStorageServiceTest {
     service = new LocalFileMechaverseStorageService();
   }
 
+  @After
+  public void tearDown() throws Exception {
+    service.close();
+  }
+
   @Test
   public void persistState() throws Exception {
     File basePath = folder.newFolder();
     service.setBasePath(basePath.getAbsolutePath());
     service.setState("1", "1", 0, new ByteArrayInputStream("This is a test.".getBytes()));
     InputStream stateIn = service.getState("1", "1", 0);
+    assertEquals("This is a test.", IOUtils.toString(stateIn, Charsets.UTF_8));
 
-    assertEquals(5, FileUtils
+    // The empty pending directories of the instance remain.
+    service.flush();
+    assertEquals(0, new File(basePath, "pending" + File.separator + "1" + File.separator + "1")
+        .list().length);
+    assertEquals(11, FileUtils
         .listFilesAndDirs(basePath, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE).size());
+    assertTrue(new File(getInstancePath(basePath, "1", "1"), "0" + File.separator + "0").exists());
+    assertEquals("This is a test.",
+        IOUtils.toString(service.getState("1", "1", 0), Charsets.UTF_8));
+  }
 
-    assertEquals("This is a test.", IOUtils.toString(stateIn, Charsets.UTF_8));
+  @Test
+  public void persistState_synchronous() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setWriteQueueCapacity(0);
+    service.setState("1", "1", 0, new ByteArrayInputStream("This is a test.".getBytes()));
+
+    assertTrue(new File(getInstancePath(basePath, "1", "1"), "0" + File.separator + "0").exists());
+    assertEquals("This is a test.",
+        IOUtils.toString(service.getState("1", "1", 0), Charsets.UTF_8));
+  }
+
+  @Test
+  public void persistState_writeFailure() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setWriteRetrySleepMillis(0);
+
+    // The instance directory cannot be created while a file has the name of its parent.
+    File instancesPath = new File(basePath, "1" + File.separator + "instances");
+    instancesPath.getParentFile().mkdirs();
+    assertTrue(instancesPath.createNewFile());
+
+    service.setState("1", "1", 0, new ByteArrayInputStream("This is a test.".getBytes()));
+    try {
+      service.flush();
+      fail("Expected exception was not thrown.");
+    } catch (IOException ex) {
+      // Expected.
+    }
+
+    // The state is kept and further states are rejected until it has been written.
+    assertEquals("This is a test.",
+        IOUtils.toString(service.getState("1", "1", 0), Charsets.UTF_8));
+    try {
+      service.setState("1", "1", 10, new ByteArrayInputStream("Test 10".getBytes()));
+      fail("Expected exception was not thrown.");
+    } catch (IOException ex) {
+      // Expected.
+    }
+
+    // The states of other instances are accepted.
+    service.setState("2", "1", 0, new ByteArrayInputStream("Test 2".getBytes()));
+
+    assertTrue(instancesPath.delete());
+    service.flush();
+    assertTrue(new File(getInstancePath(basePath, "1", "1"), "0" + File.separator + "0").exists());
+    assertEquals("This is a test.",
+        IOUtils.toString(service.getState("1", "1", 0), Charsets.UTF_8));
+    service.setState("1", "1", 10, new ByteArrayInputStream("Test 10".getBytes()));
+  }
+
+  @Test
+  public void recoverPendingStates() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+
+    // A state that was pending and the temporary file of an incomplete write.
+    File pendingFile = new File(basePath, String.join(File.separator, "pending", "1", "1", "10"));
+    FileUtils.writeByteArrayToFile(pendingFile, "Test 10".getBytes());
+    File tempFile = new File(basePath, "temp" + File.separator + "1-1-20.tmp");
+    FileUtils.writeByteArrayToFile(tempFile, "Test 20".getBytes());
+
+    service.initialize();
+
+    assertFalse(pendingFile.exists());
+    assertFalse(tempFile.exists());
+    assertTrue(new File(getInstancePath(basePath, "1", "1"), "0" + File.separator + "10").exists());
+    assertEquals("Test 10", IOUtils.toString(service.getState("1", "1", 10), Charsets.UTF_8));
+  }
+
+  @Test
+  public void setStagedState() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    String stagedStateId = service.stageState(new ByteArrayInputStream("Test 0".getBytes()));
+    String discardedStateId = service.stageState(new ByteArrayInputStream("Test 1".getBytes()));
+
+    service.setStagedState("1", "1", 0, stagedStateId);
+    service.deleteStagedState(stagedStateId);
+    service.deleteStagedState(discardedStateId);
+    service.flush();
+
+    assertEquals("Test 0", IOUtils.toString(service.getState("1", "1", 0), Charsets.UTF_8));
+    assertEquals(0, new File(basePath, "temp").list().length);
+    try {
+      service.setStagedState("1", "1", 10, discardedStateId);
+      fail("Expected exception was not thrown.");
+    } catch (FileNotFoundException ex) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void persistState_largeIteration() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setDeltasEnabled(true);
+    service.setState("1", "1", 99999, toInputStream(newState(99999, "a", "b")));
+    service.setState("1", "1", 250000, toInputStream(newState(250000, "a", "b")));
+    service.flush();
+
+    File instancePath = getInstancePath(basePath, "1", "1");
+    assertTrue(new File(instancePath, "0" + File.separator + "99999").exists());
+    assertTrue(new File(instancePath, "2" + File.separator + "250000.delta").exists());
+    assertEquals(newState(250000, "a", "b"),
+        StateDeltaCodec.readState(service.getState("1", "1", 250000)));
+  }
+
+  @Test
+  public void persistState_sharded() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    for (int instanceId = 0; instanceId < 64; instanceId++) {
+      service.setState("1", String.valueOf(instanceId), 0,
+          new ByteArrayInputStream(String.valueOf(instanceId).getBytes()));
+    }
+    service.flush();
+
+    File[] shards = new File(basePath, "1" + File.separator + "instances").listFiles();
+    assertTrue(shards.length > 1);
+    for (int instanceId = 0; instanceId < 64; instanceId++) {
+      assertEquals(String.valueOf(instanceId), IOUtils.toString(
+          service.getState("1", String.valueOf(instanceId), 0), Charsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void migrateLegacyLayout() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    File legacyInstancePath = new File(basePath, "1" + File.separator + "1");
+    legacyInstancePath.mkdirs();
+    FileUtils.writeByteArrayToFile(new File(legacyInstancePath, "0"), "Test 0".getBytes());
+    FileUtils.writeByteArrayToFile(new File(legacyInstancePath, "10"), "Test 10".getBytes());
+
+    service.migrateLegacyLayout();
+
+    assertFalse(legacyInstancePath.exists());
+    File instancePath = getInstancePath(basePath, "1", "1");
+    assertTrue(new File(instancePath, "0" + File.separator + "0").exists());
+    assertTrue(new File(instancePath, "0" + File.separator + "10").exists());
+    assertEquals("Test 10", IOUtils.toString(service.getState("1", "1", 10), Charsets.UTF_8));
+  }
+
+  @Test
+  public void getState_legacyLayout() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setDeltasEnabled(true);
+    File legacyInstancePath = new File(basePath, "1" + File.separator + "1");
+    legacyInstancePath.mkdirs();
+    try (InputStream in = toInputStream(newState(0, "a", "b"))) {
+      FileUtils.copyInputStreamToFile(in, new File(legacyInstancePath, "0"));
+    }
+
+    assertEquals(newState(0, "a", "b"), StateDeltaCodec.readState(service.getState("1", "1", 0)));
+    assertFalse(legacyInstancePath.exists());
+
+    // New states are stored as deltas against the migrated states.
+    service.setState("1", "1", 10, toInputStream(newState(10, "a", "b")));
+    service.flush();
+    assertTrue(new File(getInstancePath(basePath, "1", "1"),
+        "0" + File.separator + "10.delta").exists());
+  }
+
+  @Test
+  public void persistState_delta() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setDeltasEnabled(true);
+
+    ObjectNode state = newState(0, "a", "b", "c");
+    service.setState("1", "1", 0, toInputStream(state));
+
+    // Change an entity, remove an entity, and add an entity.
+    ObjectNode state2 = newState(10, "a", "c", "d");
+    ((ObjectNode) state2.get("environment").get("entities").get(0)).put("energy", 5);
+    byte[] genome = newGenome("a");
+    genome[0]++;
+    ((ObjectNode) state2.get("environment").get("entities").get(0).get("data"))
+        .put("genome", genome);
+    ((ObjectNode) state2.get("environment").get("entities").get(1).get("data"))
+        .put("state", new byte[] {4, 5, 6});
+    service.setState("1", "1", 10, toInputStream(state2));
+    service.flush();
+
+    File instancePath = new File(getInstancePath(basePath, "1", "1"), "0");
+    assertTrue(new File(instancePath, "0").exists());
+    assertTrue(new File(instancePath, "10.delta").exists());
+    assertFalse(new File(instancePath, "10").exists());
+    assertEquals(state, StateDeltaCodec.readState(service.getState("1", "1", 0)));
+    assertEquals(state2, StateDeltaCodec.readState(service.getState("1", "1", 10)));
+
+    ObjectNode state3 = newState(20, "d", "a");
+    service.setState("1", "1", 20, toInputStream(state3));
+    service.flush();
+    assertTrue(new File(instancePath, "20.delta").exists());
+    assertEquals(state3, StateDeltaCodec.readState(service.getState("1", "1", 20)));
+  }
+
+  @Test
+  public void persistState_deltasDisabled() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setDeltasEnabled(true);
+    service.setState("1", "1", 0, toInputStream(newState(0, "a", "b")));
+    service.setState("1", "1", 10, toInputStream(newState(10, "a", "b")));
+    service.flush();
+
+    // States are stored in full when deltas are disabled, and stored deltas remain readable.
+    service.setDeltasEnabled(false);
+    service.setState("1", "1", 20, toInputStream(newState(20, "a", "b")));
+    service.flush();
+    File instancePath = new File(getInstancePath(basePath, "1", "1"), "0");
+    assertTrue(new File(instancePath, "10.delta").exists());
+    assertTrue(new File(instancePath, "20").exists());
+    assertFalse(new File(instancePath, "20.delta").exists());
+    assertEquals(newState(10, "a", "b"), StateDeltaCodec.readState(service.getState("1", "1", 10)));
+    assertEquals(newState(20, "a", "b"), StateDeltaCodec.readState(service.getState("1", "1", 20)));
+  }
+
+  @Test
+  public void getState_version() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setDeltasEnabled(true);
+    service.setState("1", "1", 0, toInputStream(newState(0, "a", "b")));
+    service.setState("1", "1", 10, toInputStream(newState(10, "a", "b")));
+    service.flush();
+
+    // A state that is reconstructed from deltas has the same bytes when it has the same version.
+    byte[] stateData;
+    String version;
+    try (StateInputStream in = service.getState("1", "1", 10)) {
+      version = in.getVersion();
+      stateData = IOUtils.toByteArray(in);
+    }
+    try (StateInputStream in = service.getState("1", "1", 10)) {
+      assertEquals(version, in.getVersion());
+      assertArrayEquals(stateData, IOUtils.toByteArray(in));
+    }
+    assertEquals(newState(10, "a", "b"),
+        StateDeltaCodec.readState(new ByteArrayInputStream(stateData)));
+
+    try (StateInputStream in = service.getState("1", "1", 0)) {
+      assertNotEquals(version, in.getVersion());
+    }
+  }
+
+  @Test
+  public void getState_largeReconstructedState() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setDeltasEnabled(true);
+    String[] entityIds = new String[500];
+    for (int idx = 0; idx < entityIds.length; idx++) {
+      entityIds[idx] = String.valueOf(idx);
+    }
+    ObjectNode state = newState(10, entityIds);
+    service.setState("1", "1", 0, toInputStream(newState(0, entityIds)));
+    service.setState("1", "1", 10, toInputStream(state));
+    service.flush();
+
+    // The state is encoded as it is read and matches the state as it would be written.
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    StateDeltaCodec.writeState(state, expected);
+    try (StateInputStream in = service.getState("1", "1", 10)) {
+      assertArrayEquals(expected.toByteArray(), IOUtils.toByteArray(in));
+    }
+  }
+
+  @Test
+  public void persistState_keyframeInterval() throws Exception {
+    File basePath = folder.newFolder();
+    service.setBasePath(basePath.getAbsolutePath());
+    service.setDeltasEnabled(true);
+    service.setKeyframeInterval(3);
+
+    for (int iteration = 0; iteration < 5; iteration++) {
+      service.setState("1", "1", iteration, toInputStream(newState(iteration, "a", "b")));
+    }
+    service.flush();
+
+    File instancePath = new File(getInstancePath(basePath, "1", "1"), "0");
+
+    assertTrue(new File(instancePath, "0").exists());
+    assertTrue(new File(instancePath, "1.delta").exists());
+    assertTrue(new File(instancePath, "2.delta").exists());
+    assertTrue(new File(instancePath, "3").exists());
+    assertTrue(new File(instancePath, "4.delta").exists());
+    for (int iteration = 0; iteration < 5; iteration++) {
+      assertEquals(newState(iteration, "a", "b"),
+          StateDeltaCodec.readState(service.getState("1", "1", iteration)));
+    }
   }
 
   @Test
@@ -54,8 +377,9 @@ public class LocalFileMechaverseStorageServiceTest {
     File basePath = folder.newFolder();
     service.setBasePath(basePath.getAbsolutePath());
     service.setState("1", "1", 0, new ByteArrayInputStream("This is a test.".getBytes()));
+    service.flush();
 
-    assertEquals(5, FileUtils
+    assertEquals(11, FileUtils
         .listFilesAndDirs(basePath, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE).size());
 
     service.deleteSimulation("1");
@@ -66,7 +390,7 @@ public class LocalFileMechaverseStorageServiceTest {
       // Expected.
     }
 
-    assertEquals(2, FileUtils
+    assertEquals(3, FileUtils
         .listFilesAndDirs(basePath, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE).size());
   }
 
@@ -75,8 +399,9 @@ public class LocalFileMechaverseStorageServiceTest {
     File basePath = folder.newFolder();
     service.setBasePath(basePath.getAbsolutePath());
     service.setState("1", "1", 0, new ByteArrayInputStream("This is a test.".getBytes()));
+    service.flush();
 
-    assertEquals(5, FileUtils
+    assertEquals(11, FileUtils
         .listFilesAndDirs(basePath, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE).size());
 
     service.deleteInstance("1", "1");
@@ -87,7 +412,84 @@ public class LocalFileMechaverseStorageServiceTest {
       // Expected.
     }
 
-    assertEquals(3, FileUtils
+    assertEquals(7, FileUtils
         .listFilesAndDirs(basePath, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE).size());
   }
+
+  /**
+   * Returns the directory of the given instance. Each simulation in these tests contains a single
+   * instance, so the shard is the only directory in the instances directory.
+   */
+  private static File getInstancePath(File basePath, String simulationId, String instanceId) {
+    File[] shards = new File(basePath, simulationId + File.separator + "instances").listFiles();
+    assertEquals(1, shards.length);
+    return new File(shards[0], instanceId);
+  }
+
+  @Test
+  public void writeUploadChunk() throws Exception {
+    service.setBasePath(folder.newFolder().getAbsolutePath());
+    assertEquals(0, service.getUploadLength("upload"));
+
+    assertEquals(5, writeUploadChunk("upload", 0, "Test "));
+    assertEquals(11, writeUploadChunk("upload", 5, "upload"));
+    assertEquals("Test upload", IOUtils.toString(service.getUpload("upload"), Charsets.UTF_8));
+
+    // A chunk that is resent replaces the data that follows it.
+    assertEquals(9, writeUploadChunk("upload", 5, "data"));
+    assertEquals("Test data", IOUtils.toString(service.getUpload("upload"), Charsets.UTF_8));
+
+    service.deleteUpload("upload");
+    assertEquals(0, service.getUploadLength("upload"));
+  }
+
+  @Test
+  public void writeUploadChunk_rejected() throws Exception {
+    service.setBasePath(folder.newFolder().getAbsolutePath());
+    assertEquals(5, writeUploadChunk("upload", 0, "Test "));
+
+    // The offset is beyond the received data.
+    assertEquals(5, writeUploadChunk("upload", 6, "upload"));
+
+    // The checksum does not match.
+    byte[] chunk = "upload".getBytes(Charsets.UTF_8);
+    assertEquals(5, service.writeUploadChunk("upload", 5, new ByteArrayInputStream(chunk), 0));
+    assertEquals("Test ", IOUtils.toString(service.getUpload("upload"), Charsets.UTF_8));
+  }
+
+  private long writeUploadChunk(String uploadId, long offset, String data) throws Exception {
+    byte[] chunk = data.getBytes(Charsets.UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(chunk);
+    return service.writeUploadChunk(uploadId, offset, new ByteArrayInputStream(chunk),
+        crc.getValue());
+  }
+
+  private static ObjectNode newState(int iteration, String... entityIds) {
+    ObjectNode state = objectMapper.createObjectNode();
+    state.put("iteration", iteration);
+    ObjectNode environment = state.putObject("environment");
+    environment.put("id", "env");
+    ArrayNode entities = environment.putArray("entities");
+    for (String entityId : entityIds) {
+      ObjectNode entity = entities.addObject();
+      entity.put("type", "test");
+      entity.put("id", entityId);
+      entity.put("energy", 10);
+      entity.putObject("data").put("genome", newGenome(entityId));
+    }
+    return state;
+  }
+
+  private static byte[] newGenome(String entityId) {
+    byte[] genome = new byte[1024];
+    new Random(entityId.hashCode()).nextBytes(genome);
+    return genome;
+  }
+
+  private static InputStream toInputStream(ObjectNode state) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StateDeltaCodec.writeState(state, out);
+    return new ByteArrayInputStream(out.toByteArray());
+  }
 }
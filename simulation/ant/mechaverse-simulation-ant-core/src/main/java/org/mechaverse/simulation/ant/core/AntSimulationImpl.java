@@ -1,6 +1,8 @@
 package org.mechaverse.simulation.ant.core;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
 import org.mechaverse.simulation.ant.core.model.CellEnvironment;
 import org.mechaverse.simulation.ant.core.model.EntityType;
@@ -9,6 +11,8 @@ import org.mechaverse.simulation.common.AbstractSimulation;
 import org.mechaverse.simulation.common.EnvironmentFactory;
 import org.mechaverse.simulation.common.SimulationModelGenerator;
 import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
 
 public class AntSimulationImpl extends AbstractSimulation<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> {
 
@@ -23,6 +27,11 @@ public class AntSimulationImpl extends AbstractSimulation<AntSimulationModel, Ce
         setState(AntSimulationModelUtil.deserialize(data));
     }
 
+    @Override
+    public void setStateData(InputStream in) throws Exception {
+        setState(AntSimulationModelUtil.deserialize(in));
+    }
+
     @Override
     public AntSimulationModel deserializeState(byte[] stateData) throws IOException {
         return AntSimulationModelUtil.deserialize(stateData);
@@ -32,4 +41,15 @@ public class AntSimulationImpl extends AbstractSimulation<AntSimulationModel, Ce
     public byte[] getStateData() throws IOException {
         return AntSimulationModelUtil.serialize(getState());
     }
+
+    @Override
+    public byte[] getStateData(SimulationModelFormat format) throws IOException {
+        return AntSimulationModelUtil.serialize(getState(), format);
+    }
+
+    @Override
+    public void getStateData(OutputStream out, SimulationModelFormat format,
+            CompressionCodec codec) throws IOException {
+        AntSimulationModelUtil.serialize(getState(), format, codec, out);
+    }
 }
@@ -1,6 +1,7 @@
 package org.mechaverse.simulation.ant.core.entity.ant;
 
 import com.google.common.base.Preconditions;
+import java.util.concurrent.Executor;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.mechaverse.simulation.ant.core.entity.EntityUtil;
 import org.mechaverse.simulation.ant.core.model.Ant;
@@ -9,19 +10,21 @@ import org.mechaverse.simulation.ant.core.model.Cell;
 import org.mechaverse.simulation.ant.core.model.CellEnvironment;
 import org.mechaverse.simulation.ant.core.model.EntityType;
 import org.mechaverse.simulation.ant.core.model.Pheromone;
-import org.mechaverse.simulation.common.EntityBehavior;
 import org.mechaverse.simulation.common.Environment;
+import org.mechaverse.simulation.common.SensingEntityBehavior;
 import org.mechaverse.simulation.common.model.Direction;
 import org.mechaverse.simulation.common.model.EntityModel;
 import org.mechaverse.simulation.common.util.SimulationUtil;
 
-public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> {
+public abstract class AbstractAntBehavior implements SensingEntityBehavior<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> {
 
   private static final EntityType[] CARRIABLE_ENTITY_TYPES =
       {EntityType.DIRT, EntityType.FOOD,EntityType.ROCK};
 
   protected final Ant entity;
   private final AntInput input = new AntInput();
+  private final int[] intentData = new int[AntOutput.DATA_SIZE];
+  private final AntOutput intentOutput = new AntOutput(intentData);
 
   private int pheromoneInitialEnergy;
   private int leavePheromoneEnergyCost = 2;
@@ -37,6 +40,28 @@ public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulatio
 
   @Override
   public void updateInput(CellEnvironment env, RandomGenerator random) {
+    senseInput(env);
+    setInput(input, random);
+  }
+
+  @Override
+  public int getInputSize() {
+    return AntInput.DATA_SIZE;
+  }
+
+  @Override
+  public void senseInput(CellEnvironment env, int[] data, int offset, RandomGenerator random) {
+    senseInput(env);
+    System.arraycopy(input.getData(), 0, data, offset, AntInput.DATA_SIZE);
+  }
+
+  @Override
+  public void applyInput(int[] data, int offset, RandomGenerator random) {
+    System.arraycopy(data, offset, input.getData(), 0, AntInput.DATA_SIZE);
+    setInput(input, random);
+  }
+
+  private void senseInput(CellEnvironment env) {
     input.resetToDefault();
     input.setEnergy(entity.getEnergy(), entity.getMaxEnergy());
     input.setDirection(entity.getDirection());
@@ -121,20 +146,69 @@ public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulatio
       Pheromone pheromone = (Pheromone) pheromoneEntity;
       input.setPheromoneType(pheromone.getValue());
     }
-    setInput(input, random);
+  }
+
+  /**
+   * The operations of an environment that are used to apply an action.
+   */
+  public interface ActionEnvironment {
+
+    CellEnvironment getModel();
+
+    void addEntity(EntityModel<EntityType> entity);
+
+    void removeEntity(EntityModel<EntityType> entity);
   }
 
   @Override
   public void performAction(Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env,
       RandomGenerator random) {
-    AntOutput output = getOutput(random);
+    applyAction(getActionIntent(random), new ActionEnvironment() {
+      @Override
+      public CellEnvironment getModel() {
+        return env.getModel();
+      }
+
+      @Override
+      public void addEntity(EntityModel<EntityType> entity) {
+        env.addEntity(entity);
+      }
+
+      @Override
+      public void removeEntity(EntityModel<EntityType> entity) {
+        env.removeEntity(entity);
+      }
+    }, Runnable::run);
+  }
+
+  /**
+   * Returns the action that the ant will perform encoded in the {@link AntOutput} data format. The
+   * environment is not modified.
+   */
+  public int getActionIntent(RandomGenerator random) {
+    return getOutput(random).getData()[0];
+  }
+
+  /**
+   * Performs an action that was returned by {@link #getActionIntent(RandomGenerator)}. Only the
+   * cell occupied by the ant and its neighboring cells are modified. Entities that are removed from
+   * these cells are removed from the cells immediately, so the environment may defer
+   * {@link ActionEnvironment#removeEntity} and {@link ActionEnvironment#addEntity}.
+   *
+   * @param intent the encoded action
+   * @param env the environment
+   * @param removalExecutor executes the {@link #onRemoveEntity()} callback if the ant is removed
+   */
+  public void applyAction(int intent, ActionEnvironment env, Executor removalExecutor) {
+    intentData[0] = intent;
     CellEnvironment envModel = env.getModel();
     Cell cell = envModel.getCell(entity);
     Cell frontCell = envModel.getCellInDirection(cell, entity.getDirection());
 
     entity.setEnergy(entity.getEnergy() - 1);
     if (entity.getEnergy() <= 0) {
-      onRemoveEntity();
+      removalExecutor.execute(this::onRemoveEntity);
+      cell.removeEntity(entity);
       env.removeEntity(this.getModel());
 
       // Attempt to drop the carried entity.
@@ -151,18 +225,18 @@ public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulatio
     }
 
     // Consume action.
-    if (output.shouldConsume()) {
+    if (intentOutput.shouldConsume()) {
       if(getCarriedEntityType() == EntityType.FOOD) {
         // Consume food that the ant is carrying.
-        if(consumeFood(entity.getCarriedEntity(), env)) {
+        if(consumeFood(entity.getCarriedEntity(), cell, env)) {
           entity.setCarriedEntity(null);
         }
-      } else if (consumeFood(cell.getEntity(EntityType.FOOD), env)) {
+      } else if (consumeFood(cell.getEntity(EntityType.FOOD), cell, env)) {
       } else if (consumeFoodFromNest(cell.getEntity(EntityType.NEST))) {}
     }
 
     // Pickup / Drop action.
-    if (output.shouldPickUpOrDrop()) {
+    if (intentOutput.shouldPickUpOrDrop()) {
       if (getCarriedEntityType() == EntityType.NONE) {
         if (pickup(cell)) {} else if (pickup(frontCell)) {}
       } else {
@@ -171,12 +245,12 @@ public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulatio
     }
 
     // Leave pheromone action.
-    if (output.shouldLeavePheromone()) {
-      leavePheromone(cell, output.getPheromoneType(), env);
+    if (intentOutput.shouldLeavePheromone()) {
+      leavePheromone(cell, intentOutput.getPheromoneType(), env);
     }
 
     // Move action.
-    switch (output.getMoveDirection()) {
+    switch (intentOutput.getMoveDirection()) {
       case NONE:
         break;
       case FORWARD:
@@ -189,7 +263,7 @@ public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulatio
     }
 
     // Turn action.
-    switch (output.getTurnDirection()) {
+    switch (intentOutput.getTurnDirection()) {
       case NONE:
         break;
       case CLOCKWISE:
@@ -270,8 +344,7 @@ public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulatio
     return false;
   }
 
-  private void leavePheromone(Cell cell, int type,
-      Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env) {
+  private void leavePheromone(Cell cell, int type, ActionEnvironment env) {
     int energy = entity.getEnergy();
     if (energy > leavePheromoneEnergyCost) {
       entity.setEnergy(energy - leavePheromoneEnergyCost);
@@ -290,10 +363,10 @@ public abstract class AbstractAntBehavior implements EntityBehavior<AntSimulatio
     }
   }
 
-  private boolean consumeFood(EntityModel<EntityType> food,
-      Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env) {
+  private boolean consumeFood(EntityModel<EntityType> food, Cell cell, ActionEnvironment env) {
     if (food != null) {
       addEnergy(food.getEnergy());
+      cell.removeEntity(food);
       env.removeEntity(food);
       return true;
     }
@@ -0,0 +1,209 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import com.google.common.base.Preconditions;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.mechaverse.simulation.ant.core.entity.ant.AbstractAntBehavior;
+import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
+import org.mechaverse.simulation.ant.core.model.CellEnvironment;
+import org.mechaverse.simulation.ant.core.model.EntityType;
+import org.mechaverse.simulation.common.Entity;
+import org.mechaverse.simulation.common.Environment;
+import org.mechaverse.simulation.common.EntityBehavior;
+import org.mechaverse.simulation.common.EnvironmentScheduler;
+import org.mechaverse.simulation.common.model.EntityModel;
+
+/**
+ * Performs ant actions in two phases so that they can be applied in parallel.
+ *
+ * <p>In the first phase each ant emits its action intent into a primitive buffer. This phase is
+ * serial since the intents of cellular automaton ants are read from the shared output buffer of the
+ * simulator. In the second phase the intents are applied by tiles, where a tile is a vertical strip
+ * of the grid, and only the intent buffer and the cells of the tile are accessed. Since an
+ * ant only modifies its own cell and the neighboring cells, tiles that are not adjacent can be
+ * applied concurrently. The even tiles are applied first followed by the odd tiles, and ants within
+ * a tile are applied in the order they were added. Conflicts, such as two ants moving into the same
+ * cell, are therefore resolved deterministically in favor of the ant that is applied first.
+ *
+ * <p>Adding and removing entities updates the environment model and notifies shared observers, so
+ * these operations are recorded by each tile and replayed in tile order after all of the intents
+ * have been applied. The cells are updated immediately by the ants (see
+ * {@link AbstractAntBehavior#applyAction}).
+ */
+public final class AntActionResolver {
+
+  /**
+   * The minimum tile width which guarantees that ants in non-adjacent tiles never modify the same
+   * cell.
+   */
+  public static final int MIN_TILE_WIDTH = 2;
+
+  private final int tileWidth;
+  private final List<Tile> tiles = new ArrayList<>();
+  private final List<Entity<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType>>
+      entities = new ArrayList<>();
+  private final TIntArrayList otherEntityIndices = new TIntArrayList();
+  private int[] intents = new int[0];
+  private EnvironmentScheduler scheduler = new EnvironmentScheduler(1);
+
+  /**
+   * A vertical strip of the grid and the ants that occupy it.
+   */
+  private static final class Tile {
+
+    final TIntArrayList entityIndices = new TIntArrayList();
+    final RandomGenerator random = new Well19937c();
+    final DeferredEnvironment environment = new DeferredEnvironment();
+  }
+
+  /**
+   * Records the entity additions and removals of a tile so that they can be applied later on a
+   * single thread.
+   */
+  private static final class DeferredEnvironment implements AbstractAntBehavior.ActionEnvironment {
+
+    private final List<Runnable> deferredOperations = new ArrayList<>();
+    private Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType>
+        environment;
+
+    void reset(
+        Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env) {
+      this.environment = env;
+      deferredOperations.clear();
+    }
+
+    void defer(Runnable operation) {
+      deferredOperations.add(operation);
+    }
+
+    void applyDeferredOperations() {
+      deferredOperations.forEach(Runnable::run);
+      deferredOperations.clear();
+    }
+
+    @Override
+    public CellEnvironment getModel() {
+      return environment.getModel();
+    }
+
+    @Override
+    public void addEntity(EntityModel<EntityType> entity) {
+      defer(() -> environment.addEntity(entity));
+    }
+
+    @Override
+    public void removeEntity(EntityModel<EntityType> entity) {
+      defer(() -> environment.removeEntity(entity));
+    }
+  }
+
+  /**
+   * @param tileWidth the width in cells of each tile
+   */
+  public AntActionResolver(int tileWidth) {
+    Preconditions.checkArgument(tileWidth >= MIN_TILE_WIDTH);
+    this.tileWidth = tileWidth;
+  }
+
+  public int getTileWidth() {
+    return tileWidth;
+  }
+
+  /**
+   * Sets the scheduler on whose pool tiles are applied in parallel. Tiles are applied serially until
+   * a scheduler is set.
+   */
+  public void setScheduler(EnvironmentScheduler scheduler) {
+    this.scheduler = Preconditions.checkNotNull(scheduler);
+  }
+
+  /**
+   * Performs the actions of the given entities. Entities whose behavior is not an
+   * {@link AbstractAntBehavior} perform their action serially after the ants.
+   */
+  public void performActions(
+      Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env,
+      Collection<Entity<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType>> activeEntities,
+      RandomGenerator random) {
+    try {
+      int tileCount = (env.getModel().getWidth() + tileWidth - 1) / tileWidth;
+      assignTiles(env, activeEntities, tileCount);
+
+      // Seed the tile random generators in order so that the result is deterministic.
+      for (int tileIdx = 0; tileIdx < tileCount; tileIdx++) {
+        tiles.get(tileIdx).random.setSeed(random.nextLong());
+      }
+
+      // Phase 1: Emit the action intents.
+      for (int tileIdx = 0; tileIdx < tileCount; tileIdx++) {
+        Tile tile = tiles.get(tileIdx);
+        for (int idx = 0; idx < tile.entityIndices.size(); idx++) {
+          int entityIdx = tile.entityIndices.getQuick(idx);
+          intents[entityIdx] = getAntBehavior(entityIdx).getActionIntent(tile.random);
+        }
+      }
+
+      // Phase 2: Apply the intents to the even tiles and then to the odd tiles.
+      for (int parity = 0; parity < 2; parity++) {
+        final int firstTileIdx = parity;
+        scheduler.forEach((tileCount - firstTileIdx + 1) / 2, idx -> {
+          Tile tile = tiles.get(firstTileIdx + 2 * idx);
+          for (int tileEntityIdx = 0; tileEntityIdx < tile.entityIndices.size(); tileEntityIdx++) {
+            int entityIdx = tile.entityIndices.getQuick(tileEntityIdx);
+            getAntBehavior(entityIdx).applyAction(
+                intents[entityIdx], tile.environment, tile.environment::defer);
+          }
+        });
+      }
+
+      for (int tileIdx = 0; tileIdx < tileCount; tileIdx++) {
+        tiles.get(tileIdx).environment.applyDeferredOperations();
+      }
+
+      for (int idx = 0; idx < otherEntityIndices.size(); idx++) {
+        entities.get(otherEntityIndices.getQuick(idx)).getBehavior().performAction(env, random);
+      }
+    } finally {
+      entities.clear();
+    }
+  }
+
+  private void assignTiles(
+      Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env,
+      Collection<Entity<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType>> activeEntities,
+      int tileCount) {
+    while (tiles.size() < tileCount) {
+      tiles.add(new Tile());
+    }
+    for (int tileIdx = 0; tileIdx < tileCount; tileIdx++) {
+      Tile tile = tiles.get(tileIdx);
+      tile.entityIndices.resetQuick();
+      tile.environment.reset(env);
+    }
+    otherEntityIndices.resetQuick();
+
+    entities.addAll(activeEntities);
+    if (intents.length < entities.size()) {
+      intents = new int[Math.max(entities.size(), 2 * intents.length)];
+    }
+    for (int entityIdx = 0; entityIdx < entities.size(); entityIdx++) {
+      Entity<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> entity =
+          entities.get(entityIdx);
+      if (entity.getBehavior() instanceof AbstractAntBehavior) {
+        tiles.get(entity.getModel().getX() / tileWidth).entityIndices.add(entityIdx);
+      } else {
+        otherEntityIndices.add(entityIdx);
+      }
+    }
+  }
+
+  private AbstractAntBehavior getAntBehavior(int entityIdx) {
+    EntityBehavior<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> behavior =
+        entities.get(entityIdx).getBehavior();
+    return (AbstractAntBehavior) behavior;
+  }
+}
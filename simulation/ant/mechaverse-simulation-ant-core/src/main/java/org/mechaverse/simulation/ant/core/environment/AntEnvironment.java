@@ -1,20 +1,58 @@
 package org.mechaverse.simulation.ant.core.environment;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.apache.commons.math3.random.RandomGenerator;
 import org.mechaverse.simulation.ant.core.entity.ant.AntEntityFactory;
 import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
 import org.mechaverse.simulation.ant.core.model.CellEnvironment;
 import org.mechaverse.simulation.ant.core.model.EntityType;
 import org.mechaverse.simulation.common.AbstractEnvironment;
+import org.mechaverse.simulation.common.Entity;
 import org.mechaverse.simulation.common.EntityFactory;
+import org.mechaverse.simulation.common.EnvironmentScheduler;
 import org.mechaverse.simulation.common.model.EntityModel;
 
 public class AntEnvironment extends
     AbstractEnvironment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> {
 
+  private AntActionResolver actionResolver;
+
   public AntEnvironment(CellEnvironment env, List<? extends AbstractAntEnvironmentBehavior> environmentBehaviors,
       AntEntityFactory entityFactory) {
     super(env.getId(), environmentBehaviors, entityFactory);
   }
+
+  /**
+   * Enables applying ant actions in parallel by tiles of the grid.
+   *
+   * @param tileWidth the width of each tile in cells or 0 to apply ant actions serially
+   * @see AntActionResolver
+   */
+  public void setActionTileWidth(int tileWidth) {
+    this.actionResolver = tileWidth > 0 ? new AntActionResolver(tileWidth) : null;
+    if (actionResolver != null) {
+      actionResolver.setScheduler(getScheduler());
+    }
+  }
+
+  @Override
+  public void setScheduler(EnvironmentScheduler scheduler) {
+    super.setScheduler(scheduler);
+    if (actionResolver != null) {
+      actionResolver.setScheduler(scheduler);
+    }
+  }
+
+  @Override
+  protected void performActions(
+      Collection<Entity<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType>> entities,
+      RandomGenerator random) {
+    if (actionResolver != null) {
+      actionResolver.performActions(this, entities, random);
+    } else {
+      super.performActions(entities, random);
+    }
+  }
 }
@@ -0,0 +1,227 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import com.google.common.base.Preconditions;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.mechaverse.simulation.ant.core.environment.AntReproductionBehavior.SimpleAntFitnessCalculator;
+import org.mechaverse.simulation.ant.core.model.Ant;
+
+/**
+ * Samples reproductive ants with the same probabilities as {@link SimpleAntFitnessCalculator}
+ * without rebuilding a distribution for each sample.
+ *
+ * <p>The fitness of an ant is <code>.7 * age/ageSum + .3 * energy/energySum</code>, where the
+ * age of an ant is relative to the most recently created reproductive ant. Since the fitness values
+ * sum to one this is sampled as a mixture: with probability .7 an ant is selected in proportion to
+ * its relative age and otherwise in proportion to its energy. Each ant is assigned a slot and the
+ * slot count, created iteration, and energy are stored in Fenwick trees, which allows a slot to be
+ * selected in O(log n) time. The relative age of a range of slots is derived from the count and
+ * created iteration sums, so the trees do not need to be updated when the most recently created
+ * ant changes.
+ *
+ * <p>Ants can be added and removed at any time. Since ant energy changes as the environment is
+ * updated, {@link #update} must be called to refresh the energies and determine which ants are of
+ * reproductive age before sampling.
+ */
+public final class AntFitnessSampler {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Map<Ant, Integer> antSlots = new HashMap<>();
+  private final TIntArrayList freeSlots = new TIntArrayList();
+  private Ant[] slotAnts = new Ant[INITIAL_CAPACITY];
+  private boolean[] slotReproductive = new boolean[INITIAL_CAPACITY];
+  private int[] slotEnergies = new int[INITIAL_CAPACITY];
+  private int slotCount;
+
+  // Fenwick trees indexed from 1.
+  private long[] countTree = new long[INITIAL_CAPACITY + 1];
+  private long[] createdIterationTree = new long[INITIAL_CAPACITY + 1];
+  private long[] energyTree = new long[INITIAL_CAPACITY + 1];
+
+  private long iteration;
+  private int minReproductiveAge;
+  private long maxCreatedIteration;
+
+  /**
+   * Adds an ant. The ant is sampled if it is of reproductive age as of the last {@link #update}.
+   */
+  public void add(Ant ant) {
+    Preconditions.checkArgument(!antSlots.containsKey(ant));
+    int slot;
+    if (!freeSlots.isEmpty()) {
+      slot = freeSlots.removeAt(freeSlots.size() - 1);
+    } else {
+      if (slotCount == slotAnts.length) {
+        slotAnts = Arrays.copyOf(slotAnts, 2 * slotAnts.length);
+        slotReproductive = Arrays.copyOf(slotReproductive, slotAnts.length);
+        slotEnergies = Arrays.copyOf(slotEnergies, slotAnts.length);
+        rebuild();
+      }
+      slot = slotCount++;
+    }
+    slotAnts[slot] = ant;
+    antSlots.put(ant, slot);
+    if (isReproductive(ant)) {
+      slotReproductive[slot] = true;
+      slotEnergies[slot] = ant.getEnergy();
+      maxCreatedIteration = Math.max(maxCreatedIteration, ant.getCreatedIteration());
+      addToTrees(slot, 1, ant.getCreatedIteration(), ant.getEnergy());
+    }
+  }
+
+  public void remove(Ant ant) {
+    Integer slot = antSlots.remove(ant);
+    if (slot == null) {
+      return;
+    }
+    slotAnts[slot] = null;
+    freeSlots.add(slot);
+    if (slotReproductive[slot]) {
+      slotReproductive[slot] = false;
+      addToTrees(slot, -1, -ant.getCreatedIteration(), -slotEnergies[slot]);
+      if (ant.getCreatedIteration() == maxCreatedIteration) {
+        updateMaxCreatedIteration();
+      }
+    }
+  }
+
+  /**
+   * Refreshes the energy of each ant and determines which ants are of reproductive age at the given
+   * iteration. This takes linear time.
+   */
+  public void update(long iteration, int minReproductiveAge) {
+    this.iteration = iteration;
+    this.minReproductiveAge = minReproductiveAge;
+    for (int slot = 0; slot < slotCount; slot++) {
+      slotReproductive[slot] = slotAnts[slot] != null && isReproductive(slotAnts[slot]);
+      slotEnergies[slot] = slotReproductive[slot] ? slotAnts[slot].getEnergy() : 0;
+    }
+    updateMaxCreatedIteration();
+    rebuild();
+  }
+
+  /**
+   * Returns the number of ants that may be sampled.
+   */
+  public int getReproductiveAntCount() {
+    return (int) prefixSum(countTree, slotAnts.length);
+  }
+
+  /**
+   * Samples a reproductive ant in proportion to its fitness.
+   */
+  public Ant sample(RandomGenerator random) {
+    long count = prefixSum(countTree, slotAnts.length);
+    Preconditions.checkState(count > 0);
+    long ageSum = count * maxCreatedIteration - prefixSum(createdIterationTree, slotAnts.length);
+    long energySum = prefixSum(energyTree, slotAnts.length);
+
+    // The targets are clamped since rounding may otherwise select the slot after the last ant.
+    double value = random.nextDouble();
+    int slot;
+    if (ageSum == 0 || energySum == 0) {
+      slot = findSlot(countTree, Math.min((long) (value * count), count - 1));
+    } else if (value < .7) {
+      slot = findAgeSlot(Math.min((long) (value / .7 * ageSum), ageSum - 1));
+    } else {
+      slot = findSlot(energyTree, Math.min((long) ((value - .7) / .3 * energySum), energySum - 1));
+    }
+    return slotAnts[slot];
+  }
+
+  private boolean isReproductive(Ant ant) {
+    return iteration - ant.getCreatedIteration() >= minReproductiveAge;
+  }
+
+  private void updateMaxCreatedIteration() {
+    maxCreatedIteration = 0;
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (slotReproductive[slot]) {
+        maxCreatedIteration = Math.max(maxCreatedIteration, slotAnts[slot].getCreatedIteration());
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the trees in linear time.
+   */
+  private void rebuild() {
+    int size = slotAnts.length;
+    if (countTree.length != size + 1) {
+      countTree = new long[size + 1];
+      createdIterationTree = new long[size + 1];
+      energyTree = new long[size + 1];
+    } else {
+      Arrays.fill(countTree, 0);
+      Arrays.fill(createdIterationTree, 0);
+      Arrays.fill(energyTree, 0);
+    }
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (slotReproductive[slot]) {
+        countTree[slot + 1] = 1;
+        createdIterationTree[slot + 1] = slotAnts[slot].getCreatedIteration();
+        energyTree[slot + 1] = slotEnergies[slot];
+      }
+    }
+    for (int idx = 1; idx <= size; idx++) {
+      int parentIdx = idx + (idx & -idx);
+      if (parentIdx <= size) {
+        countTree[parentIdx] += countTree[idx];
+        createdIterationTree[parentIdx] += createdIterationTree[idx];
+        energyTree[parentIdx] += energyTree[idx];
+      }
+    }
+  }
+
+  private void addToTrees(int slot, long count, long createdIteration, long energy) {
+    for (int idx = slot + 1; idx < countTree.length; idx += idx & -idx) {
+      countTree[idx] += count;
+      createdIterationTree[idx] += createdIteration;
+      energyTree[idx] += energy;
+    }
+  }
+
+  private static long prefixSum(long[] tree, int length) {
+    long sum = 0;
+    for (int idx = length; idx > 0; idx -= idx & -idx) {
+      sum += tree[idx];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the first slot at which the prefix sum of the given tree exceeds the given value.
+   */
+  private int findSlot(long[] tree, long value) {
+    int idx = 0;
+    for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+      if (idx + step < tree.length && tree[idx + step] <= value) {
+        idx += step;
+        value -= tree[idx];
+      }
+    }
+    return idx;
+  }
+
+  /**
+   * Returns the first slot at which the prefix sum of the relative ages exceeds the given value.
+   */
+  private int findAgeSlot(long value) {
+    int idx = 0;
+    for (int step = Integer.highestOneBit(countTree.length - 1); step > 0; step >>= 1) {
+      if (idx + step < countTree.length) {
+        long ageSum = countTree[idx + step] * maxCreatedIteration
+            - createdIterationTree[idx + step];
+        if (ageSum <= value) {
+          idx += step;
+          value -= ageSum;
+        }
+      }
+    }
+    return idx;
+  }
+}
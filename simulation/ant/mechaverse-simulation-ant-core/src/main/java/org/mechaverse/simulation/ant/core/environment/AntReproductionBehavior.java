@@ -103,10 +103,9 @@ public class AntReproductionBehavior extends AbstractAntEnvironmentBehavior {
   private int maxGeneratedAntNestDistance = 15;
 
   private final Set<Ant> ants = new LinkedHashSet<>();
+  private final AntFitnessSampler fitnessSampler = new AntFitnessSampler();
   private Nest nest;
   private final GeneticRecombinator geneticRecombinator;
-  private final AntFitnessCalculator fitnessCalculator = new SimpleAntFitnessCalculator();
-
 
   public AntReproductionBehavior() {
     this(new CutAndSpliceCrossoverGeneticRecombinator());
@@ -130,6 +129,9 @@ public class AntReproductionBehavior extends AbstractAntEnvironmentBehavior {
   public void beforeUpdate(AntSimulationModel state,
       Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env, RandomGenerator random) {
     CellEnvironment envModel = env.getModel();
+    if (ants.size() < antMaxCount && nest != null) {
+      fitnessSampler.update(state.getIteration(), antMinReproductiveAge);
+    }
     int cnt = 0;
     while (ants.size() < antMaxCount && nest != null && cnt < antMaxCount) {
       Cell nestCell = envModel.getCell(nest);
@@ -159,24 +161,25 @@ public class AntReproductionBehavior extends AbstractAntEnvironmentBehavior {
     return ant;
   }
 
+  /**
+   * Generates an ant whose parents are sampled from the reproductive ants. The fitness sampler is
+   * updated at the start of {@link #beforeUpdate}, so the energies of the parents are those at the
+   * start of the current update.
+   */
   public Ant generateAnt(AntSimulationModel state, RandomGenerator random) {
     Ant ant = generateRandomAnt(state, random);
 
-    Collection<Ant> reproductiveAnts = getReproductiveAnts(state.getIteration());
-    if (reproductiveAnts.size() < 2) {
+    if (fitnessSampler.getReproductiveAntCount() < 2) {
       logger.debug("Generated ant {}", ant.getId());
       return ant;
     }
 
-    EnumeratedDistribution<Ant> antFitnessDistribution =
-        fitnessCalculator.getAntFitnessDistribution(reproductiveAnts, random);
-
-    Ant parent1 = antFitnessDistribution.sample();
-    Ant parent2 = antFitnessDistribution.sample();
+    Ant parent1 = fitnessSampler.sample(random);
+    Ant parent2 = fitnessSampler.sample(random);
 
     // Ensure that parent1 != parent2.
     while (ants.size() > 1 && parent2 == parent1) {
-      parent2 = antFitnessDistribution.sample();
+      parent2 = fitnessSampler.sample(random);
     }
 
     // Get the parents genetic information.
@@ -214,7 +217,9 @@ public class AntReproductionBehavior extends AbstractAntEnvironmentBehavior {
   @Override
   public void onAddEntity(EntityModel entity, AntSimulationModel state, CellEnvironment environment) {
     if (entity instanceof Ant) {
-      ants.add((Ant) entity);
+      if (ants.add((Ant) entity)) {
+        fitnessSampler.add((Ant) entity);
+      }
     } else if (entity instanceof Nest) {
       nest = (Nest) entity;
     }
@@ -224,6 +229,7 @@ public class AntReproductionBehavior extends AbstractAntEnvironmentBehavior {
   public void onRemoveEntity(EntityModel entity, AntSimulationModel state, CellEnvironment environment) {
     if (entity instanceof Ant) {
       ants.remove(entity);
+      fitnessSampler.remove((Ant) entity);
     } else if (entity instanceof Nest) {
       if (entity == nest) {
         nest = null;
@@ -235,15 +241,4 @@ public class AntReproductionBehavior extends AbstractAntEnvironmentBehavior {
   void setAntMaxCount(int antMaxCount) {
     this.antMaxCount = antMaxCount;
   }
-
-  private Collection<Ant> getReproductiveAnts(long currentIteration) {
-    List<Ant> reproductiveAnts = new ArrayList<>();
-    for (Ant ant : ants) {
-      long age = currentIteration - ant.getCreatedIteration();
-      if(age >= antMinReproductiveAge) {
-        reproductiveAnts.add(ant);
-      }
-    }
-    return reproductiveAnts;
-  }
 }
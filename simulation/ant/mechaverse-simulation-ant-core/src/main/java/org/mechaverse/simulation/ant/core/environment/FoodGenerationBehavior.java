@@ -1,7 +1,5 @@
 package org.mechaverse.simulation.ant.core.environment;
 
-import com.google.common.collect.ImmutableTable;
-import com.google.common.collect.Table;
 import java.util.function.Function;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.mechaverse.simulation.ant.core.entity.EntityUtil;
@@ -9,8 +7,7 @@ import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
 import org.mechaverse.simulation.ant.core.model.CellEnvironment;
 import org.mechaverse.simulation.ant.core.model.EntityType;
 import org.mechaverse.simulation.ant.core.model.Food;
-import org.mechaverse.simulation.common.AbstractProbabilisticEnvironmentModelGenerator.EntityDistribution;
-import org.mechaverse.simulation.common.AbstractProbabilisticEnvironmentModelGenerator.ProbabilisticLocalGenerator;
+import org.mechaverse.simulation.common.ClusterLocalGenerator;
 import org.mechaverse.simulation.common.Environment;
 import org.mechaverse.simulation.common.model.EntityModel;
 import org.slf4j.Logger;
@@ -21,38 +18,6 @@ import org.slf4j.LoggerFactory;
  */
 public class FoodGenerationBehavior extends AbstractAntEnvironmentBehavior {
 
-  /**
-   * {@link ProbabilisticLocalGenerator} that generates a cluster of food.
-   */
-  public static class FoodLocalGenerator extends ProbabilisticLocalGenerator<EntityType> {
-
-    private FoodLocalGenerator(double probability,
-        Table<Integer, Integer, EntityDistribution<EntityType>> entityDistributions) {
-      super(probability, entityDistributions);
-    }
-
-    public static FoodLocalGenerator newInstance(
-        double probability, int radius, RandomGenerator random) {
-      return new FoodLocalGenerator(probability, createDistributionMatrix(radius, random));
-    }
-
-    private static ImmutableTable<Integer, Integer, EntityDistribution<EntityType>>
-        createDistributionMatrix(int radius, RandomGenerator random) {
-      ImmutableTable.Builder<Integer, Integer, EntityDistribution<EntityType>> builder =
-          ImmutableTable.builder();
-
-      for (int row = 0; row < radius * 2; row++) {
-        for (int col = 0; col < radius * 2; col++) {
-          double x = col - radius;
-          double y = row - radius;
-          double p = (radius - Math.sqrt(x * x + y * y)) / radius;
-          builder.put(row, col, EntityDistribution.of(EntityType.FOOD, p > 0 ? p : 0, random));
-        }
-      }
-      return builder.build();
-    }
-  }
-
   private static Logger logger = LoggerFactory.getLogger(FoodGenerationBehavior.class);
 
   private int minFoodCount;
@@ -90,7 +55,7 @@ public class FoodGenerationBehavior extends AbstractAntEnvironmentBehavior {
         return entity;
       };
       new AntSimulationEnvironmentGenerator(entityFactory, env, random).apply(
-          FoodLocalGenerator.newInstance(1, foodClusterRadius, random), envModel, row, col, random);
+          ClusterLocalGenerator.of(EntityType.FOOD, 1, foodClusterRadius), envModel, row, col, random);
     }
   }
 
@@ -9,47 +9,81 @@ import org.mechaverse.simulation.common.Environment;
 import org.mechaverse.simulation.common.model.EntityModel;
 
 /**
- * A module that periodically decays pheromones. The granularity of this implementation is more
- * coarse than decaying each pheromone every update, but its performance is significantly better.
+ * A module that decays each pheromone by one every update. Pheromones that are fully decayed are
+ * removed.
+ *
+ * <p>Rather than decrementing the energy of every pheromone, the iteration at which each pheromone
+ * will expire is recorded in a {@link PheromoneTimingWheel}. Each update only visits the pheromones
+ * that expire in that update. The energy of the pheromone models is derived from the remaining
+ * lifetime when the state is updated.
  */
 public class PheromoneDecayBehavior extends AbstractAntEnvironmentBehavior {
 
-  private int decayInterval;
+  private PheromoneTimingWheel timingWheel;
 
   @Override
   public void setState(AntSimulationModel state,
       Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> environment) {
     super.setState(state, environment);
-    decayInterval = state.getPheromoneDecayInterval();
+    // The timing wheel is created when the existing pheromones are added.
+    timingWheel = null;
+  }
+
+  @Override
+  public void updateState(AntSimulationModel state,
+      Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env) {
+    if (timingWheel == null) {
+      return;
+    }
+    CellEnvironment envModel = env.getModel();
+    for (EntityModel<EntityType> pheromone : envModel.getEntities(EntityType.PHEROMONE)) {
+      int cellIndex = getCellIndex(pheromone, envModel);
+      if (timingWheel.isScheduled(cellIndex)) {
+        pheromone.setEnergy(timingWheel.getRemainingLifetime(cellIndex));
+      }
+    }
   }
 
   @Override
   public void beforeUpdate(AntSimulationModel model,
       Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env, RandomGenerator random) {
-    if (model.getIteration() % decayInterval == 0) {
-      decayPheromones(decayInterval, env);
+    if (timingWheel == null) {
+      return;
     }
+    CellEnvironment envModel = env.getModel();
+    timingWheel.advance(cellIndex -> {
+      Cell cell = envModel.getCell(cellIndex / envModel.getWidth(), cellIndex % envModel.getWidth());
+      EntityModel<EntityType> pheromone = cell.getEntity(EntityType.PHEROMONE);
+      if (pheromone != null) {
+        env.removeEntity(pheromone);
+      }
+    });
   }
 
-  /**
-   * Decays all pheromones by the specified amount. Pheromones that are fully decayed will be
-   * removed.
-   */
-  public void decayPheromones(int decayAmount,
-          Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> env) {
-    CellEnvironment envModel = env.getModel();
-    for (int row = 0; row < envModel.getHeight(); row++) {
-      for (int col = 0; col < envModel.getWidth(); col++) {
-        Cell cell = envModel.getCell(row, col);
-        EntityModel<EntityType> pheromone = cell.getEntity(EntityType.PHEROMONE);
-        if (pheromone != null) {
-          if (pheromone.getEnergy() > decayAmount) {
-            pheromone.setEnergy(pheromone.getEnergy() - decayAmount);
-          } else {
-            env.removeEntity(pheromone);
-          }
-        }
+  @Override
+  public void onAddEntity(EntityModel<EntityType> entity, AntSimulationModel state,
+      CellEnvironment envModel) {
+    if (entity.getType() == EntityType.PHEROMONE) {
+      int cellCount = envModel.getWidth() * envModel.getHeight();
+      if (timingWheel == null || timingWheel.getCellCount() != cellCount) {
+        timingWheel = new PheromoneTimingWheel(cellCount);
       }
+      timingWheel.schedule(getCellIndex(entity, envModel), Math.max(entity.getEnergy(), 1));
+    }
+  }
+
+  @Override
+  public void onRemoveEntity(EntityModel<EntityType> entity, AntSimulationModel state,
+      CellEnvironment envModel) {
+    // A pheromone may be replaced by a new pheromone before the removal is observed, in which case
+    // the expiration of the new pheromone is retained.
+    if (entity.getType() == EntityType.PHEROMONE && timingWheel != null
+        && !envModel.getCell(entity).hasEntity(EntityType.PHEROMONE)) {
+      timingWheel.cancel(getCellIndex(entity, envModel));
     }
   }
+
+  private static int getCellIndex(EntityModel<EntityType> entity, CellEnvironment envModel) {
+    return entity.getY() * envModel.getWidth() + entity.getX();
+  }
 }
@@ -0,0 +1,123 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import com.google.common.base.Preconditions;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A timing wheel that tracks when the pheromone in each cell expires.
+ *
+ * <p>The expiration tick of each cell is stored in a primitive array and the cell is added to the
+ * bucket of the wheel for that tick. Advancing the wheel only visits the cells in the bucket of the
+ * current tick, so the cost of decay is proportional to the number of pheromones that expire rather
+ * than to the size of the environment. The wheel grows when a lifetime longer than its size is
+ * scheduled.
+ *
+ * <p>Buckets may contain stale entries for cells that were cancelled or rescheduled. These are
+ * skipped because the expiration tick of the cell no longer matches the bucket tick.
+ */
+public final class PheromoneTimingWheel {
+
+  private static final int NO_EXPIRATION = 0;
+  private static final int INITIAL_BUCKET_COUNT = 64;
+
+  private final int[] expirationTicks;
+  private TIntArrayList[] buckets;
+  private int tick = 1;
+
+  /**
+   * @param cellCount the number of cells in the environment
+   */
+  public PheromoneTimingWheel(int cellCount) {
+    this.expirationTicks = new int[cellCount];
+    this.buckets = newBuckets(INITIAL_BUCKET_COUNT);
+  }
+
+  public int getCellCount() {
+    return expirationTicks.length;
+  }
+
+  /**
+   * Schedules the pheromone in the given cell to expire after the given number of ticks. Any
+   * existing expiration for the cell is replaced.
+   */
+  public void schedule(int cellIndex, int lifetime) {
+    Preconditions.checkArgument(lifetime > 0);
+    if (lifetime >= buckets.length) {
+      resize(lifetime);
+    }
+    int expirationTick = tick + lifetime;
+    expirationTicks[cellIndex] = expirationTick;
+    buckets[expirationTick & (buckets.length - 1)].add(cellIndex);
+  }
+
+  /**
+   * Cancels the expiration of the pheromone in the given cell.
+   */
+  public void cancel(int cellIndex) {
+    expirationTicks[cellIndex] = NO_EXPIRATION;
+  }
+
+  public boolean isScheduled(int cellIndex) {
+    return expirationTicks[cellIndex] != NO_EXPIRATION;
+  }
+
+  /**
+   * Returns the number of ticks remaining before the pheromone in the given cell expires or 0 if no
+   * expiration is scheduled for the cell.
+   */
+  public int getRemainingLifetime(int cellIndex) {
+    int expirationTick = expirationTicks[cellIndex];
+    return expirationTick != NO_EXPIRATION ? expirationTick - tick : 0;
+  }
+
+  /**
+   * Advances the wheel by one tick and passes the index of each cell whose pheromone expired to the
+   * given consumer.
+   */
+  public void advance(IntConsumer expiredCellConsumer) {
+    tick++;
+    TIntArrayList bucket = buckets[tick & (buckets.length - 1)];
+    for (int idx = 0; idx < bucket.size(); idx++) {
+      int cellIndex = bucket.getQuick(idx);
+      if (expirationTicks[cellIndex] == tick) {
+        expirationTicks[cellIndex] = NO_EXPIRATION;
+        expiredCellConsumer.accept(cellIndex);
+      }
+    }
+    bucket.resetQuick();
+  }
+
+  /**
+   * Cancels all scheduled expirations.
+   */
+  public void clear() {
+    Arrays.fill(expirationTicks, NO_EXPIRATION);
+    for (TIntArrayList bucket : buckets) {
+      bucket.resetQuick();
+    }
+  }
+
+  private void resize(int lifetime) {
+    int bucketCount = buckets.length;
+    while (bucketCount <= lifetime) {
+      bucketCount *= 2;
+    }
+    buckets = newBuckets(bucketCount);
+    for (int cellIndex = 0; cellIndex < expirationTicks.length; cellIndex++) {
+      int expirationTick = expirationTicks[cellIndex];
+      if (expirationTick != NO_EXPIRATION) {
+        buckets[expirationTick & (bucketCount - 1)].add(cellIndex);
+      }
+    }
+  }
+
+  private static TIntArrayList[] newBuckets(int bucketCount) {
+    TIntArrayList[] buckets = new TIntArrayList[bucketCount];
+    for (int idx = 0; idx < bucketCount; idx++) {
+      buckets[idx] = new TIntArrayList();
+    }
+    return buckets;
+  }
+}
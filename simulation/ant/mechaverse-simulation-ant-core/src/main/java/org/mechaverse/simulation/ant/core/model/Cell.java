@@ -1,6 +1,7 @@
 package org.mechaverse.simulation.ant.core.model;
 
 import org.mechaverse.simulation.common.cellautomaton.environment.AbstractCellModel;
+import org.mechaverse.simulation.common.cellautomaton.environment.CellGrid;
 import org.mechaverse.simulation.common.model.EntityModel;
 
 public class Cell extends AbstractCellModel<EntityModel<EntityType>, EntityType> {
@@ -8,4 +9,8 @@ public class Cell extends AbstractCellModel<EntityModel<EntityType>, EntityType>
     public Cell(int row, int column) {
         super(row, column);
     }
+
+    public Cell(int row, int column, CellGrid<EntityModel<EntityType>, EntityType> grid) {
+        super(row, column, grid);
+    }
 }
@@ -1,13 +1,15 @@
 package org.mechaverse.simulation.ant.core.model;
 
-import org.mechaverse.simulation.common.cellautomaton.environment.AbstractCellEnvironmentModel;
+import org.mechaverse.simulation.common.cellautomaton.environment.AbstractCellGridEnvironmentModel;
+import org.mechaverse.simulation.common.cellautomaton.environment.CellGrid;
 import org.mechaverse.simulation.common.model.Direction;
 import org.mechaverse.simulation.common.model.EntityModel;
 
 public class CellEnvironment extends
-    AbstractCellEnvironmentModel<EntityModel<EntityType>, EntityType, Cell> {
+    AbstractCellGridEnvironmentModel<EntityModel<EntityType>, EntityType, Cell> {
 
-  private Direction[][] nestDirectionIndex;
+  // Volatile since the index may be lazily created while entity input is updated in parallel.
+  private volatile Direction[][] nestDirectionIndex;
 
   @Override
   protected Cell[][] createCells() {
@@ -15,13 +17,15 @@ public class CellEnvironment extends
   }
 
   @Override
-  protected Cell createCell(final int row, final int column) {
-    return new Cell(row, column);
+  protected Cell createCell(int row, int column,
+      CellGrid<EntityModel<EntityType>, EntityType> grid) {
+    return new Cell(row, column, grid);
   }
 
   public Direction getNestDirection(Cell fromCell) {
+    Direction[][] nestDirectionIndex = this.nestDirectionIndex;
     if(nestDirectionIndex == null) {
-      for (EntityModel entity : getEntities()) {
+      for (EntityModel entity : getEntities(EntityType.NEST)) {
         if (entity instanceof Nest) {
           Cell nestCell = getCell(entity);
           nestDirectionIndex = new Direction[getHeight()][getWidth()];
@@ -32,6 +36,7 @@ public class CellEnvironment extends
           }
         }
       }
+      this.nestDirectionIndex = nestDirectionIndex;
     }
     return nestDirectionIndex[fromCell.getRow()][fromCell.getColumn()];
   }
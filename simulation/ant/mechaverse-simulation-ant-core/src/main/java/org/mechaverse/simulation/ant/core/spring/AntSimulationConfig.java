@@ -24,10 +24,18 @@ import org.mechaverse.simulation.ant.core.model.EntityType;
 import org.mechaverse.simulation.common.Environment;
 import org.mechaverse.simulation.common.EnvironmentFactory;
 import org.mechaverse.simulation.common.SimulationModelGenerator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonDescriptorDataSource;
 import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator.CellularAutomatonSimulatorParams;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.FlatJavaCellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonGeneratorImpl.StateLayout;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulator.CompilerType;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.ParallelJavaCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.opencl.OpenClCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
@@ -45,6 +53,28 @@ public class AntSimulationConfig {
   private static final int PHEROMONE_INITIAL_ENERGY = 100;
   private static final int PHEROMONE_DECAY_INTERVAL = 100;
   private static final int SUB_ENVIRONMENT_COUNT = 0;
+  private static final int AUTOMATON_OUTPUT_SIZE = 32;
+
+  /**
+   * The cellular automaton simulator implementation to use. One of "opencl", "java",
+   * "bytecode-java", "flat-java", "interleaved-java", or "parallel-java".
+   */
+  @Value("${cellularAutomatonSimulatorType:opencl}")
+  private String cellularAutomatonSimulatorType;
+
+  /**
+   * The number of partitions that ants are split into when updating their input in parallel. A
+   * value of 1 updates ant input serially.
+   */
+  @Value("${entityInputPartitionCount:1}")
+  private int entityInputPartitionCount;
+
+  /**
+   * The width of the grid tiles used to apply ant actions in parallel. A value of 0 applies ant
+   * actions serially.
+   */
+  @Value("${antActionTileWidth:0}")
+  private int antActionTileWidth;
 
   @Bean
   @Scope("prototype")
@@ -99,7 +129,11 @@ public class AntSimulationConfig {
             pheromoneDecayBehavior(),
             antReproductionBehavior(),
             cellularAutomatonBehavior);
-        return new AntEnvironment(environmentModel, environmentBehaviors, entityFactory(cellularAutomatonBehavior));
+        AntEnvironment environment = new AntEnvironment(
+            environmentModel, environmentBehaviors, entityFactory(cellularAutomatonBehavior));
+        environment.setInputPartitionCount(entityInputPartitionCount);
+        environment.setActionTileWidth(antActionTileWidth);
+        return environment;
       }
     };
   }
@@ -107,8 +141,39 @@ public class AntSimulationConfig {
   @Bean
   @Scope("prototype")
   public Function<CellularAutomatonSimulatorParams, CellularAutomatonSimulator> cellularAutomatonSimulatorFactory() {
-    return params -> new OpenClCellularAutomatonSimulator(params.numAutomata, AntInput.DATA_SIZE, 32,
-        CLPlatform.getDefault().getMaxFlopsDevice(), params.descriptorDataSource.getDescriptor());
+    return params -> newSimulator(params.numAutomata, params.descriptorDataSource);
+  }
+
+  private CellularAutomatonSimulator newSimulator(
+      int numAutomata, CellularAutomatonDescriptorDataSource descriptorDataSource) {
+    try {
+      switch (cellularAutomatonSimulatorType) {
+        case "java":
+          return new JavaCellularAutomatonSimulator(numAutomata, AntInput.DATA_SIZE,
+              AUTOMATON_OUTPUT_SIZE, descriptorDataSource);
+        case "bytecode-java":
+          return new JavaCellularAutomatonSimulator(numAutomata, AntInput.DATA_SIZE,
+              AUTOMATON_OUTPUT_SIZE, descriptorDataSource, CompilerType.BYTECODE);
+        case "flat-java":
+          return new FlatJavaCellularAutomatonSimulator(numAutomata, AntInput.DATA_SIZE,
+              AUTOMATON_OUTPUT_SIZE, descriptorDataSource);
+        case "interleaved-java":
+          return new FlatJavaCellularAutomatonSimulator(numAutomata, AntInput.DATA_SIZE,
+              AUTOMATON_OUTPUT_SIZE, descriptorDataSource, StateLayout.INTERLEAVED);
+        case "parallel-java":
+          return new ParallelJavaCellularAutomatonSimulator(numAutomata, AntInput.DATA_SIZE,
+              AUTOMATON_OUTPUT_SIZE, descriptorDataSource);
+        case "opencl":
+          return new OpenClCellularAutomatonSimulator(numAutomata, AntInput.DATA_SIZE,
+              AUTOMATON_OUTPUT_SIZE, CLPlatform.getDefault().getMaxFlopsDevice(),
+              descriptorDataSource.getDescriptor());
+        default:
+          throw new IllegalArgumentException(
+              "Unknown cellular automaton simulator type " + cellularAutomatonSimulatorType);
+      }
+    } catch (ReflectiveOperationException | CompileException ex) {
+      throw new IllegalStateException("Unable to create cellular automaton simulator", ex);
+    }
   }
 
   private AntEntityFactory entityFactory(
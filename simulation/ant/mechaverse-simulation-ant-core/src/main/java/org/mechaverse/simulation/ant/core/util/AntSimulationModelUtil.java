@@ -1,6 +1,8 @@
 package org.mechaverse.simulation.ant.core.util;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import org.mechaverse.simulation.ant.core.model.Ant;
 import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
 import org.mechaverse.simulation.ant.core.model.Barrier;
@@ -12,6 +14,8 @@ import org.mechaverse.simulation.ant.core.model.Nest;
 import org.mechaverse.simulation.ant.core.model.Pheromone;
 import org.mechaverse.simulation.ant.core.model.Rock;
 import org.mechaverse.simulation.common.model.SimulationModel;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
 import org.mechaverse.simulation.common.util.SimulationModelUtil;
 
 public class AntSimulationModelUtil {
@@ -24,7 +28,21 @@ public class AntSimulationModelUtil {
     return SimulationModelUtil.deserialize(data, CLASSES_TO_BE_BOUND, AntSimulationModel.class);
   }
 
+  public static AntSimulationModel deserialize(InputStream in) throws IOException {
+    return SimulationModelUtil.deserialize(in, CLASSES_TO_BE_BOUND, AntSimulationModel.class);
+  }
+
   public static byte[] serialize(SimulationModel model) throws IOException {
     return SimulationModelUtil.serialize(model);
   }
+
+  public static byte[] serialize(SimulationModel model, SimulationModelFormat format)
+      throws IOException {
+    return SimulationModelUtil.serialize(model, format);
+  }
+
+  public static void serialize(SimulationModel model, SimulationModelFormat format,
+      CompressionCodec codec, OutputStream out) throws IOException {
+    SimulationModelUtil.serialize(model, format, codec, out);
+  }
 }
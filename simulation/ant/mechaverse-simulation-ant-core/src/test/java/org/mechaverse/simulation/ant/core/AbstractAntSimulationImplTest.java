@@ -1,5 +1,7 @@
 package org.mechaverse.simulation.ant.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +14,7 @@ import org.mechaverse.simulation.ant.core.util.AntSimulationModelUtil;
 import org.mechaverse.simulation.common.SimulationObserver;
 import org.mechaverse.simulation.common.model.EntityModel;
 import org.mechaverse.simulation.common.util.RandomUtil;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -137,6 +140,33 @@ public abstract class AbstractAntSimulationImplTest {
     }
   }
 
+  @Test
+  public void getStateData_columnarFormat() throws Exception {
+    try (AntSimulationImpl simulation = newSimulationImpl()) {
+      simulation.setState(simulation.generateRandomState());
+      simulation.step(10);
+
+      byte[] stateData = simulation.getStateData(SimulationModelFormat.COLUMNAR);
+      assertModelsEqual(simulation.getState(), simulation.deserializeState(stateData));
+    }
+  }
+
+  @Test
+  public void setStateData_stream() throws Exception {
+    try (AntSimulationImpl simulation = newSimulationImpl();
+        AntSimulationImpl simulation2 = newSimulationImpl()) {
+      simulation.setState(simulation.generateRandomState());
+      simulation.step(10);
+
+      for (SimulationModelFormat format : SimulationModelFormat.values()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        simulation.getStateData(out, format);
+        simulation2.setStateData(new ByteArrayInputStream(out.toByteArray()));
+        assertModelsEqual(simulation.getState(), simulation2.getState());
+      }
+    }
+  }
+
   private void verifyEntityTypeCounts(AntSimulationModel model, EntityTypeCountObserver observer) {
     EntityTypeCounter counter = new EntityTypeCounter();
 
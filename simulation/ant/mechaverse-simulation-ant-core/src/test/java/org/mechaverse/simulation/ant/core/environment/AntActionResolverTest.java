@@ -0,0 +1,151 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mechaverse.simulation.ant.core.entity.ant.AbstractAntBehavior;
+import org.mechaverse.simulation.ant.core.entity.ant.AntEntity;
+import org.mechaverse.simulation.ant.core.entity.ant.AntInput;
+import org.mechaverse.simulation.ant.core.entity.ant.AntOutput;
+import org.mechaverse.simulation.ant.core.model.Ant;
+import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
+import org.mechaverse.simulation.ant.core.model.CellEnvironment;
+import org.mechaverse.simulation.ant.core.model.EntityType;
+import org.mechaverse.simulation.ant.core.model.Food;
+import org.mechaverse.simulation.common.Entity;
+import org.mechaverse.simulation.common.Environment;
+import org.mechaverse.simulation.common.model.Direction;
+import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.model.MoveDirection;
+import org.mechaverse.simulation.common.util.RandomUtil;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * Unit test for {@link AntActionResolver}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AntActionResolverTest {
+
+  private static class TestAntBehavior extends AbstractAntBehavior {
+
+    private final AntOutput output = new AntOutput();
+    private boolean removed;
+
+    TestAntBehavior(Ant entity) {
+      super(entity);
+    }
+
+    @Override
+    protected void setInput(AntInput input, RandomGenerator random) {}
+
+    @Override
+    protected AntOutput getOutput(RandomGenerator random) {
+      return output;
+    }
+
+    @Override
+    public void onRemoveEntity() {
+      removed = true;
+    }
+  }
+
+  @Mock private Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> mockEnv;
+
+  private CellEnvironment envModel;
+  private RandomGenerator random;
+
+  @Before
+  public void setUp() {
+    envModel = new CellEnvironment();
+    envModel.setWidth(8);
+    envModel.setHeight(4);
+    when(mockEnv.getModel()).thenReturn(envModel);
+    random = RandomUtil.newGenerator(AntActionResolverTest.class.getName().hashCode());
+  }
+
+  @Test
+  public void performActions_conflictingMoves() {
+    TestAntBehavior ant1 = newAnt("1", 3, 1, Direction.EAST);
+    TestAntBehavior ant2 = newAnt("2", 5, 1, Direction.WEST);
+    ant1.output.setMoveDirection(MoveDirection.FORWARD);
+    ant2.output.setMoveDirection(MoveDirection.FORWARD);
+
+    new AntActionResolver(2).performActions(mockEnv, toEntities(ant2, ant1), random);
+
+    // The first ant is in an odd tile and the second ant is in an even tile, so the second ant is
+    // applied first and moves into the contested cell.
+    assertEquals(3, ant1.getModel().getX());
+    assertEquals(4, ant2.getModel().getX());
+    assertSame(ant2.getModel(), envModel.getCell(1, 4).getEntity(EntityType.ANT));
+  }
+
+  @Test
+  public void performActions_sameTileOrder() {
+    TestAntBehavior ant1 = newAnt("1", 4, 1, Direction.EAST);
+    TestAntBehavior ant2 = newAnt("2", 6, 1, Direction.WEST);
+    ant1.output.setMoveDirection(MoveDirection.FORWARD);
+    ant2.output.setMoveDirection(MoveDirection.FORWARD);
+
+    new AntActionResolver(4).performActions(mockEnv, toEntities(ant2, ant1), random);
+
+    // Both ants are in the same tile, so they are applied in order.
+    assertEquals(4, ant1.getModel().getX());
+    assertEquals(5, ant2.getModel().getX());
+  }
+
+  @Test
+  public void performActions_removalDeferred() {
+    TestAntBehavior otherAnt = newAnt("1", 6, 2, Direction.EAST);
+    otherAnt.output.setConsume(true);
+    Food food = new Food();
+    food.setEnergy(5);
+    envModel.getCell(2, 6).setEntity(food);
+    TestAntBehavior ant = newAnt("2", 2, 2, Direction.EAST);
+    ant.getModel().setEnergy(1);
+
+    new AntActionResolver(2).performActions(mockEnv, toEntities(otherAnt, ant), random);
+
+    assertTrue(ant.removed);
+    assertFalse(otherAnt.removed);
+    assertFalse(envModel.getCell(2, 2).hasEntity(EntityType.ANT));
+    assertFalse(envModel.getCell(2, 6).hasEntity(EntityType.FOOD));
+    assertEquals(100, otherAnt.getModel().getEnergy());
+
+    // Removals are applied in tile order.
+    InOrder inOrder = inOrder(mockEnv);
+    inOrder.verify(mockEnv).removeEntity(ant.getModel());
+    inOrder.verify(mockEnv).removeEntity(food);
+  }
+
+  private TestAntBehavior newAnt(String id, int x, int y, Direction direction) {
+    Ant ant = new Ant();
+    ant.setId(id);
+    ant.setEnergy(100);
+    ant.setMaxEnergy(100);
+    ant.setDirection(direction);
+    envModel.getCell(y, x).setEntity(ant);
+    return new TestAntBehavior(ant);
+  }
+
+  private static List<Entity<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType>>
+      toEntities(TestAntBehavior... behaviors) {
+    ImmutableList.Builder<Entity<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType>>
+        builder = ImmutableList.builder();
+    for (TestAntBehavior behavior : behaviors) {
+      builder.add(new AntEntity(behavior));
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,129 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.primitives.Ints;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Test;
+import org.mechaverse.simulation.ant.core.entity.ant.AbstractAntBehavior;
+import org.mechaverse.simulation.ant.core.entity.ant.AntEntity;
+import org.mechaverse.simulation.ant.core.entity.ant.AntEntityFactory;
+import org.mechaverse.simulation.ant.core.entity.ant.AntInput;
+import org.mechaverse.simulation.ant.core.entity.ant.AntOutput;
+import org.mechaverse.simulation.ant.core.model.Ant;
+import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
+import org.mechaverse.simulation.ant.core.model.Cell;
+import org.mechaverse.simulation.ant.core.model.CellEnvironment;
+import org.mechaverse.simulation.ant.core.model.EntityType;
+import org.mechaverse.simulation.ant.core.model.Food;
+import org.mechaverse.simulation.ant.core.model.Nest;
+import org.mechaverse.simulation.common.EnvironmentScheduler;
+import org.mechaverse.simulation.common.model.Direction;
+import org.mechaverse.simulation.common.util.RandomUtil;
+
+/**
+ * Unit test for {@link AntEnvironment}.
+ */
+public class AntEnvironmentTest {
+
+  private static final int SIZE = 20;
+  private static final int ANT_COUNT = 60;
+  private static final int FOOD_COUNT = 40;
+
+  private static class InputRecordingAntBehavior extends AbstractAntBehavior {
+
+    private final Map<String, List<Integer>> inputs;
+    private final Thread updateThread;
+
+    InputRecordingAntBehavior(Ant entity, Map<String, List<Integer>> inputs, Thread updateThread) {
+      super(entity);
+      this.inputs = inputs;
+      this.updateThread = updateThread;
+    }
+
+    @Override
+    protected void setInput(AntInput input, RandomGenerator random) {
+      // Input must be applied serially by the thread that updates the environment.
+      assertSame(updateThread, Thread.currentThread());
+      inputs.put(entity.getId(), Ints.asList(input.getData().clone()));
+    }
+
+    @Override
+    protected AntOutput getOutput(RandomGenerator random) {
+      return new AntOutput();
+    }
+  }
+
+  @Test
+  public void update_parallelInputMatchesSerialInput() {
+    Map<String, List<Integer>> serialInputs = updateInput(1);
+    Map<String, List<Integer>> parallelInputs = updateInput(4);
+
+    assertEquals(ANT_COUNT, serialInputs.size());
+    assertEquals(serialInputs, parallelInputs);
+  }
+
+  private Map<String, List<Integer>> updateInput(int inputPartitionCount) {
+    RandomGenerator random = RandomUtil.newGenerator(AntEnvironmentTest.class.getName().hashCode());
+    AntSimulationModel model = newModel(random);
+    Map<String, List<Integer>> inputs = new TreeMap<>();
+    Thread updateThread = Thread.currentThread();
+
+    AntEnvironment environment = new AntEnvironment(model.getEnvironment(),
+        Collections.emptyList(), new AntEntityFactory(ant ->
+            new AntEntity(new InputRecordingAntBehavior(ant, inputs, updateThread))));
+    environment.setInputPartitionCount(inputPartitionCount);
+    environment.setState(model);
+    try (EnvironmentScheduler scheduler = new EnvironmentScheduler(inputPartitionCount)) {
+      environment.setScheduler(scheduler);
+      environment.update(model, random);
+    }
+    return inputs;
+  }
+
+  private static AntSimulationModel newModel(RandomGenerator random) {
+    CellEnvironment envModel = new CellEnvironment();
+    envModel.setId("env");
+    envModel.setWidth(SIZE);
+    envModel.setHeight(SIZE);
+
+    Nest nest = new Nest();
+    nest.setId("nest");
+    envModel.getCell(SIZE / 2, SIZE / 2).setEntity(nest);
+
+    for (int idx = 0; idx < ANT_COUNT; idx++) {
+      Cell cell = getRandomCell(envModel, EntityType.ANT, random);
+      Ant ant = new Ant();
+      ant.setId("ant" + idx);
+      ant.setEnergy(100);
+      ant.setMaxEnergy(100);
+      ant.setDirection(Direction.values()[random.nextInt(Direction.values().length)]);
+      cell.setEntity(ant);
+    }
+    for (int idx = 0; idx < FOOD_COUNT; idx++) {
+      Cell cell = getRandomCell(envModel, EntityType.FOOD, random);
+      Food food = new Food();
+      food.setId("food" + idx);
+      food.setEnergy(10);
+      cell.setEntity(food);
+    }
+
+    AntSimulationModel model = new AntSimulationModel();
+    model.setEnvironment(envModel);
+    return model;
+  }
+
+  private static Cell getRandomCell(CellEnvironment envModel, EntityType emptyType,
+      RandomGenerator random) {
+    Cell cell;
+    do {
+      cell = envModel.getCell(random.nextInt(SIZE), random.nextInt(SIZE));
+    } while (cell.hasEntity(emptyType));
+    return cell;
+  }
+}
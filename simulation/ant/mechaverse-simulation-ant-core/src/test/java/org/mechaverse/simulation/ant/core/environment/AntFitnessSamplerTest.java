@@ -0,0 +1,125 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.math3.distribution.EnumeratedDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mechaverse.simulation.ant.core.environment.AntReproductionBehavior.SimpleAntFitnessCalculator;
+import org.mechaverse.simulation.ant.core.model.Ant;
+import org.mechaverse.simulation.common.util.RandomUtil;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * Unit test for {@link AntFitnessSampler}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AntFitnessSamplerTest {
+
+  @Mock private RandomGenerator mockRandom;
+
+  private AntFitnessSampler sampler;
+  private Ant ant1;
+  private Ant ant2;
+  private Ant ant3;
+
+  @Before
+  public void setUp() {
+    sampler = new AntFitnessSampler();
+    // Relative ages are 10, 5, and 0. Energies are 10, 30, and 60.
+    ant1 = newAnt(0, 10);
+    ant2 = newAnt(5, 30);
+    ant3 = newAnt(10, 60);
+  }
+
+  @Test
+  public void sample() {
+    sampler.add(ant1);
+    sampler.add(ant2);
+    sampler.add(ant3);
+    sampler.update(20, 0);
+    assertEquals(3, sampler.getReproductiveAntCount());
+
+    // Values less than .7 select by relative age.
+    assertSample(ant1, 0);
+    assertSample(ant1, .46);
+    assertSample(ant2, .47);
+    assertSample(ant2, .69);
+
+    // Other values select by energy.
+    assertSample(ant1, .7);
+    assertSample(ant2, .74);
+    assertSample(ant3, .83);
+    assertSample(ant3, .99);
+  }
+
+  @Test
+  public void sample_reproductiveAge() {
+    sampler.add(ant1);
+    sampler.add(ant3);
+    sampler.update(15, 10);
+    sampler.add(ant2);
+    assertEquals(2, sampler.getReproductiveAntCount());
+
+    // The relative ages are 5 and 0.
+    assertSample(ant1, .69);
+    assertSample(ant2, .9);
+  }
+
+  @Test
+  public void sample_uniform() {
+    sampler.add(ant1);
+    sampler.add(ant2);
+    sampler.update(20, 0);
+    sampler.remove(ant1);
+    sampler.add(ant3);
+    sampler.remove(ant3);
+
+    // The relative age of the only remaining ant is 0.
+    assertSample(ant2, 0);
+    assertSample(ant2, .99);
+  }
+
+  @Test
+  public void sample_matchesSimpleAntFitnessCalculator() {
+    RandomGenerator random = RandomUtil.newGenerator(AntFitnessSamplerTest.class.getName().hashCode());
+    List<Ant> ants = ImmutableList.of(ant1, ant2, ant3, newAnt(2, 40), newAnt(7, 0));
+    ants.forEach(sampler::add);
+    sampler.update(20, 0);
+
+    Map<Ant, Integer> sampleCounts = new HashMap<>();
+    int sampleCount = 100000;
+    for (int cnt = 0; cnt < sampleCount; cnt++) {
+      sampleCounts.merge(sampler.sample(random), 1, Integer::sum);
+    }
+
+    EnumeratedDistribution<Ant> distribution =
+        new SimpleAntFitnessCalculator().getAntFitnessDistribution(ants, random);
+    for (Pair<Ant, Double> entry : distribution.getPmf()) {
+      double frequency = (double) sampleCounts.getOrDefault(entry.getKey(), 0) / sampleCount;
+      assertEquals(entry.getValue(), frequency, .01);
+    }
+  }
+
+  private void assertSample(Ant expectedAnt, double value) {
+    when(mockRandom.nextDouble()).thenReturn(value);
+    assertSame(expectedAnt, sampler.sample(mockRandom));
+  }
+
+  private static Ant newAnt(long createdIteration, int energy) {
+    Ant ant = new Ant();
+    ant.setCreatedIteration(createdIteration);
+    ant.setEnergy(energy);
+    return ant;
+  }
+}
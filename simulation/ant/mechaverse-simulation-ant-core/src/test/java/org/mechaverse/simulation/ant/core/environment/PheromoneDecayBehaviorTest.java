@@ -0,0 +1,91 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mechaverse.simulation.ant.core.model.AntSimulationModel;
+import org.mechaverse.simulation.ant.core.model.CellEnvironment;
+import org.mechaverse.simulation.ant.core.model.EntityType;
+import org.mechaverse.simulation.ant.core.model.Pheromone;
+import org.mechaverse.simulation.common.Environment;
+import org.mechaverse.simulation.common.model.EntityModel;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * Unit test for {@link PheromoneDecayBehavior}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PheromoneDecayBehaviorTest {
+
+  @Mock private Environment<AntSimulationModel, CellEnvironment, EntityModel<EntityType>, EntityType> mockEnv;
+
+  private AntSimulationModel state;
+  private CellEnvironment envModel;
+  private PheromoneDecayBehavior decayBehavior;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    state = new AntSimulationModel();
+    envModel = new CellEnvironment();
+    envModel.setWidth(5);
+    envModel.setHeight(4);
+    when(mockEnv.getModel()).thenReturn(envModel);
+    doAnswer(invocation -> {
+      EntityModel<EntityType> entity = (EntityModel<EntityType>) invocation.getArguments()[0];
+      envModel.remove(entity);
+      decayBehavior.onRemoveEntity(entity, state, envModel);
+      return null;
+    }).when(mockEnv).removeEntity(any());
+
+    decayBehavior = new PheromoneDecayBehavior();
+    decayBehavior.setState(state, mockEnv);
+  }
+
+  @Test
+  public void beforeUpdate_removesExpiredPheromones() {
+    Pheromone pheromone1 = addPheromone(1, 2, 2);
+    Pheromone pheromone2 = addPheromone(3, 0, 3);
+
+    decayBehavior.beforeUpdate(state, mockEnv, null);
+    verify(mockEnv, never()).removeEntity(any());
+
+    decayBehavior.beforeUpdate(state, mockEnv, null);
+    verify(mockEnv).removeEntity(pheromone1);
+    verify(mockEnv, never()).removeEntity(pheromone2);
+
+    decayBehavior.updateState(state, mockEnv);
+    assertEquals(1, pheromone2.getEnergy());
+  }
+
+  @Test
+  public void onAddEntity_replacedPheromone() {
+    Pheromone pheromone1 = addPheromone(1, 2, 1);
+    envModel.remove(pheromone1);
+    Pheromone pheromone2 = addPheromone(1, 2, 3);
+    decayBehavior.onRemoveEntity(pheromone1, state, envModel);
+
+    decayBehavior.beforeUpdate(state, mockEnv, null);
+    decayBehavior.beforeUpdate(state, mockEnv, null);
+    verify(mockEnv, never()).removeEntity(any());
+
+    decayBehavior.beforeUpdate(state, mockEnv, null);
+    verify(mockEnv).removeEntity(pheromone2);
+  }
+
+  private Pheromone addPheromone(int row, int col, int energy) {
+    Pheromone pheromone = new Pheromone();
+    pheromone.setEnergy(energy);
+    envModel.getCell(row, col).setEntity(pheromone);
+    decayBehavior.onAddEntity(pheromone, state, envModel);
+    return pheromone;
+  }
+}
@@ -0,0 +1,75 @@
+package org.mechaverse.simulation.ant.core.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link PheromoneTimingWheel}.
+ */
+public class PheromoneTimingWheelTest {
+
+  private PheromoneTimingWheel timingWheel;
+  private TIntArrayList expiredCells;
+
+  @Before
+  public void setUp() {
+    timingWheel = new PheromoneTimingWheel(10);
+    expiredCells = new TIntArrayList();
+  }
+
+  @Test
+  public void advance() {
+    timingWheel.schedule(3, 2);
+    timingWheel.schedule(7, 1);
+    assertEquals(2, timingWheel.getRemainingLifetime(3));
+
+    timingWheel.advance(expiredCells::add);
+    assertEquals(new TIntArrayList(new int[] {7}), expiredCells);
+    assertFalse(timingWheel.isScheduled(7));
+    assertEquals(1, timingWheel.getRemainingLifetime(3));
+
+    timingWheel.advance(expiredCells::add);
+    assertEquals(new TIntArrayList(new int[] {7, 3}), expiredCells);
+    assertEquals(0, timingWheel.getRemainingLifetime(3));
+  }
+
+  @Test
+  public void schedule_replacesExpiration() {
+    timingWheel.schedule(3, 1);
+    timingWheel.schedule(3, 2);
+
+    timingWheel.advance(expiredCells::add);
+    assertTrue(expiredCells.isEmpty());
+    timingWheel.advance(expiredCells::add);
+    assertEquals(new TIntArrayList(new int[] {3}), expiredCells);
+  }
+
+  @Test
+  public void schedule_longLifetime() {
+    timingWheel.schedule(1, 3);
+    timingWheel.schedule(2, 1000);
+
+    for (int cnt = 1; cnt < 1000; cnt++) {
+      timingWheel.advance(expiredCells::add);
+    }
+    assertEquals(new TIntArrayList(new int[] {1}), expiredCells);
+    assertEquals(1, timingWheel.getRemainingLifetime(2));
+    timingWheel.advance(expiredCells::add);
+    assertEquals(new TIntArrayList(new int[] {1, 2}), expiredCells);
+  }
+
+  @Test
+  public void cancel() {
+    timingWheel.schedule(3, 1);
+    timingWheel.cancel(3);
+    assertFalse(timingWheel.isScheduled(3));
+
+    timingWheel.advance(expiredCells::add);
+    assertTrue(expiredCells.isEmpty());
+  }
+}
@@ -0,0 +1,135 @@
+package org.mechaverse.simulation.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonDescriptorReader;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulationUtil;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.FlatJavaCellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonGeneratorImpl.StateLayout;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the state layouts supported by the Java cellular automaton generator using the bitwise
+ * boolean4 automaton. Each int of state holds 32 bit packed automata.
+ *
+ * <p>{@link #update_superWordDisabled} runs the same update with the auto-vectorization of the JIT
+ * compiler disabled. If the interleaved layout is faster only because its loops are vectorized,
+ * its advantage over the other layouts disappears in that variant.
+ */
+@Fork(value = 1, warmups = 0, jvmArgs = {"-Xmx4G", "-server"})
+@Threads(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class JavaCellularAutomatonSimulationBenchmark {
+
+  private static final String DESCRIPTOR_XML_FILENAME = "boolean4.xml";
+
+  @State(Scope.Benchmark)
+  public static class ExecutionPlan {
+
+    @Param(value = {"AUTOMATON", "FLAT", "INTERLEAVED"}) StateLayout stateLayout;
+    @Param(value = {"20"}) int iterationsPerUpdate;
+    @Param(value = {"65536"}) int numAutomata;
+    @Param(value = {"6"}) int inputSize;
+    @Param(value = {"4"}) int outputSize;
+    @Param(value = {"2"}) int width;
+    @Param(value = {"2"}) int height;
+
+    private int[] input;
+    private int[] output;
+    private CellularAutomatonSimulator simulator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      final RandomGenerator random = new Well19937c();
+
+      CellularAutomatonDescriptor descriptor = CellularAutomatonDescriptorReader.read(
+          ClassLoader.getSystemResourceAsStream(DESCRIPTOR_XML_FILENAME));
+      descriptor.setIterationsPerUpdate(iterationsPerUpdate);
+      descriptor.setWidth(width);
+      descriptor.setHeight(height);
+
+      int numBitwiseAutomata = numAutomata / Integer.SIZE;
+      if (stateLayout == StateLayout.AUTOMATON) {
+        simulator = new JavaCellularAutomatonSimulator(
+            numBitwiseAutomata, inputSize, outputSize, descriptor);
+      } else {
+        simulator = new FlatJavaCellularAutomatonSimulator(
+            numBitwiseAutomata, inputSize, outputSize, descriptor, stateLayout);
+      }
+
+      input = CellularAutomatonSimulationUtil.randomState(
+          simulator.size() * simulator.getAutomatonInputSize(), random);
+      output = new int[simulator.size() * simulator.getAutomatonOutputSize()];
+      int[] inputMap = new int[simulator.getAutomatonInputMapSize()];
+      for (int idx = 0; idx < inputMap.length; idx++) {
+        inputMap[idx] = random.nextInt(simulator.getAutomatonStateSize());
+      }
+      int[] outputMap = new int[simulator.getAutomatonOutputMapSize()];
+      for (int idx = 0; idx < outputMap.length; idx++) {
+        outputMap[idx] = random.nextInt(simulator.getAutomatonStateSize());
+      }
+
+      for (int idx = 0; idx < simulator.size(); idx++) {
+        int[] state = CellularAutomatonSimulationUtil.randomState(
+            simulator.getAutomatonStateSize(), random);
+        simulator.setAutomatonState(idx, state);
+        simulator.setAutomatonInputMap(idx, inputMap);
+        simulator.setAutomatonOutputMap(idx, outputMap);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      simulator.close();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public int update(ExecutionPlan plan) {
+    plan.simulator.setAutomataInput(plan.input);
+    plan.simulator.update();
+    plan.simulator.getAutomataOutput(plan.output);
+    return plan.output[0];
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Fork(value = 1, warmups = 0, jvmArgs = {"-Xmx4G", "-server", "-XX:-UseSuperWord"})
+  public int update_superWordDisabled(ExecutionPlan plan) {
+    return update(plan);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(JavaCellularAutomatonSimulationBenchmark.class.getSimpleName())
+        .resultFormat(ResultFormatType.CSV)
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,133 @@
+package org.mechaverse.simulation.benchmark;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.mechaverse.simulation.common.Simulation;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Measures the rate at which each {@link CompressionCodec} encodes and decodes the serialized state
+ * of an ant simulation. The {@code megabytes} counter reports the uncompressed MB/s, and the
+ * {@code uncompressedBytes} and {@code compressedBytes} counters report the size of the state.
+ */
+@Fork(value = 1, warmups = 0)
+@Threads(1)
+@Warmup(iterations = 3)
+public class StateCompressionBenchmark {
+
+  private static final int BUFFER_SIZE = 128 * 1024;
+
+  @State(Scope.Benchmark)
+  public static class ExecutionPlan {
+
+    @Param(value = {"gzip", "lz4", "zstd:1", "zstd:3", "zstd:9"}) String codec;
+    @Param(value = {"100"}) int stepCount;
+
+    private CompressionCodec compressionCodec;
+    private byte[] stateData;
+    private byte[] compressedStateData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      try (ClassPathXmlApplicationContext appContext =
+          new ClassPathXmlApplicationContext("ant-simulation-context.xml")) {
+        Simulation simulation = appContext.getBean(Simulation.class);
+        simulation.setState(simulation.generateRandomState());
+        simulation.step(stepCount);
+        stateData = ByteStreams.toByteArray(CompressionCodec.newInputStream(
+            new ByteArrayInputStream(simulation.getStateData())));
+      }
+      compressionCodec = CompressionCodec.valueOf(codec);
+      compressedStateData = encode(compressionCodec, stateData);
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class StateSize {
+
+    public long uncompressedBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void setUp(ExecutionPlan plan) {
+      uncompressedBytes = plan.stateData.length;
+      compressedBytes = plan.compressedStateData.length;
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Throughput {
+
+    public double megabytes;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public byte[] encode(ExecutionPlan plan, Throughput throughput, StateSize stateSize)
+      throws IOException {
+    byte[] compressedStateData = encode(plan.compressionCodec, plan.stateData);
+    throughput.megabytes += plan.stateData.length / 1e6;
+    return compressedStateData;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long decode(ExecutionPlan plan, Throughput throughput, StateSize stateSize)
+      throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long length = 0;
+    try (InputStream in = CompressionCodec.newInputStream(
+        new ByteArrayInputStream(plan.compressedStateData))) {
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        length += count;
+      }
+    }
+    throughput.megabytes += length / 1e6;
+    return length;
+  }
+
+  private static byte[] encode(CompressionCodec codec, byte[] data) throws IOException {
+    ByteArrayOutputStream byteOut = new ByteArrayOutputStream(data.length);
+    try (OutputStream out = codec.newOutputStream(byteOut)) {
+      out.write(data);
+    }
+    return byteOut.toByteArray();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(StateCompressionBenchmark.class.getSimpleName())
+        .resultFormat(ResultFormatType.CSV)
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -1,8 +1,10 @@
 package org.mechaverse.simulation.common;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -10,6 +12,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
 import org.mechaverse.simulation.common.model.EntityModel;
 import org.mechaverse.simulation.common.model.EnvironmentModel;
 import org.mechaverse.simulation.common.model.SimulationModel;
@@ -37,6 +40,10 @@ public abstract class AbstractEnvironment<
   private final Set<SimulationObserver<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE>> observers = Sets.newLinkedHashSet();
   private final EntityFactory<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> entityFactory;
   private final List<? extends EnvironmentBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE>> behaviors;
+  private int inputPartitionCount = 1;
+  private final List<RandomGenerator> inputPartitionRandomGenerators = new ArrayList<>();
+  private int[][] inputPartitionBuffers = new int[0][];
+  private EnvironmentScheduler scheduler = new EnvironmentScheduler(1);
 
   protected AbstractEnvironment(String environmentId,
       List<? extends EnvironmentBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE>> behaviors,
@@ -51,15 +58,17 @@ public abstract class AbstractEnvironment<
 
     behaviors.forEach(behavior -> behavior.beforeUpdate(simulationModel, this, random));
 
-    for (Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> activeEntity : activeEntities.values()) {
-      activeEntity.getBehavior().updateInput(environmentModel, random);
+    if (inputPartitionCount > 1 && activeEntities.size() > 1) {
+      updateInputParallel(random);
+    } else {
+      for (Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> activeEntity : activeEntities.values()) {
+        activeEntity.getBehavior().updateInput(environmentModel, random);
+      }
     }
 
     behaviors.forEach(behavior -> behavior.beforePerformAction(simulationModel, this, random));
 
-    for (Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> activeEntity : activeEntities.values()) {
-      activeEntity.getBehavior().performAction(this, random);
-    }
+    performActions(activeEntities.values(), random);
 
     behaviors.forEach(behavior -> behavior.afterUpdate(simulationModel,this, random));
 
@@ -70,6 +79,52 @@ public abstract class AbstractEnvironment<
     activeEntitiesToRemove.clear();
   }
 
+  /**
+   * Sets the number of partitions that the active entities are split into when updating entity
+   * input. When the count is greater than one the input of each {@link SensingEntityBehavior} is
+   * sensed in parallel on the pool of the scheduler (see {@link #setScheduler}) into a buffer of its
+   * partition and is then applied serially in entity order. Each partition is given its own random
+   * generator for sensing that is seeded from the environment random generator, so the result does
+   * not depend on the number of threads. The input of other behaviors is updated serially.
+   *
+   * @param inputPartitionCount the number of partitions or 1 to update entity input serially
+   */
+  public void setInputPartitionCount(int inputPartitionCount) {
+    Preconditions.checkArgument(inputPartitionCount > 0);
+    this.inputPartitionCount = inputPartitionCount;
+  }
+
+  public int getInputPartitionCount() {
+    return inputPartitionCount;
+  }
+
+  /**
+   * Sets the scheduler on whose pool parts of an update are performed in parallel. Parts are
+   * performed serially until a scheduler is set.
+   */
+  @Override
+  public void setScheduler(EnvironmentScheduler scheduler) {
+    this.scheduler = Preconditions.checkNotNull(scheduler);
+  }
+
+  protected EnvironmentScheduler getScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Performs the action of each active entity. Actions are performed serially in the order that the
+   * entities were added. Subclasses may override this to apply the actions differently.
+   *
+   * @param entities the active entities
+   * @param random the environment random generator
+   */
+  protected void performActions(
+      Collection<Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE>> entities, RandomGenerator random) {
+    for (Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> entity : entities) {
+      entity.getBehavior().performAction(this, random);
+    }
+  }
+
   @Override
   public void setState(SIM_MODEL simulationModel) {
     cleanUp();
@@ -121,8 +176,12 @@ public abstract class AbstractEnvironment<
     observers.forEach(observer -> observer.onRemoveEntity(entity, simulationModel, environmentModel));
   }
 
+  /**
+   * Returns a view of the entities in the environment, which is not copied. Callers that add or
+   * remove entities while iterating over the view must copy it first.
+   */
   public Iterable<ENT_MODEL> getEntities() {
-    return Iterables.unmodifiableIterable(environmentModel.getEntities());
+    return environmentModel.getEntityView();
   }
 
   @Override
@@ -142,6 +201,86 @@ public abstract class AbstractEnvironment<
     cleanUp();
   }
 
+  private void updateInputParallel(RandomGenerator random) {
+    List<Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE>> entities =
+        new ArrayList<>(activeEntities.values());
+    int partitionCount = Math.min(inputPartitionCount, entities.size());
+
+    // Seed the partition random generators in order so that the result is deterministic.
+    while (inputPartitionRandomGenerators.size() < partitionCount) {
+      inputPartitionRandomGenerators.add(new Well19937c());
+    }
+    for (int partition = 0; partition < partitionCount; partition++) {
+      inputPartitionRandomGenerators.get(partition).setSeed(random.nextLong());
+    }
+    if (inputPartitionBuffers.length < partitionCount) {
+      inputPartitionBuffers = Arrays.copyOf(inputPartitionBuffers, partitionCount);
+    }
+
+    // Sense the input of each partition into the buffer of the partition. Nothing else is written
+    // while sensing, so lazy initialization and writes to a shared simulator happen serially below.
+    scheduler.forEach(partitionCount, partition -> {
+      RandomGenerator partitionRandom = inputPartitionRandomGenerators.get(partition);
+      int fromIndex = getPartitionStart(partition, partitionCount, entities.size());
+      int toIndex = getPartitionStart(partition + 1, partitionCount, entities.size());
+
+      int inputSize = 0;
+      for (int idx = fromIndex; idx < toIndex; idx++) {
+        SensingEntityBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> behavior =
+            getSensingBehavior(entities.get(idx));
+        if (behavior != null) {
+          inputSize += behavior.getInputSize();
+        }
+      }
+      int[] buffer = inputPartitionBuffers[partition];
+      if (buffer == null || buffer.length < inputSize) {
+        buffer = new int[inputSize];
+        inputPartitionBuffers[partition] = buffer;
+      }
+
+      int offset = 0;
+      for (int idx = fromIndex; idx < toIndex; idx++) {
+        SensingEntityBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> behavior =
+            getSensingBehavior(entities.get(idx));
+        if (behavior != null) {
+          behavior.senseInput(environmentModel, buffer, offset, partitionRandom);
+          offset += behavior.getInputSize();
+        }
+      }
+    });
+
+    // Apply the sensed input in entity order.
+    for (int partition = 0; partition < partitionCount; partition++) {
+      int[] buffer = inputPartitionBuffers[partition];
+      int fromIndex = getPartitionStart(partition, partitionCount, entities.size());
+      int toIndex = getPartitionStart(partition + 1, partitionCount, entities.size());
+      int offset = 0;
+      for (int idx = fromIndex; idx < toIndex; idx++) {
+        Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> entity = entities.get(idx);
+        SensingEntityBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> behavior =
+            getSensingBehavior(entity);
+        if (behavior != null) {
+          behavior.applyInput(buffer, offset, random);
+          offset += behavior.getInputSize();
+        } else {
+          entity.getBehavior().updateInput(environmentModel, random);
+        }
+      }
+    }
+  }
+
+  private static int getPartitionStart(int partition, int partitionCount, int size) {
+    return (int) ((long) size * partition / partitionCount);
+  }
+
+  @SuppressWarnings("unchecked")
+  private SensingEntityBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> getSensingBehavior(
+      Entity<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> entity) {
+    EntityBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> behavior = entity.getBehavior();
+    return behavior instanceof SensingEntityBehavior
+        ? (SensingEntityBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE>) behavior : null;
+  }
+
   private void cleanUp() {
     observers.forEach(observer -> {
       try {
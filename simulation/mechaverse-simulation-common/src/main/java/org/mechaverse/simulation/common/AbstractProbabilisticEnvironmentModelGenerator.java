@@ -92,11 +92,18 @@ public abstract class AbstractProbabilisticEnvironmentModelGenerator<
       return probability;
     }
 
-    @Override
     public Optional<ENT_TYPE> generateEntity(int row, int column) {
       EntityDistribution<ENT_TYPE> entityDistribution = entityDistributions.get(row, column);
       return entityDistribution != null ? entityDistribution.sample() : Optional.empty();
     }
+
+    /**
+     * Generates an entity using the random generators of the entity distributions.
+     */
+    @Override
+    public Optional<ENT_TYPE> generateEntity(int row, int column, RandomGenerator random) {
+      return generateEntity(row, column);
+    }
   }
 
   private List<ProbabilisticLocalGenerator<ENT_TYPE>> localGenerators;
@@ -143,7 +150,7 @@ public abstract class AbstractProbabilisticEnvironmentModelGenerator<
 
     for (int row = 0; row < localGenerator.getHeight(); row++) {
       for (int col = 0; col < localGenerator.getWidth(); col++) {
-        Optional<ENT_TYPE> entityType = localGenerator.generateEntity(row, col);
+        Optional<ENT_TYPE> entityType = localGenerator.generateEntity(row, col, random);
 
         if (entityType.isPresent()) {
           ENT_MODEL entityModel = addEntity(entityType.get(), rowOffset + row, colOffset + col, env);
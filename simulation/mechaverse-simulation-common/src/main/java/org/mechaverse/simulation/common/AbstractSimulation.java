@@ -3,9 +3,7 @@ package org.mechaverse.simulation.common;
 import com.google.common.base.Preconditions;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.Well19937c;
 import org.mechaverse.simulation.common.model.EntityModel;
@@ -32,7 +30,10 @@ public abstract class AbstractSimulation<
 
   private SIM_MODEL model;
   private final List<Environment<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE>> environments = new ArrayList<>();
+  // A random generator for each environment that is reseeded on each step.
+  private final List<RandomGenerator> environmentRandomGenerators = new ArrayList<>();
   private final RandomGenerator random;
+  private final EnvironmentScheduler environmentScheduler;
 
 
   public AbstractSimulation(
@@ -45,9 +46,17 @@ public abstract class AbstractSimulation<
       SimulationModelGenerator<SIM_MODEL> simulationModelGenerator,
       EnvironmentFactory<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> environmentFactory,
       RandomGenerator random) {
+    this(simulationModelGenerator, environmentFactory, random, new EnvironmentScheduler());
+  }
+
+  public AbstractSimulation(
+      SimulationModelGenerator<SIM_MODEL> simulationModelGenerator,
+      EnvironmentFactory<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> environmentFactory,
+      RandomGenerator random, EnvironmentScheduler environmentScheduler) {
     this.simulationModelGenerator = Preconditions.checkNotNull(simulationModelGenerator);
     this.environmentFactory = Preconditions.checkNotNull(environmentFactory);
     this.random = Preconditions.checkNotNull(random);
+    this.environmentScheduler = Preconditions.checkNotNull(environmentScheduler);
   }
 
   @Override
@@ -66,9 +75,15 @@ public abstract class AbstractSimulation<
     environments.forEach(Environment::close);
 
     environments.clear();
+    environmentRandomGenerators.clear();
     for (ENV_MODEL environmentModel : model.getEnvironments()) {
-      environments.add(environmentFactory.create(environmentModel));
+      Environment<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> environment =
+          environmentFactory.create(environmentModel);
+      environment.setScheduler(environmentScheduler);
+      environments.add(environment);
+      environmentRandomGenerators.add(new Well19937c());
     }
+    environmentScheduler.resetCostEstimates();
 
     environments.forEach(env -> env.setState(model));
   }
@@ -104,16 +119,20 @@ public abstract class AbstractSimulation<
 
     random.setSeed(Long.valueOf(model.getSeed()));
 
-    // Create separate random generators for each environment so that the simulation remains deterministic.
-    Map<String, RandomGenerator> environmentRandomGenerators = new HashMap<>();
-    environments.forEach(env -> environmentRandomGenerators
-            .put(env.getModel().getId(), new Well19937c(random.nextLong())));
-
-    environments.parallelStream().forEach(env -> {
-      for(int cnt = 1; cnt <= stepCount; cnt++) {
-        env.update(model, environmentRandomGenerators.get(env.getModel().getId()));
-      }
-    });
+    // Reseed a separate random generator for each environment so that the simulation remains
+    // deterministic regardless of the order in which the environments are updated.
+    List<Runnable> environmentUpdates = new ArrayList<>(environments.size());
+    for (int idx = 0; idx < environments.size(); idx++) {
+      Environment<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> env = environments.get(idx);
+      RandomGenerator environmentRandom = environmentRandomGenerators.get(idx);
+      environmentRandom.setSeed(random.nextLong());
+      environmentUpdates.add(() -> {
+        for (int cnt = 1; cnt <= stepCount; cnt++) {
+          env.update(model, environmentRandom);
+        }
+      });
+    }
+    environmentScheduler.execute(environmentUpdates);
 
     if (logger.isDebugEnabled()) {
       // Print seed after updating environments in case seed is changed.
@@ -128,5 +147,6 @@ public abstract class AbstractSimulation<
   @Override
   public void close() {
     environments.forEach(Environment::close);
+    environmentScheduler.close();
   }
 }
@@ -0,0 +1,100 @@
+package org.mechaverse.simulation.common;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.mechaverse.simulation.common.EnvironmentModelGenerator.LocalGenerator;
+
+/**
+ * A {@link LocalGenerator} that generates a circular cluster of a single entity type. The
+ * probability of generating an entity is the cluster probability at the center of the cluster and
+ * decreases linearly to zero at its radius.
+ *
+ * <p>The cell probabilities of a cluster are stored in a primitive array that is computed once for
+ * each radius and probability and cached, so generating a cluster only requires a random number
+ * for each cell. With a probability of one the generated entities are sampled with the same
+ * probabilities and the same sequence of random numbers as the equivalent {@link
+ * AbstractProbabilisticEnvironmentModelGenerator.ProbabilisticLocalGenerator}.
+ *
+ * @param <ENT_TYPE> the entity type
+ */
+public final class ClusterLocalGenerator<ENT_TYPE extends Enum<ENT_TYPE>>
+    implements LocalGenerator<ENT_TYPE> {
+
+  private static final Map<List<Object>, ClusterLocalGenerator<?>> generatorCache =
+      new ConcurrentHashMap<>();
+
+  private final Optional<ENT_TYPE> entity;
+  private final double probability;
+  private final int radius;
+  private final double[] cellProbabilities;
+
+  private ClusterLocalGenerator(ENT_TYPE entityType, double probability, int radius) {
+    Preconditions.checkArgument(probability >= 0 && probability <= 1);
+    Preconditions.checkArgument(radius > 0);
+    this.entity = Optional.of(entityType);
+    this.probability = probability;
+    this.radius = radius;
+    this.cellProbabilities = createCellProbabilities(probability, radius);
+  }
+
+  /**
+   * Returns a cached generator for clusters of the given entity type and radius.
+   *
+   * @param probability the probability that an entity is generated at the center of the cluster
+   */
+  @SuppressWarnings("unchecked")
+  public static <ENT_TYPE extends Enum<ENT_TYPE>> ClusterLocalGenerator<ENT_TYPE> of(
+      ENT_TYPE entityType, double probability, int radius) {
+    return (ClusterLocalGenerator<ENT_TYPE>) generatorCache.computeIfAbsent(
+        ImmutableList.of(entityType, probability, radius),
+        key -> new ClusterLocalGenerator<>(entityType, probability, radius));
+  }
+
+  public double getProbability() {
+    return probability;
+  }
+
+  public int getRadius() {
+    return radius;
+  }
+
+  @Override
+  public int getWidth() {
+    return radius * 2;
+  }
+
+  @Override
+  public int getHeight() {
+    return radius * 2;
+  }
+
+  /**
+   * Returns the probability that an entity is generated at the given cell of the cluster.
+   */
+  public double getCellProbability(int row, int column) {
+    return cellProbabilities[row * getWidth() + column];
+  }
+
+  @Override
+  public Optional<ENT_TYPE> generateEntity(int row, int column, RandomGenerator random) {
+    return random.nextDouble() < getCellProbability(row, column) ? entity : Optional.empty();
+  }
+
+  private static double[] createCellProbabilities(double probability, int radius) {
+    double[] cellProbabilities = new double[radius * 2 * radius * 2];
+    for (int row = 0; row < radius * 2; row++) {
+      for (int col = 0; col < radius * 2; col++) {
+        double x = col - radius;
+        double y = row - radius;
+        double p = (radius - Math.sqrt(x * x + y * y)) / radius;
+        cellProbabilities[row * radius * 2 + col] = p > 0 ? p * probability : 0;
+      }
+    }
+    return cellProbabilities;
+  }
+}
@@ -29,4 +29,9 @@ public interface Environment<
   void removeObserver(SimulationObserver<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> observer);
 
   void close();
+
+  /**
+   * Sets the scheduler on whose pool the environment may perform parts of an update in parallel.
+   */
+  default void setScheduler(EnvironmentScheduler scheduler) {}
 }
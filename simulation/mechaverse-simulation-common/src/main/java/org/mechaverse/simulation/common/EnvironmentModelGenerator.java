@@ -29,7 +29,12 @@ public interface EnvironmentModelGenerator<
 
     int getWidth();
     int getHeight();
-    Optional<ENT_TYPE> generateEntity(int row, int column);
+
+    /**
+     * Generates an entity using the given random generator. Generators that hold their own random
+     * generator may ignore it.
+     */
+    Optional<ENT_TYPE> generateEntity(int row, int column, RandomGenerator random);
   }
 
   /**
@@ -0,0 +1,155 @@
+package org.mechaverse.simulation.common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Updates environments in parallel on a dedicated, bounded work stealing pool. The time taken to
+ * update each environment is tracked and environments are started in order of decreasing
+ * estimated cost so that a single expensive environment does not end up starting last. An
+ * environment update can split its work into parts with {@link #forEach}, which runs the parts on
+ * the same pool and lets idle workers steal work from the most expensive environments.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public final class EnvironmentScheduler implements AutoCloseable {
+
+  /**
+   * The weight given to the most recent update time when updating a cost estimate.
+   */
+  private static final double COST_ESTIMATE_ALPHA = 0.25;
+
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final int parallelism;
+  private final Map<Integer, Double> costEstimates = new ConcurrentHashMap<>();
+  private ForkJoinPool pool;
+
+  public EnvironmentScheduler() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param parallelism the maximum number of threads used to update environments
+   */
+  public EnvironmentScheduler(int parallelism) {
+    Preconditions.checkArgument(parallelism > 0);
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Runs the given environment updates and waits for them to complete. Updates are run on the
+   * calling thread when there is only a single environment. The cost estimate of an update is
+   * tracked by its index in the list.
+   *
+   * @param updates the update for each environment
+   */
+  public void execute(List<Runnable> updates) {
+    if (updates.size() == 1 || parallelism == 1) {
+      for (int idx = 0; idx < updates.size(); idx++) {
+        runAndRecordCost(idx, updates.get(idx));
+      }
+      return;
+    }
+
+    List<Integer> indices = new ArrayList<>(updates.size());
+    for (int idx = 0; idx < updates.size(); idx++) {
+      indices.add(idx);
+    }
+    indices.sort(Comparator.comparingDouble(this::getCostEstimate).reversed());
+
+    ForkJoinPool pool = getPool();
+    List<ForkJoinTask<?>> tasks = new ArrayList<>(indices.size());
+    for (int index : indices) {
+      Runnable update = updates.get(index);
+      tasks.add(pool.submit(() -> runAndRecordCost(index, update)));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+  }
+
+  /**
+   * Performs the given action for each index from 0 to count - 1 on the pool of this scheduler and
+   * waits for the actions to complete. The actions are performed serially on the calling thread if
+   * the parallelism is one. When called from an environment update that is running on the pool, the
+   * actions are forked to the pool so that the worker helps to perform them while it waits.
+   *
+   * @param count the number of indices
+   * @param action the action to perform for each index
+   */
+  public void forEach(int count, IntConsumer action) {
+    if (count <= 1 || parallelism == 1) {
+      for (int idx = 0; idx < count; idx++) {
+        action.accept(idx);
+      }
+      return;
+    }
+
+    ForkJoinPool pool = getPool();
+    boolean inPool = ForkJoinTask.getPool() == pool;
+    List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+    for (int idx = 0; idx < count; idx++) {
+      final int index = idx;
+      ForkJoinTask<?> task = ForkJoinTask.adapt(() -> action.accept(index));
+      tasks.add(inPool ? task.fork() : pool.submit(task));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+  }
+
+  /**
+   * Returns the estimated time in nanoseconds to run the update with the given index. Updates
+   * without an estimate have an infinite estimated cost so that they are started first.
+   */
+  public double getCostEstimate(int index) {
+    return costEstimates.getOrDefault(index, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Discards all cost estimates. This should be called when the set of environments changes.
+   */
+  public void resetCostEstimates() {
+    costEstimates.clear();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (pool != null) {
+      pool.shutdownNow();
+      pool = null;
+    }
+  }
+
+  private void runAndRecordCost(int index, Runnable update) {
+    long startTime = System.nanoTime();
+    update.run();
+    double cost = System.nanoTime() - startTime;
+    costEstimates.merge(index, cost,
+        (estimate, latest) -> estimate + COST_ESTIMATE_ALPHA * (latest - estimate));
+  }
+
+  private synchronized ForkJoinPool getPool() {
+    if (pool == null) {
+      final String namePrefix = "environment-scheduler-" + POOL_COUNT.incrementAndGet() + "-";
+      pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+        ForkJoinWorkerThread thread =
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName(namePrefix + thread.getPoolIndex());
+        return thread;
+      }, null, false);
+    }
+    return pool;
+  }
+}
@@ -0,0 +1,41 @@
+package org.mechaverse.simulation.common;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.model.EnvironmentModel;
+import org.mechaverse.simulation.common.model.SimulationModel;
+
+/**
+ * An {@link EntityBehavior} that separates sensing the environment from applying the sensed input.
+ * The input of these behaviors can be sensed in parallel (see
+ * {@link AbstractEnvironment#setInputPartitionCount(int)}) and is then applied serially.
+ */
+public interface SensingEntityBehavior<
+    SIM_MODEL extends SimulationModel<ENV_MODEL, ENT_MODEL, ENT_TYPE>,
+    ENV_MODEL extends EnvironmentModel<ENT_MODEL, ENT_TYPE>,
+    ENT_MODEL extends EntityModel<ENT_TYPE>,
+    ENT_TYPE extends Enum<ENT_TYPE>> extends EntityBehavior<SIM_MODEL, ENV_MODEL, ENT_MODEL, ENT_TYPE> {
+
+  /**
+   * Returns the number of values that are written by {@link #senseInput}.
+   */
+  int getInputSize();
+
+  /**
+   * Senses the environment and writes the input to the given array. Implementations may be called
+   * concurrently for different entities and must not modify the environment or any state that is
+   * shared with other entities.
+   *
+   * @param input the array to write the input to
+   * @param offset the index of the first input value
+   */
+  void senseInput(ENV_MODEL env, int[] input, int offset, RandomGenerator random);
+
+  /**
+   * Applies input that was written by {@link #senseInput}. This is always called serially.
+   *
+   * @param input the array that contains the input
+   * @param offset the index of the first input value
+   */
+  void applyInput(int[] input, int offset, RandomGenerator random);
+}
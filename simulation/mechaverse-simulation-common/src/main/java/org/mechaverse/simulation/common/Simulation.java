@@ -1,9 +1,15 @@
 package org.mechaverse.simulation.common;
 
+import com.google.common.io.ByteStreams;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import org.mechaverse.simulation.common.model.EntityModel;
 import org.mechaverse.simulation.common.model.EnvironmentModel;
 import org.mechaverse.simulation.common.model.SimulationModel;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
+import org.mechaverse.simulation.common.util.SimulationModelUtil;
 
 /**
  * Interface for a mechaverse simulation.
@@ -26,8 +32,60 @@ public interface Simulation<
 
   byte[] getStateData() throws IOException;
 
+  /**
+   * Returns the state of the simulation serialized in the given format. {@link #setStateData}
+   * accepts state data in any format. By default, formats other than smile are serialized from the
+   * model returned by {@link #getState}.
+   */
+  default byte[] getStateData(SimulationModelFormat format) throws IOException {
+    if (format == SimulationModelFormat.SMILE) {
+      return getStateData();
+    }
+    return SimulationModelUtil.serialize(getState(), format);
+  }
+
+  /**
+   * Writes the state of the simulation to the given stream in the given format. The stream is not
+   * closed. Implementations should write the serialized state as it is produced rather than
+   * buffering it in memory.
+   */
+  default void getStateData(OutputStream out, SimulationModelFormat format) throws IOException {
+    getStateData(out, format, CompressionCodec.GZIP);
+  }
+
+  /**
+   * Writes the state of the simulation to the given stream in the given format, compressed with the
+   * given codec. The stream is not closed. {@link #setStateData} accepts state data compressed by
+   * any codec. By default, the data returned by {@link #getStateData(SimulationModelFormat)} is
+   * compressed again if a codec other than the default gzip codec is given.
+   */
+  default void getStateData(OutputStream out, SimulationModelFormat format,
+      CompressionCodec codec) throws IOException {
+    if (CompressionCodec.GZIP.equals(codec)) {
+      out.write(getStateData(format));
+    } else {
+      SimulationModelUtil.recompress(getStateData(format), codec, out);
+    }
+  }
+
+  /**
+   * Writes the state of the simulation to the given stream. The stream is not closed.
+   */
+  default void getStateData(OutputStream out) throws IOException {
+    getStateData(out, SimulationModelFormat.SMILE);
+  }
+
   void setStateData(byte[] stateData) throws Exception;
 
+  /**
+   * Sets the state of the simulation from state data read from the given stream. The stream is not
+   * closed. Implementations should decode the state as it is read rather than buffering it in
+   * memory.
+   */
+  default void setStateData(InputStream in) throws Exception {
+    setStateData(ByteStreams.toByteArray(in));
+  }
+
   /**
    * Generates a random state.
    */
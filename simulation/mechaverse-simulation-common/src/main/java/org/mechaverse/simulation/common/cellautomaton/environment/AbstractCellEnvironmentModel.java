@@ -1,6 +1,7 @@
 package org.mechaverse.simulation.common.cellautomaton.environment;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.mechaverse.simulation.common.model.Direction;
 import org.mechaverse.simulation.common.model.EntityModel;
@@ -19,6 +20,7 @@ public abstract class AbstractCellEnvironmentModel<
       7 * Math.PI / 4};
 
   private C[][] cells;
+  private CellGrid<ENT_MODEL, ENT_TYPE> grid;
 
   public boolean hasCell(int row, int col) {
     if(cells == null) {
@@ -101,6 +103,13 @@ public abstract class AbstractCellEnvironmentModel<
   }
 
   public void moveEntityToCell(ENT_TYPE entityType, C fromCell, C targetCell) {
+    if (grid != null) {
+      ENT_MODEL entity =
+          grid.moveEntity(fromCell.getGridIndex(), targetCell.getGridIndex(), entityType);
+      entity.setX(targetCell.getColumn());
+      entity.setY(targetCell.getRow());
+      return;
+    }
     ENT_MODEL entity = fromCell.removeEntity(entityType);
     targetCell.setEntity(entity);
   }
@@ -115,8 +124,16 @@ public abstract class AbstractCellEnvironmentModel<
     super.setHeight(value);
   }
 
+  /**
+   * Returns a new list of the entities in the environment in row major cell order.
+   */
   public List<ENT_MODEL> getEntities() {
     List<ENT_MODEL> entities = new ArrayList<>();
+    getCells();
+    if (grid != null) {
+      grid.getEntities(entities);
+      return entities;
+    }
     for (C[] row : getCells()) {
       for (C cell : row) {
         entities.addAll(cell.getEntities());
@@ -125,6 +142,46 @@ public abstract class AbstractCellEnvironmentModel<
     return entities;
   }
 
+  /**
+   * Returns the entities in the environment. If the cell grid is enabled this is a live view of the
+   * grid's entity index which is enumerated without scanning the cells.
+   */
+  @Override
+  public Iterable<ENT_MODEL> getEntityView() {
+    getCells();
+    return grid != null ? grid.getEntities() : Collections.unmodifiableList(getEntities());
+  }
+
+  /**
+   * Returns the entities of the given type. If the cell grid is enabled this is a live,
+   * unmodifiable view, otherwise a new list is created by scanning the cells.
+   */
+  public List<ENT_MODEL> getEntities(ENT_TYPE type) {
+    getCells();
+    if (grid != null) {
+      return grid.getEntities(type);
+    }
+    List<ENT_MODEL> entities = new ArrayList<>();
+    for (C[] row : cells) {
+      for (C cell : row) {
+        ENT_MODEL entity = cell.getEntity(type);
+        if (entity != null) {
+          entities.add(entity);
+        }
+      }
+    }
+    return entities;
+  }
+
+  /**
+   * Returns the number of entities of the given type. This takes constant time if the cell grid is
+   * enabled.
+   */
+  public int getEntityCount(ENT_TYPE type) {
+    getCells();
+    return grid != null ? grid.getEntityCount(type) : getEntities(type).size();
+  }
+
   @Override
   public void remove(ENT_MODEL entity) {
     C cell = getCell(entity);
@@ -137,6 +194,21 @@ public abstract class AbstractCellEnvironmentModel<
 
   protected abstract C createCell(int row, int column);
 
+  /**
+   * Returns a new grid that stores the entities of all cells, or null if the entities are stored in
+   * a map per cell. Overridden by {@link AbstractCellGridEnvironmentModel}.
+   */
+  CellGrid<ENT_MODEL, ENT_TYPE> createGrid() {
+    return null;
+  }
+
+  /**
+   * Returns the grid that stores the entities of all cells, or null if there is none.
+   */
+  CellGrid<ENT_MODEL, ENT_TYPE> getGrid() {
+    return grid;
+  }
+
   protected C[][] getCells() {
     if (cells == null) {
       initCells();
@@ -146,6 +218,7 @@ public abstract class AbstractCellEnvironmentModel<
 
   private void initCells() {
     this.cells = createCells();
+    this.grid = createGrid();
 
     // Allocate cells.
     for (int row = 0; row < getHeight(); row++) {
@@ -0,0 +1,29 @@
+package org.mechaverse.simulation.common.cellautomaton.environment;
+
+import org.mechaverse.simulation.common.model.EntityModel;
+
+/**
+ * A cell environment that stores the entities of all cells in a single {@link CellGrid} rather
+ * than in a map per cell.
+ */
+public abstract class AbstractCellGridEnvironmentModel<
+    ENT_MODEL extends EntityModel<ENT_TYPE>,
+    ENT_TYPE extends Enum<ENT_TYPE>,
+    C extends AbstractCellModel<ENT_MODEL, ENT_TYPE>> extends
+    AbstractCellEnvironmentModel<ENT_MODEL, ENT_TYPE, C> {
+
+  @Override
+  protected final C createCell(int row, int column) {
+    return createCell(row, column, getGrid());
+  }
+
+  /**
+   * Creates a cell whose entities are stored in the given grid.
+   */
+  protected abstract C createCell(int row, int column, CellGrid<ENT_MODEL, ENT_TYPE> grid);
+
+  @Override
+  CellGrid<ENT_MODEL, ENT_TYPE> createGrid() {
+    return new CellGrid<>(getWidth(), getHeight());
+  }
+}
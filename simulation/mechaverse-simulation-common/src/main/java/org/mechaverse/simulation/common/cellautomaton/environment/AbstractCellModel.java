@@ -1,6 +1,8 @@
 package org.mechaverse.simulation.common.cellautomaton.environment;
 
 import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,10 +20,27 @@ public abstract class AbstractCellModel<
 
   private final Map<ENT_TYPE, ENT_MODEL> entities;
 
+  // The grid that stores the entities of this cell or null if entities are stored in the map.
+  private final CellGrid<ENT_MODEL, ENT_TYPE> grid;
+  private final int gridIndex;
+
   public AbstractCellModel(int row, int column) {
     this.row = row;
     this.column = column;
     this.entities = new HashMap<>();
+    this.grid = null;
+    this.gridIndex = -1;
+  }
+
+  /**
+   * Creates a cell whose entities are stored in the given grid.
+   */
+  public AbstractCellModel(int row, int column, CellGrid<ENT_MODEL, ENT_TYPE> grid) {
+    this.row = row;
+    this.column = column;
+    this.entities = null;
+    this.grid = grid;
+    this.gridIndex = grid.getIndex(row, column);
   }
 
   public int getRow() {
@@ -32,13 +51,24 @@ public abstract class AbstractCellModel<
     return column;
   }
 
+  int getGridIndex() {
+    return gridIndex;
+  }
+
   public boolean isEmpty() {
+    if (grid != null) {
+      return grid.isEmpty(gridIndex);
+    }
     return primaryEntity == null;
   }
 
   public void setEntity(ENT_MODEL entity) {
     entity.setX(column);
     entity.setY(row);
+    if (grid != null) {
+      grid.setEntity(gridIndex, entity);
+      return;
+    }
     ENT_TYPE type = entity.getType();
     entities.put(type, entity);
 
@@ -49,28 +79,46 @@ public abstract class AbstractCellModel<
   }
 
   public ENT_MODEL getEntity() {
+    if (grid != null) {
+      return grid.getEntity(gridIndex);
+    }
     return primaryEntity;
   }
 
   public ENT_TYPE getEntityType() {
+    if (grid != null) {
+      return grid.getEntityType(gridIndex);
+    }
     return primaryEntityType;
   }
 
   public boolean hasEntity(ENT_TYPE type) {
+    if (grid != null) {
+      return grid.hasEntity(gridIndex, type);
+    }
     return entities.containsKey(type);
   }
 
   public ENT_MODEL getEntity(ENT_TYPE type) {
+    if (grid != null) {
+      return grid.getEntity(gridIndex, type);
+    }
     return entities.get(type);
   }
 
   public ENT_MODEL removeEntity(ENT_MODEL entity) {
+    if (grid != null) {
+      return grid.removeEntity(gridIndex, entity);
+    }
     ENT_TYPE type = entity.getType();
     return entities.get(type) == entity ? removeEntity(type) : null;
   }
 
 
   public ENT_MODEL removeEntity(ENT_TYPE type) {
+    if (grid != null) {
+      return grid.removeEntity(gridIndex, type);
+    }
     ENT_MODEL removedEntity = entities.remove(type);
     if (primaryEntityType == type) {
       for (ENT_TYPE newType : entities.keySet()) {
@@ -87,6 +135,11 @@ public abstract class AbstractCellModel<
   }
 
   public List<ENT_MODEL> getEntities() {
+    if (grid != null) {
+      List<ENT_MODEL> cellEntities = new ArrayList<>(2);
+      grid.getEntities(gridIndex, cellEntities);
+      return Collections.unmodifiableList(cellEntities);
+    }
     ImmutableList.Builder<ENT_MODEL> builder = ImmutableList.builder();
     for (ENT_MODEL entity : entities.values()) {
       if (entity != null) {
@@ -97,6 +150,10 @@ public abstract class AbstractCellModel<
   }
 
   public void clear() {
+    if (grid != null) {
+      grid.clear(gridIndex);
+      return;
+    }
     primaryEntity = null;
     primaryEntityType = null;
     entities.clear();
@@ -0,0 +1,363 @@
+package org.mechaverse.simulation.common.cellautomaton.environment;
+
+import com.google.common.base.Preconditions;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.mechaverse.simulation.common.model.EntityModel;
+
+/**
+ * Stores the entities of a grid of cells in flat arrays. There is one array per entity type that
+ * is indexed by {@code row * width + column}, and a bit mask per cell that records which entity
+ * types are present. The primary entity of a cell is the entity with the lowest type ordinal.
+ *
+ * <p>An index of the entities of each type is maintained incrementally as entities are set,
+ * removed, and moved. The index stores the entities of each type in a dense array, so entities can
+ * be enumerated in time proportional to their count and the number of entities of a type is
+ * available in constant time. Entities are removed from the index by moving the last entity of the
+ * same type into the vacated slot.
+ *
+ * <p>Different cells may be modified concurrently, for example when entity actions are applied in
+ * parallel by regions of the grid. The methods that modify the grid update the shared index and are
+ * therefore synchronized. A cell must not be read while it is modified by another thread, and the
+ * entity views and their iterators must not be used while the grid is modified concurrently.
+ *
+ * @param <ENT_MODEL> the entity model type
+ * @param <ENT_TYPE> the entity type enum, which may have at most {@value #MAX_ENTITY_TYPE_COUNT}
+ *     values
+ */
+public final class CellGrid<ENT_MODEL extends EntityModel<ENT_TYPE>, ENT_TYPE extends Enum<ENT_TYPE>> {
+
+  public static final int MAX_ENTITY_TYPE_COUNT = Integer.SIZE;
+
+  private static final int INITIAL_TYPE_CAPACITY = 16;
+
+  private final int width;
+  private final int height;
+  private final int[] entityTypeMasks;
+  private ENT_TYPE[] entityTypes;
+
+  // Per type arrays, allocated when the first entity of a type is set.
+  private Object[][] cellEntities = new Object[0][];
+  private int[][] cellEntityIndexPositions = new int[0][];
+  private Object[][] indexEntities = new Object[0][];
+  private int[][] indexEntityCells = new int[0][];
+  private int[] indexEntityCounts = new int[0];
+
+  private int entityCount;
+  private int modCount;
+  private final List<ENT_MODEL> entitiesView = new EntityList(-1);
+  private List<ENT_MODEL>[] entityTypeViews;
+
+  /**
+   * A live view of the indexed entities of one type or of all types.
+   */
+  private final class EntityList extends AbstractList<ENT_MODEL> {
+
+    private final int ordinal;
+
+    EntityList(int ordinal) {
+      this.ordinal = ordinal;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ENT_MODEL get(int index) {
+      Preconditions.checkElementIndex(index, size());
+      if (ordinal >= 0) {
+        return (ENT_MODEL) indexEntities[ordinal][index];
+      }
+      for (int typeOrdinal = 0; ; typeOrdinal++) {
+        if (index < indexEntityCounts[typeOrdinal]) {
+          return (ENT_MODEL) indexEntities[typeOrdinal][index];
+        }
+        index -= indexEntityCounts[typeOrdinal];
+      }
+    }
+
+    @Override
+    public int size() {
+      if (ordinal >= 0) {
+        return ordinal < indexEntityCounts.length ? indexEntityCounts[ordinal] : 0;
+      }
+      return entityCount;
+    }
+
+    @Override
+    public Iterator<ENT_MODEL> iterator() {
+      return new EntityIterator(ordinal);
+    }
+  }
+
+  /**
+   * Iterates over the indexed entities of one type or of all types. Moving an entity does not
+   * affect the iteration, but setting or removing an entity causes the iterator to throw a
+   * {@link ConcurrentModificationException}.
+   */
+  private final class EntityIterator implements Iterator<ENT_MODEL> {
+
+    private final int lastOrdinal;
+    private int ordinal;
+    private int position;
+    private final int expectedModCount = modCount;
+
+    EntityIterator(int ordinal) {
+      this.ordinal = ordinal >= 0 ? ordinal : 0;
+      this.lastOrdinal = ordinal >= 0 ? ordinal : indexEntityCounts.length - 1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      checkForComodification();
+      while (ordinal <= lastOrdinal && ordinal < indexEntityCounts.length) {
+        if (position < indexEntityCounts[ordinal]) {
+          return true;
+        }
+        ordinal++;
+        position = 0;
+      }
+      return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ENT_MODEL next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return (ENT_MODEL) indexEntities[ordinal][position++];
+    }
+
+    private void checkForComodification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  public CellGrid(int width, int height) {
+    Preconditions.checkArgument(width >= 0 && height >= 0);
+    this.width = width;
+    this.height = height;
+    this.entityTypeMasks = new int[width * height];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getIndex(int row, int column) {
+    return row * width + column;
+  }
+
+  public boolean isEmpty(int index) {
+    return entityTypeMasks[index] == 0;
+  }
+
+  public boolean hasEntity(int index, ENT_TYPE type) {
+    return (entityTypeMasks[index] & (1 << type.ordinal())) != 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public ENT_MODEL getEntity(int index, ENT_TYPE type) {
+    int ordinal = type.ordinal();
+    return ordinal < cellEntities.length && cellEntities[ordinal] != null
+        ? (ENT_MODEL) cellEntities[ordinal][index] : null;
+  }
+
+  /**
+   * Returns the entity with the lowest type ordinal in the cell with the given index.
+   */
+  @SuppressWarnings("unchecked")
+  public ENT_MODEL getEntity(int index) {
+    int mask = entityTypeMasks[index];
+    return mask != 0 ? (ENT_MODEL) cellEntities[Integer.numberOfTrailingZeros(mask)][index] : null;
+  }
+
+  /**
+   * Returns the type of the entity returned by {@link #getEntity(int)}.
+   */
+  public ENT_TYPE getEntityType(int index) {
+    int mask = entityTypeMasks[index];
+    return mask != 0 ? entityTypes[Integer.numberOfTrailingZeros(mask)] : null;
+  }
+
+  /**
+   * Sets the entity of the given entity's type in the cell with the given index, replacing any
+   * existing entity of the same type.
+   */
+  public synchronized void setEntity(int index, ENT_MODEL entity) {
+    ENT_TYPE type = entity.getType();
+    int ordinal = type.ordinal();
+    if (ordinal >= cellEntities.length || cellEntities[ordinal] == null) {
+      allocate(type);
+    }
+
+    modCount++;
+    if ((entityTypeMasks[index] & (1 << ordinal)) != 0) {
+      // Replace the existing entity in the index.
+      indexEntities[ordinal][cellEntityIndexPositions[ordinal][index]] = entity;
+    } else {
+      int position = indexEntityCounts[ordinal]++;
+      if (position == indexEntities[ordinal].length) {
+        indexEntities[ordinal] = Arrays.copyOf(indexEntities[ordinal], 2 * position);
+        indexEntityCells[ordinal] = Arrays.copyOf(indexEntityCells[ordinal], 2 * position);
+      }
+      indexEntities[ordinal][position] = entity;
+      indexEntityCells[ordinal][position] = index;
+      cellEntityIndexPositions[ordinal][index] = position;
+      entityTypeMasks[index] |= 1 << ordinal;
+      entityCount++;
+    }
+    cellEntities[ordinal][index] = entity;
+  }
+
+  @SuppressWarnings("unchecked")
+  public synchronized ENT_MODEL removeEntity(int index, ENT_TYPE type) {
+    int ordinal = type.ordinal();
+    if ((entityTypeMasks[index] & (1 << ordinal)) == 0) {
+      return null;
+    }
+    ENT_MODEL removedEntity = (ENT_MODEL) cellEntities[ordinal][index];
+    cellEntities[ordinal][index] = null;
+    entityTypeMasks[index] &= ~(1 << ordinal);
+
+    // Move the last entity of the same type into the vacated index slot.
+    int position = cellEntityIndexPositions[ordinal][index];
+    int lastPosition = --indexEntityCounts[ordinal];
+    if (position != lastPosition) {
+      int lastEntityCellIndex = indexEntityCells[ordinal][lastPosition];
+      indexEntities[ordinal][position] = indexEntities[ordinal][lastPosition];
+      indexEntityCells[ordinal][position] = lastEntityCellIndex;
+      cellEntityIndexPositions[ordinal][lastEntityCellIndex] = position;
+    }
+    indexEntities[ordinal][lastPosition] = null;
+    entityCount--;
+    modCount++;
+    return removedEntity;
+  }
+
+  /**
+   * Removes the given entity if it is contained in the cell with the given index.
+   *
+   * @return the removed entity or null if the entity was not removed
+   */
+  public synchronized ENT_MODEL removeEntity(int index, ENT_MODEL entity) {
+    ENT_TYPE type = entity.getType();
+    return getEntity(index, type) == entity ? removeEntity(index, type) : null;
+  }
+
+  /**
+   * Moves the entity of the given type from one cell to another, replacing any existing entity of
+   * the same type in the target cell. The position of the moved entity in the index is unchanged.
+   *
+   * @return the moved entity or null if the source cell does not contain an entity of the type
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized ENT_MODEL moveEntity(int fromIndex, int toIndex, ENT_TYPE type) {
+    int ordinal = type.ordinal();
+    if ((entityTypeMasks[fromIndex] & (1 << ordinal)) == 0) {
+      return null;
+    }
+    if (fromIndex == toIndex) {
+      return (ENT_MODEL) cellEntities[ordinal][fromIndex];
+    }
+    removeEntity(toIndex, type);
+
+    ENT_MODEL entity = (ENT_MODEL) cellEntities[ordinal][fromIndex];
+    int position = cellEntityIndexPositions[ordinal][fromIndex];
+    cellEntities[ordinal][fromIndex] = null;
+    entityTypeMasks[fromIndex] &= ~(1 << ordinal);
+    cellEntities[ordinal][toIndex] = entity;
+    entityTypeMasks[toIndex] |= 1 << ordinal;
+    cellEntityIndexPositions[ordinal][toIndex] = position;
+    indexEntityCells[ordinal][position] = toIndex;
+    return entity;
+  }
+
+  /**
+   * Adds the entities of the cell with the given index to the given collection in order of type.
+   */
+  @SuppressWarnings("unchecked")
+  public void getEntities(int index, Collection<? super ENT_MODEL> result) {
+    for (int mask = entityTypeMasks[index]; mask != 0; mask &= mask - 1) {
+      result.add((ENT_MODEL) cellEntities[Integer.numberOfTrailingZeros(mask)][index]);
+    }
+  }
+
+  /**
+   * Adds the entities of all cells to the given collection in row major cell order. This scans the
+   * cell masks rather than the entity index so that the order only depends on the grid contents.
+   */
+  public void getEntities(Collection<? super ENT_MODEL> result) {
+    for (int index = 0; index < entityTypeMasks.length; index++) {
+      if (entityTypeMasks[index] != 0) {
+        getEntities(index, result);
+      }
+    }
+  }
+
+  /**
+   * Returns a live, unmodifiable view of all entities in the grid ordered by type.
+   */
+  public List<ENT_MODEL> getEntities() {
+    return entitiesView;
+  }
+
+  /**
+   * Returns a live, unmodifiable view of the entities of the given type.
+   */
+  @SuppressWarnings("unchecked")
+  public List<ENT_MODEL> getEntities(ENT_TYPE type) {
+    if (entityTypeViews == null) {
+      entityTypeViews = new List[type.getDeclaringClass().getEnumConstants().length];
+    }
+    List<ENT_MODEL> view = entityTypeViews[type.ordinal()];
+    if (view == null) {
+      view = new EntityList(type.ordinal());
+      entityTypeViews[type.ordinal()] = view;
+    }
+    return view;
+  }
+
+  public int getEntityCount() {
+    return entityCount;
+  }
+
+  public int getEntityCount(ENT_TYPE type) {
+    int ordinal = type.ordinal();
+    return ordinal < indexEntityCounts.length ? indexEntityCounts[ordinal] : 0;
+  }
+
+  public synchronized void clear(int index) {
+    for (int mask = entityTypeMasks[index]; mask != 0; mask &= mask - 1) {
+      removeEntity(index, entityTypes[Integer.numberOfTrailingZeros(mask)]);
+    }
+  }
+
+  private void allocate(ENT_TYPE type) {
+    if (entityTypes == null) {
+      entityTypes = type.getDeclaringClass().getEnumConstants();
+      Preconditions.checkArgument(entityTypes.length <= MAX_ENTITY_TYPE_COUNT,
+          "%s has more than %s values", type.getDeclaringClass(), MAX_ENTITY_TYPE_COUNT);
+      cellEntities = new Object[entityTypes.length][];
+      cellEntityIndexPositions = new int[entityTypes.length][];
+      indexEntities = new Object[entityTypes.length][];
+      indexEntityCells = new int[entityTypes.length][];
+      indexEntityCounts = new int[entityTypes.length];
+    }
+    int ordinal = type.ordinal();
+    cellEntities[ordinal] = new Object[width * height];
+    cellEntityIndexPositions[ordinal] = new int[width * height];
+    indexEntities[ordinal] = new Object[INITIAL_TYPE_CAPACITY];
+    indexEntityCells[ordinal] = new int[INITIAL_TYPE_CAPACITY];
+  }
+}
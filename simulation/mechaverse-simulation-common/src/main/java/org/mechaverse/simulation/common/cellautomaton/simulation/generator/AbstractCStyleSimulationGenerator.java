@@ -50,7 +50,7 @@ public abstract class AbstractCStyleSimulationGenerator
 
       for (String outputVarName : externalCellInfo.getOutputVarNames()) {
         String stateIndexExpr = getStateIndexExpr(externalLogicalUnitIndexExpr, idx);
-        out.printf("int %s_idx = %s;%n", outputVarName, stateIndexExpr);
+        out.printf("int %s_idx = %s;%n", outputVarName, getExternalIndexExpr(stateIndexExpr));
       }
     }
   }
@@ -83,8 +83,9 @@ public abstract class AbstractCStyleSimulationGenerator
       ExternalCell externalCell = logicalUnitInfo.getExternalCells().get(idx).getCell();
       CellInfo cellRef = logicalUnitInfo.getCellInfo(externalCell.getCellId());
       
-      out.printf("%s[(%d * %d) + %s] = %s;%n", stateArrayVarName, idx, numLogicalUnits, luIndexExpr, 
-          cellRef.getOutputVarName(externalCell.getOutputId()));          
+      out.printf("%s[%s] = %s;%n", stateArrayVarName,
+          getExternalIndexExpr(getStateIndexExpr(luIndexExpr, idx)),
+              cellRef.getOutputVarName(externalCell.getOutputId()));
     }
   }
 
@@ -179,13 +180,33 @@ public abstract class AbstractCStyleSimulationGenerator
     return String.format("(%d * %d) + %s", stateIndex, numLogicalUnits, logicalUnitIndexExpr);
   }
 
+  /**
+   * Returns an expression that evaluates to the index into the automaton state array of the given
+   * state value of the current logical unit.
+   *
+   * @param stateIndex the index of a state value relative to the logical unit.
+   */
+  protected String getAutomatonStateIndexExpr(int stateIndex) {
+    return getStateIndexExpr(getLogicalUnitIndexExpr(), stateIndex);
+  }
+
+  /**
+   * Returns an expression that evaluates to the index into the external inputs array.
+   *
+   * @param externalIndexExpr an expression that evaluates to the index of an external input
+   *        relative to the external inputs of a single automaton
+   */
+  protected String getExternalIndexExpr(String externalIndexExpr) {
+    return externalIndexExpr;
+  }
+
   private String loadStateToVarStatement(String varName, int stateIndex) {
     return String.format("%s %s = automatonState[%s];",
-        model.getValueType(), varName, getStateIndexExpr(getLogicalUnitIndexExpr(), stateIndex));
+        model.getValueType(), varName, getAutomatonStateIndexExpr(stateIndex));
   }
 
   private String saveVarToStateStatement(String varName, int stateIndex) {
     return String.format("automatonState[%s] = %s;",
-        getStateIndexExpr(getLogicalUnitIndexExpr(), stateIndex), varName);
+        getAutomatonStateIndexExpr(stateIndex), varName);
   }
 }
@@ -0,0 +1,148 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+/**
+ * Base class extended by generated Java cellular automaton simulation code that uses the
+ * {@link JavaCellularAutomatonGeneratorImpl.StateLayout#FLAT} state layout. The state of automaton
+ * i is stored at offset i * stateSize of a single array. Inputs, outputs, and maps are arranged in
+ * the same way.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public abstract class AbstractFlatJavaCellularAutomatonSimulationImpl
+    implements FlatJavaCellularAutomatonSimulation {
+
+  protected final int numAutomata;
+  protected final int numLogicalUnits;
+  protected final int stateSize;
+  protected final int[] automatonStates;
+  protected final int[] automatonInputMaps;
+  protected final int[] automatonInputs;
+  protected final int[] automatonOutputMaps;
+  protected final int[] automatonOutputs;
+  protected final int[] automatonInput;
+  protected final int[] external;
+  protected final int automatonInputLength;
+  protected final int automatonOutputLength;
+  protected final int iterationsPerUpdate;
+
+  public AbstractFlatJavaCellularAutomatonSimulationImpl(int numAutomata, int numLogicalUnits,
+      int numExternalCells, int stateSize, int inputSize, int outputSize,
+      int iterationsPerUpdate) {
+    this.numAutomata = numAutomata;
+    this.numLogicalUnits = numLogicalUnits;
+    this.stateSize = stateSize;
+    this.automatonStates = new int[numAutomata * stateSize];
+    this.automatonInputMaps = new int[numAutomata * inputSize];
+    this.automatonInputs = new int[numAutomata * inputSize];
+    this.automatonOutputMaps = new int[numAutomata * outputSize];
+    this.automatonOutputs = new int[numAutomata * outputSize];
+    this.automatonInputLength = inputSize;
+    this.automatonOutputLength = outputSize;
+    // Automata are updated one at a time so the input of the automaton that is being updated is
+    // copied to a separate array which may be referenced by cell expressions.
+    this.automatonInput = new int[inputSize];
+    // Automata are updated one at a time so the external cell values only need to be stored for a
+    // single automaton.
+    this.external = new int[numExternalCells * numLogicalUnits];
+    this.iterationsPerUpdate = iterationsPerUpdate;
+  }
+
+  @Override
+  public int size() {
+    return numAutomata;
+  }
+
+  @Override
+  public int getStateSize() {
+    return stateSize;
+  }
+
+  @Override
+  public void getState(int index, int[] state) {
+    System.arraycopy(automatonStates, index * stateSize, state, 0, stateSize);
+  }
+
+  @Override
+  public void getStates(int[] states) {
+    System.arraycopy(automatonStates, 0, states, 0, automatonStates.length);
+  }
+
+  @Override
+  public void setState(int index, int[] state) {
+    System.arraycopy(state, 0, automatonStates, index * stateSize, stateSize);
+  }
+
+  @Override
+  public void setStates(int[] states) {
+    System.arraycopy(states, 0, automatonStates, 0, automatonStates.length);
+  }
+
+  @Override
+  public void setInputMap(int index, int[] inputMap) {
+    System.arraycopy(inputMap, 0, automatonInputMaps, index * automatonInputLength,
+        automatonInputLength);
+  }
+
+  @Override
+  public void setInput(int index, int[] input) {
+    System.arraycopy(input, 0, automatonInputs, index * automatonInputLength,
+        automatonInputLength);
+  }
+
+  @Override
+  public void setInputs(int[] inputs) {
+    System.arraycopy(inputs, 0, automatonInputs, 0, automatonInputs.length);
+  }
+
+  @Override
+  public void setOutputMap(int index, int[] outputMap) {
+    System.arraycopy(outputMap, 0, automatonOutputMaps, index * automatonOutputLength,
+        automatonOutputLength);
+  }
+
+  @Override
+  public void getOutput(int index, int[] output) {
+    System.arraycopy(automatonOutputs, index * automatonOutputLength, output, 0,
+        automatonOutputLength);
+  }
+
+  @Override
+  public void getOutputs(int[] outputs) {
+    System.arraycopy(automatonOutputs, 0, outputs, 0, automatonOutputs.length);
+  }
+
+  @Override
+  public void update() {
+    for (int automatonIdx = 0; automatonIdx < numAutomata; automatonIdx++) {
+      final int stateOffset = automatonIdx * stateSize;
+      final int inputOffset = automatonIdx * automatonInputLength;
+      final int outputOffset = automatonIdx * automatonOutputLength;
+
+      // Copy input to state.
+      System.arraycopy(automatonInputs, inputOffset, automatonInput, 0, automatonInputLength);
+      for (int idx = 0; idx < automatonInputLength; idx++) {
+        automatonStates[stateOffset + automatonInputMaps[inputOffset + idx]] =
+            automatonInput[idx];
+      }
+
+      for (int iteration = 0; iteration < iterationsPerUpdate; iteration++) {
+        for (int luIndex = 0; luIndex < numLogicalUnits; luIndex++) {
+          updateExternalInputs(stateOffset, luIndex);
+        }
+        for (int luIndex = 0; luIndex < numLogicalUnits; luIndex++) {
+          update(stateOffset, luIndex);
+        }
+      }
+
+      // Copy state values to output.
+      for (int idx = 0; idx < automatonOutputLength; idx++) {
+        automatonOutputs[outputOffset + idx] =
+            automatonStates[stateOffset + automatonOutputMaps[outputOffset + idx]];
+      }
+    }
+  }
+
+  protected abstract void updateExternalInputs(int stateOffset, int luIndex);
+
+  protected abstract void update(int stateOffset, int luIndex);
+}
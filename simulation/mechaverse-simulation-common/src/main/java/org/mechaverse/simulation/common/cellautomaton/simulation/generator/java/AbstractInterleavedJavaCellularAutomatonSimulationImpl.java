@@ -0,0 +1,185 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+import static org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonGeneratorImpl.INTERLEAVED_LANE_COUNT;
+
+/**
+ * Base class extended by generated Java cellular automaton simulation code that uses the
+ * {@link JavaCellularAutomatonGeneratorImpl.StateLayout#INTERLEAVED} state layout. Automata are
+ * grouped into blocks of {@link JavaCellularAutomatonGeneratorImpl#INTERLEAVED_LANE_COUNT} lanes.
+ * State value s of the automaton in lane l of block b is stored at index
+ * (b * stateSize + s) * laneCount + l. Inputs, outputs, and maps are stored per automaton in the
+ * same way as {@link AbstractFlatJavaCellularAutomatonSimulationImpl}.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public abstract class AbstractInterleavedJavaCellularAutomatonSimulationImpl
+    implements FlatJavaCellularAutomatonSimulation {
+
+  protected final int numAutomata;
+  protected final int numBlocks;
+  protected final int numLogicalUnits;
+  protected final int stateSize;
+  protected final int[] automatonStates;
+  protected final int[] automatonInputMaps;
+  protected final int[] automatonInputs;
+  protected final int[] automatonOutputMaps;
+  protected final int[] automatonOutputs;
+  protected final int[][] automatonLaneInputs;
+  protected final int[] external;
+  protected final int automatonInputLength;
+  protected final int automatonOutputLength;
+  protected final int iterationsPerUpdate;
+
+  public AbstractInterleavedJavaCellularAutomatonSimulationImpl(int numAutomata,
+      int numLogicalUnits, int numExternalCells, int stateSize, int inputSize, int outputSize,
+      int iterationsPerUpdate) {
+    this.numAutomata = numAutomata;
+    this.numBlocks = (numAutomata + INTERLEAVED_LANE_COUNT - 1) / INTERLEAVED_LANE_COUNT;
+    this.numLogicalUnits = numLogicalUnits;
+    this.stateSize = stateSize;
+    this.automatonStates = new int[numBlocks * stateSize * INTERLEAVED_LANE_COUNT];
+    this.automatonInputMaps = new int[numAutomata * inputSize];
+    this.automatonInputs = new int[numAutomata * inputSize];
+    this.automatonOutputMaps = new int[numAutomata * outputSize];
+    this.automatonOutputs = new int[numAutomata * outputSize];
+    this.automatonInputLength = inputSize;
+    this.automatonOutputLength = outputSize;
+    // The input of each automaton in the block that is being updated is copied to a separate array
+    // which may be referenced by cell expressions.
+    this.automatonLaneInputs = new int[INTERLEAVED_LANE_COUNT][inputSize];
+    // Blocks are updated one at a time so the external cell values only need to be stored for a
+    // single block.
+    this.external = new int[numExternalCells * numLogicalUnits * INTERLEAVED_LANE_COUNT];
+    this.iterationsPerUpdate = iterationsPerUpdate;
+  }
+
+  @Override
+  public int size() {
+    return numAutomata;
+  }
+
+  @Override
+  public int getStateSize() {
+    return stateSize;
+  }
+
+  @Override
+  public void getState(int index, int[] state) {
+    int offset = getStateOffset(index);
+    for (int idx = 0; idx < stateSize; idx++) {
+      state[idx] = automatonStates[offset + idx * INTERLEAVED_LANE_COUNT];
+    }
+  }
+
+  @Override
+  public void getStates(int[] states) {
+    for (int index = 0; index < numAutomata; index++) {
+      int offset = getStateOffset(index);
+      int statesOffset = index * stateSize;
+      for (int idx = 0; idx < stateSize; idx++) {
+        states[statesOffset + idx] = automatonStates[offset + idx * INTERLEAVED_LANE_COUNT];
+      }
+    }
+  }
+
+  @Override
+  public void setState(int index, int[] state) {
+    int offset = getStateOffset(index);
+    for (int idx = 0; idx < stateSize; idx++) {
+      automatonStates[offset + idx * INTERLEAVED_LANE_COUNT] = state[idx];
+    }
+  }
+
+  @Override
+  public void setStates(int[] states) {
+    for (int index = 0; index < numAutomata; index++) {
+      int offset = getStateOffset(index);
+      int statesOffset = index * stateSize;
+      for (int idx = 0; idx < stateSize; idx++) {
+        automatonStates[offset + idx * INTERLEAVED_LANE_COUNT] = states[statesOffset + idx];
+      }
+    }
+  }
+
+  @Override
+  public void setInputMap(int index, int[] inputMap) {
+    System.arraycopy(inputMap, 0, automatonInputMaps, index * automatonInputLength,
+        automatonInputLength);
+  }
+
+  @Override
+  public void setInput(int index, int[] input) {
+    System.arraycopy(input, 0, automatonInputs, index * automatonInputLength,
+        automatonInputLength);
+  }
+
+  @Override
+  public void setInputs(int[] inputs) {
+    System.arraycopy(inputs, 0, automatonInputs, 0, automatonInputs.length);
+  }
+
+  @Override
+  public void setOutputMap(int index, int[] outputMap) {
+    System.arraycopy(outputMap, 0, automatonOutputMaps, index * automatonOutputLength,
+        automatonOutputLength);
+  }
+
+  @Override
+  public void getOutput(int index, int[] output) {
+    System.arraycopy(automatonOutputs, index * automatonOutputLength, output, 0,
+        automatonOutputLength);
+  }
+
+  @Override
+  public void getOutputs(int[] outputs) {
+    System.arraycopy(automatonOutputs, 0, outputs, 0, automatonOutputs.length);
+  }
+
+  @Override
+  public void update() {
+    for (int blockIdx = 0; blockIdx < numBlocks; blockIdx++) {
+      final int stateOffset = blockIdx * stateSize * INTERLEAVED_LANE_COUNT;
+      final int firstAutomatonIdx = blockIdx * INTERLEAVED_LANE_COUNT;
+      final int laneCount = Math.min(INTERLEAVED_LANE_COUNT, numAutomata - firstAutomatonIdx);
+
+      // Copy input to state.
+      for (int lane = 0; lane < laneCount; lane++) {
+        final int inputOffset = (firstAutomatonIdx + lane) * automatonInputLength;
+        final int[] automatonInput = automatonLaneInputs[lane];
+        System.arraycopy(automatonInputs, inputOffset, automatonInput, 0, automatonInputLength);
+        for (int idx = 0; idx < automatonInputLength; idx++) {
+          automatonStates[stateOffset + automatonInputMaps[inputOffset + idx]
+              * INTERLEAVED_LANE_COUNT + lane] = automatonInput[idx];
+        }
+      }
+
+      for (int iteration = 0; iteration < iterationsPerUpdate; iteration++) {
+        for (int luIndex = 0; luIndex < numLogicalUnits; luIndex++) {
+          updateExternalInputs(stateOffset, luIndex);
+        }
+        for (int luIndex = 0; luIndex < numLogicalUnits; luIndex++) {
+          update(stateOffset, luIndex);
+        }
+      }
+
+      // Copy state values to output.
+      for (int lane = 0; lane < laneCount; lane++) {
+        final int outputOffset = (firstAutomatonIdx + lane) * automatonOutputLength;
+        for (int idx = 0; idx < automatonOutputLength; idx++) {
+          automatonOutputs[outputOffset + idx] = automatonStates[stateOffset
+              + automatonOutputMaps[outputOffset + idx] * INTERLEAVED_LANE_COUNT + lane];
+        }
+      }
+    }
+  }
+
+  private int getStateOffset(int index) {
+    int blockIdx = index / INTERLEAVED_LANE_COUNT;
+    int lane = index % INTERLEAVED_LANE_COUNT;
+    return blockIdx * stateSize * INTERLEAVED_LANE_COUNT + lane;
+  }
+
+  protected abstract void updateExternalInputs(int stateOffset, int luIndex);
+
+  protected abstract void update(int stateOffset, int luIndex);
+}
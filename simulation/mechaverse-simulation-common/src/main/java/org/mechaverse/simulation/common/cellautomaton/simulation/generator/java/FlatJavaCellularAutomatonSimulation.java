@@ -0,0 +1,24 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+/**
+ * An interface for Java cellular automaton simulations that store the state of all automata in a
+ * single array.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public interface FlatJavaCellularAutomatonSimulation {
+
+  int size();
+  int getStateSize();
+  void getState(int index, int[] state);
+  void getStates(int[] states);
+  void setState(int index, int[] state);
+  void setStates(int[] states);
+  void setInputMap(int index, int[] inputMap);
+  void setInput(int index, int[] input);
+  void setInputs(int[] inputs);
+  void setOutputMap(int index, int[] outputMap);
+  void getOutput(int index, int[] output);
+  void getOutputs(int[] outputs);
+  void update();
+}
@@ -0,0 +1,184 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonAllocator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonDescriptorDataSource;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.CellularAutomatonSimulationModel;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.CellularAutomatonSimulationModelBuilder;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonGeneratorImpl.StateLayout;
+import org.mechaverse.simulation.common.util.compiler.CompiledClassCache;
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Java based cellular automaton simulator implementation that stores the state of all automata in
+ * a single contiguous array. The array is arranged according to either the
+ * {@link StateLayout#FLAT} or the {@link StateLayout#INTERLEAVED} state layout.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public final class FlatJavaCellularAutomatonSimulator implements CellularAutomatonSimulator {
+
+  private final CellularAutomatonSimulationModel model;
+  private final int inputSize;
+  private final int outputSize;
+  private final StateLayout stateLayout;
+  private final FlatJavaCellularAutomatonSimulation simulation;
+  private final CellularAutomatonAllocator allocator;
+
+  public FlatJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptorDataSource dataSource)
+      throws CompileException, ReflectiveOperationException {
+    this(numAutomata, inputSize, outputSize, dataSource, StateLayout.FLAT);
+  }
+
+  public FlatJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptorDataSource dataSource, StateLayout stateLayout)
+      throws CompileException, ReflectiveOperationException {
+    this(numAutomata, inputSize, outputSize, dataSource.getDescriptor(), stateLayout);
+  }
+
+  public FlatJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptor descriptor)
+      throws CompileException, ReflectiveOperationException {
+    this(numAutomata, inputSize, outputSize, descriptor, StateLayout.FLAT);
+  }
+
+  public FlatJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptor descriptor, StateLayout stateLayout)
+      throws CompileException, ReflectiveOperationException {
+    this(numAutomata, inputSize, outputSize,
+        new CellularAutomatonSimulationModelBuilder().buildModel(descriptor), stateLayout);
+  }
+
+  private FlatJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonSimulationModel model, StateLayout stateLayout)
+      throws CompileException, ReflectiveOperationException {
+    Preconditions.checkState(numAutomata > 0);
+    Preconditions.checkArgument(stateLayout != StateLayout.AUTOMATON);
+    this.model = model;
+    this.inputSize = inputSize;
+    this.outputSize = outputSize;
+    this.stateLayout = stateLayout;
+    this.simulation = compile(model, inputSize, outputSize, stateLayout)
+        .getConstructor(int.class).newInstance(numAutomata);
+    this.allocator = new CellularAutomatonAllocator(numAutomata);
+  }
+
+  @Override
+  public CellularAutomatonAllocator getAllocator() {
+    return allocator;
+  }
+
+  @Override
+  public int size() {
+    return simulation.size();
+  }
+
+  @Override
+  public int getAutomatonInputSize() {
+    return inputSize;
+  }
+
+  @Override
+  public int getAutomatonStateSize() {
+    return model.getStateSize();
+  }
+
+  @Override
+  public int getAutomatonOutputSize() {
+    return outputSize;
+  }
+
+  @Override
+  public void getAutomatonState(int index, int[] state) {
+    simulation.getState(index, state);
+  }
+
+  @Override
+  public void getAutomataState(int[] state) {
+    simulation.getStates(state);
+  }
+
+  @Override
+  public void setAutomatonState(int index, int[] state) {
+    simulation.setState(index, state);
+  }
+
+  @Override
+  public void setAutomataState(int[] state) {
+    simulation.setStates(state);
+  }
+
+  @Override
+  public void setAutomatonInputMap(int index, int[] inputMap) {
+    for (int idx = 0; idx < inputMap.length; idx++) {
+      inputMap[idx] = Math.abs(inputMap[idx]) % getAutomatonStateSize();
+    }
+    simulation.setInputMap(index, inputMap);
+  }
+
+  @Override
+  public void setAutomatonInput(int index, int[] input) {
+    simulation.setInput(index, input);
+  }
+
+  @Override
+  public void setAutomataInput(int[] input) {
+    simulation.setInputs(input);
+  }
+
+  @Override
+  public void getAutomatonOutput(int index, int[] output) {
+    simulation.getOutput(index, output);
+  }
+
+  @Override
+  public void getAutomataOutput(int[] output) {
+    simulation.getOutputs(output);
+  }
+
+  @Override
+  public void setAutomatonOutputMap(int index, int[] outputMap) {
+    for (int idx = 0; idx < outputMap.length; idx++) {
+      outputMap[idx] = Math.abs(outputMap[idx]) % getAutomatonStateSize();
+    }
+    simulation.setOutputMap(index, outputMap);
+  }
+
+  @Override
+  public void update() {
+    simulation.update();
+  }
+
+  @Override
+  public void close() {}
+
+  public static Class<? extends FlatJavaCellularAutomatonSimulation> compile(
+      CellularAutomatonSimulationModel model, int inputSize, int outputSize,
+      StateLayout stateLayout) throws CompileException {
+    return CompiledClassCache.getInstance().compile(
+        JavaCellularAutomatonGeneratorImpl.IMPL_PACKAGE
+        + "." + JavaCellularAutomatonGeneratorImpl.IMPL_CLASS_NAME,
+        generate(model, inputSize, outputSize, stateLayout));
+  }
+
+  private static String generate(CellularAutomatonSimulationModel model, int inputSize,
+      int outputSize, StateLayout stateLayout) {
+    JavaCellularAutomatonGeneratorImpl generator = new JavaCellularAutomatonGeneratorImpl(
+        model, inputSize, outputSize, stateLayout);
+    StringWriter out = new StringWriter();
+    generator.generate(new PrintWriter(out));
+    return out.toString();
+  }
+
+  @Override
+  public String toString() {
+    return generate(model, 0, 0, stateLayout);
+  }
+}
@@ -26,8 +26,45 @@ public class JavaCellularAutomatonGeneratorImpl extends AbstractCStyleSimulation
 
   static final String IMPL_CLASS_NAME = "CellularAutomatonSimulationImpl";
 
+  /**
+   * The layout of the state of the generated simulation.
+   */
+  public enum StateLayout {
+
+    /**
+     * Each instance of the generated class simulates a single automaton. The generated class
+     * extends {@link AbstractJavaCellularAutomatonSimulationImpl}.
+     */
+    AUTOMATON,
+
+    /**
+     * A single instance of the generated class simulates all automata. The state of every automaton
+     * is stored in one contiguous array in the same layout as the OpenCL simulator. The generated
+     * class extends {@link AbstractFlatJavaCellularAutomatonSimulationImpl}.
+     */
+    FLAT,
+
+    /**
+     * A single instance of the generated class simulates all automata. Automata are grouped into
+     * blocks of {@link #INTERLEAVED_LANE_COUNT} and the values of a block are interleaved so that
+     * the same state value of each automaton in the block is stored contiguously. The generated
+     * update methods loop over the automata in a block with unit stride, which is a loop that the
+     * JIT compiler may vectorize. Whether it does depends on the cell expressions and the JVM, and
+     * has not been verified. The generated class extends
+     * {@link AbstractInterleavedJavaCellularAutomatonSimulationImpl}.
+     */
+    INTERLEAVED
+  }
+
+  /**
+   * The number of automata in a block of the {@link StateLayout#INTERLEAVED} state layout. Eight
+   * ints are the width of a 256 bit vector register.
+   */
+  public static final int INTERLEAVED_LANE_COUNT = 8;
+
   private final int inputSize;
   private final int outputSize;
+  private final StateLayout stateLayout;
 
   public JavaCellularAutomatonGeneratorImpl(
       CellularAutomatonDescriptor descriptor, int inputSize, int outputSize) {
@@ -37,12 +74,18 @@ public class JavaCellularAutomatonGeneratorImpl extends AbstractCStyleSimulation
 
   public JavaCellularAutomatonGeneratorImpl(CellularAutomatonSimulationModel model, int inputSize,
       int outputSize) {
+    this(model, inputSize, outputSize, StateLayout.AUTOMATON);
+  }
+
+  public JavaCellularAutomatonGeneratorImpl(CellularAutomatonSimulationModel model, int inputSize,
+      int outputSize, StateLayout stateLayout) {
     super(model);
     if (!"int".equalsIgnoreCase(model.getValueType())) {
       throw new RuntimeException("Unsupported value type " + model.getValueType());
     }
     this.inputSize = inputSize;
     this.outputSize = outputSize;
+    this.stateLayout = stateLayout;
   }
 
   @Override
@@ -50,6 +93,27 @@ public class JavaCellularAutomatonGeneratorImpl extends AbstractCStyleSimulation
     return "luIndex";
   }
 
+  @Override
+  protected String getAutomatonStateIndexExpr(int stateIndex) {
+    String stateIndexExpr = super.getAutomatonStateIndexExpr(stateIndex);
+    switch (stateLayout) {
+      case FLAT:
+        return "stateOffset + " + stateIndexExpr;
+      case INTERLEAVED:
+        return String.format("stateOffset + (%s) * %d + lane", stateIndexExpr,
+            INTERLEAVED_LANE_COUNT);
+      default:
+        return stateIndexExpr;
+    }
+  }
+
+  @Override
+  protected String getExternalIndexExpr(String externalIndexExpr) {
+    return stateLayout == StateLayout.INTERLEAVED
+        ? String.format("(%s) * %d + lane", externalIndexExpr, INTERLEAVED_LANE_COUNT)
+        : externalIndexExpr;
+  }
+
   @Override
   public void generate(final PrintWriter printWriter) {
     final IndentPrintWriter out = new IndentPrintWriter(printWriter);
@@ -57,8 +121,8 @@ public class JavaCellularAutomatonGeneratorImpl extends AbstractCStyleSimulation
     LogicalUnitInfo logicalUnitInfo = model.getLogicalUnitInfo();
 
     out.printf("package %s;%n", IMPL_PACKAGE);
-    out.println("public class CellularAutomatonSimulationImpl extends "
-        + "AbstractJavaCellularAutomatonSimulationImpl {").indent();
+    out.printf("public class CellularAutomatonSimulationImpl extends %s {%n",
+        getBaseClassName()).indent();
     generateConstructor(logicalUnitInfo, out);
     generateUpdateExternalInputs(logicalUnitInfo, out);
     generateLogicalUnitUpdateMethod(logicalUnitInfo, out);
@@ -66,32 +130,74 @@ public class JavaCellularAutomatonGeneratorImpl extends AbstractCStyleSimulation
     out.flush();
   }
 
+  private String getBaseClassName() {
+    switch (stateLayout) {
+      case FLAT:
+        return AbstractFlatJavaCellularAutomatonSimulationImpl.class.getSimpleName();
+      case INTERLEAVED:
+        return AbstractInterleavedJavaCellularAutomatonSimulationImpl.class.getSimpleName();
+      default:
+        return AbstractJavaCellularAutomatonSimulationImpl.class.getSimpleName();
+    }
+  }
+
   private void generateConstructor(LogicalUnitInfo logicalUnitInfo, IndentPrintWriter out) {
-    out.println("public CellularAutomatonSimulationImpl() {").indent();
-    out.printf("super(%d, %d, %d, %d, %d, %d);%n", model.getLogicalUnitCount(), numExternalCells,
-        model.getStateSize(), inputSize, outputSize,
-            model.getIterationsPerUpdate());
+    if (stateLayout != StateLayout.AUTOMATON) {
+      out.println("public CellularAutomatonSimulationImpl(int numAutomata) {").indent();
+      out.printf("super(numAutomata, %d, %d, %d, %d, %d, %d);%n", model.getLogicalUnitCount(),
+          numExternalCells, model.getStateSize(), inputSize, outputSize,
+              model.getIterationsPerUpdate());
+    } else {
+      out.println("public CellularAutomatonSimulationImpl() {").indent();
+      out.printf("super(%d, %d, %d, %d, %d, %d);%n", model.getLogicalUnitCount(), numExternalCells,
+          model.getStateSize(), inputSize, outputSize,
+              model.getIterationsPerUpdate());
+    }
     out.unindent().println("}");
   }
 
+  private void generateMethodSignature(String methodName, IndentPrintWriter out) {
+    out.println("@Override");
+    if (stateLayout != StateLayout.AUTOMATON) {
+      out.printf("public void %s(int stateOffset, int %s) {%n", methodName, luIndexExpr).indent();
+      out.println("final int[] automatonState = automatonStates;");
+    } else {
+      out.printf("public void %s(int %s) {%n", methodName, luIndexExpr).indent();
+    }
+  }
+
+  private void generateBeginLaneLoop(IndentPrintWriter out) {
+    if (stateLayout == StateLayout.INTERLEAVED) {
+      out.printf("for (int lane = 0; lane < %d; lane++) {%n", INTERLEAVED_LANE_COUNT).indent();
+      out.println("final int[] automatonInput = automatonLaneInputs[lane];");
+    }
+  }
+
+  private void generateEndLaneLoop(IndentPrintWriter out) {
+    if (stateLayout == StateLayout.INTERLEAVED) {
+      out.unindent().println("}");
+    }
+  }
+
   private void generateUpdateExternalInputs(LogicalUnitInfo logicalUnitInfo,
                                             IndentPrintWriter out) {
-    out.println("@Override");
-    out.printf("public void updateExternalInputs(int %s) {%n", luIndexExpr).indent();
-    
+    generateMethodSignature("updateExternalInputs", out);
+    generateBeginLaneLoop(out);
+
     generateCopyStateValuesToVariables(logicalUnitInfo, out);
     generateCopyExternalInputsToState("external", logicalUnitInfo, out);
 
+    generateEndLaneLoop(out);
     out.unindent().println("}");
   }
   
   private void generateLogicalUnitUpdateMethod(LogicalUnitInfo logicalUnitInfo,
                                                IndentPrintWriter out) {
-    out.println("@Override");
-    out.printf("public void update(int %s) {%n", luIndexExpr).indent();
+    generateMethodSignature("update", out);
 
     out.printf("int luRow = %s / %d;%n", luIndexExpr, model.getHeight());
     out.printf("int luCol = %s %% %d;%n", luIndexExpr, model.getHeight());
+    generateBeginLaneLoop(out);
 
     // Declare temporary variables.
     out.println("int tmp0, tmp1, tmp2, tmp3, tmp4, tmp5, tmp6, tmp7, tmp8;");
@@ -114,6 +220,7 @@ public class JavaCellularAutomatonGeneratorImpl extends AbstractCStyleSimulation
     // Copy output values from variables back to state array.
     generateCopyVariablesToState(logicalUnitInfo, out);
 
+    generateEndLaneLoop(out);
     out.unindent().println("}");
   }
 
@@ -9,7 +9,8 @@ import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomat
 import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.generator.CellularAutomatonSimulationModel;
 import org.mechaverse.simulation.common.cellautomaton.simulation.generator.CellularAutomatonSimulationModelBuilder;
-import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil;
+import org.mechaverse.simulation.common.util.compiler.BytecodeCompiler;
+import org.mechaverse.simulation.common.util.compiler.CompiledClassCache;
 import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
 
 import com.google.common.base.Preconditions;
@@ -21,6 +22,23 @@ import com.google.common.base.Preconditions;
  */
 public final class JavaCellularAutomatonSimulator implements CellularAutomatonSimulator {
 
+  /**
+   * The compiler used to turn the generated simulation source into a class.
+   */
+  public enum CompilerType {
+
+    /**
+     * The JDK compiler. A JDK is required at runtime and compiled classes are cached by
+     * {@link CompiledClassCache}.
+     */
+    JAVAC,
+
+    /**
+     * The {@link BytecodeCompiler} which emits bytecode directly and only requires a JRE.
+     */
+    BYTECODE
+  }
+
   private final CellularAutomatonSimulationModel model;
   private final int inputSize;
   private final int outputSize;
@@ -33,22 +51,35 @@ public final class JavaCellularAutomatonSimulator implements CellularAutomatonSi
     this(numAutomata, inputSize, outputSize, dataSource.getDescriptor());
   }
 
+  public JavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptorDataSource dataSource, CompilerType compilerType)
+      throws CompileException, IllegalAccessException, InstantiationException {
+    this(numAutomata, inputSize, outputSize, dataSource.getDescriptor(), compilerType);
+  }
+
   public JavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
       CellularAutomatonDescriptor descriptor)
       throws CompileException, InstantiationException, IllegalAccessException {
+    this(numAutomata, inputSize, outputSize, descriptor, CompilerType.JAVAC);
+  }
+
+  public JavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptor descriptor, CompilerType compilerType)
+      throws CompileException, InstantiationException, IllegalAccessException {
     this(numAutomata, inputSize, outputSize,
-        new CellularAutomatonSimulationModelBuilder().buildModel(descriptor));
+        new CellularAutomatonSimulationModelBuilder().buildModel(descriptor), compilerType);
   }
 
   private JavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
-      CellularAutomatonSimulationModel model)
+      CellularAutomatonSimulationModel model, CompilerType compilerType)
       throws CompileException, IllegalAccessException, InstantiationException {
     Preconditions.checkState(numAutomata > 0);
     this.model = model;
     this.inputSize = inputSize;
     this.outputSize = outputSize;
     this.simulations = new JavaCellularAutomatonSimulation[numAutomata];
-    Class<? extends JavaCellularAutomatonSimulation> simulationClass = compile(model, inputSize, outputSize);
+    Class<? extends JavaCellularAutomatonSimulation> simulationClass =
+        compile(model, inputSize, outputSize, compilerType);
     for (int idx = 0; idx < numAutomata; idx++) {
       simulations[idx] = simulationClass.newInstance();
     }
@@ -158,8 +189,16 @@ public final class JavaCellularAutomatonSimulator implements CellularAutomatonSi
 
   @Override
   public void update() {
-    for (JavaCellularAutomatonSimulation simulation : simulations) {
-      simulation.update();
+    update(0, simulations.length);
+  }
+
+  /**
+   * Updates the automata with indices in the range [fromIndex, toIndex). Each automaton only
+   * touches its own state so disjoint ranges may be updated concurrently.
+   */
+  void update(int fromIndex, int toIndex) {
+    for (int idx = fromIndex; idx < toIndex; idx++) {
+      simulations[idx].update();
     }
   }
 
@@ -175,12 +214,22 @@ public final class JavaCellularAutomatonSimulator implements CellularAutomatonSi
 
   public static Class<? extends JavaCellularAutomatonSimulation> compile(CellularAutomatonSimulationModel model,
       int inputSize, int outputSize) throws CompileException {
+    return compile(model, inputSize, outputSize, CompilerType.JAVAC);
+  }
+
+  public static Class<? extends JavaCellularAutomatonSimulation> compile(
+      CellularAutomatonSimulationModel model, int inputSize, int outputSize,
+      CompilerType compilerType) throws CompileException {
     JavaCellularAutomatonGeneratorImpl generator =
         new JavaCellularAutomatonGeneratorImpl(model, inputSize, outputSize);
     StringWriter out = new StringWriter();
     generator.generate(new PrintWriter(out));
-    return JavaCompilerUtil.compile(JavaCellularAutomatonGeneratorImpl.IMPL_PACKAGE
-        + "." + JavaCellularAutomatonGeneratorImpl.IMPL_CLASS_NAME, out.toString());
+    String implClass = JavaCellularAutomatonGeneratorImpl.IMPL_PACKAGE
+        + "." + JavaCellularAutomatonGeneratorImpl.IMPL_CLASS_NAME;
+    if (compilerType == CompilerType.BYTECODE) {
+      return BytecodeCompiler.compile(implClass, out.toString());
+    }
+    return CompiledClassCache.getInstance().compile(implClass, out.toString());
   }
 
   @Override
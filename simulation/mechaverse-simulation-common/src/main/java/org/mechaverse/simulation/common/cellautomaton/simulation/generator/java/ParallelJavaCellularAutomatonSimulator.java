@@ -0,0 +1,168 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonAllocator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonDescriptorDataSource;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A Java based cellular automaton simulator that updates automata on a fixed pool of worker
+ * threads. The automata are partitioned into contiguous index ranges, one per thread. Since each
+ * automaton only reads and writes its own state the result is identical to
+ * {@link JavaCellularAutomatonSimulator}.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public final class ParallelJavaCellularAutomatonSimulator implements CellularAutomatonSimulator {
+
+  private final JavaCellularAutomatonSimulator simulator;
+  private final ExecutorService executorService;
+  private final List<Callable<Void>> updateTasks;
+
+  public ParallelJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptorDataSource dataSource)
+      throws CompileException, IllegalAccessException, InstantiationException {
+    this(numAutomata, inputSize, outputSize, dataSource.getDescriptor());
+  }
+
+  public ParallelJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptor descriptor)
+      throws CompileException, IllegalAccessException, InstantiationException {
+    this(numAutomata, inputSize, outputSize, descriptor,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  public ParallelJavaCellularAutomatonSimulator(int numAutomata, int inputSize, int outputSize,
+      CellularAutomatonDescriptor descriptor, int threadCount)
+      throws CompileException, IllegalAccessException, InstantiationException {
+    Preconditions.checkState(threadCount > 0);
+    this.simulator = new JavaCellularAutomatonSimulator(
+        numAutomata, inputSize, outputSize, descriptor);
+
+    int partitionCount = Math.min(threadCount, numAutomata);
+    this.updateTasks = new ArrayList<>(partitionCount);
+    for (int partition = 0; partition < partitionCount; partition++) {
+      final int fromIndex = (int) ((long) numAutomata * partition / partitionCount);
+      final int toIndex = (int) ((long) numAutomata * (partition + 1) / partitionCount);
+      updateTasks.add(() -> {
+        simulator.update(fromIndex, toIndex);
+        return null;
+      });
+    }
+    this.executorService = Executors.newFixedThreadPool(partitionCount,
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("cellular-automaton-simulator-%d").build());
+  }
+
+  @Override
+  public CellularAutomatonAllocator getAllocator() {
+    return simulator.getAllocator();
+  }
+
+  @Override
+  public int size() {
+    return simulator.size();
+  }
+
+  @Override
+  public int getAutomatonInputSize() {
+    return simulator.getAutomatonInputSize();
+  }
+
+  @Override
+  public int getAutomatonStateSize() {
+    return simulator.getAutomatonStateSize();
+  }
+
+  @Override
+  public int getAutomatonOutputSize() {
+    return simulator.getAutomatonOutputSize();
+  }
+
+  @Override
+  public void getAutomatonState(int index, int[] state) {
+    simulator.getAutomatonState(index, state);
+  }
+
+  @Override
+  public void getAutomataState(int[] state) {
+    simulator.getAutomataState(state);
+  }
+
+  @Override
+  public void setAutomatonState(int index, int[] state) {
+    simulator.setAutomatonState(index, state);
+  }
+
+  @Override
+  public void setAutomataState(int[] state) {
+    simulator.setAutomataState(state);
+  }
+
+  @Override
+  public void setAutomatonInputMap(int index, int[] inputMap) {
+    simulator.setAutomatonInputMap(index, inputMap);
+  }
+
+  @Override
+  public void setAutomatonInput(int index, int[] input) {
+    simulator.setAutomatonInput(index, input);
+  }
+
+  @Override
+  public void setAutomataInput(int[] input) {
+    simulator.setAutomataInput(input);
+  }
+
+  @Override
+  public void setAutomatonOutputMap(int index, int[] outputMap) {
+    simulator.setAutomatonOutputMap(index, outputMap);
+  }
+
+  @Override
+  public void getAutomatonOutput(int index, int[] output) {
+    simulator.getAutomatonOutput(index, output);
+  }
+
+  @Override
+  public void getAutomataOutput(int[] output) {
+    simulator.getAutomataOutput(output);
+  }
+
+  @Override
+  public void update() {
+    try {
+      for (Future<Void> result : executorService.invokeAll(updateTasks)) {
+        result.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while updating cellular automata", ex);
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException("Error updating cellular automata", ex.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    executorService.shutdownNow();
+    simulator.close();
+  }
+
+  @Override
+  public String toString() {
+    return simulator.toString();
+  }
+}
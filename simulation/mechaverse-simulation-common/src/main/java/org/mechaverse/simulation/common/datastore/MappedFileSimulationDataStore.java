@@ -0,0 +1,201 @@
+package org.mechaverse.simulation.common.datastore;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A {@link SimulationDataStore} implementation that is backed by a memory-mapped file that contains
+ * a serialized data store. The file is indexed when the data store is opened, and the values are
+ * read from the mapped file when they are requested, so the data is not copied onto the heap.
+ *
+ * <p>Values that are put into the data store are kept in memory and the file is never modified. The
+ * file must not be modified by other writers while the data store is in use. Files that are larger
+ * than {@link Integer#MAX_VALUE} bytes are not supported.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public class MappedFileSimulationDataStore extends AbstractSimulationDataStore {
+
+  /**
+   * Opens the data store that is serialized in the given file.
+   */
+  public static MappedFileSimulationDataStore open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Data store file " + path + " is too large to map");
+      }
+      return new MappedFileSimulationDataStore(
+          path, channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Writes the given data store to the given file and opens it.
+   */
+  public static MappedFileSimulationDataStore create(Path path, SimulationDataStore dataStore)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      SimulationDataStoreOutputStream.writeDataStore(dataStore, channel);
+    }
+    return open(path);
+  }
+
+  private final Path path;
+  private final TreeMap<String, ByteBuffer> dataStore = new TreeMap<>();
+  private boolean modified;
+
+  private MappedFileSimulationDataStore(Path path, MappedByteBuffer buffer) throws IOException {
+    this.path = path;
+    DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+    int size = in.readInt();
+    for (int cnt = 1; cnt <= size; cnt++) {
+      String key = in.readUTF();
+      int dataLength = in.readInt();
+      if (dataLength < 0 || dataLength > buffer.remaining()) {
+        throw new IOException("Invalid data length " + dataLength + " for key " + key);
+      }
+      ByteBuffer value = buffer.slice();
+      value.limit(dataLength);
+      dataStore.put(key, value.asReadOnlyBuffer());
+      buffer.position(buffer.position() + dataLength);
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Returns a copy of the data associated with the given key. Use {@link #getBuffer(String)} to
+   * access the data without copying it.
+   */
+  @Override
+  public byte[] get(String key) {
+    ByteBuffer value = dataStore.get(key);
+    if (value == null) {
+      return null;
+    } else if (value.hasArray()) {
+      return value.array();
+    }
+    byte[] data = new byte[value.remaining()];
+    value.duplicate().get(data);
+    return data;
+  }
+
+  /**
+   * Returns a read-only view of the data associated with the given key, or null if the data does
+   * not exist. The view of data that was read from the file refers to the mapped file.
+   */
+  public ByteBuffer getBuffer(String key) {
+    ByteBuffer value = dataStore.get(key);
+    return value != null ? value.asReadOnlyBuffer() : null;
+  }
+
+  @Override
+  public void put(String key, byte[] value) {
+    dataStore.put(key, ByteBuffer.wrap(value));
+    modified = true;
+  }
+
+  @Override
+  public void remove(String key) {
+    modified |= dataStore.remove(key) != null;
+  }
+
+  @Override
+  public void clear() {
+    modified |= !dataStore.isEmpty();
+    dataStore.clear();
+  }
+
+  @Override
+  public boolean containsKey(String key) {
+    return dataStore.containsKey(key);
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return dataStore.keySet();
+  }
+
+  @Override
+  public int size() {
+    return dataStore.size();
+  }
+
+  /**
+   * Writes the serialized data of this data store to the given channel. If this data store has not
+   * been modified the file is transferred directly to the channel. Otherwise the values are written
+   * from their buffers so that mapped values are not copied onto the heap.
+   */
+  public void transferTo(WritableByteChannel target) throws IOException {
+    if (!modified) {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        long position = 0;
+        long size = channel.size();
+        while (position < size) {
+          position += channel.transferTo(position, size - position, target);
+        }
+      }
+      return;
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(4);
+    header.putInt(dataStore.size()).flip();
+    writeFully(header, target);
+    for (Map.Entry<String, ByteBuffer> entry : dataStore.entrySet()) {
+      ByteBuffer value = entry.getValue().duplicate();
+      writeFully(ByteBuffer.wrap(SimulationDataStoreOutputStream.toEntryHeader(
+          entry.getKey(), value.remaining())), target);
+      writeFully(value, target);
+    }
+  }
+
+  private static void writeFully(ByteBuffer buffer, WritableByteChannel target)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      target.write(buffer);
+    }
+  }
+
+  /**
+   * An {@link InputStream} that reads from a {@link ByteBuffer} and advances its position.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      } else if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+  }
+}
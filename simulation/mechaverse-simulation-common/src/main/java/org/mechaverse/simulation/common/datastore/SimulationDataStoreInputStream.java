@@ -3,9 +3,9 @@ package org.mechaverse.simulation.common.datastore;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.function.Supplier;
 
 /**
@@ -17,27 +17,12 @@ public class SimulationDataStoreInputStream extends DataInputStream {
 
   /**
    * Returns an {@link InputStream} that can be used to read the serialized data of the given
-   * {@link SimulationDataStore}.
+   * {@link SimulationDataStore}. The data is serialized as it is read, one entry at a time, so the
+   * serialized data store is never held in memory in its entirety. The data store should not be
+   * modified until the stream has been read.
    */
-  public static InputStream newInputStream(final SimulationDataStore dataStore) throws IOException {
-    // TODO(thorntonv): Implement unit test for this method.
-    final PipedOutputStream out = new PipedOutputStream();
-    new Thread(() -> {
-      SimulationDataStoreOutputStream dataStoreOut = new SimulationDataStoreOutputStream(out);
-      try {
-        dataStoreOut.writeDataStore(dataStore);
-      } catch (IOException e) {
-        e.printStackTrace();
-      } finally {
-        try {
-          dataStoreOut.close();
-        } catch (IOException ignored) {}
-        try {
-          out.close();
-        } catch (IOException ignored) {}
-      }
-    }).start();
-    return new PipedInputStream(out);
+  public static InputStream newInputStream(final SimulationDataStore dataStore) {
+    return new SerializingInputStream(dataStore);
   }
 
   private final Supplier<SimulationDataStore> dataStoreFactory;
@@ -61,4 +46,84 @@ public class SimulationDataStoreInputStream extends DataInputStream {
     }
     return dataStore;
   }
+
+  /**
+   * An {@link InputStream} that serializes the entries of a data store as they are read.
+   */
+  private static final class SerializingInputStream extends InputStream {
+
+    private final SimulationDataStore dataStore;
+    private final Iterator<String> keys;
+    private ByteBuffer buffer;
+    private ByteBuffer value;
+
+    SerializingInputStream(SimulationDataStore dataStore) {
+      this.dataStore = dataStore;
+      // Copy the keys so that the entry count that is written matches the entries that follow.
+      this.keys = new ArrayList<>(dataStore.keySet()).iterator();
+      this.buffer = ByteBuffer.allocate(4);
+      buffer.putInt(dataStore.size()).flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+      return nextBuffer() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      int count = 0;
+      while (count < len && nextBuffer()) {
+        int length = Math.min(len - count, buffer.remaining());
+        buffer.get(b, off + count, length);
+        count += length;
+      }
+      return count > 0 ? count : -1;
+    }
+
+    @Override
+    public int available() {
+      return buffer != null ? buffer.remaining() : 0;
+    }
+
+    /**
+     * Advances to the next buffer with remaining data.
+     *
+     * @return false if all of the data has been read
+     */
+    private boolean nextBuffer() throws IOException {
+      while (buffer != null && !buffer.hasRemaining()) {
+        if (value != null) {
+          buffer = value;
+          value = null;
+        } else if (keys.hasNext()) {
+          String key = keys.next();
+          value = getValue(key);
+          buffer = ByteBuffer.wrap(
+              SimulationDataStoreOutputStream.toEntryHeader(key, value.remaining()));
+        } else {
+          buffer = null;
+        }
+      }
+      return buffer != null;
+    }
+
+    private ByteBuffer getValue(String key) throws IOException {
+      if (dataStore instanceof MappedFileSimulationDataStore) {
+        ByteBuffer value = ((MappedFileSimulationDataStore) dataStore).getBuffer(key);
+        if (value != null) {
+          return value;
+        }
+      } else {
+        byte[] value = dataStore.get(key);
+        if (value != null) {
+          return ByteBuffer.wrap(value);
+        }
+      }
+      throw new IOException("The data store was modified while it was read: " + key);
+    }
+  }
 }
@@ -4,6 +4,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * A {@link DataOutputStream} that can be used to serialize a {@link SimulationDataStore}.
@@ -25,6 +27,23 @@ public class SimulationDataStoreOutputStream extends DataOutputStream {
     return byteOut.toByteArray();
   }
 
+  /**
+   * Writes the serialized data of the given {@link SimulationDataStore} to the given channel. A
+   * {@link MappedFileSimulationDataStore} is transferred from its file without copying the data
+   * onto the heap.
+   */
+  public static void writeDataStore(SimulationDataStore dataStore, WritableByteChannel channel)
+      throws IOException {
+    if (dataStore instanceof MappedFileSimulationDataStore) {
+      ((MappedFileSimulationDataStore) dataStore).transferTo(channel);
+      return;
+    }
+    SimulationDataStoreOutputStream out =
+        new SimulationDataStoreOutputStream(Channels.newOutputStream(channel));
+    out.writeDataStore(dataStore);
+    out.flush();
+  }
+
   /**
    * Returns the serialized size of the given {@link SimulationDataStore} in bytes.
    */
@@ -37,11 +56,25 @@ public class SimulationDataStoreOutputStream extends DataOutputStream {
       // Data length.
       size += 4;
       // Data.
-      size += dataStore.get(key).length;
+      size += dataStore instanceof MappedFileSimulationDataStore
+          ? ((MappedFileSimulationDataStore) dataStore).getBuffer(key).remaining()
+          : dataStore.get(key).length;
     }
     return size;
   }
 
+  /**
+   * Returns the serialized key and data length that precede the data of an entry.
+   */
+  static byte[] toEntryHeader(String key, int dataLength) throws IOException {
+    ByteArrayOutputStream byteOut = new ByteArrayOutputStream(key.length() + 6);
+    try (DataOutputStream out = new DataOutputStream(byteOut)) {
+      out.writeUTF(key);
+      out.writeInt(dataLength);
+    }
+    return byteOut.toByteArray();
+  }
+
   public SimulationDataStoreOutputStream(OutputStream out) {
     super(out);
   }
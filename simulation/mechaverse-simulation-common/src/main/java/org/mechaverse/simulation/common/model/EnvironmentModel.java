@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -95,6 +96,15 @@ public abstract class EnvironmentModel<
     return this.entities;
   }
 
+  /**
+   * Returns a read only view of the entities. Unlike {@link #getEntities()}, subclasses that do not
+   * store the entities in a list may implement this without copying.
+   */
+  @JsonIgnore
+  public Iterable<ENT_MODEL> getEntityView() {
+    return Collections.unmodifiableList(getEntities());
+  }
+
   @JsonIgnore
   public abstract ENT_TYPE[] getEntityTypes();
 
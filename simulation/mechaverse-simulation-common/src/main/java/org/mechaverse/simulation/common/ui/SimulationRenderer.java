@@ -74,7 +74,7 @@ public class SimulationRenderer<
 
         // Get entity z order.
         TreeMap<Integer, List<ENT_MODEL>> zOrderEntitiesMap = new TreeMap<>();
-        for (ENT_MODEL entityModel : envModel.getEntities()) {
+        for (ENT_MODEL entityModel : envModel.getEntityView()) {
             int zOrder = imageProvider.getZOrder(entityModel);
             List<ENT_MODEL> entityModels = zOrderEntitiesMap.getOrDefault(zOrder, new ArrayList<>());
             entityModels.add(entityModel);
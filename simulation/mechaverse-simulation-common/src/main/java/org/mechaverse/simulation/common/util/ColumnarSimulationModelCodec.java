@@ -0,0 +1,352 @@
+package org.mechaverse.simulation.common.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.mechaverse.simulation.common.model.Direction;
+import org.mechaverse.simulation.common.model.SimulationModel;
+
+/**
+ * Reads and writes the {@link SimulationModelFormat#COLUMNAR} snapshot format.
+ *
+ * <p>The model is converted to a tree using the Jackson mapping of the model classes. The entities
+ * are removed from each environment and the remaining tree is written as smile. The entities of
+ * each environment are then written as columns: the properties that are common to all entities
+ * are written as packed primitive arrays, the data keys are replaced by indices into a string table,
+ * and the data values are written contiguously. Any other entity properties are written as a smile
+ * array. This avoids writing the property names and data keys of each entity and allows the
+ * columns to be read with bulk primitive reads.
+ *
+ * <p>A snapshot consists of a four byte magic number and a version byte followed by the body
+ * compressed by a {@link CompressionCodec}. The body of a version 1 snapshot is always compressed
+ * with gzip, which is also read as codec compressed data. The body is:
+ * <pre>
+ *   int stringCount, UTF[stringCount] strings
+ *   int length, byte[length] model smile without entities
+ *   int environmentCount, then for each environment:
+ *     int entityCount
+ *     int length, byte[length] smile array of the remaining entity properties
+ *     int[entityCount] x, y, energy, maxEnergy
+ *     long[entityCount] createdIteration
+ *     byte[entityCount] direction ordinal or -1
+ *     int[entityCount] data entry count
+ *     int dataEntryCount, int[dataEntryCount] key string index, int[dataEntryCount] value length
+ *     byte[] data values
+ * </pre>
+ */
+public final class ColumnarSimulationModelCodec {
+
+  public static final int VERSION = 2;
+
+  private static final byte[] MAGIC = {'M', 'V', 'C', 'S'};
+
+  /** The length of the uncompressed header that precedes the body of a snapshot. */
+  static final int HEADER_LENGTH = MAGIC.length + 1;
+  private static final int BUFFER_SIZE = 128 * 1024;
+
+  private static final String ENVIRONMENT = "environment";
+  private static final String SUB_ENVIRONMENTS = "subEnvironments";
+  private static final String ENTITIES = "entities";
+  private static final String X = "x";
+  private static final String Y = "y";
+  private static final String ENERGY = "energy";
+  private static final String MAX_ENERGY = "maxEnergy";
+  private static final String CREATED_ITERATION = "createdIteration";
+  private static final String DIRECTION = "direction";
+  private static final String DATA = "data";
+
+  /**
+   * Returns true if the given data begins with the header of a columnar snapshot.
+   */
+  public static boolean isColumnar(byte[] data) {
+    if (data == null || data.length < MAGIC.length) {
+      return false;
+    }
+    for (int idx = 0; idx < MAGIC.length; idx++) {
+      if (data[idx] != MAGIC[idx]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the given stream begins with the header of a columnar snapshot. The stream must
+   * support {@link InputStream#mark} and is reset to its current position.
+   */
+  public static boolean isColumnar(InputStream in) throws IOException {
+    byte[] header = new byte[MAGIC.length];
+    in.mark(header.length);
+    int length = 0;
+    int count;
+    while (length < header.length && (count = in.read(header, length, header.length - length)) > 0) {
+      length += count;
+    }
+    in.reset();
+    return length == header.length && isColumnar(header);
+  }
+
+  /**
+   * Writes a snapshot of the given model.
+   *
+   * @param model the model to write
+   * @param objectMapper a smile object mapper
+   * @param codec the codec with which the body is compressed
+   * @param out the stream to which the snapshot is written. The stream is not closed.
+   */
+  public static void write(SimulationModel model, ObjectMapper objectMapper,
+      CompressionCodec codec, OutputStream out) throws IOException {
+    ObjectNode root = objectMapper.valueToTree(model);
+    Map<String, Integer> stringIndices = new LinkedHashMap<>();
+
+    List<ArrayNode> environmentEntities = new ArrayList<>();
+    for (ObjectNode environment : getEnvironmentNodes(root)) {
+      JsonNode entities = environment.remove(ENTITIES);
+      environmentEntities.add(entities instanceof ArrayNode
+          ? (ArrayNode) entities : objectMapper.createArrayNode());
+    }
+    for (ArrayNode entities : environmentEntities) {
+      for (JsonNode entity : entities) {
+        JsonNode data = entity.get(DATA);
+        if (data != null) {
+          data.fieldNames().forEachRemaining(
+              key -> stringIndices.putIfAbsent(key, stringIndices.size()));
+        }
+      }
+    }
+
+    out.write(MAGIC);
+    out.write(VERSION);
+    OutputStream compressedOut = codec.newOutputStream(out);
+    DataOutputStream dataOut =
+        new DataOutputStream(new BufferedOutputStream(compressedOut, BUFFER_SIZE));
+
+    dataOut.writeInt(stringIndices.size());
+    for (String value : stringIndices.keySet()) {
+      dataOut.writeUTF(value);
+    }
+    writeBytes(objectMapper.writeValueAsBytes(root), dataOut);
+
+    dataOut.writeInt(environmentEntities.size());
+    for (ArrayNode entities : environmentEntities) {
+      writeEntities(entities, stringIndices, objectMapper, dataOut);
+    }
+    dataOut.close();
+  }
+
+  /**
+   * Reads a snapshot.
+   *
+   * @param in the stream from which the snapshot is read
+   * @param objectMapper a smile object mapper with the model subtypes registered
+   * @param simulationModelClass the class of the model
+   */
+  public static <SIM_MODEL extends SimulationModel> SIM_MODEL read(InputStream in,
+      ObjectMapper objectMapper, Class<SIM_MODEL> simulationModelClass) throws IOException {
+    byte[] header = new byte[HEADER_LENGTH];
+    new DataInputStream(in).readFully(header);
+    if (!isColumnar(header)) {
+      throw new IOException("Invalid columnar snapshot header");
+    }
+    if (header[MAGIC.length] < 1 || header[MAGIC.length] > VERSION) {
+      throw new IOException("Unsupported columnar snapshot version " + header[MAGIC.length]);
+    }
+    DataInputStream dataIn = new DataInputStream(
+        new BufferedInputStream(CompressionCodec.newInputStream(in), BUFFER_SIZE));
+
+    String[] strings = new String[dataIn.readInt()];
+    for (int idx = 0; idx < strings.length; idx++) {
+      strings[idx] = dataIn.readUTF();
+    }
+    ObjectNode root = (ObjectNode) objectMapper.readTree(readBytes(dataIn));
+
+    List<ObjectNode> environments = getEnvironmentNodes(root);
+    int environmentCount = dataIn.readInt();
+    if (environmentCount != environments.size()) {
+      throw new IOException("Expected " + environments.size() + " environments but found "
+          + environmentCount);
+    }
+    for (ObjectNode environment : environments) {
+      environment.set(ENTITIES, readEntities(strings, objectMapper, dataIn));
+    }
+
+    return objectMapper.treeToValue(root, simulationModelClass);
+  }
+
+  private static void writeEntities(ArrayNode entities, Map<String, Integer> stringIndices,
+      ObjectMapper objectMapper, DataOutputStream out) throws IOException {
+    int entityCount = entities.size();
+    int[] x = new int[entityCount];
+    int[] y = new int[entityCount];
+    int[] energy = new int[entityCount];
+    int[] maxEnergy = new int[entityCount];
+    long[] createdIteration = new long[entityCount];
+    byte[] direction = new byte[entityCount];
+    int[] dataEntryCounts = new int[entityCount];
+    List<String> dataKeys = new ArrayList<>();
+    List<byte[]> dataValues = new ArrayList<>();
+
+    for (int idx = 0; idx < entityCount; idx++) {
+      ObjectNode entity = (ObjectNode) entities.get(idx);
+      x[idx] = removeInt(entity, X);
+      y[idx] = removeInt(entity, Y);
+      energy[idx] = removeInt(entity, ENERGY);
+      maxEnergy[idx] = removeInt(entity, MAX_ENERGY);
+      JsonNode createdIterationNode = entity.remove(CREATED_ITERATION);
+      createdIteration[idx] = createdIterationNode != null ? createdIterationNode.asLong() : 0;
+      JsonNode directionNode = entity.remove(DIRECTION);
+      direction[idx] = directionNode != null && directionNode.isTextual()
+          ? (byte) Direction.valueOf(directionNode.textValue()).ordinal() : -1;
+
+      JsonNode data = entity.remove(DATA);
+      if (data != null) {
+        Iterator<Map.Entry<String, JsonNode>> it = data.fields();
+        while (it.hasNext()) {
+          Map.Entry<String, JsonNode> entry = it.next();
+          dataKeys.add(entry.getKey());
+          dataValues.add(entry.getValue().isNull() ? null : entry.getValue().binaryValue());
+          dataEntryCounts[idx]++;
+        }
+      }
+    }
+
+    out.writeInt(entityCount);
+    writeBytes(objectMapper.writeValueAsBytes(entities), out);
+    writeInts(x, out);
+    writeInts(y, out);
+    writeInts(energy, out);
+    writeInts(maxEnergy, out);
+    for (long value : createdIteration) {
+      out.writeLong(value);
+    }
+    out.write(direction);
+    writeInts(dataEntryCounts, out);
+
+    out.writeInt(dataKeys.size());
+    for (String key : dataKeys) {
+      out.writeInt(stringIndices.get(key));
+    }
+    for (byte[] value : dataValues) {
+      out.writeInt(value != null ? value.length : -1);
+    }
+    for (byte[] value : dataValues) {
+      if (value != null) {
+        out.write(value);
+      }
+    }
+  }
+
+  private static ArrayNode readEntities(String[] strings, ObjectMapper objectMapper,
+      DataInputStream in) throws IOException {
+    int entityCount = in.readInt();
+    ArrayNode entities = (ArrayNode) objectMapper.readTree(readBytes(in));
+    if (entities.size() != entityCount) {
+      throw new IOException("Expected " + entityCount + " entities but found " + entities.size());
+    }
+    int[] x = readInts(entityCount, in);
+    int[] y = readInts(entityCount, in);
+    int[] energy = readInts(entityCount, in);
+    int[] maxEnergy = readInts(entityCount, in);
+    long[] createdIteration = new long[entityCount];
+    for (int idx = 0; idx < entityCount; idx++) {
+      createdIteration[idx] = in.readLong();
+    }
+    byte[] direction = new byte[entityCount];
+    in.readFully(direction);
+    int[] dataEntryCounts = readInts(entityCount, in);
+
+    int dataEntryCount = in.readInt();
+    int[] dataKeyIndices = readInts(dataEntryCount, in);
+    int[] dataValueLengths = readInts(dataEntryCount, in);
+
+    int dataEntryIdx = 0;
+    for (int idx = 0; idx < entityCount; idx++) {
+      ObjectNode entity = (ObjectNode) entities.get(idx);
+      entity.put(X, x[idx]);
+      entity.put(Y, y[idx]);
+      entity.put(ENERGY, energy[idx]);
+      entity.put(MAX_ENERGY, maxEnergy[idx]);
+      entity.put(CREATED_ITERATION, createdIteration[idx]);
+      if (direction[idx] >= 0) {
+        entity.put(DIRECTION, SimulationModelUtil.DIRECTIONS[direction[idx]].name());
+      }
+      ObjectNode data = entity.putObject(DATA);
+      for (int cnt = 0; cnt < dataEntryCounts[idx]; cnt++, dataEntryIdx++) {
+        String key = strings[dataKeyIndices[dataEntryIdx]];
+        int length = dataValueLengths[dataEntryIdx];
+        if (length >= 0) {
+          byte[] value = new byte[length];
+          in.readFully(value);
+          data.put(key, value);
+        } else {
+          data.putNull(key);
+        }
+      }
+    }
+    return entities;
+  }
+
+  /**
+   * Returns the nodes of the environments in the order that they are written.
+   */
+  private static List<ObjectNode> getEnvironmentNodes(ObjectNode root) {
+    List<ObjectNode> environments = new ArrayList<>();
+    if (root.get(ENVIRONMENT) instanceof ObjectNode) {
+      environments.add((ObjectNode) root.get(ENVIRONMENT));
+    }
+    JsonNode subEnvironments = root.get(SUB_ENVIRONMENTS);
+    if (subEnvironments != null) {
+      for (JsonNode subEnvironment : subEnvironments) {
+        if (subEnvironment instanceof ObjectNode) {
+          environments.add((ObjectNode) subEnvironment);
+        }
+      }
+    }
+    return environments;
+  }
+
+  private static int removeInt(ObjectNode node, String fieldName) {
+    JsonNode value = node.remove(fieldName);
+    return value != null ? value.asInt() : 0;
+  }
+
+  private static void writeInts(int[] values, DataOutputStream out) throws IOException {
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(int count, DataInputStream in) throws IOException {
+    int[] values = new int[count];
+    for (int idx = 0; idx < count; idx++) {
+      values[idx] = in.readInt();
+    }
+    return values;
+  }
+
+  private static void writeBytes(byte[] bytes, DataOutputStream out) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private ColumnarSimulationModelCodec() {}
+}
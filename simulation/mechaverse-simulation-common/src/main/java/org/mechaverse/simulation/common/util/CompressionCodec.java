@@ -0,0 +1,208 @@
+package org.mechaverse.simulation.common.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.common.base.Preconditions;
+import io.airlift.compress.lz4.Lz4HadoopStreams;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses serialized simulation state data.
+ *
+ * <p>Compressed data begins with a header byte that identifies the codec, so data compressed by any
+ * codec can be decompressed with {@link #newInputStream(InputStream)}. The header byte of a gzip
+ * codec is the first byte of the gzip stream itself, so gzip data is identical to the data that was
+ * written before codecs were introduced.
+ *
+ * <p>A codec can be parsed from a string of the form {@code type[:level]}, for example
+ * {@code gzip}, {@code lz4} or {@code zstd:9}.
+ */
+public final class CompressionCodec {
+
+  /**
+   * The supported compression algorithms.
+   */
+  public enum Type {
+
+    /** Gzip. The level is a {@link Deflater} level. */
+    GZIP(0x1f, Deflater.DEFAULT_COMPRESSION),
+
+    /** LZ4 blocks in the Hadoop block format. The level is ignored. */
+    LZ4(0x01, 0),
+
+    /** Zstandard. The level ranges from 1 to 22. */
+    ZSTD(0x02, 3);
+
+    private final int header;
+    private final int defaultLevel;
+
+    Type(int header, int defaultLevel) {
+      this.header = header;
+      this.defaultLevel = defaultLevel;
+    }
+
+    public int getHeader() {
+      return header;
+    }
+
+    public int getDefaultLevel() {
+      return defaultLevel;
+    }
+  }
+
+  public static final CompressionCodec GZIP = new CompressionCodec(Type.GZIP);
+  public static final CompressionCodec LZ4 = new CompressionCodec(Type.LZ4);
+  public static final CompressionCodec ZSTD = new CompressionCodec(Type.ZSTD);
+
+  private static final int BUFFER_SIZE = 128 * 1024;
+  private static final Lz4HadoopStreams LZ4_STREAMS = new Lz4HadoopStreams(BUFFER_SIZE);
+  private static final Type[] TYPES = Type.values();
+
+  private final Type type;
+  private final int level;
+
+  public CompressionCodec(Type type) {
+    this(type, type.getDefaultLevel());
+  }
+
+  public CompressionCodec(Type type, int level) {
+    this.type = Objects.requireNonNull(type);
+    this.level = level;
+  }
+
+  /**
+   * Returns the codec described by a string of the form {@code type[:level]}.
+   *
+   * @throws IllegalArgumentException if the string does not describe a codec
+   */
+  public static CompressionCodec valueOf(String value) {
+    Preconditions.checkArgument(value != null && !value.trim().isEmpty(), "Codec is empty");
+    String[] parts = value.trim().split(":", 2);
+    Type type = Type.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+    if (parts.length == 1) {
+      return new CompressionCodec(type);
+    }
+    try {
+      return new CompressionCodec(type, Integer.parseInt(parts[1].trim()));
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid compression level: " + value, ex);
+    }
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Returns a stream that compresses the data written to it and writes the compressed data to the
+   * given stream. Closing the returned stream finishes the compressed data but does not close the
+   * given stream.
+   */
+  public OutputStream newOutputStream(OutputStream out) throws IOException {
+    out = new NonClosingOutputStream(out);
+    switch (type) {
+      case GZIP:
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+          {
+            def.setLevel(level);
+          }
+        };
+      case LZ4:
+        out.write(type.getHeader());
+        return LZ4_STREAMS.createOutputStream(out);
+      case ZSTD:
+        out.write(type.getHeader());
+        return new ZstdOutputStream(out, level);
+      default:
+        throw new IllegalStateException("Unsupported compression type " + type);
+    }
+  }
+
+  /**
+   * Returns a stream that decompresses data that was compressed by any codec. The data written
+   * before codecs were introduced is read as gzip data.
+   */
+  public static InputStream newInputStream(InputStream in) throws IOException {
+    PushbackInputStream pushbackIn = new PushbackInputStream(in, 1);
+    int header = pushbackIn.read();
+    if (header == -1) {
+      throw new EOFException("Compressed data is empty");
+    }
+    switch (getType(header)) {
+      case GZIP:
+        pushbackIn.unread(header);
+        return new GZIPInputStream(pushbackIn, BUFFER_SIZE);
+      case LZ4:
+        return LZ4_STREAMS.createInputStream(pushbackIn);
+      case ZSTD:
+        return new ZstdInputStream(pushbackIn);
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  private static Type getType(int header) throws IOException {
+    for (Type type : TYPES) {
+      if (type.getHeader() == header) {
+        return type;
+      }
+    }
+    throw new IOException("Unknown compression header " + header);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CompressionCodec)) {
+      return false;
+    }
+    CompressionCodec other = (CompressionCodec) obj;
+    return type == other.type && level == other.level;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, level);
+  }
+
+  @Override
+  public String toString() {
+    return type.name().toLowerCase(Locale.ROOT) + (type != Type.LZ4 ? ":" + level : "");
+  }
+
+  /**
+   * Passes data to a stream that is flushed rather than closed when this stream is closed.
+   */
+  private static final class NonClosingOutputStream extends FilterOutputStream {
+
+    NonClosingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
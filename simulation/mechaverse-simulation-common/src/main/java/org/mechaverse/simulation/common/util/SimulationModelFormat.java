@@ -0,0 +1,20 @@
+package org.mechaverse.simulation.common.util;
+
+/**
+ * The formats in which a serialized {@link org.mechaverse.simulation.common.model.SimulationModel}
+ * may be stored. Serialized models identify their format, so data in any format can be
+ * deserialized.
+ */
+public enum SimulationModelFormat {
+
+  /**
+   * The model is serialized to compressed smile.
+   */
+  SMILE,
+
+  /**
+   * The model is serialized to a compressed binary snapshot in which the common entity properties
+   * and data are stored in columns. See {@link ColumnarSimulationModelCodec}.
+   */
+  COLUMNAR
+}
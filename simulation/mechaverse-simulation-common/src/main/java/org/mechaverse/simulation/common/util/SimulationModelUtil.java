@@ -1,15 +1,18 @@
 package org.mechaverse.simulation.common.util;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import org.mechaverse.simulation.common.model.Direction;
 import org.mechaverse.simulation.common.model.SimulationModel;
 
@@ -20,30 +23,37 @@ public final class SimulationModelUtil {
 
   public static final Direction[] DIRECTIONS = Direction.values();
 
-  private static final int DEFAULT_GZIP_BUFFER_SIZE = 128 * 1024;
+  private static final int DEFAULT_BUFFER_SIZE = 128 * 1024;
 
   /**
-   * Serializes the given model to smile written to the given {@link OutputStream}.
-   *
-   * @param model the model to serialize
-   * @param out the output stream to which serialized data will be written
+   * Deserializes a model that was serialized in any {@link SimulationModelFormat} and compressed by
+   * any {@link CompressionCodec}.
    */
-  private static void serialize(SimulationModel model, OutputStream out)
-      throws IOException {
-    ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
-    objectMapper.setSerializationInclusion(Include.NON_NULL);
-    objectMapper.writeValue(out, model);
-    out.close();
-  }
-
   public static <SIM_MODEL extends SimulationModel> SIM_MODEL deserialize(byte[] data, Class[] classesToBeBound, Class<SIM_MODEL> simulationModelClass) throws IOException {
     if (data == null) {
       return null;
     }
+    return deserialize(new ByteArrayInputStream(data), classesToBeBound, simulationModelClass);
+  }
+
+  /**
+   * Deserializes a model that was serialized in any {@link SimulationModelFormat} from the given
+   * {@link InputStream}. The model is decoded as it is read, so the serialized data is never held in
+   * memory in its entirety. The stream is not closed.
+   */
+  public static <SIM_MODEL extends SimulationModel> SIM_MODEL deserialize(InputStream in,
+      Class[] classesToBeBound, Class<SIM_MODEL> simulationModelClass) throws IOException {
     ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
     objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    objectMapper.getFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
     objectMapper.registerSubtypes(classesToBeBound);
-    return objectMapper.readValue(new GZIPInputStream(new ByteArrayInputStream(data)), simulationModelClass);
+    if (!in.markSupported()) {
+      in = new BufferedInputStream(in, DEFAULT_BUFFER_SIZE);
+    }
+    if (ColumnarSimulationModelCodec.isColumnar(in)) {
+      return ColumnarSimulationModelCodec.read(in, objectMapper, simulationModelClass);
+    }
+    return objectMapper.readValue(CompressionCodec.newInputStream(in), simulationModelClass);
   }
 
   /**
@@ -51,12 +61,78 @@ public final class SimulationModelUtil {
    * representation of the model.
    */
   public static byte[] serialize(SimulationModel model) throws IOException {
+    return serialize(model, SimulationModelFormat.SMILE);
+  }
+
+  /**
+   * Serializes a {@link SimulationModel} to a byte array in the given format.
+   */
+  public static byte[] serialize(SimulationModel model, SimulationModelFormat format)
+      throws IOException {
     ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-    try (OutputStream out = new GZIPOutputStream(byteOut, DEFAULT_GZIP_BUFFER_SIZE)) {
-      serialize(model, out);
-    }
+    serialize(model, format, byteOut);
     return byteOut.toByteArray();
   }
 
+  /**
+   * Serializes a {@link SimulationModel} to compressed smile written to the given
+   * {@link OutputStream}. The stream is not closed.
+   */
+  public static void serialize(SimulationModel model, OutputStream out) throws IOException {
+    serialize(model, SimulationModelFormat.SMILE, out);
+  }
+
+  /**
+   * Serializes a {@link SimulationModel} in the given format to the given {@link OutputStream}. The
+   * data is compressed with gzip. The stream is not closed.
+   */
+  public static void serialize(SimulationModel model, SimulationModelFormat format,
+      OutputStream out) throws IOException {
+    serialize(model, format, CompressionCodec.GZIP, out);
+  }
+
+  /**
+   * Serializes a {@link SimulationModel} in the given format to the given {@link OutputStream}. The
+   * data is compressed with the given codec as it is written, so the serialized model is never held
+   * in memory in its entirety. The stream is not closed.
+   */
+  public static void serialize(SimulationModel model, SimulationModelFormat format,
+      CompressionCodec codec, OutputStream out) throws IOException {
+    ObjectMapper objectMapper = newSerializationObjectMapper();
+    if (format == SimulationModelFormat.COLUMNAR) {
+      ColumnarSimulationModelCodec.write(model, objectMapper, codec, out);
+      return;
+    }
+    try (OutputStream compressedOut = codec.newOutputStream(out)) {
+      objectMapper.writeValue(compressedOut, model);
+    }
+  }
+
+  /**
+   * Writes serialized model data of any format to the given {@link OutputStream} compressed with
+   * the given codec. Only the compressed part of the data is decompressed and compressed again, so
+   * the model is not deserialized. The stream is not closed.
+   */
+  public static void recompress(byte[] data, CompressionCodec codec, OutputStream out)
+      throws IOException {
+    int offset = 0;
+    if (ColumnarSimulationModelCodec.isColumnar(data)) {
+      offset = ColumnarSimulationModelCodec.HEADER_LENGTH;
+      out.write(data, 0, offset);
+    }
+    try (InputStream in = CompressionCodec.newInputStream(
+            new ByteArrayInputStream(data, offset, data.length - offset));
+        OutputStream compressedOut = codec.newOutputStream(out)) {
+      ByteStreams.copy(in, compressedOut);
+    }
+  }
+
+  private static ObjectMapper newSerializationObjectMapper() {
+    ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+    objectMapper.setSerializationInclusion(Include.NON_NULL);
+    objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    return objectMapper;
+  }
+
   private SimulationModelUtil() {}
 }
@@ -0,0 +1,1332 @@
+package org.mechaverse.simulation.common.util.compiler;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Compiles a restricted subset of Java directly to bytecode without requiring the JDK compiler.
+ * The subset covers the code produced by the cellular automaton source generators:
+ *
+ * <ul>
+ * <li>a single top level class that extends a class which is visible to this class loader</li>
+ * <li>constructors that begin with an optional {@code super(...)} call</li>
+ * <li>void methods</li>
+ * <li>local variables of type int, boolean and arrays of these types</li>
+ * <li>inherited instance fields of the same types</li>
+ * <li>blocks, {@code if}, {@code for}, {@code return} and expression statements</li>
+ * <li>int and boolean literals, array access, array length, assignment, compound assignment,
+ * increment, decrement, and the unary, binary and conditional operators</li>
+ * </ul>
+ *
+ * <p>Code outside of this subset is rejected with a {@link CompileException}. Comments and
+ * annotations are ignored.</p>
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public final class BytecodeCompiler {
+
+  private static final Map<String, Class<?>> PRIMITIVE_TYPES =
+      ImmutableMap.of("int", int.class, "boolean", boolean.class, "void", void.class);
+
+  /**
+   * The binary operators with a higher precedence than the logical operators ordered from lowest
+   * to highest precedence.
+   */
+  private static final String[][] BINARY_OPERATORS = {
+      {"|"}, {"^"}, {"&"}, {"==", "!="}, {"<", ">", "<=", ">="}, {"<<", ">>", ">>>"},
+      {"+", "-"}, {"*", "/", "%"}};
+
+  private final String source;
+  private final ClassLoader classLoader;
+  private final List<Token> tokens;
+  private int position;
+
+  private String internalName;
+  private Class<?> superClass;
+  private MethodScope scope;
+
+  private BytecodeCompiler(String source, ClassLoader classLoader) throws CompileException {
+    this.source = source;
+    this.classLoader = classLoader;
+    this.tokens = new Tokenizer(source).tokenize();
+  }
+
+  /**
+   * Compiles the Java source code contained in a String to bytecode.
+   *
+   * @param implClass the fully qualified package and name of the class that will be compiled
+   * @param sourceStr the source code as a String
+   *
+   * @return the bytecode of the compiled class
+   * @throws CompileException if the source is invalid or uses an unsupported language feature
+   */
+  public static byte[] compileToBytecode(String implClass, String sourceStr)
+      throws CompileException {
+    return compileToBytecode(implClass, sourceStr, BytecodeCompiler.class.getClassLoader());
+  }
+
+  /**
+   * Compiles the Java source code contained in a String to bytecode.
+   *
+   * @param implClass the fully qualified package and name of the class that will be compiled
+   * @param sourceStr the source code as a String
+   * @param classLoader the class loader used to resolve the super class
+   *
+   * @return the bytecode of the compiled class
+   * @throws CompileException if the source is invalid or uses an unsupported language feature
+   */
+  public static byte[] compileToBytecode(String implClass, String sourceStr,
+      ClassLoader classLoader) throws CompileException {
+    try {
+      return new BytecodeCompiler(sourceStr, classLoader).compilationUnit(implClass);
+    } catch (RuntimeException ex) {
+      throw new CompileException(
+          String.format("Error compiling %s: %s", implClass, ex.getMessage()));
+    }
+  }
+
+  /**
+   * Compiles the Java source code contained in a String and loads the resulting class.
+   *
+   * @param implClass the fully qualified package and name of the class that will be compiled
+   * @param sourceStr the source code as a String
+   *
+   * @return the compiled class
+   * @throws CompileException if the source is invalid or uses an unsupported language feature
+   */
+  public static <T> Class<T> compile(String implClass, String sourceStr)
+      throws CompileException {
+    return JavaCompilerUtil.defineClass(implClass, compileToBytecode(implClass, sourceStr));
+  }
+
+  // Declarations.
+
+  private byte[] compilationUnit(String implClass) throws CompileException {
+    String packageName = "";
+    if (accept("package")) {
+      packageName = qualifiedName();
+      expect(";");
+    }
+    skipModifiers();
+    expect("class");
+    String className = identifier();
+    String qualifiedClassName = packageName.isEmpty() ? className : packageName + "." + className;
+    if (!qualifiedClassName.equals(implClass)) {
+      throw error("Expected class " + implClass + " but found " + qualifiedClassName);
+    }
+    internalName = qualifiedClassName.replace('.', '/');
+
+    superClass = Object.class;
+    if (accept("extends")) {
+      superClass = resolveClass(qualifiedName(), packageName);
+    }
+    if (accept("implements")) {
+      throw error("Interfaces are not supported");
+    }
+
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+      @Override
+      protected String getCommonSuperClass(String type1, String type2) {
+        // Only arrays and this class are stored in locals, so frames never need to merge
+        // unrelated reference types.
+        return "java/lang/Object";
+      }
+    };
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null,
+        Type.getInternalName(superClass), null);
+
+    expect("{");
+    boolean hasConstructor = false;
+    while (!accept("}")) {
+      skipAnnotations();
+      int access = skipModifiers();
+      if (peek().text.equals(className) && peek(1).text.equals("(")) {
+        identifier();
+        constructor(classWriter, access);
+        hasConstructor = true;
+      } else {
+        method(classWriter, access);
+      }
+    }
+    if (peek().type != TokenType.EOF) {
+      throw error("Unexpected " + peek().text);
+    }
+    if (!hasConstructor) {
+      MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+      mv.visitCode();
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(superClass), "<init>",
+          Type.getConstructorDescriptor(resolveConstructor(new ArrayList<>())), false);
+      mv.visitInsn(Opcodes.RETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private void constructor(ClassWriter classWriter, int access) {
+    scope = new MethodScope();
+    List<Type> parameterTypes = parameters();
+    MethodVisitor mv = classWriter.visitMethod(access, "<init>",
+        Type.getMethodDescriptor(Type.VOID_TYPE, parameterTypes.toArray(new Type[0])), null, null);
+    mv.visitCode();
+    expect("{");
+    List<Expr> superArgs = new ArrayList<>();
+    if (accept("super")) {
+      superArgs = arguments();
+      expect(";");
+    }
+    List<Class<?>> superArgTypes = new ArrayList<>();
+    for (Expr arg : superArgs) {
+      superArgTypes.add(arg.type);
+    }
+    Constructor<?> superConstructor = resolveConstructor(superArgTypes);
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    for (Expr arg : superArgs) {
+      arg.emit(mv);
+    }
+    mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(superClass), "<init>",
+        Type.getConstructorDescriptor(superConstructor), false);
+    while (!accept("}")) {
+      statement().emit(mv);
+    }
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void method(ClassWriter classWriter, int access) {
+    if (type() != void.class) {
+      throw error("Only void methods are supported");
+    }
+    String name = identifier();
+    scope = new MethodScope();
+    List<Type> parameterTypes = parameters();
+    MethodVisitor mv = classWriter.visitMethod(access, name,
+        Type.getMethodDescriptor(Type.VOID_TYPE, parameterTypes.toArray(new Type[0])), null, null);
+    mv.visitCode();
+    block().emit(mv);
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private List<Type> parameters() {
+    List<Type> parameterTypes = new ArrayList<>();
+    expect("(");
+    if (!accept(")")) {
+      do {
+        accept("final");
+        Class<?> type = type();
+        scope.declare(identifier(), type);
+        parameterTypes.add(Type.getType(type));
+      } while (accept(","));
+      expect(")");
+    }
+    return parameterTypes;
+  }
+
+  private Class<?> type() {
+    Token token = next();
+    Class<?> type = PRIMITIVE_TYPES.get(token.text);
+    if (type == null) {
+      throw error(token, "Unsupported type " + token.text);
+    }
+    while (peek().text.equals("[") && peek(1).text.equals("]")) {
+      position += 2;
+      type = java.lang.reflect.Array.newInstance(type, 0).getClass();
+    }
+    return type;
+  }
+
+  private boolean isTypeStart() {
+    return PRIMITIVE_TYPES.containsKey(peek().text);
+  }
+
+  private int skipModifiers() {
+    int access = 0;
+    while (true) {
+      if (accept("public")) {
+        access |= Opcodes.ACC_PUBLIC;
+      } else if (accept("protected")) {
+        access |= Opcodes.ACC_PROTECTED;
+      } else if (accept("private")) {
+        access |= Opcodes.ACC_PRIVATE;
+      } else if (accept("final")) {
+        access |= Opcodes.ACC_FINAL;
+      } else if (peek().text.equals("static") || peek().text.equals("abstract")) {
+        throw error("Unsupported modifier " + peek().text);
+      } else {
+        return access;
+      }
+    }
+  }
+
+  private void skipAnnotations() {
+    while (accept("@")) {
+      qualifiedName();
+      if (peek().text.equals("(")) {
+        throw error("Annotation arguments are not supported");
+      }
+    }
+  }
+
+  // Statements.
+
+  private Stmt block() {
+    expect("{");
+    scope.push();
+    List<Stmt> statements = new ArrayList<>();
+    while (!accept("}")) {
+      statements.add(statement());
+    }
+    scope.pop();
+    return mv -> {
+      for (Stmt statement : statements) {
+        statement.emit(mv);
+      }
+    };
+  }
+
+  private Stmt statement() {
+    if (peek().text.equals("{")) {
+      return block();
+    } else if (accept(";")) {
+      return mv -> {};
+    } else if (accept("return")) {
+      expect(";");
+      return mv -> mv.visitInsn(Opcodes.RETURN);
+    } else if (accept("if")) {
+      return ifStatement();
+    } else if (accept("for")) {
+      return forStatement();
+    } else if (peek().text.equals("final") || isTypeStart()) {
+      Stmt declaration = declaration();
+      expect(";");
+      return declaration;
+    }
+    Expr expr = expression();
+    expect(";");
+    return mv -> {
+      expr.emit(mv);
+      if (expr.type != void.class) {
+        mv.visitInsn(Opcodes.POP);
+      }
+    };
+  }
+
+  private Stmt declaration() {
+    accept("final");
+    Class<?> type = type();
+    if (type == void.class) {
+      throw error("Illegal variable type void");
+    }
+    List<Stmt> initializers = new ArrayList<>();
+    do {
+      String name = identifier();
+      Expr init = accept("=") ? expression() : null;
+      // Declare the variable after parsing the initializer so that it is not in scope there.
+      int slot = scope.declare(name, type);
+      if (init != null) {
+        checkAssignable(type, init);
+        initializers.add(mv -> {
+          init.emit(mv);
+          mv.visitVarInsn(Type.getType(type).getOpcode(Opcodes.ISTORE), slot);
+        });
+      }
+    } while (accept(","));
+    return mv -> {
+      for (Stmt initializer : initializers) {
+        initializer.emit(mv);
+      }
+    };
+  }
+
+  private Stmt ifStatement() {
+    expect("(");
+    Expr condition = expression();
+    checkType(boolean.class, condition);
+    expect(")");
+    Stmt thenStatement = scopedStatement();
+    Stmt elseStatement = accept("else") ? scopedStatement() : null;
+    return mv -> {
+      Label elseLabel = new Label();
+      Label endLabel = new Label();
+      condition.emitJumpIfFalse(mv, elseLabel);
+      thenStatement.emit(mv);
+      if (elseStatement != null) {
+        mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+      }
+      mv.visitLabel(elseLabel);
+      if (elseStatement != null) {
+        elseStatement.emit(mv);
+        mv.visitLabel(endLabel);
+      }
+    };
+  }
+
+  private Stmt forStatement() {
+    expect("(");
+    scope.push();
+    Stmt init = mv -> {};
+    if (!accept(";")) {
+      if (peek().text.equals("final") || isTypeStart()) {
+        init = declaration();
+      } else {
+        Expr initExpr = expression();
+        init = mv -> {
+          initExpr.emit(mv);
+          mv.visitInsn(Opcodes.POP);
+        };
+      }
+      expect(";");
+    }
+    Expr condition = null;
+    if (!accept(";")) {
+      condition = expression();
+      checkType(boolean.class, condition);
+      expect(";");
+    }
+    Expr update = null;
+    if (!accept(")")) {
+      update = expression();
+      expect(")");
+    }
+    Stmt body = scopedStatement();
+    scope.pop();
+
+    final Stmt forInit = init;
+    final Expr forCondition = condition;
+    final Expr forUpdate = update;
+    return mv -> {
+      Label conditionLabel = new Label();
+      Label endLabel = new Label();
+      forInit.emit(mv);
+      mv.visitLabel(conditionLabel);
+      if (forCondition != null) {
+        forCondition.emitJumpIfFalse(mv, endLabel);
+      }
+      body.emit(mv);
+      if (forUpdate != null) {
+        forUpdate.emit(mv);
+        mv.visitInsn(Opcodes.POP);
+      }
+      mv.visitJumpInsn(Opcodes.GOTO, conditionLabel);
+      mv.visitLabel(endLabel);
+    };
+  }
+
+  private Stmt scopedStatement() {
+    scope.push();
+    Stmt statement = statement();
+    scope.pop();
+    return statement;
+  }
+
+  // Expressions.
+
+  private List<Expr> arguments() {
+    List<Expr> args = new ArrayList<>();
+    expect("(");
+    if (!accept(")")) {
+      do {
+        args.add(expression());
+      } while (accept(","));
+      expect(")");
+    }
+    return args;
+  }
+
+  private Expr expression() {
+    Expr target = conditional();
+    Token token = peek();
+    if (token.type == TokenType.OPERATOR && token.text.endsWith("=")
+        && !token.text.equals("==") && !token.text.equals("!=") && !token.text.equals("<=")
+        && !token.text.equals(">=")) {
+      position++;
+      Expr value = expression();
+      if (!(target instanceof LValue)) {
+        throw error(token, "Invalid assignment target");
+      }
+      LValue lvalue = (LValue) target;
+      if (token.text.equals("=")) {
+        checkAssignable(target.type, value);
+        return lvalue.assign(value);
+      }
+      String operator = token.text.substring(0, token.text.length() - 1);
+      checkType(int.class, target);
+      checkType(int.class, value);
+      return lvalue.update(mv -> {
+        value.emit(mv);
+        mv.visitInsn(arithmeticOpcode(operator));
+      }, false);
+    }
+    return target;
+  }
+
+  private Expr conditional() {
+    Expr condition = logicalOr();
+    if (!accept("?")) {
+      return condition;
+    }
+    checkType(boolean.class, condition);
+    Expr trueExpr = expression();
+    expect(":");
+    Expr falseExpr = conditional();
+    if (trueExpr.type != falseExpr.type) {
+      throw error("Incompatible conditional operand types");
+    }
+    return new Expr(trueExpr.type) {
+      @Override
+      void emit(MethodVisitor mv) {
+        Label falseLabel = new Label();
+        Label endLabel = new Label();
+        condition.emitJumpIfFalse(mv, falseLabel);
+        trueExpr.emit(mv);
+        mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+        mv.visitLabel(falseLabel);
+        falseExpr.emit(mv);
+        mv.visitLabel(endLabel);
+      }
+    };
+  }
+
+  private Expr logicalOr() {
+    Expr left = logicalAnd();
+    while (accept("||")) {
+      Expr lhs = left;
+      Expr rhs = logicalAnd();
+      checkType(boolean.class, lhs);
+      checkType(boolean.class, rhs);
+      left = new Expr(boolean.class) {
+        @Override
+        void emitJumpIfFalse(MethodVisitor mv, Label falseLabel) {
+          Label trueLabel = new Label();
+          lhs.emit(mv);
+          mv.visitJumpInsn(Opcodes.IFNE, trueLabel);
+          rhs.emitJumpIfFalse(mv, falseLabel);
+          mv.visitLabel(trueLabel);
+        }
+      };
+    }
+    return left;
+  }
+
+  private Expr logicalAnd() {
+    Expr left = binary(0);
+    while (accept("&&")) {
+      Expr lhs = left;
+      Expr rhs = binary(0);
+      checkType(boolean.class, lhs);
+      checkType(boolean.class, rhs);
+      left = new Expr(boolean.class) {
+        @Override
+        void emitJumpIfFalse(MethodVisitor mv, Label falseLabel) {
+          lhs.emitJumpIfFalse(mv, falseLabel);
+          rhs.emitJumpIfFalse(mv, falseLabel);
+        }
+      };
+    }
+    return left;
+  }
+
+  private Expr binary(int precedence) {
+    if (precedence == BINARY_OPERATORS.length) {
+      return unary();
+    }
+    Expr left = binary(precedence + 1);
+    while (true) {
+      String operator = null;
+      for (String candidate : BINARY_OPERATORS[precedence]) {
+        if (peek().type == TokenType.OPERATOR && peek().text.equals(candidate)) {
+          operator = candidate;
+        }
+      }
+      if (operator == null) {
+        return left;
+      }
+      position++;
+      left = binaryExpr(operator, left, binary(precedence + 1));
+    }
+  }
+
+  private Expr binaryExpr(String operator, Expr lhs, Expr rhs) {
+    switch (operator) {
+      case "==":
+      case "!=":
+        if (lhs.type != rhs.type || !lhs.type.isPrimitive()) {
+          throw error("Incompatible operand types for " + operator);
+        }
+        return comparison(operator, lhs, rhs);
+      case "<":
+      case ">":
+      case "<=":
+      case ">=":
+        checkType(int.class, lhs);
+        checkType(int.class, rhs);
+        return comparison(operator, lhs, rhs);
+      case "&":
+      case "|":
+      case "^":
+        if (lhs.type == boolean.class && rhs.type == boolean.class) {
+          return arithmetic(boolean.class, operator, lhs, rhs);
+        }
+        break;
+      default:
+        break;
+    }
+    checkType(int.class, lhs);
+    checkType(int.class, rhs);
+    return arithmetic(int.class, operator, lhs, rhs);
+  }
+
+  private Expr arithmetic(Class<?> type, String operator, Expr lhs, Expr rhs) {
+    int opcode = arithmeticOpcode(operator);
+    return new Expr(type) {
+      @Override
+      void emit(MethodVisitor mv) {
+        lhs.emit(mv);
+        rhs.emit(mv);
+        mv.visitInsn(opcode);
+      }
+    };
+  }
+
+  private Expr comparison(String operator, Expr lhs, Expr rhs) {
+    // The opcode that jumps when the comparison is false.
+    final int falseOpcode;
+    switch (operator) {
+      case "==": falseOpcode = Opcodes.IF_ICMPNE; break;
+      case "!=": falseOpcode = Opcodes.IF_ICMPEQ; break;
+      case "<": falseOpcode = Opcodes.IF_ICMPGE; break;
+      case ">": falseOpcode = Opcodes.IF_ICMPLE; break;
+      case "<=": falseOpcode = Opcodes.IF_ICMPGT; break;
+      default: falseOpcode = Opcodes.IF_ICMPLT; break;
+    }
+    return new Expr(boolean.class) {
+      @Override
+      void emitJumpIfFalse(MethodVisitor mv, Label falseLabel) {
+        lhs.emit(mv);
+        rhs.emit(mv);
+        mv.visitJumpInsn(falseOpcode, falseLabel);
+      }
+    };
+  }
+
+  private static int arithmeticOpcode(String operator) {
+    switch (operator) {
+      case "+": return Opcodes.IADD;
+      case "-": return Opcodes.ISUB;
+      case "*": return Opcodes.IMUL;
+      case "/": return Opcodes.IDIV;
+      case "%": return Opcodes.IREM;
+      case "&": return Opcodes.IAND;
+      case "|": return Opcodes.IOR;
+      case "^": return Opcodes.IXOR;
+      case "<<": return Opcodes.ISHL;
+      case ">>": return Opcodes.ISHR;
+      case ">>>": return Opcodes.IUSHR;
+      default: throw new IllegalArgumentException("Unsupported operator " + operator);
+    }
+  }
+
+  private Expr unary() {
+    Token token = peek();
+    if (token.type == TokenType.OPERATOR) {
+      switch (token.text) {
+        case "+":
+          position++;
+          return checkType(int.class, unary());
+        case "-": {
+          position++;
+          if (peek().type == TokenType.NUMBER) {
+            return literal(next(), true);
+          }
+          Expr operand = checkType(int.class, unary());
+          return new Expr(int.class) {
+            @Override
+            void emit(MethodVisitor mv) {
+              operand.emit(mv);
+              mv.visitInsn(Opcodes.INEG);
+            }
+          };
+        }
+        case "~": {
+          position++;
+          Expr operand = checkType(int.class, unary());
+          return new Expr(int.class) {
+            @Override
+            void emit(MethodVisitor mv) {
+              operand.emit(mv);
+              mv.visitInsn(Opcodes.ICONST_M1);
+              mv.visitInsn(Opcodes.IXOR);
+            }
+          };
+        }
+        case "!": {
+          position++;
+          Expr operand = checkType(boolean.class, unary());
+          return new Expr(boolean.class) {
+            @Override
+            void emit(MethodVisitor mv) {
+              operand.emit(mv);
+              mv.visitInsn(Opcodes.ICONST_1);
+              mv.visitInsn(Opcodes.IXOR);
+            }
+          };
+        }
+        case "++":
+        case "--": {
+          position++;
+          Expr operand = unary();
+          if (!(operand instanceof LValue)) {
+            throw error(token, "Invalid increment target");
+          }
+          checkType(int.class, operand);
+          return ((LValue) operand).increment(token.text.equals("++") ? 1 : -1, false);
+        }
+        default:
+          break;
+      }
+    }
+    return postfix();
+  }
+
+  private Expr postfix() {
+    Expr expr = primary();
+    while (true) {
+      Token token = peek();
+      if (accept("[")) {
+        Expr array = expr;
+        Expr index = checkType(int.class, expression());
+        expect("]");
+        if (!array.type.isArray()) {
+          throw error(token, "Array required");
+        }
+        expr = new ArrayElement(array, index);
+      } else if (accept("++") || accept("--")) {
+        if (!(expr instanceof LValue)) {
+          throw error(token, "Invalid increment target");
+        }
+        checkType(int.class, expr);
+        return ((LValue) expr).increment(token.text.equals("++") ? 1 : -1, true);
+      } else if (token.text.equals(".") && expr.type.isArray()
+          && peek(1).text.equals("length")) {
+        position += 2;
+        Expr array = expr;
+        expr = new Expr(int.class) {
+          @Override
+          void emit(MethodVisitor mv) {
+            array.emit(mv);
+            mv.visitInsn(Opcodes.ARRAYLENGTH);
+          }
+        };
+      } else if (token.text.equals(".")) {
+        throw error(token, "Member access is not supported");
+      } else if (token.text.equals("(")) {
+        throw error(token, "Method calls are not supported");
+      } else {
+        return expr;
+      }
+    }
+  }
+
+  private Expr primary() {
+    Token token = next();
+    switch (token.type) {
+      case NUMBER:
+        return literal(token, false);
+      case IDENTIFIER:
+        switch (token.text) {
+          case "true":
+          case "false":
+            return constant(boolean.class, token.text.equals("true") ? 1 : 0);
+          case "this":
+            expect(".");
+            return field(identifier());
+          default:
+            Local local = scope.lookup(token.text);
+            return local != null ? local : field(token.text);
+        }
+      default:
+        if (token.text.equals("(")) {
+          Expr expr = expression();
+          expect(")");
+          return expr;
+        }
+        throw error(token, "Unexpected " + token.text);
+    }
+  }
+
+  private Expr literal(Token token, boolean negate) {
+    String text = token.text.replace("_", "");
+    if (text.endsWith("L") || text.endsWith("l")) {
+      throw error(token, "Long literals are not supported");
+    }
+    boolean decimal = true;
+    long value;
+    try {
+      if (text.startsWith("0x") || text.startsWith("0X")) {
+        decimal = false;
+        value = Long.parseLong(text.substring(2), 16);
+      } else if (text.startsWith("0b") || text.startsWith("0B")) {
+        decimal = false;
+        value = Long.parseLong(text.substring(2), 2);
+      } else if (text.length() > 1 && text.startsWith("0")) {
+        decimal = false;
+        value = Long.parseLong(text.substring(1), 8);
+      } else {
+        value = Long.parseLong(text);
+      }
+    } catch (NumberFormatException ex) {
+      throw error(token, "Invalid number " + token.text);
+    }
+    // Decimal literals must fit in an int, while other radixes may specify all 32 bits.
+    long maxValue = decimal ? (negate ? 1L << 31 : Integer.MAX_VALUE) : 0xFFFFFFFFL;
+    if (value > maxValue) {
+      throw error(token, "Integer number too large " + token.text);
+    }
+    return constant(int.class, negate ? -(int) value : (int) value);
+  }
+
+  private static Expr constant(Class<?> type, int value) {
+    return new Expr(type) {
+      @Override
+      void emit(MethodVisitor mv) {
+        if (value >= -1 && value <= 5) {
+          mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+          mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+          mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+          mv.visitLdcInsn(value);
+        }
+      }
+    };
+  }
+
+  private Expr field(String name) {
+    for (Class<?> owner = superClass; owner != null; owner = owner.getSuperclass()) {
+      for (Field field : owner.getDeclaredFields()) {
+        if (field.getName().equals(name)) {
+          if (Modifier.isStatic(field.getModifiers()) || Modifier.isPrivate(field.getModifiers())
+              || !PRIMITIVE_TYPES.containsKey(getComponentType(field.getType()).getName())) {
+            throw error("Unsupported field " + name);
+          }
+          return new FieldRef(Type.getInternalName(owner), field);
+        }
+      }
+    }
+    throw error("Cannot find symbol " + name);
+  }
+
+  private static Class<?> getComponentType(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    return type;
+  }
+
+  private Class<?> resolveClass(String name, String packageName) {
+    List<String> candidates = new ArrayList<>();
+    candidates.add(name);
+    if (!packageName.isEmpty()) {
+      candidates.add(0, packageName + "." + name);
+    }
+    candidates.add("java.lang." + name);
+    for (String candidate : candidates) {
+      // Nested classes are named with a '$' separator.
+      String binaryName = candidate;
+      while (true) {
+        try {
+          return Class.forName(binaryName, false, classLoader);
+        } catch (ClassNotFoundException ex) {
+          // Try the next candidate.
+        }
+        if (binaryName.indexOf('.') < 0) {
+          break;
+        }
+        binaryName = replaceLast(binaryName, '.', '$');
+      }
+    }
+    throw error("Cannot find class " + name);
+  }
+
+  private static String replaceLast(String str, char oldChar, char newChar) {
+    int idx = str.lastIndexOf(oldChar);
+    return str.substring(0, idx) + newChar + str.substring(idx + 1);
+  }
+
+  private Constructor<?> resolveConstructor(List<Class<?>> argTypes) {
+    for (Constructor<?> constructor : superClass.getDeclaredConstructors()) {
+      if (Modifier.isPrivate(constructor.getModifiers())) {
+        continue;
+      }
+      Class<?>[] parameterTypes = constructor.getParameterTypes();
+      if (parameterTypes.length != argTypes.size()) {
+        continue;
+      }
+      boolean matches = true;
+      for (int idx = 0; idx < parameterTypes.length; idx++) {
+        matches &= parameterTypes[idx] == argTypes.get(idx);
+      }
+      if (matches) {
+        return constructor;
+      }
+    }
+    throw error("Cannot find constructor " + superClass.getSimpleName() + argTypes);
+  }
+
+  private Expr checkType(Class<?> type, Expr expr) {
+    if (expr.type != type) {
+      throw error("Expected " + type.getSimpleName() + " but found " + expr.type.getSimpleName());
+    }
+    return expr;
+  }
+
+  private void checkAssignable(Class<?> type, Expr expr) {
+    checkType(type, expr);
+  }
+
+  // Tokens.
+
+  private Token peek() {
+    return peek(0);
+  }
+
+  private Token peek(int offset) {
+    return tokens.get(Math.min(position + offset, tokens.size() - 1));
+  }
+
+  private Token next() {
+    Token token = peek();
+    if (token.type != TokenType.EOF) {
+      position++;
+    }
+    return token;
+  }
+
+  private boolean accept(String text) {
+    if (peek().text.equals(text) && peek().type != TokenType.EOF) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(String text) {
+    if (!accept(text)) {
+      throw error("Expected " + text + " but found " + peek().text);
+    }
+  }
+
+  private String identifier() {
+    Token token = next();
+    if (token.type != TokenType.IDENTIFIER) {
+      throw error(token, "Expected identifier but found " + token.text);
+    }
+    return token.text;
+  }
+
+  private String qualifiedName() {
+    StringBuilder name = new StringBuilder(identifier());
+    while (accept(".")) {
+      name.append('.').append(identifier());
+    }
+    return name.toString();
+  }
+
+  private IllegalArgumentException error(String message) {
+    return error(peek(), message);
+  }
+
+  private IllegalArgumentException error(Token token, String message) {
+    int line = 1;
+    for (int idx = 0; idx < token.offset && idx < source.length(); idx++) {
+      if (source.charAt(idx) == '\n') {
+        line++;
+      }
+    }
+    return new IllegalArgumentException(String.format("line %d: %s", line, message));
+  }
+
+  // Code model.
+
+  /**
+   * A statement that emits its code when the enclosing method is generated.
+   */
+  private interface Stmt {
+    void emit(MethodVisitor mv);
+  }
+
+  /**
+   * A typed expression. Boolean expressions are represented as 0 or 1 on the operand stack.
+   */
+  private abstract static class Expr {
+
+    final Class<?> type;
+
+    Expr(Class<?> type) {
+      this.type = type;
+    }
+
+    /**
+     * Emits code that pushes the value of the expression onto the operand stack.
+     */
+    void emit(MethodVisitor mv) {
+      Label falseLabel = new Label();
+      Label endLabel = new Label();
+      emitJumpIfFalse(mv, falseLabel);
+      mv.visitInsn(Opcodes.ICONST_1);
+      mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+      mv.visitLabel(falseLabel);
+      mv.visitInsn(Opcodes.ICONST_0);
+      mv.visitLabel(endLabel);
+    }
+
+    /**
+     * Emits code that evaluates a boolean expression and jumps to the given label if it is false.
+     */
+    void emitJumpIfFalse(MethodVisitor mv, Label falseLabel) {
+      emit(mv);
+      mv.visitJumpInsn(Opcodes.IFEQ, falseLabel);
+    }
+  }
+
+  /**
+   * An expression that can be assigned to. Assignments leave the assigned value on the stack.
+   */
+  private abstract static class LValue extends Expr {
+
+    LValue(Class<?> type) {
+      super(type);
+    }
+
+    abstract Expr assign(Expr value);
+
+    /**
+     * Returns an expression that applies an operation to the current value and stores the result.
+     *
+     * @param operation emits code that replaces the int on top of the stack with the new value
+     * @param resultIsOldValue whether the expression evaluates to the value before the update
+     */
+    abstract Expr update(Stmt operation, boolean resultIsOldValue);
+
+    Expr increment(int delta, boolean resultIsOldValue) {
+      return update(mv -> {
+        mv.visitInsn(delta > 0 ? Opcodes.ICONST_1 : Opcodes.ICONST_M1);
+        mv.visitInsn(Opcodes.IADD);
+      }, resultIsOldValue);
+    }
+  }
+
+  private static final class Local extends LValue {
+
+    final int slot;
+
+    Local(Class<?> type, int slot) {
+      super(type);
+      this.slot = slot;
+    }
+
+    @Override
+    void emit(MethodVisitor mv) {
+      mv.visitVarInsn(Type.getType(type).getOpcode(Opcodes.ILOAD), slot);
+    }
+
+    @Override
+    Expr assign(Expr value) {
+      return new Expr(type) {
+        @Override
+        void emit(MethodVisitor mv) {
+          value.emit(mv);
+          mv.visitInsn(Opcodes.DUP);
+          mv.visitVarInsn(Type.getType(type).getOpcode(Opcodes.ISTORE), slot);
+        }
+      };
+    }
+
+    @Override
+    Expr update(Stmt operation, boolean resultIsOldValue) {
+      return new Expr(type) {
+        @Override
+        void emit(MethodVisitor mv) {
+          mv.visitVarInsn(Opcodes.ILOAD, slot);
+          if (resultIsOldValue) {
+            mv.visitInsn(Opcodes.DUP);
+          }
+          operation.emit(mv);
+          if (!resultIsOldValue) {
+            mv.visitInsn(Opcodes.DUP);
+          }
+          mv.visitVarInsn(Opcodes.ISTORE, slot);
+        }
+      };
+    }
+  }
+
+  private static final class FieldRef extends LValue {
+
+    final String owner;
+    final String name;
+    final String descriptor;
+    final boolean isFinal;
+
+    FieldRef(String owner, Field field) {
+      super(field.getType());
+      this.owner = owner;
+      this.name = field.getName();
+      this.descriptor = Type.getDescriptor(field.getType());
+      this.isFinal = Modifier.isFinal(field.getModifiers());
+    }
+
+    @Override
+    void emit(MethodVisitor mv) {
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitFieldInsn(Opcodes.GETFIELD, owner, name, descriptor);
+    }
+
+    @Override
+    Expr assign(Expr value) {
+      checkNotFinal();
+      return new Expr(type) {
+        @Override
+        void emit(MethodVisitor mv) {
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          value.emit(mv);
+          mv.visitInsn(Opcodes.DUP_X1);
+          mv.visitFieldInsn(Opcodes.PUTFIELD, owner, name, descriptor);
+        }
+      };
+    }
+
+    @Override
+    Expr update(Stmt operation, boolean resultIsOldValue) {
+      checkNotFinal();
+      return new Expr(type) {
+        @Override
+        void emit(MethodVisitor mv) {
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitInsn(Opcodes.DUP);
+          mv.visitFieldInsn(Opcodes.GETFIELD, owner, name, descriptor);
+          if (resultIsOldValue) {
+            mv.visitInsn(Opcodes.DUP_X1);
+          }
+          operation.emit(mv);
+          if (!resultIsOldValue) {
+            mv.visitInsn(Opcodes.DUP_X1);
+          }
+          mv.visitFieldInsn(Opcodes.PUTFIELD, owner, name, descriptor);
+        }
+      };
+    }
+
+    private void checkNotFinal() {
+      if (isFinal) {
+        throw new IllegalArgumentException("Cannot assign a value to final variable " + name);
+      }
+    }
+  }
+
+  private static final class ArrayElement extends LValue {
+
+    final Expr array;
+    final Expr index;
+
+    ArrayElement(Expr array, Expr index) {
+      super(array.type.getComponentType());
+      this.array = array;
+      this.index = index;
+    }
+
+    @Override
+    void emit(MethodVisitor mv) {
+      array.emit(mv);
+      index.emit(mv);
+      mv.visitInsn(Type.getType(type).getOpcode(Opcodes.IALOAD));
+    }
+
+    @Override
+    Expr assign(Expr value) {
+      return new Expr(type) {
+        @Override
+        void emit(MethodVisitor mv) {
+          array.emit(mv);
+          index.emit(mv);
+          value.emit(mv);
+          mv.visitInsn(Opcodes.DUP_X2);
+          mv.visitInsn(Type.getType(type).getOpcode(Opcodes.IASTORE));
+        }
+      };
+    }
+
+    @Override
+    Expr update(Stmt operation, boolean resultIsOldValue) {
+      return new Expr(type) {
+        @Override
+        void emit(MethodVisitor mv) {
+          array.emit(mv);
+          index.emit(mv);
+          mv.visitInsn(Opcodes.DUP2);
+          mv.visitInsn(Opcodes.IALOAD);
+          if (resultIsOldValue) {
+            mv.visitInsn(Opcodes.DUP_X2);
+          }
+          operation.emit(mv);
+          if (!resultIsOldValue) {
+            mv.visitInsn(Opcodes.DUP_X2);
+          }
+          mv.visitInsn(Opcodes.IASTORE);
+        }
+      };
+    }
+  }
+
+  /**
+   * The local variables of a method. Slots are never reused, which keeps the generated frames
+   * simple at the cost of a slightly larger local variable table.
+   */
+  private static final class MethodScope {
+
+    private final Deque<Map<String, Local>> blocks = new ArrayDeque<>();
+    private int nextSlot = 1;
+
+    MethodScope() {
+      push();
+    }
+
+    void push() {
+      blocks.push(new HashMap<>());
+    }
+
+    void pop() {
+      blocks.pop();
+    }
+
+    int declare(String name, Class<?> type) {
+      if (lookup(name) != null) {
+        throw new IllegalArgumentException("Variable " + name + " is already defined");
+      }
+      int slot = nextSlot++;
+      blocks.peek().put(name, new Local(type, slot));
+      return slot;
+    }
+
+    Local lookup(String name) {
+      for (Map<String, Local> block : blocks) {
+        Local local = block.get(name);
+        if (local != null) {
+          return local;
+        }
+      }
+      return null;
+    }
+  }
+
+  private enum TokenType { IDENTIFIER, NUMBER, OPERATOR, EOF }
+
+  private static final class Token {
+
+    final TokenType type;
+    final String text;
+    final int offset;
+
+    Token(TokenType type, String text, int offset) {
+      this.type = type;
+      this.text = text;
+      this.offset = offset;
+    }
+  }
+
+  /**
+   * Splits source code into identifier, number and operator tokens.
+   */
+  private static final class Tokenizer {
+
+    private static final String[] OPERATORS = {
+        ">>>=", "<<=", ">>=", ">>>", "==", "!=", "<=", ">=", "&&", "||", "++", "--", "+=", "-=",
+        "*=", "/=", "%=", "&=", "|=", "^=", "<<", ">>", "+", "-", "*", "/", "%", "&", "|", "^",
+        "~", "!", "=", "<", ">", "?", ":", ";", ",", ".", "(", ")", "[", "]", "{", "}", "@"};
+
+    private final String source;
+    private int offset;
+
+    Tokenizer(String source) {
+      this.source = source;
+    }
+
+    List<Token> tokenize() throws CompileException {
+      List<Token> tokens = new ArrayList<>();
+      while (true) {
+        skipWhitespaceAndComments();
+        if (offset >= source.length()) {
+          tokens.add(new Token(TokenType.EOF, "<EOF>", offset));
+          return tokens;
+        }
+        tokens.add(nextToken());
+      }
+    }
+
+    private void skipWhitespaceAndComments() throws CompileException {
+      while (offset < source.length()) {
+        if (Character.isWhitespace(source.charAt(offset))) {
+          offset++;
+        } else if (source.startsWith("//", offset)) {
+          int end = source.indexOf('\n', offset);
+          offset = end < 0 ? source.length() : end + 1;
+        } else if (source.startsWith("/*", offset)) {
+          int end = source.indexOf("*/", offset + 2);
+          if (end < 0) {
+            throw new CompileException("Unterminated comment");
+          }
+          offset = end + 2;
+        } else {
+          return;
+        }
+      }
+    }
+
+    private Token nextToken() throws CompileException {
+      int start = offset;
+      char ch = source.charAt(offset);
+      if (Character.isJavaIdentifierStart(ch)) {
+        while (offset < source.length() && Character.isJavaIdentifierPart(source.charAt(offset))) {
+          offset++;
+        }
+        return new Token(TokenType.IDENTIFIER, source.substring(start, offset), start);
+      }
+      if (Character.isDigit(ch)) {
+        while (offset < source.length() && (Character.isLetterOrDigit(source.charAt(offset))
+            || source.charAt(offset) == '_')) {
+          offset++;
+        }
+        return new Token(TokenType.NUMBER, source.substring(start, offset), start);
+      }
+      for (String operator : OPERATORS) {
+        if (source.startsWith(operator, offset)) {
+          offset += operator.length();
+          return new Token(TokenType.OPERATOR, operator, start);
+        }
+      }
+      throw new CompileException(String.format("Unexpected character '%c'", ch));
+    }
+  }
+}
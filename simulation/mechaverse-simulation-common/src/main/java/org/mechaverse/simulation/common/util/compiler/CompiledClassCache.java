@@ -0,0 +1,223 @@
+package org.mechaverse.simulation.common.util.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A content addressed cache of classes compiled from generated source code. Classes are keyed by
+ * a hash of the class name and source, which captures everything the generated code depends on.
+ * Loaded classes are kept in memory and the bytecode is optionally written to a directory so that
+ * later processes can skip compilation.
+ *
+ * <p>A SHA-256 digest of the bytecode is stored next to each class file and verified before the
+ * class is defined. The directory is created so that only its owner can access it, and cached
+ * classes are ignored if the directory can be written by other users.
+ *
+ * @author Vance Thornton (thorntonv@mechaverse.org)
+ */
+public final class CompiledClassCache {
+
+  /**
+   * The system property that specifies the directory of the on disk cache used by
+   * {@link #getInstance()}. An empty value disables the on disk cache.
+   */
+  public static final String DIRECTORY_PROPERTY = "mechaverse.compiledClassCacheDir";
+
+  private static final String CLASS_FILE_EXTENSION = ".class";
+  private static final String DIGEST_FILE_EXTENSION = ".sha256";
+  private static final int MAX_LOADED_CLASS_COUNT = 64;
+
+  private static final Logger logger = LoggerFactory.getLogger(CompiledClassCache.class);
+
+  private static final CompiledClassCache INSTANCE = new CompiledClassCache(getDefaultDirectory());
+
+  private final Cache<String, Class<?>> loadedClasses = CacheBuilder.newBuilder()
+      .maximumSize(MAX_LOADED_CLASS_COUNT).softValues().build();
+  private final File directory;
+
+  /**
+   * Returns the shared cache. The on disk cache directory is taken from the
+   * {@value #DIRECTORY_PROPERTY} system property and defaults to a directory in user.home.
+   */
+  public static CompiledClassCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Creates a cache that stores bytecode in the given directory.
+   *
+   * @param directory the on disk cache directory or null to only cache classes in memory
+   */
+  public CompiledClassCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the class compiled from the given source, compiling it only if it is not already in
+   * the cache.
+   *
+   * @param implClass the fully qualified package and name of the class that will be compiled
+   * @param sourceStr the source code as a String
+   *
+   * @throws CompileException if an error occurs during compilation
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Class<T> compile(String implClass, String sourceStr) throws CompileException {
+    String key = getKey(implClass, sourceStr);
+    try {
+      return (Class<T>) loadedClasses.get(key, () -> load(key, implClass, sourceStr));
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      if (ex.getCause() instanceof CompileException) {
+        throw (CompileException) ex.getCause();
+      }
+      throw new IllegalStateException("Error loading class " + implClass, ex.getCause());
+    }
+  }
+
+  /**
+   * Removes all classes from the in memory cache. The on disk cache is not affected.
+   */
+  public void invalidateLoadedClasses() {
+    loadedClasses.invalidateAll();
+  }
+
+  private Class<?> load(String key, String implClass, String sourceStr) throws CompileException {
+    byte[] bytecode = readBytecode(key);
+    if (bytecode != null) {
+      try {
+        return JavaCompilerUtil.defineClass(implClass, bytecode);
+      } catch (CompileException | LinkageError ex) {
+        logger.warn("Ignoring invalid cached class file for {}", implClass, ex);
+      }
+    }
+
+    bytecode = JavaCompilerUtil.compileToBytecode(implClass, sourceStr);
+    writeBytecode(key, bytecode);
+    return JavaCompilerUtil.defineClass(implClass, bytecode);
+  }
+
+  private byte[] readBytecode(String key) {
+    if (directory == null) {
+      return null;
+    }
+    File file = new File(directory, key + CLASS_FILE_EXTENSION);
+    File digestFile = new File(directory, key + DIGEST_FILE_EXTENSION);
+    if (!file.isFile() || !digestFile.isFile()) {
+      return null;
+    }
+    try {
+      if (isWritableByOthers(directory.toPath())) {
+        logger.warn("Ignoring cached class files in {} because it can be written by other users",
+            directory);
+        return null;
+      }
+      byte[] bytecode = Files.readAllBytes(file.toPath());
+      String digest = new String(Files.readAllBytes(digestFile.toPath()), StandardCharsets.UTF_8);
+      if (!digest.trim().equals(getDigest(bytecode))) {
+        logger.warn("Ignoring cached class file {} because its digest does not match", file);
+        return null;
+      }
+      return bytecode;
+    } catch (IOException ex) {
+      logger.warn("Unable to read cached class file {}", file, ex);
+      return null;
+    }
+  }
+
+  private void writeBytecode(String key, byte[] bytecode) {
+    if (directory == null) {
+      return;
+    }
+    try {
+      createDirectory(directory.toPath());
+      // The digest is written first so that a class file is never observed without it.
+      writeAtomically(key, getDigest(bytecode).getBytes(StandardCharsets.UTF_8),
+          DIGEST_FILE_EXTENSION);
+      writeAtomically(key, bytecode, CLASS_FILE_EXTENSION);
+    } catch (IOException ex) {
+      logger.warn("Unable to write cached class file to {}", directory, ex);
+    }
+  }
+
+  /**
+   * Writes to a temporary file and then moves it so that concurrent readers never observe a
+   * partially written file.
+   */
+  private void writeAtomically(String key, byte[] data, String extension) throws IOException {
+    Path tempFile = Files.createTempFile(directory.toPath(), key, ".tmp");
+    try {
+      Files.write(tempFile, data);
+      Files.move(tempFile, new File(directory, key + extension).toPath(),
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Creates the given directory so that only its owner can access it if the file system supports
+   * POSIX permissions.
+   */
+  private static void createDirectory(Path path) throws IOException {
+    if (Files.isDirectory(path)) {
+      return;
+    }
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.createDirectories(path, PosixFilePermissions.asFileAttribute(
+          PosixFilePermissions.fromString("rwx------")));
+    } else {
+      Files.createDirectories(path);
+    }
+  }
+
+  private static boolean isWritableByOthers(Path path) throws IOException {
+    PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+    if (view == null) {
+      return false;
+    }
+    Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+    return permissions.contains(PosixFilePermission.GROUP_WRITE)
+        || permissions.contains(PosixFilePermission.OTHERS_WRITE);
+  }
+
+  private static String getDigest(byte[] bytecode) {
+    return Hashing.sha256().hashBytes(bytecode).toString();
+  }
+
+  private static String getKey(String implClass, String sourceStr) {
+    return Hashing.sha256().newHasher()
+        .putString(System.getProperty("java.specification.version"), StandardCharsets.UTF_8)
+        .putInt(implClass.length())
+        .putString(implClass, StandardCharsets.UTF_8)
+        .putString(sourceStr, StandardCharsets.UTF_8)
+        .hash().toString();
+  }
+
+  private static File getDefaultDirectory() {
+    String path = System.getProperty(DIRECTORY_PROPERTY);
+    if (path == null) {
+      return new File(System.getProperty("user.home"),
+          ".mechaverse" + File.separator + "compiled-classes");
+    }
+    return path.isEmpty() ? null : new File(path);
+  }
+}
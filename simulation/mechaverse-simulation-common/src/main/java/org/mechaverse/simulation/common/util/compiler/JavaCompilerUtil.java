@@ -13,7 +13,6 @@ import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
-import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.SimpleJavaFileObject;
@@ -42,6 +41,11 @@ public final class JavaCompilerUtil {
       this.diagnostics = diagnostics;
     }
 
+    public CompileException(String message) {
+      super(message);
+      this.diagnostics = Collections.emptyList();
+    }
+
     public CompileException(List<Diagnostic<? extends JavaFileObject>> diagnostics,
         Throwable cause) {
       super(cause);
@@ -103,15 +107,8 @@ public final class JavaCompilerUtil {
       super(standardManager);
     }
 
-    @Override
-    public ClassLoader getClassLoader(Location location) {
-      return new SecureClassLoader() {
-        @Override
-        protected Class<?> findClass(String name) {
-          byte[] b = jclassObject.getBytes();
-          return super.defineClass(name, jclassObject.getBytes(), 0, b.length);
-        }
-      };
+    public byte[] getBytes() {
+      return jclassObject.getBytes();
     }
 
     @Override
@@ -122,6 +119,29 @@ public final class JavaCompilerUtil {
     }
   }
 
+  /**
+   * A class loader that defines a single class from its bytecode.
+   */
+  private static class ByteArrayClassLoader extends SecureClassLoader {
+
+    private final String className;
+    private final byte[] bytecode;
+
+    public ByteArrayClassLoader(String className, byte[] bytecode) {
+      super(JavaCompilerUtil.class.getClassLoader());
+      this.className = className;
+      this.bytecode = bytecode;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      if (!name.equals(className)) {
+        throw new ClassNotFoundException(name);
+      }
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+
   /**
    * Compiles the Java source code contained in a String.
    *
@@ -131,8 +151,21 @@ public final class JavaCompilerUtil {
    * @return an instance of the compiled class
    * @throws CompileException if an error occurs during compilation
    */
-  @SuppressWarnings("unchecked")
   public static <T> Class<T> compile(String implClass, String sourceStr) throws CompileException {
+    return defineClass(implClass, compileToBytecode(implClass, sourceStr));
+  }
+
+  /**
+   * Compiles the Java source code contained in a String to bytecode without loading it.
+   *
+   * @param implClass the fully qualified package and name of the class that will be compiled
+   * @param sourceStr the source code as a String
+   *
+   * @return the bytecode of the compiled class
+   * @throws CompileException if an error occurs during compilation
+   */
+  public static byte[] compileToBytecode(String implClass, String sourceStr)
+      throws CompileException {
     JavaFileObject file = new JavaSourceFromString(implClass, sourceStr);
 
     JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
@@ -140,20 +173,33 @@ public final class JavaCompilerUtil {
 
     Iterable<? extends JavaFileObject> compilationUnits = Collections.singletonList(file);
 
-    JavaFileManager fileManager =
+    ClassFileManager fileManager =
         new ClassFileManager(compiler.getStandardFileManager(null, null, null));
     CompilationTask task =
         compiler.getTask(null, fileManager, diagnostics, null, null, compilationUnits);
 
-    boolean success = task.call();
-    if (success) {
-      try {
-        return (Class<T>) fileManager.getClassLoader(null).loadClass(implClass);
-      } catch (ClassNotFoundException e) {
-        throw new CompileException(diagnostics.getDiagnostics(), e);
-      }
-    } else {
+    if (!task.call()) {
       throw new CompileException(diagnostics.getDiagnostics());
     }
+    return fileManager.getBytes();
+  }
+
+  /**
+   * Loads a class from its bytecode using a new class loader.
+   *
+   * @param implClass the fully qualified package and name of the class
+   * @param bytecode the bytecode of the class
+   *
+   * @return the loaded class
+   * @throws CompileException if the class cannot be loaded
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Class<T> defineClass(String implClass, byte[] bytecode)
+      throws CompileException {
+    try {
+      return (Class<T>) new ByteArrayClassLoader(implClass, bytecode).loadClass(implClass);
+    } catch (ClassNotFoundException | ClassFormatError e) {
+      throw new CompileException(Collections.emptyList(), e);
+    }
   }
 }
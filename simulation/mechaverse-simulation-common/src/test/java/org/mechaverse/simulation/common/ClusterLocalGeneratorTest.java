@@ -0,0 +1,101 @@
+package org.mechaverse.simulation.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableTable;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Test;
+import org.mechaverse.simulation.common.AbstractProbabilisticEnvironmentModelGenerator.EntityDistribution;
+import org.mechaverse.simulation.common.AbstractProbabilisticEnvironmentModelGenerator.ProbabilisticLocalGenerator;
+import org.mechaverse.simulation.common.util.RandomUtil;
+import org.mechaverse.simulation.common.util.TestEntityType;
+
+/**
+ * Unit test for {@link ClusterLocalGenerator}.
+ */
+public class ClusterLocalGeneratorTest {
+
+  @Test
+  public void of_cached() {
+    ClusterLocalGenerator<TestEntityType> generator =
+        ClusterLocalGenerator.of(TestEntityType.ENTITY1, 1, 5);
+    assertSame(generator, ClusterLocalGenerator.of(TestEntityType.ENTITY1, 1, 5));
+    assertNotSame(generator, ClusterLocalGenerator.of(TestEntityType.ENTITY1, 1, 6));
+    assertNotSame(generator, ClusterLocalGenerator.of(TestEntityType.ENTITY2, 1, 5));
+  }
+
+  @Test
+  public void getCellProbability() {
+    ClusterLocalGenerator<TestEntityType> generator =
+        ClusterLocalGenerator.of(TestEntityType.ENTITY1, 1, 4);
+    assertEquals(8, generator.getWidth());
+    assertEquals(8, generator.getHeight());
+    assertEquals(1, generator.getCellProbability(4, 4), 1e-9);
+    assertEquals(.75, generator.getCellProbability(4, 5), 1e-9);
+    assertEquals(0, generator.getCellProbability(0, 0), 1e-9);
+  }
+
+  @Test
+  public void generateEntity_densityFollowsProbability() {
+    int radius = 8;
+    int clusterCount = 2000;
+    ClusterLocalGenerator<TestEntityType> generator =
+        ClusterLocalGenerator.of(TestEntityType.ENTITY1, .4, radius);
+    ClusterLocalGenerator<TestEntityType> fullGenerator =
+        ClusterLocalGenerator.of(TestEntityType.ENTITY1, 1, radius);
+    assertEquals(.4, generator.getCellProbability(radius, radius), 1e-9);
+
+    RandomGenerator random =
+        RandomUtil.newGenerator(ClusterLocalGeneratorTest.class.getName().hashCode());
+    double expectedCount = 0;
+    int count = 0;
+    for (int row = 0; row < radius * 2; row++) {
+      for (int col = 0; col < radius * 2; col++) {
+        assertEquals(.4 * fullGenerator.getCellProbability(row, col),
+            generator.getCellProbability(row, col), 1e-9);
+        expectedCount += clusterCount * generator.getCellProbability(row, col);
+        for (int cnt = 0; cnt < clusterCount; cnt++) {
+          if (generator.generateEntity(row, col, random).isPresent()) {
+            count++;
+          }
+        }
+      }
+    }
+    assertEquals(expectedCount, count, expectedCount * .02);
+  }
+
+  @Test
+  public void generateEntity_matchesProbabilisticLocalGenerator() {
+    int radius = 6;
+    long seed = ClusterLocalGeneratorTest.class.getName().hashCode();
+    RandomGenerator expectedRandom = RandomUtil.newGenerator(seed);
+    RandomGenerator random = RandomUtil.newGenerator(seed);
+
+    ImmutableTable.Builder<Integer, Integer, EntityDistribution<TestEntityType>> builder =
+        ImmutableTable.builder();
+    for (int row = 0; row < radius * 2; row++) {
+      for (int col = 0; col < radius * 2; col++) {
+        double x = col - radius;
+        double y = row - radius;
+        double p = (radius - Math.sqrt(x * x + y * y)) / radius;
+        builder.put(row, col,
+            EntityDistribution.of(TestEntityType.ENTITY1, p > 0 ? p : 0, expectedRandom));
+      }
+    }
+    ProbabilisticLocalGenerator<TestEntityType> expectedGenerator =
+        new ProbabilisticLocalGenerator<>(1, builder.build());
+    ClusterLocalGenerator<TestEntityType> generator =
+        ClusterLocalGenerator.of(TestEntityType.ENTITY1, 1, radius);
+
+    for (int cnt = 0; cnt < 10; cnt++) {
+      for (int row = 0; row < radius * 2; row++) {
+        for (int col = 0; col < radius * 2; col++) {
+          assertEquals(expectedGenerator.generateEntity(row, col),
+              generator.generateEntity(row, col, random));
+        }
+      }
+    }
+  }
+}
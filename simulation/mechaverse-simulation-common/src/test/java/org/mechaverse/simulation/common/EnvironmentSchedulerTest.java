@@ -0,0 +1,124 @@
+package org.mechaverse.simulation.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link EnvironmentScheduler}.
+ */
+public class EnvironmentSchedulerTest {
+
+  private static final int PARALLELISM = 3;
+
+  private EnvironmentScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new EnvironmentScheduler(PARALLELISM);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.close();
+  }
+
+  @Test
+  public void execute() {
+    int[] updateCounts = new int[10];
+    List<Runnable> updates = new ArrayList<>();
+    for (int idx = 0; idx < updateCounts.length; idx++) {
+      final int index = idx;
+      updates.add(() -> updateCounts[index]++);
+    }
+
+    scheduler.execute(updates);
+    scheduler.execute(updates);
+
+    int[] expectedCounts = new int[updateCounts.length];
+    Arrays.fill(expectedCounts, 2);
+    assertArrayEquals(expectedCounts, updateCounts);
+  }
+
+  @Test
+  public void execute_usesDedicatedPool() {
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    List<Runnable> updates = Collections.nCopies(PARALLELISM * 2,
+        () -> threadNames.add(Thread.currentThread().getName()));
+
+    scheduler.execute(updates);
+
+    assertFalse(threadNames.isEmpty());
+    for (String threadName : threadNames) {
+      assertTrue(threadName, threadName.startsWith("environment-scheduler-"));
+    }
+  }
+
+  @Test
+  public void execute_singleUpdate_runsOnCallingThread() {
+    String[] threadName = new String[1];
+    scheduler.execute(Collections.singletonList(
+        () -> threadName[0] = Thread.currentThread().getName()));
+    assertEquals(Thread.currentThread().getName(), threadName[0]);
+  }
+
+  @Test
+  public void forEach() {
+    int[] counts = new int[10];
+    scheduler.forEach(counts.length, idx -> counts[idx]++);
+
+    int[] expectedCounts = new int[counts.length];
+    Arrays.fill(expectedCounts, 1);
+    assertArrayEquals(expectedCounts, counts);
+  }
+
+  @Test
+  public void forEach_usesDedicatedPool() {
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+    // Called from the calling thread, as a single environment is updated, and from an update that
+    // is running on the pool.
+    scheduler.forEach(PARALLELISM * 2, idx -> threadNames.add(Thread.currentThread().getName()));
+    scheduler.execute(Collections.nCopies(2, () -> scheduler.forEach(PARALLELISM * 2,
+        idx -> threadNames.add(Thread.currentThread().getName()))));
+
+    assertFalse(threadNames.isEmpty());
+    for (String threadName : threadNames) {
+      assertTrue(threadName, threadName.startsWith("environment-scheduler-"));
+    }
+  }
+
+  @Test
+  public void execute_recordsCostEstimates() {
+    assertEquals(Double.POSITIVE_INFINITY, scheduler.getCostEstimate(0), 0);
+
+    scheduler.execute(Collections.nCopies(2, () -> {}));
+    assertTrue(scheduler.getCostEstimate(0) < Double.POSITIVE_INFINITY);
+    assertTrue(scheduler.getCostEstimate(1) < Double.POSITIVE_INFINITY);
+
+    scheduler.resetCostEstimates();
+    assertEquals(Double.POSITIVE_INFINITY, scheduler.getCostEstimate(0), 0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void execute_propagatesException() {
+    List<Runnable> updates = new ArrayList<>();
+    updates.add(() -> {});
+    updates.add(() -> {
+      throw new IllegalStateException();
+    });
+    scheduler.execute(updates);
+  }
+}
@@ -0,0 +1,290 @@
+package org.mechaverse.simulation.common.cellautomaton.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.util.TestEntityType;
+
+/**
+ * Unit test for {@link CellGrid}.
+ */
+public class CellGridTest {
+
+  private static class TestEntity extends EntityModel<TestEntityType> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TestEntityType type;
+
+    TestEntity(TestEntityType type) {
+      this.type = type;
+    }
+
+    @Override
+    public TestEntityType getType() {
+      return type;
+    }
+  }
+
+  private CellGrid<EntityModel<TestEntityType>, TestEntityType> grid;
+  private TestEntity entity1;
+  private TestEntity entity2;
+
+  @Before
+  public void setUp() {
+    grid = new CellGrid<>(4, 3);
+    entity1 = new TestEntity(TestEntityType.ENTITY1);
+    entity2 = new TestEntity(TestEntityType.ENTITY2);
+  }
+
+  @Test
+  public void getIndex() {
+    assertEquals(0, grid.getIndex(0, 0));
+    assertEquals(3, grid.getIndex(0, 3));
+    assertEquals(4, grid.getIndex(1, 0));
+    assertEquals(11, grid.getIndex(2, 3));
+  }
+
+  @Test
+  public void empty() {
+    assertTrue(grid.isEmpty(5));
+    assertNull(grid.getEntity(5));
+    assertNull(grid.getEntityType(5));
+    assertNull(grid.getEntity(5, TestEntityType.ENTITY1));
+    assertFalse(grid.hasEntity(5, TestEntityType.ENTITY2));
+  }
+
+  @Test
+  public void setEntity() {
+    grid.setEntity(5, entity2);
+    assertSame(entity2, grid.getEntity(5));
+    assertEquals(TestEntityType.ENTITY2, grid.getEntityType(5));
+    assertTrue(grid.hasEntity(5, TestEntityType.ENTITY2));
+    assertFalse(grid.hasEntity(5, TestEntityType.ENTITY1));
+
+    // The entity with the lowest type ordinal is the primary entity.
+    grid.setEntity(5, entity1);
+    assertSame(entity1, grid.getEntity(5));
+    assertSame(entity2, grid.getEntity(5, TestEntityType.ENTITY2));
+    assertTrue(grid.isEmpty(4));
+    assertTrue(grid.isEmpty(6));
+  }
+
+  @Test
+  public void removeEntity() {
+    grid.setEntity(5, entity1);
+    grid.setEntity(5, entity2);
+
+    assertNull(grid.removeEntity(5, new TestEntity(TestEntityType.ENTITY1)));
+    assertSame(entity1, grid.removeEntity(5, entity1));
+    assertSame(entity2, grid.getEntity(5));
+    assertEquals(TestEntityType.ENTITY2, grid.getEntityType(5));
+
+    assertSame(entity2, grid.removeEntity(5, TestEntityType.ENTITY2));
+    assertNull(grid.removeEntity(5, TestEntityType.ENTITY2));
+    assertTrue(grid.isEmpty(5));
+  }
+
+  @Test
+  public void getEntities() {
+    TestEntity entity3 = new TestEntity(TestEntityType.ENTITY1);
+    grid.setEntity(7, entity2);
+    grid.setEntity(7, entity1);
+    grid.setEntity(2, entity3);
+
+    List<EntityModel<TestEntityType>> cellEntities = new ArrayList<>();
+    grid.getEntities(7, cellEntities);
+    assertEquals(ImmutableList.of(entity1, entity2), cellEntities);
+
+    List<EntityModel<TestEntityType>> entities = new ArrayList<>();
+    grid.getEntities(entities);
+    assertEquals(ImmutableList.of(entity3, entity1, entity2), entities);
+
+    assertEquals(ImmutableList.of(entity1, entity3, entity2), grid.getEntities());
+    assertEquals(ImmutableList.of(entity1, entity3), grid.getEntities(TestEntityType.ENTITY1));
+    assertEquals(ImmutableList.of(entity2), grid.getEntities(TestEntityType.ENTITY2));
+  }
+
+  @Test
+  public void getEntityCount() {
+    assertEquals(0, grid.getEntityCount(TestEntityType.ENTITY1));
+    grid.setEntity(1, entity1);
+    grid.setEntity(1, entity2);
+    grid.setEntity(2, new TestEntity(TestEntityType.ENTITY1));
+    assertEquals(3, grid.getEntityCount());
+    assertEquals(2, grid.getEntityCount(TestEntityType.ENTITY1));
+    assertEquals(1, grid.getEntityCount(TestEntityType.ENTITY2));
+
+    // Replacing an entity does not change the count.
+    grid.setEntity(1, new TestEntity(TestEntityType.ENTITY2));
+    assertEquals(1, grid.getEntityCount(TestEntityType.ENTITY2));
+
+    grid.removeEntity(1, TestEntityType.ENTITY1);
+    assertEquals(2, grid.getEntityCount());
+    assertEquals(1, grid.getEntityCount(TestEntityType.ENTITY1));
+  }
+
+  @Test
+  public void removeEntity_updatesIndex() {
+    TestEntity entity3 = new TestEntity(TestEntityType.ENTITY1);
+    TestEntity entity4 = new TestEntity(TestEntityType.ENTITY1);
+    grid.setEntity(1, entity1);
+    grid.setEntity(2, entity3);
+    grid.setEntity(3, entity4);
+
+    // The last entity is moved into the slot of the removed entity.
+    grid.removeEntity(1, entity1);
+    assertEquals(ImmutableList.of(entity4, entity3), grid.getEntities(TestEntityType.ENTITY1));
+    grid.removeEntity(3, entity4);
+    assertEquals(ImmutableList.of(entity3), grid.getEntities(TestEntityType.ENTITY1));
+    assertSame(entity3, grid.getEntity(2));
+  }
+
+  @Test
+  public void removeEntity_reAddSameType() {
+    CellGrid<EntityModel<TestEntityType>, TestEntityType> largeGrid = new CellGrid<>(8, 8);
+    Map<Integer, EntityModel<TestEntityType>> expected = new HashMap<>();
+    Random random = new Random(CellGridTest.class.getName().hashCode());
+
+    // Remove entities from random positions of the index and add them back to other cells, which
+    // grows the index past its initial capacity and moves the last entity into each vacated slot.
+    for (int idx = 0; idx < 500; idx++) {
+      int index = random.nextInt(64);
+      EntityModel<TestEntityType> entity = expected.get(index);
+      if (entity != null && random.nextBoolean()) {
+        assertSame(entity, largeGrid.removeEntity(index, entity));
+        expected.remove(index);
+
+        int newIndex = random.nextInt(64);
+        largeGrid.setEntity(newIndex, entity);
+        expected.put(newIndex, entity);
+      } else if (entity != null) {
+        assertSame(entity, largeGrid.removeEntity(index, TestEntityType.ENTITY1));
+        expected.remove(index);
+      } else {
+        entity = new TestEntity(TestEntityType.ENTITY1);
+        largeGrid.setEntity(index, entity);
+        expected.put(index, entity);
+      }
+      assertIndexConsistent(largeGrid, expected);
+    }
+
+    for (Map.Entry<Integer, EntityModel<TestEntityType>> entry : expected.entrySet()) {
+      assertSame(entry.getValue(), largeGrid.removeEntity(entry.getKey(), entry.getValue()));
+    }
+    assertEquals(0, largeGrid.getEntityCount());
+    assertTrue(largeGrid.getEntities(TestEntityType.ENTITY1).isEmpty());
+  }
+
+  @Test
+  public void setEntity_concurrentDisjointCells() throws Exception {
+    int threadCount = 4;
+    CellGrid<EntityModel<TestEntityType>, TestEntityType> largeGrid = new CellGrid<>(threadCount, 64);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < threadCount; thread++) {
+        int column = thread;
+        futures.add(executor.submit(() -> {
+          // Each thread only modifies the cells of its column.
+          for (int iteration = 0; iteration < 100; iteration++) {
+            for (int row = 0; row < 64; row++) {
+              largeGrid.setEntity(largeGrid.getIndex(row, column),
+                  new TestEntity(TestEntityType.ENTITY1));
+            }
+            for (int row = 0; row < 64; row += 2) {
+              largeGrid.removeEntity(largeGrid.getIndex(row, column), TestEntityType.ENTITY1);
+            }
+            for (int row = 1; row < 64; row += 2) {
+              largeGrid.moveEntity(largeGrid.getIndex(row, column),
+                  largeGrid.getIndex(row - 1, column), TestEntityType.ENTITY1);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Map<Integer, EntityModel<TestEntityType>> expected = new HashMap<>();
+    for (int column = 0; column < threadCount; column++) {
+      for (int row = 0; row < 64; row += 2) {
+        int index = largeGrid.getIndex(row, column);
+        assertTrue(largeGrid.hasEntity(index, TestEntityType.ENTITY1));
+        expected.put(index, largeGrid.getEntity(index));
+      }
+    }
+    assertIndexConsistent(largeGrid, expected);
+  }
+
+  @Test
+  public void moveEntity() {
+    TestEntity entity3 = new TestEntity(TestEntityType.ENTITY1);
+    grid.setEntity(1, entity1);
+    grid.setEntity(2, entity3);
+
+    assertSame(entity1, grid.moveEntity(1, 5, TestEntityType.ENTITY1));
+    assertTrue(grid.isEmpty(1));
+    assertSame(entity1, grid.getEntity(5));
+    assertEquals(ImmutableList.of(entity1, entity3), grid.getEntities());
+
+    // Moving onto an entity of the same type replaces it.
+    assertSame(entity3, grid.moveEntity(2, 5, TestEntityType.ENTITY1));
+    assertSame(entity3, grid.getEntity(5));
+    assertEquals(ImmutableList.of(entity3), grid.getEntities());
+    grid.removeEntity(5, entity3);
+    assertEquals(0, grid.getEntityCount());
+
+    assertNull(grid.moveEntity(2, 5, TestEntityType.ENTITY1));
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void getEntities_concurrentModification() {
+    grid.setEntity(1, entity1);
+    grid.setEntity(2, new TestEntity(TestEntityType.ENTITY1));
+    for (EntityModel<TestEntityType> entity : grid.getEntities()) {
+      grid.setEntity(3, entity2);
+    }
+  }
+
+  @Test
+  public void clear() {
+    grid.setEntity(7, entity1);
+    grid.setEntity(7, entity2);
+    grid.clear(7);
+    assertTrue(grid.isEmpty(7));
+    assertNull(grid.getEntity(7, TestEntityType.ENTITY2));
+  }
+
+  private static void assertIndexConsistent(
+      CellGrid<EntityModel<TestEntityType>, TestEntityType> grid,
+      Map<Integer, EntityModel<TestEntityType>> expected) {
+    assertEquals(expected.size(), grid.getEntityCount());
+    assertEquals(expected.size(), grid.getEntityCount(TestEntityType.ENTITY1));
+    assertEquals(new HashSet<>(expected.values()),
+        new HashSet<>(grid.getEntities(TestEntityType.ENTITY1)));
+    for (int index = 0; index < grid.getWidth() * grid.getHeight(); index++) {
+      assertSame(expected.get(index), grid.getEntity(index, TestEntityType.ENTITY1));
+    }
+  }
+}
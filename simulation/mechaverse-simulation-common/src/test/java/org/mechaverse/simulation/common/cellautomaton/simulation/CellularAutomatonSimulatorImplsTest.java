@@ -10,8 +10,10 @@ import java.util.List;
 import org.junit.Test;
 import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
 import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonBuilder.Routing3In3OutCellType;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.FlatJavaCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulatorTest;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.ParallelJavaCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.opencl.OpenClCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
 
@@ -25,7 +27,7 @@ public class CellularAutomatonSimulatorImplsTest {
 
   @Test
   public void randomRoutingAutomata()
-      throws CompileException, InstantiationException, IllegalAccessException {
+      throws CompileException, ReflectiveOperationException {
     int numAutomata = 10;
     CellularAutomatonDescriptor routingDescriptor = CellularAutomatonBuilder.newCellularAutomaton(
         8, 8, Routing3In3OutCellType.newInstance(), 4, 4);
@@ -60,11 +62,17 @@ public class CellularAutomatonSimulatorImplsTest {
 
   public List<CellularAutomatonSimulator> getSimulators(
       int numAutomata, CellularAutomatonDescriptor descriptor)
-      throws CompileException, IllegalAccessException, InstantiationException {
+      throws CompileException, ReflectiveOperationException {
     List<CellularAutomatonSimulator> simulators = new ArrayList<>();
     simulators.add(new JavaCellularAutomatonSimulator(numAutomata,
         JavaCellularAutomatonSimulatorTest.INPUT_SIZE, 
             JavaCellularAutomatonSimulatorTest.OUTPUT_SIZE, descriptor));
+    simulators.add(new FlatJavaCellularAutomatonSimulator(numAutomata,
+        JavaCellularAutomatonSimulatorTest.INPUT_SIZE,
+            JavaCellularAutomatonSimulatorTest.OUTPUT_SIZE, descriptor));
+    simulators.add(new ParallelJavaCellularAutomatonSimulator(numAutomata,
+        JavaCellularAutomatonSimulatorTest.INPUT_SIZE,
+            JavaCellularAutomatonSimulatorTest.OUTPUT_SIZE, descriptor));
     simulators.add(new OpenClCellularAutomatonSimulator(
         numAutomata, 16, 16, CLPlatform.getDefault().getMaxFlopsDevice(), descriptor));
     return simulators;
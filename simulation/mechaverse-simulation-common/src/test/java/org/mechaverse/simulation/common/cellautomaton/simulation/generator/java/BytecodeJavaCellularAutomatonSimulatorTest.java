@@ -0,0 +1,65 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
+import org.mechaverse.simulation.common.cellautomaton.simulation.AbstractCellularAutomatonSimulatorTest;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonDescriptorReader;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonTestUtil;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulator.CompilerType;
+
+/**
+ * Unit test for {@link JavaCellularAutomatonSimulator} using the {@link CompilerType#BYTECODE}
+ * compiler.
+ */
+public class BytecodeJavaCellularAutomatonSimulatorTest
+    extends AbstractCellularAutomatonSimulatorTest {
+
+  public static final int INPUT_SIZE = 4;
+  public static final int OUTPUT_SIZE = 4;
+
+  @Override
+  protected CellularAutomatonSimulator newSimulator(
+      CellularAutomatonDescriptor descriptor, int count) throws Exception {
+    return new JavaCellularAutomatonSimulator(
+        count, INPUT_SIZE, OUTPUT_SIZE, descriptor, CompilerType.BYTECODE);
+  }
+
+  @Test
+  public void update_boolean4_matchesJavacSimulator() throws Exception {
+    assertMatchesJavacSimulator("boolean4.xml");
+  }
+
+  @Test
+  public void update_conway_matchesJavacSimulator() throws Exception {
+    assertMatchesJavacSimulator("conway.xml");
+  }
+
+  private void assertMatchesJavacSimulator(String descriptorResourceName) throws Exception {
+    int numAutomata = 4;
+    CellularAutomatonDescriptor descriptor = CellularAutomatonDescriptorReader.read(
+        ClassLoader.getSystemResourceAsStream(descriptorResourceName));
+
+    try (CellularAutomatonSimulator javacSimulator = new JavaCellularAutomatonSimulator(
+            numAutomata, INPUT_SIZE, OUTPUT_SIZE, descriptor);
+        CellularAutomatonSimulator bytecodeSimulator = newSimulator(descriptor, numAutomata)) {
+      int[] state = new int[javacSimulator.getAutomatonStateSize() * numAutomata];
+      CellularAutomatonTestUtil.setRandomState(state);
+      javacSimulator.setAutomataState(state);
+      bytecodeSimulator.setAutomataState(state);
+
+      for (int cnt = 0; cnt < 5; cnt++) {
+        javacSimulator.update();
+        bytecodeSimulator.update();
+      }
+
+      int[] expectedState = new int[state.length];
+      int[] actualState = new int[state.length];
+      javacSimulator.getAutomataState(expectedState);
+      bytecodeSimulator.getAutomataState(actualState);
+      assertArrayEquals(expectedState, actualState);
+    }
+  }
+}
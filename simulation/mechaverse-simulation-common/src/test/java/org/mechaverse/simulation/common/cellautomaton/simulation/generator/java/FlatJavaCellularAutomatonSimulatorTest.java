@@ -0,0 +1,54 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
+import org.mechaverse.simulation.common.cellautomaton.simulation.AbstractCellularAutomatonSimulatorTest;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonBuilder;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonBuilder.Routing3In3OutCellType;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonTestUtil;
+
+/**
+ * Unit test for {@link FlatJavaCellularAutomatonSimulator}.
+ */
+public class FlatJavaCellularAutomatonSimulatorTest extends AbstractCellularAutomatonSimulatorTest {
+
+  public static final int INPUT_SIZE = 4;
+  public static final int OUTPUT_SIZE = 4;
+
+  @Override
+  protected CellularAutomatonSimulator newSimulator(
+      CellularAutomatonDescriptor descriptor, int count) throws Exception {
+    return new FlatJavaCellularAutomatonSimulator(count, INPUT_SIZE, OUTPUT_SIZE, descriptor);
+  }
+
+  @Test
+  public void update_matchesJavaSimulator() throws Exception {
+    int numAutomata = 10;
+    CellularAutomatonDescriptor descriptor = CellularAutomatonBuilder.newCellularAutomaton(
+        4, 4, Routing3In3OutCellType.newInstance(), 4, 4);
+    descriptor.setIterationsPerUpdate(20);
+
+    try (CellularAutomatonSimulator javaSimulator = new JavaCellularAutomatonSimulator(
+            numAutomata, INPUT_SIZE, OUTPUT_SIZE, descriptor);
+        CellularAutomatonSimulator flatSimulator = newSimulator(descriptor, numAutomata)) {
+      int[] state = new int[javaSimulator.getAutomatonStateSize() * numAutomata];
+      CellularAutomatonTestUtil.setRandomState(state);
+      javaSimulator.setAutomataState(state);
+      flatSimulator.setAutomataState(state);
+
+      for (int cnt = 0; cnt < 5; cnt++) {
+        javaSimulator.update();
+        flatSimulator.update();
+      }
+
+      int[] expectedState = new int[state.length];
+      int[] actualState = new int[state.length];
+      javaSimulator.getAutomataState(expectedState);
+      flatSimulator.getAutomataState(actualState);
+      assertArrayEquals(expectedState, actualState);
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonGeneratorImpl.StateLayout;
+
+/**
+ * Unit test for {@link FlatJavaCellularAutomatonSimulator} with the
+ * {@link StateLayout#INTERLEAVED} state layout.
+ */
+public class InterleavedJavaCellularAutomatonSimulatorTest
+    extends FlatJavaCellularAutomatonSimulatorTest {
+
+  @Override
+  protected CellularAutomatonSimulator newSimulator(
+      CellularAutomatonDescriptor descriptor, int count) throws Exception {
+    return new FlatJavaCellularAutomatonSimulator(
+        count, INPUT_SIZE, OUTPUT_SIZE, descriptor, StateLayout.INTERLEAVED);
+  }
+}
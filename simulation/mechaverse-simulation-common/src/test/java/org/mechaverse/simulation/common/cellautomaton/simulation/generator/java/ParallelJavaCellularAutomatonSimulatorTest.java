@@ -0,0 +1,57 @@
+package org.mechaverse.simulation.common.cellautomaton.simulation.generator.java;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+import org.mechaverse.cellautomaton.model.CellularAutomatonDescriptor;
+import org.mechaverse.simulation.common.cellautomaton.simulation.AbstractCellularAutomatonSimulatorTest;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonBuilder;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonBuilder.Routing3In3OutCellType;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonTestUtil;
+
+/**
+ * Unit test for {@link ParallelJavaCellularAutomatonSimulator}.
+ */
+public class ParallelJavaCellularAutomatonSimulatorTest
+    extends AbstractCellularAutomatonSimulatorTest {
+
+  public static final int INPUT_SIZE = 4;
+  public static final int OUTPUT_SIZE = 4;
+  public static final int THREAD_COUNT = 3;
+
+  @Override
+  protected CellularAutomatonSimulator newSimulator(
+      CellularAutomatonDescriptor descriptor, int count) throws Exception {
+    return new ParallelJavaCellularAutomatonSimulator(
+        count, INPUT_SIZE, OUTPUT_SIZE, descriptor, THREAD_COUNT);
+  }
+
+  @Test
+  public void update_matchesSerialSimulator() throws Exception {
+    int numAutomata = 10;
+    CellularAutomatonDescriptor descriptor = CellularAutomatonBuilder.newCellularAutomaton(
+        4, 4, Routing3In3OutCellType.newInstance(), 4, 4);
+    descriptor.setIterationsPerUpdate(20);
+
+    try (CellularAutomatonSimulator serialSimulator = new JavaCellularAutomatonSimulator(
+            numAutomata, INPUT_SIZE, OUTPUT_SIZE, descriptor);
+        CellularAutomatonSimulator parallelSimulator = newSimulator(descriptor, numAutomata)) {
+      int[] state = new int[serialSimulator.getAutomatonStateSize() * numAutomata];
+      CellularAutomatonTestUtil.setRandomState(state);
+      serialSimulator.setAutomataState(state);
+      parallelSimulator.setAutomataState(state);
+
+      for (int cnt = 0; cnt < 5; cnt++) {
+        serialSimulator.update();
+        parallelSimulator.update();
+      }
+
+      int[] expectedState = new int[state.length];
+      int[] actualState = new int[state.length];
+      serialSimulator.getAutomataState(expectedState);
+      parallelSimulator.getAutomataState(actualState);
+      assertArrayEquals(expectedState, actualState);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.mechaverse.simulation.common.datastore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A unit test for {@link MappedFileSimulationDataStore}.
+ */
+public class MappedFileSimulationDataStoreTest extends AbstractSimulationDataStoreTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Override
+  protected SimulationDataStore newSimulationDataStore() {
+    try {
+      return MappedFileSimulationDataStore.create(
+          temporaryFolder.newFile().toPath(), new MemorySimulationDataStore());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Test
+  public void open() throws IOException {
+    SimulationDataStore expected = newTestDataStore();
+    Path path = temporaryFolder.newFile().toPath();
+    Files.write(path, SimulationDataStoreOutputStream.toByteArray(expected));
+
+    MappedFileSimulationDataStore dataStore = MappedFileSimulationDataStore.open(path);
+
+    assertEquals(expected, dataStore);
+    ByteBuffer buffer = dataStore.getBuffer("0010");
+    assertFalse(buffer.hasArray());
+    byte[] value = new byte[buffer.remaining()];
+    buffer.get(value);
+    assertArrayEquals(expected.get("0010"), value);
+  }
+
+  @Test
+  public void transferTo() throws IOException {
+    SimulationDataStore expected = newTestDataStore();
+    MappedFileSimulationDataStore dataStore =
+        MappedFileSimulationDataStore.create(temporaryFolder.newFile().toPath(), expected);
+
+    assertArrayEquals(SimulationDataStoreOutputStream.toByteArray(expected), transfer(dataStore));
+  }
+
+  @Test
+  public void transferTo_modified() throws IOException {
+    SimulationDataStore expected = newTestDataStore();
+    MappedFileSimulationDataStore dataStore =
+        MappedFileSimulationDataStore.create(temporaryFolder.newFile().toPath(), expected);
+    expected.remove("0005");
+    expected.put("0100", "testValue".getBytes());
+    dataStore.remove("0005");
+    dataStore.put("0100", "testValue".getBytes());
+
+    assertArrayEquals(SimulationDataStoreOutputStream.toByteArray(expected), transfer(dataStore));
+    assertEquals(expected, MemorySimulationDataStore.fromByteArray(transfer(dataStore)));
+  }
+
+  private static byte[] transfer(SimulationDataStore dataStore) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SimulationDataStoreOutputStream.writeDataStore(dataStore, Channels.newChannel(out));
+    return out.toByteArray();
+  }
+
+  private static SimulationDataStore newTestDataStore() {
+    Random random = new Random(MappedFileSimulationDataStoreTest.class.getName().hashCode());
+    SimulationDataStore dataStore = new MemorySimulationDataStore();
+    for (int idx = 1; idx <= 64; idx++) {
+      byte[] value = new byte[idx * 16];
+      random.nextBytes(value);
+      dataStore.put(String.format("%04d", idx), value);
+    }
+    return dataStore;
+  }
+}
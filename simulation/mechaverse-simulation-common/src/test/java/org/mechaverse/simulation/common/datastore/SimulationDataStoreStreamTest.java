@@ -1,9 +1,12 @@
 package org.mechaverse.simulation.common.datastore;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mechaverse.simulation.common.datastore.SimulationDataStoreOutputStream.toByteArray;
 
+import com.google.common.io.ByteStreams;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Random;
 
 import org.junit.Before;
@@ -45,6 +48,41 @@ public class SimulationDataStoreStreamTest {
     assertEquals(dataStore, MemorySimulationDataStore.fromByteArray(serialized));
   }
 
+  @Test
+  public void newInputStream() throws IOException {
+    for (int idx = 1; idx <= 256; idx++) {
+      byte[] testValue = new byte[idx];
+      random.nextBytes(testValue);
+      dataStore.put(getTestKey(idx), testValue);
+    }
+    byte[] expected = toByteArray(dataStore);
+
+    try (InputStream in = SimulationDataStoreInputStream.newInputStream(dataStore)) {
+      assertArrayEquals(expected, ByteStreams.toByteArray(in));
+      assertEquals(-1, in.read());
+    }
+
+    // Read the stream one byte at a time.
+    try (InputStream in = SimulationDataStoreInputStream.newInputStream(dataStore)) {
+      for (byte value : expected) {
+        assertEquals(value & 0xFF, in.read());
+      }
+      assertEquals(-1, in.read());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void newInputStream_modified() throws IOException {
+    dataStore.put(getTestKey(1), new byte[16]);
+    dataStore.put(getTestKey(2), new byte[16]);
+
+    try (InputStream in = SimulationDataStoreInputStream.newInputStream(dataStore)) {
+      in.read();
+      dataStore.remove(getTestKey(2));
+      ByteStreams.toByteArray(in);
+    }
+  }
+
   private String getTestKey(int cnt) {
     return String.format("%04d", cnt);
   }
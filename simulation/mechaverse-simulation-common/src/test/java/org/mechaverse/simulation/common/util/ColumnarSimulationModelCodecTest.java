@@ -0,0 +1,207 @@
+package org.mechaverse.simulation.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.mechaverse.simulation.common.model.Direction;
+import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.model.SimulationModel;
+import org.mechaverse.simulation.common.util.SimulationModelUtilTest.TestEntity1;
+import org.mechaverse.simulation.common.util.SimulationModelUtilTest.TestEntity2;
+
+/**
+ * Unit test for {@link ColumnarSimulationModelCodec}.
+ */
+public class ColumnarSimulationModelCodecTest {
+
+  private static final Class[] CLASSES_TO_BE_BOUND =
+      {TestCellEnvironmentModel.class, TestEntity1.class, TestEntity2.class};
+
+  private ObjectMapper objectMapper;
+
+  @Before
+  public void setUp() {
+    objectMapper = new ObjectMapper(new SmileFactory());
+    objectMapper.setSerializationInclusion(Include.NON_NULL);
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    objectMapper.registerSubtypes(CLASSES_TO_BE_BOUND);
+  }
+
+  @Test
+  public void writeRead() throws IOException {
+    SimulationModel model = read(write(createModel(), CompressionCodec.GZIP));
+
+    assertEquals("abc", model.getId());
+    assertArrayEquals("modelData".getBytes(), model.getData("key1"));
+    assertEquals(2, model.getSubEnvironments().size());
+
+    TestCellEnvironmentModel environment = (TestCellEnvironmentModel) model.getEnvironment();
+    assertEquals(10, environment.getWidth());
+    assertEquals(3, environment.getEntities().size());
+
+    TestEntity1 entity1 = (TestEntity1) getEntity(environment, "e1");
+    assertEquals(2, entity1.getX());
+    assertEquals(3, entity1.getY());
+    assertEquals(50, entity1.getEnergy());
+    assertEquals(100, entity1.getMaxEnergy());
+    assertEquals(7000000000L, entity1.getCreatedIteration());
+    assertEquals(Direction.SOUTH_WEST, entity1.getDirection());
+    assertEquals(101, entity1.getField1());
+    assertArrayEquals(new byte[] {1, 2, 3}, entity1.getData("genome"));
+    assertArrayEquals(new byte[0], entity1.getData("memory"));
+
+    TestEntity2 entity2 = (TestEntity2) getEntity(environment, "e2");
+    assertNull(entity2.getDirection());
+    assertEquals("testStr", entity2.getField2());
+    assertArrayEquals(new byte[] {4, 5}, entity2.getData("genome"));
+    assertFalse(entity2.dataContainsKey("memory"));
+
+    TestEntity1 entity3 = (TestEntity1) getEntity(environment, "e3");
+    assertFalse(entity3.dataContainsKey("genome"));
+
+    TestCellEnvironmentModel subEnvironment =
+        (TestCellEnvironmentModel) model.getSubEnvironments().get(1);
+    assertEquals("sub2", subEnvironment.getId());
+    assertEquals(1, subEnvironment.getEntities().size());
+    EntityModel<?> subEntity = subEnvironment.getEntities().get(0);
+    assertEquals("e4", subEntity.getId());
+    assertEquals(4, subEntity.getX());
+    assertArrayEquals(new byte[] {6}, subEntity.getData("genome"));
+    assertTrue(((TestCellEnvironmentModel) model.getSubEnvironments().get(0))
+        .getEntities().isEmpty());
+  }
+
+  @Test
+  public void writeRead_compressionCodecs() throws IOException {
+    for (CompressionCodec codec : new CompressionCodec[] {
+        CompressionCodec.GZIP, CompressionCodec.LZ4, CompressionCodec.ZSTD}) {
+      SimulationModel model = read(write(createModel(), codec));
+      assertEquals("abc", model.getId());
+      TestCellEnvironmentModel environment = (TestCellEnvironmentModel) model.getEnvironment();
+      assertEquals(3, environment.getEntities().size());
+      assertArrayEquals(new byte[] {1, 2, 3}, getEntity(environment, "e1").getData("genome"));
+    }
+  }
+
+  @Test
+  public void isColumnar() throws IOException {
+    byte[] data = write(createModel(), CompressionCodec.GZIP);
+    assertTrue(ColumnarSimulationModelCodec.isColumnar(data));
+    assertFalse(ColumnarSimulationModelCodec.isColumnar(SimulationModelUtil.serialize(
+        createModel(), SimulationModelFormat.SMILE)));
+    assertFalse(ColumnarSimulationModelCodec.isColumnar(new byte[] {'M', 'V'}));
+    assertFalse(ColumnarSimulationModelCodec.isColumnar((byte[]) null));
+
+    // The stream is reset so that the snapshot can then be read from it.
+    InputStream in = new BufferedInputStream(new ByteArrayInputStream(data));
+    assertTrue(ColumnarSimulationModelCodec.isColumnar(in));
+    assertEquals("abc",
+        ColumnarSimulationModelCodec.read(in, objectMapper, SimulationModel.class).getId());
+    assertFalse(ColumnarSimulationModelCodec.isColumnar(
+        new BufferedInputStream(new ByteArrayInputStream(new byte[] {'M'}))));
+  }
+
+  @Test
+  public void read_unsupportedVersion() throws IOException {
+    byte[] data = write(createModel(), CompressionCodec.GZIP);
+    data[4] = (byte) (ColumnarSimulationModelCodec.VERSION + 1);
+    try {
+      read(data);
+      fail("Expected exception was not thrown.");
+    } catch (IOException ex) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void read_invalidHeader() throws IOException {
+    byte[] data = SimulationModelUtil.serialize(createModel(), SimulationModelFormat.SMILE);
+    try {
+      read(data);
+      fail("Expected exception was not thrown.");
+    } catch (IOException ex) {
+      // Expected.
+    }
+  }
+
+  private byte[] write(SimulationModel model, CompressionCodec codec) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ColumnarSimulationModelCodec.write(model, objectMapper, codec, out);
+    return out.toByteArray();
+  }
+
+  private SimulationModel read(byte[] data) throws IOException {
+    return ColumnarSimulationModelCodec.read(
+        new ByteArrayInputStream(data), objectMapper, SimulationModel.class);
+  }
+
+  private static EntityModel<?> getEntity(TestCellEnvironmentModel environment, String id) {
+    for (EntityModel<?> entity : environment.getEntities()) {
+      if (id.equals(entity.getId())) {
+        return entity;
+      }
+    }
+    throw new AssertionError("Entity " + id + " was not found");
+  }
+
+  private static SimulationModel createModel() {
+    SimulationModel model = new SimulationModel();
+    model.setId("abc");
+    model.putData("key1", "modelData".getBytes());
+
+    TestCellEnvironmentModel environment = newEnvironment("env");
+    TestEntity1 entity1 = new TestEntity1();
+    entity1.setId("e1");
+    entity1.setEnergy(50);
+    entity1.setMaxEnergy(100);
+    entity1.setCreatedIteration(7000000000L);
+    entity1.setDirection(Direction.SOUTH_WEST);
+    entity1.setField1(101);
+    entity1.putData("genome", new byte[] {1, 2, 3});
+    entity1.putData("memory", new byte[0]);
+    environment.addEntity(entity1, environment.getCell(3, 2));
+
+    TestEntity2 entity2 = new TestEntity2();
+    entity2.setId("e2");
+    entity2.setField2("testStr");
+    entity2.putData("genome", new byte[] {4, 5});
+    environment.addEntity(entity2, environment.getCell(5, 3));
+
+    TestEntity1 entity3 = new TestEntity1();
+    entity3.setId("e3");
+    environment.addEntity(entity3, environment.getCell(0, 0));
+    model.setEnvironment(environment);
+
+    model.getSubEnvironments().add(newEnvironment("sub1"));
+    TestCellEnvironmentModel subEnvironment = newEnvironment("sub2");
+    TestEntity1 entity4 = new TestEntity1();
+    entity4.setId("e4");
+    entity4.putData("genome", new byte[] {6});
+    subEnvironment.addEntity(entity4, subEnvironment.getCell(1, 4));
+    model.getSubEnvironments().add(subEnvironment);
+    return model;
+  }
+
+  private static TestCellEnvironmentModel newEnvironment(String id) {
+    TestCellEnvironmentModel environment = new TestCellEnvironmentModel();
+    environment.setId(id);
+    environment.setWidth(10);
+    environment.setHeight(10);
+    return environment;
+  }
+}
@@ -3,7 +3,10 @@ package org.mechaverse.simulation.common.util;
 import static org.junit.Assert.assertEquals;
 
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.zip.GZIPInputStream;
 import org.junit.Test;
 import org.mechaverse.simulation.common.model.EntityModel;
 import org.mechaverse.simulation.common.model.SimulationModel;
@@ -48,8 +51,64 @@ public class SimulationModelUtilTest {
     }
   }
 
+  private static final Class[] CLASSES_TO_BE_BOUND =
+      {TestCellEnvironmentModel.class, TestEntity1.class, TestEntity2.class};
+
   @Test
   public void testSerializeDeserialize() throws IOException {
+    SimulationModel simulationModel = createModel();
+
+    byte[] serialized = SimulationModelUtil.serialize(simulationModel);
+
+    // The default codec writes plain gzip data.
+    new GZIPInputStream(new ByteArrayInputStream(serialized)).close();
+    verifyModel(SimulationModelUtil.deserialize(
+        serialized, CLASSES_TO_BE_BOUND, SimulationModel.class));
+  }
+
+  @Test
+  public void testSerializeDeserialize_compressionCodecs() throws IOException {
+    SimulationModel simulationModel = createModel();
+
+    for (CompressionCodec codec : new CompressionCodec[] {CompressionCodec.GZIP,
+        CompressionCodec.LZ4, CompressionCodec.ZSTD, CompressionCodec.valueOf("zstd:19")}) {
+      for (SimulationModelFormat format : SimulationModelFormat.values()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SimulationModelUtil.serialize(simulationModel, format, codec, out);
+
+        verifyModel(SimulationModelUtil.deserialize(
+            new ByteArrayInputStream(out.toByteArray()), CLASSES_TO_BE_BOUND,
+            SimulationModel.class));
+      }
+    }
+  }
+
+  @Test
+  public void testRecompress() throws IOException {
+    SimulationModel simulationModel = createModel();
+
+    for (SimulationModelFormat format : SimulationModelFormat.values()) {
+      byte[] serialized = SimulationModelUtil.serialize(simulationModel, format);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      SimulationModelUtil.recompress(serialized, CompressionCodec.ZSTD, out);
+
+      assertEquals(format == SimulationModelFormat.COLUMNAR,
+          ColumnarSimulationModelCodec.isColumnar(out.toByteArray()));
+      verifyModel(SimulationModelUtil.deserialize(new ByteArrayInputStream(out.toByteArray()),
+          CLASSES_TO_BE_BOUND, SimulationModel.class));
+    }
+  }
+
+  @Test
+  public void testCompressionCodecValueOf() {
+    assertEquals(CompressionCodec.GZIP, CompressionCodec.valueOf("gzip"));
+    assertEquals(CompressionCodec.LZ4, CompressionCodec.valueOf(" LZ4 "));
+    assertEquals(new CompressionCodec(CompressionCodec.Type.ZSTD, 7),
+        CompressionCodec.valueOf("zstd:7"));
+    assertEquals("zstd:7", CompressionCodec.valueOf("zstd:7").toString());
+  }
+
+  private static SimulationModel createModel() {
     SimulationModel simulationModel = new SimulationModel();
     simulationModel.setId("abc");
     simulationModel.putData("key1", "testValue1".getBytes());
@@ -69,20 +128,19 @@ public class SimulationModelUtilTest {
     environmentModel.addEntity(entityModel2, environmentModel.getCell(5, 3));
 
     simulationModel.setEnvironment(environmentModel);
+    return simulationModel;
+  }
 
-    byte[] serialized = SimulationModelUtil.serialize(simulationModel);
-
-    SimulationModel deserializedModel = SimulationModelUtil.deserialize(serialized, new Class[]{
-        TestCellEnvironmentModel.class, TestEntity1.class, TestEntity2.class}, SimulationModel.class);
-
+  private static void verifyModel(SimulationModel deserializedModel) {
     assertEquals("abc", deserializedModel.getId());
     assertEquals("testValue1", new String(deserializedModel.getData("key1")));
-    environmentModel = (TestCellEnvironmentModel) deserializedModel.getEnvironment();
+    TestCellEnvironmentModel environmentModel =
+        (TestCellEnvironmentModel) deserializedModel.getEnvironment();
     assertEquals(10, environmentModel.getWidth());
     assertEquals(10, environmentModel.getHeight());
     assertEquals(2, environmentModel.getEntities().size());
 
-    entityModel1 = (TestEntity1) environmentModel.getEntities().get(0);
+    TestEntity1 entityModel1 = (TestEntity1) environmentModel.getEntities().get(0);
     assertEquals("e1", entityModel1.getId());
     assertEquals(2, entityModel1.getY());
     assertEquals(101, entityModel1.getField1());
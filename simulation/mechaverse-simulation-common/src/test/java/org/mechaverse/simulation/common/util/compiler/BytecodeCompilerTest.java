@@ -0,0 +1,126 @@
+package org.mechaverse.simulation.common.util.compiler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
+
+/**
+ * Unit test for {@link BytecodeCompiler}.
+ */
+public class BytecodeCompilerTest {
+
+  private static final String CLASS_NAME = "org.mechaverse.test.TestProgramImpl";
+
+  /**
+   * The base class of the compiled test programs.
+   */
+  public abstract static class TestProgram {
+
+    protected final int[] values;
+    protected final int[][] lanes = new int[2][3];
+    protected int result;
+
+    public TestProgram(int valueCount) {
+      this.values = new int[valueCount];
+    }
+
+    public abstract void run(int arg);
+  }
+
+  @Test
+  public void compile_arithmetic() throws Exception {
+    TestProgram program = newProgram(
+        "values[0] = arg + 3 * 4 - 10 / 3;",
+        "values[1] = -arg % 5;",
+        "values[2] = ~arg & 0xFF | 0x100 ^ 0b11;",
+        "values[3] = arg << 3 >> 1 >>> 1;",
+        "values[4] = -1 >>> 28;",
+        "values[5] = 0xFFFFFFFF;",
+        "values[6] = -2147483648;",
+        "values[7] = 017;");
+    program.run(7);
+    int arg = 7;
+    assertArrayEquals(new int[] {arg + 3 * 4 - 10 / 3, -arg % 5, ~arg & 0xFF | 0x100 ^ 0b11,
+        arg << 3 >> 1 >>> 1, -1 >>> 28, 0xFFFFFFFF, -2147483648, 017}, program.values);
+  }
+
+  @Test
+  public void compile_conditional() throws Exception {
+    TestProgram program = newProgram(
+        "int sum = arg;",
+        "values[0] = (sum == 3) ? 1 : ((sum == 2) ? 5 : 0);",
+        "values[1] = sum > 2 && sum < 4 ? 1 : 0;",
+        "values[2] = sum < 2 || sum >= 3 ? 1 : 0;",
+        "values[3] = !(sum != 3) ? 1 : 0;",
+        "boolean flag = sum <= 3 & true;",
+        "values[4] = flag ? 1 : 0;");
+    program.run(3);
+    assertArrayEquals(new int[] {1, 1, 1, 1, 1, 0, 0, 0}, program.values);
+    program.run(2);
+    assertArrayEquals(new int[] {5, 0, 0, 0, 1, 0, 0, 0}, program.values);
+  }
+
+  @Test
+  public void compile_statements() throws Exception {
+    TestProgram program = newProgram(
+        "int tmp0, tmp1;",
+        "tmp0 = arg;",
+        "for (int idx = 0; idx < 4; idx++) {",
+        "  // A comment.",
+        "  tmp1 = idx * tmp0;",
+        "  if (idx % 2 == 0) { values[idx] += tmp1; } else values[idx] -= tmp1;",
+        "}",
+        "final int[] lane = lanes[1];",
+        "lane[2] = ++tmp0;",
+        "result = tmp0++ + tmp0--;",
+        "values[4]++;",
+        "--values[4];",
+        "this.result <<= 1;",
+        "if (arg > 0) return;",
+        "result = 0;");
+    program.run(2);
+    assertArrayEquals(new int[] {0, -2, 4, -6, 0, 0, 0, 0}, program.values);
+    assertEquals(3, program.lanes[1][2]);
+    assertEquals((3 + 4) << 1, program.result);
+  }
+
+  @Test(expected = CompileException.class)
+  public void compile_undefinedVariable() throws Exception {
+    newProgram("values[0] = undefined;");
+  }
+
+  @Test(expected = CompileException.class)
+  public void compile_typeMismatch() throws Exception {
+    newProgram("int value = arg == 1;");
+  }
+
+  @Test(expected = CompileException.class)
+  public void compile_methodCall() throws Exception {
+    newProgram("values[0] = Math.abs(arg);");
+  }
+
+  @Test(expected = CompileException.class)
+  public void compile_finalField() throws Exception {
+    newProgram("values = lanes[0];");
+  }
+
+  private static TestProgram newProgram(String... statements) throws Exception {
+    StringBuilder source = new StringBuilder();
+    source.append("package org.mechaverse.test;\n");
+    source.append("public class TestProgramImpl extends ")
+        .append(TestProgram.class.getCanonicalName()).append(" {\n");
+    source.append("  public TestProgramImpl() { super(8); }\n");
+    source.append("  @Override\n");
+    source.append("  public void run(int arg) {\n");
+    source.append("    for (int idx = 0; idx < values.length; idx++) values[idx] = 0;\n");
+    for (String statement : statements) {
+      source.append("    ").append(statement).append('\n');
+    }
+    source.append("  }\n");
+    source.append("}\n");
+    Class<TestProgram> programClass = BytecodeCompiler.compile(CLASS_NAME, source.toString());
+    return programClass.newInstance();
+  }
+}
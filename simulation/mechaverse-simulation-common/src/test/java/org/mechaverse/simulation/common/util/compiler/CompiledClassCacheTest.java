@@ -0,0 +1,137 @@
+package org.mechaverse.simulation.common.util.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.Callable;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Unit test for {@link CompiledClassCache}.
+ */
+public class CompiledClassCacheTest {
+
+  private static final String CLASS_NAME = "org.mechaverse.test.CachedCallable";
+  private static final String SOURCE = "package org.mechaverse.test;\n"
+      + "public class CachedCallable implements java.util.concurrent.Callable<String> {\n"
+      + "  public String call() { return \"%s\"; }\n"
+      + "}\n";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File directory;
+  private CompiledClassCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = temporaryFolder.newFolder();
+    cache = new CompiledClassCache(directory);
+  }
+
+  @Test
+  public void compile() throws Exception {
+    assertEquals("a", call(cache.compile(CLASS_NAME, String.format(SOURCE, "a"))));
+  }
+
+  @Test
+  public void compile_sameSource_returnsLoadedClass() throws Exception {
+    Class<?> first = cache.compile(CLASS_NAME, String.format(SOURCE, "a"));
+    Class<?> second = cache.compile(CLASS_NAME, String.format(SOURCE, "a"));
+    assertSame(first, second);
+  }
+
+  @Test
+  public void compile_differentSource() throws Exception {
+    Class<?> first = cache.compile(CLASS_NAME, String.format(SOURCE, "a"));
+    Class<?> second = cache.compile(CLASS_NAME, String.format(SOURCE, "b"));
+    assertNotSame(first, second);
+    assertEquals("a", call(first));
+    assertEquals("b", call(second));
+  }
+
+  @Test
+  public void compile_loadsFromDisk() throws Exception {
+    cache.compile(CLASS_NAME, String.format(SOURCE, "a"));
+    assertEquals(2, directory.listFiles().length);
+
+    // Overwrite the cached bytecode and digest with those of a different source to verify that the
+    // class is loaded from disk rather than compiled.
+    writeCachedClass(JavaCompilerUtil.compileToBytecode(CLASS_NAME, String.format(SOURCE, "b")),
+        true);
+    CompiledClassCache diskCache = new CompiledClassCache(directory);
+    assertEquals("b", call(diskCache.compile(CLASS_NAME, String.format(SOURCE, "a"))));
+  }
+
+  @Test
+  public void compile_digestMismatch_recompiles() throws Exception {
+    cache.compile(CLASS_NAME, String.format(SOURCE, "a"));
+    writeCachedClass(JavaCompilerUtil.compileToBytecode(CLASS_NAME, String.format(SOURCE, "b")),
+        false);
+
+    CompiledClassCache diskCache = new CompiledClassCache(directory);
+    assertEquals("a", call(diskCache.compile(CLASS_NAME, String.format(SOURCE, "a"))));
+  }
+
+  @Test
+  public void compile_invalidClassFile_recompiles() throws Exception {
+    cache.compile(CLASS_NAME, String.format(SOURCE, "a"));
+    writeCachedClass(new byte[] {1, 2, 3}, true);
+
+    CompiledClassCache diskCache = new CompiledClassCache(directory);
+    assertEquals("a", call(diskCache.compile(CLASS_NAME, String.format(SOURCE, "a"))));
+  }
+
+  @Test
+  public void compile_directoryWritableByOthers_recompiles() throws Exception {
+    cache.compile(CLASS_NAME, String.format(SOURCE, "a"));
+    writeCachedClass(JavaCompilerUtil.compileToBytecode(CLASS_NAME, String.format(SOURCE, "b")),
+        true);
+    Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+
+    CompiledClassCache diskCache = new CompiledClassCache(directory);
+    assertEquals("a", call(diskCache.compile(CLASS_NAME, String.format(SOURCE, "a"))));
+  }
+
+  @Test
+  public void compile_memoryOnly() throws Exception {
+    CompiledClassCache memoryCache = new CompiledClassCache(null);
+    assertEquals("a", call(memoryCache.compile(CLASS_NAME, String.format(SOURCE, "a"))));
+  }
+
+  @Test(expected = CompileException.class)
+  public void compile_error() throws Exception {
+    cache.compile(CLASS_NAME, "invalid");
+  }
+
+  /**
+   * Replaces the cached class file with the given bytecode, optionally updating its digest.
+   */
+  private void writeCachedClass(byte[] bytecode, boolean updateDigest) throws Exception {
+    for (File file : directory.listFiles()) {
+      if (file.getName().endsWith(".class")) {
+        Files.write(file.toPath(), bytecode);
+      } else if (updateDigest) {
+        Files.write(file.toPath(),
+            Hashing.sha256().hashBytes(bytecode).toString().getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static String call(Class<?> callableClass) throws Exception {
+    return ((Callable<String>) callableClass.newInstance()).call();
+  }
+}
@@ -1,10 +1,14 @@
 package org.mechaverse.simulation.primordial.core;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import org.mechaverse.simulation.common.AbstractSimulation;
 import org.mechaverse.simulation.common.EnvironmentFactory;
 import org.mechaverse.simulation.common.SimulationModelGenerator;
 import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
 import org.mechaverse.simulation.primordial.core.model.EntityType;
 import org.mechaverse.simulation.primordial.core.model.PrimordialEnvironmentModel;
 import org.mechaverse.simulation.primordial.core.model.PrimordialSimulationModel;
@@ -30,6 +34,11 @@ public class PrimordialSimulationImpl extends
     setState(PrimordialSimulationModelUtil.deserialize(data));
   }
 
+  @Override
+  public void setStateData(InputStream in) throws Exception {
+    setState(PrimordialSimulationModelUtil.deserialize(in));
+  }
+
   @Override
   public PrimordialSimulationModel deserializeState(byte[] stateData) throws IOException {
     return PrimordialSimulationModelUtil.deserialize(stateData);
@@ -39,4 +48,15 @@ public class PrimordialSimulationImpl extends
   public byte[] getStateData() throws IOException {
     return PrimordialSimulationModelUtil.serialize(getState());
   }
+
+  @Override
+  public byte[] getStateData(SimulationModelFormat format) throws IOException {
+    return PrimordialSimulationModelUtil.serialize(getState(), format);
+  }
+
+  @Override
+  public void getStateData(OutputStream out, SimulationModelFormat format,
+      CompressionCodec codec) throws IOException {
+    PrimordialSimulationModelUtil.serialize(getState(), format, codec, out);
+  }
 }
@@ -9,10 +9,17 @@ import java.util.function.Function;
 import org.mechaverse.simulation.common.Environment;
 import org.mechaverse.simulation.common.SimulationModelGenerator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.BitwiseCellularAutomatonSimulatorAdapter;
+import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonDescriptorDataSource;
 import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.CellularAutomatonSimulator.CellularAutomatonSimulatorParams;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.FlatJavaCellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonGeneratorImpl.StateLayout;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulator;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.JavaCellularAutomatonSimulator.CompilerType;
+import org.mechaverse.simulation.common.cellautomaton.simulation.generator.java.ParallelJavaCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.cellautomaton.simulation.opencl.OpenClCellularAutomatonSimulator;
 import org.mechaverse.simulation.common.model.EntityModel;
+import org.mechaverse.simulation.common.util.compiler.JavaCompilerUtil.CompileException;
 import org.mechaverse.simulation.primordial.core.PrimordialEnvironmentFactory;
 import org.mechaverse.simulation.primordial.core.PrimordialSimulationImpl;
 import org.mechaverse.simulation.primordial.core.PrimordialSimulationModelGenerator;
@@ -25,6 +32,7 @@ import org.mechaverse.simulation.primordial.core.environment.PrimordialEnvironme
 import org.mechaverse.simulation.primordial.core.model.EntityType;
 import org.mechaverse.simulation.primordial.core.model.PrimordialEnvironmentModel;
 import org.mechaverse.simulation.primordial.core.model.PrimordialSimulationModel;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
@@ -35,6 +43,13 @@ public class PrimordialSimulationConfig {
 
   private static final int BITS_PER_ENTITY = 1;
 
+  /**
+   * The cellular automaton simulator implementation to use. One of "opencl", "java",
+   * "bytecode-java", "flat-java", "interleaved-java", or "parallel-java".
+   */
+  @Value("${cellularAutomatonSimulatorType:opencl}")
+  private String cellularAutomatonSimulatorType;
+
   @Bean
   @Scope("prototype")
   public PrimordialSimulationImpl simulation(
@@ -87,14 +102,42 @@ public class PrimordialSimulationConfig {
   @Bean
   @Scope("prototype")
   public Function<CellularAutomatonSimulatorParams, CellularAutomatonSimulator> cellularAutomatonSimulatorFactory() {
-    return params -> {
-      return new BitwiseCellularAutomatonSimulatorAdapter(new OpenClCellularAutomatonSimulator(
-          IntMath.divide(params.numAutomata, Integer.SIZE, RoundingMode.CEILING),
-          CellularAutomatonSimulationBehavior.AUTOMATON_INPUT_DATA_SIZE_BITS,
-          CellularAutomatonSimulationBehavior.AUTOMATON_OUTPUT_DATA_SIZE_BITS,
-          CLPlatform.getDefault().getMaxFlopsDevice(),
-          params.descriptorDataSource.getDescriptor()), BITS_PER_ENTITY);
-    };
+    return params -> new BitwiseCellularAutomatonSimulatorAdapter(
+        newSimulator(IntMath.divide(params.numAutomata, Integer.SIZE, RoundingMode.CEILING),
+            params.descriptorDataSource), BITS_PER_ENTITY);
+  }
+
+  private CellularAutomatonSimulator newSimulator(
+      int numAutomata, CellularAutomatonDescriptorDataSource descriptorDataSource) {
+    final int inputSize = CellularAutomatonSimulationBehavior.AUTOMATON_INPUT_DATA_SIZE_BITS;
+    final int outputSize = CellularAutomatonSimulationBehavior.AUTOMATON_OUTPUT_DATA_SIZE_BITS;
+    try {
+      switch (cellularAutomatonSimulatorType) {
+        case "java":
+          return new JavaCellularAutomatonSimulator(
+              numAutomata, inputSize, outputSize, descriptorDataSource);
+        case "bytecode-java":
+          return new JavaCellularAutomatonSimulator(numAutomata, inputSize, outputSize,
+              descriptorDataSource, CompilerType.BYTECODE);
+        case "flat-java":
+          return new FlatJavaCellularAutomatonSimulator(
+              numAutomata, inputSize, outputSize, descriptorDataSource);
+        case "interleaved-java":
+          return new FlatJavaCellularAutomatonSimulator(
+              numAutomata, inputSize, outputSize, descriptorDataSource, StateLayout.INTERLEAVED);
+        case "parallel-java":
+          return new ParallelJavaCellularAutomatonSimulator(
+              numAutomata, inputSize, outputSize, descriptorDataSource);
+        case "opencl":
+          return new OpenClCellularAutomatonSimulator(numAutomata, inputSize, outputSize,
+              CLPlatform.getDefault().getMaxFlopsDevice(), descriptorDataSource.getDescriptor());
+        default:
+          throw new IllegalArgumentException(
+              "Unknown cellular automaton simulator type " + cellularAutomatonSimulatorType);
+      }
+    } catch (ReflectiveOperationException | CompileException ex) {
+      throw new IllegalStateException("Unable to create cellular automaton simulator", ex);
+    }
   }
 
   private PrimordialEntityFactory entityFactory() {
@@ -1,7 +1,11 @@
 package org.mechaverse.simulation.primordial.core.util;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import org.mechaverse.simulation.common.model.SimulationModel;
+import org.mechaverse.simulation.common.util.CompressionCodec;
+import org.mechaverse.simulation.common.util.SimulationModelFormat;
 import org.mechaverse.simulation.common.util.SimulationModelUtil;
 import org.mechaverse.simulation.primordial.core.model.Barrier;
 import org.mechaverse.simulation.primordial.core.model.Food;
@@ -19,7 +23,21 @@ public class PrimordialSimulationModelUtil {
     return SimulationModelUtil.deserialize(data, CLASSES_TO_BE_BOUND, PrimordialSimulationModel.class);
   }
 
+  public static PrimordialSimulationModel deserialize(InputStream in) throws IOException {
+    return SimulationModelUtil.deserialize(in, CLASSES_TO_BE_BOUND, PrimordialSimulationModel.class);
+  }
+
   public static byte[] serialize(SimulationModel model) throws IOException {
     return SimulationModelUtil.serialize(model);
   }
+
+  public static byte[] serialize(SimulationModel model, SimulationModelFormat format)
+      throws IOException {
+    return SimulationModelUtil.serialize(model, format);
+  }
+
+  public static void serialize(SimulationModel model, SimulationModelFormat format,
+      CompressionCodec codec, OutputStream out) throws IOException {
+    SimulationModelUtil.serialize(model, format, codec, out);
+  }
 }